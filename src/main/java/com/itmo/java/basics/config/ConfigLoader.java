@@ -1,9 +1,13 @@
 package com.itmo.java.basics.config;
 
 import com.itmo.java.basics.console.DatabaseCommand;
+import com.itmo.java.basics.index.IndexType;
+import com.itmo.java.basics.logic.CachePolicy;
 
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
 
@@ -12,6 +16,59 @@ import java.util.ResourceBundle;
  */
 public class ConfigLoader {
     public static final String KVS_PORT = "kvs.port";
+    public static final String KVS_MMAP_ENABLED = "kvs.segment.mmap.enabled";
+    public static final String KVS_MMAP_MAX_BYTES = "kvs.segment.mmap.maxBytes";
+    public static final String KVS_SEGMENT_SIZE = "kvs.segment.size";
+    /**
+     * Размер сегмента отдельной таблицы задается как kvs.table.&lt;имя таблицы&gt;.segment.size,
+     * реализация индекса - как kvs.table.&lt;имя таблицы&gt;.index.type, лимит кэша значений - как kvs.table.&lt;имя таблицы&gt;.cache.bytes,
+     * доли общего кэша - как kvs.table.&lt;имя таблицы&gt;.cache.minShare и kvs.table.&lt;имя таблицы&gt;.cache.maxShare
+     */
+    public static final String KVS_TABLE_PREFIX = "kvs.table.";
+    public static final String KVS_TABLE_SEGMENT_SIZE_SUFFIX = ".segment.size";
+    public static final String KVS_TABLE_INDEX_TYPE_SUFFIX = ".index.type";
+    public static final String KVS_TABLE_CACHE_BYTES_SUFFIX = ".cache.bytes";
+    public static final String KVS_TABLE_CACHE_MIN_SHARE_SUFFIX = ".cache.minShare";
+    public static final String KVS_TABLE_CACHE_MAX_SHARE_SUFFIX = ".cache.maxShare";
+    /**
+     * Реализация индекса таблиц: map, packed или off_heap (см {@link IndexType})
+     */
+    public static final String KVS_INDEX_TYPE = "kvs.index.type";
+    public static final String KVS_COMPACTION_ENABLED = "kvs.compaction.enabled";
+    public static final String KVS_COMPACTION_INTERVAL_MILLIS = "kvs.compaction.intervalMillis";
+    public static final String KVS_COMPACTION_MIN_SEGMENTS = "kvs.compaction.minSegments";
+    public static final String KVS_COMPACTION_MAX_SEGMENTS = "kvs.compaction.maxSegments";
+    public static final String KVS_COMPACTION_MIN_GARBAGE_RATIO = "kvs.compaction.minGarbageRatio";
+    public static final String KVS_COMPACTION_MAX_BYTES_PER_SECOND = "kvs.compaction.maxBytesPerSecond";
+    public static final String KVS_INIT_PARALLELISM = "kvs.init.parallelism";
+    public static final String KVS_VERIFY_CHECKSUMS = "kvs.segment.verifyChecksums";
+    public static final String KVS_COMPRESSION_ENABLED = "kvs.segment.compression.enabled";
+    public static final String KVS_COMPRESSION_BLOCK_SIZE = "kvs.segment.compression.blockSize";
+    public static final String KVS_COMPRESSION_CACHE_BYTES = "kvs.segment.compression.cacheBytes";
+    public static final String KVS_ZERO_COPY_MIN_BYTES = "kvs.get.zeroCopyMinBytes";
+    /**
+     * Доля ложноположительных ответов фильтров Блума. Фильтры есть только у файлов таблиц sstable,
+     * на таблицы hash настройка не влияет
+     */
+    public static final String KVS_BLOOM_FALSE_POSITIVE_RATE = "kvs.sstable.bloom.falsePositiveRate";
+    public static final String KVS_MEMTABLE_BYTES = "kvs.sstable.memtableBytes";
+    public static final String KVS_TTL_TICK_MILLIS = "kvs.ttl.tickMillis";
+    public static final String KVS_TTL_EXPIRE_BATCH_SIZE = "kvs.ttl.expireBatchSize";
+    public static final String KVS_SNAPSHOT_PATH = "kvs.snapshot.path";
+    public static final String KVS_CACHE_BYTES = "kvs.cache.bytes";
+    /**
+     * Политика вытеснения кэша значений: lru или tiny_lfu (см {@link CachePolicy})
+     */
+    public static final String KVS_CACHE_POLICY = "kvs.cache.policy";
+    /**
+     * Один ли кэш значений на все таблицы. Тогда kvs.cache.bytes - лимит на все таблицы сразу
+     */
+    public static final String KVS_CACHE_SHARED = "kvs.cache.shared";
+    public static final String KVS_NEGATIVE_CACHE_ENABLED = "kvs.cache.negative.enabled";
+    /**
+     * Лимит второго уровня кэша значений вне кучи на все таблицы сервера. 0 - второго уровня нет
+     */
+    public static final String KVS_OFF_HEAP_CACHE_BYTES = "kvs.cache.offHeap.bytes";
     private final String name;
 
     /**
@@ -33,7 +90,15 @@ public class ConfigLoader {
      * Если не удалось считать из заданного файла, или какого-то конкретно значения не оказалось,
      * то используют дефолтные значения из {@link DatabaseConfig} и {@link ServerConfig}
      * <br/>
-     * Читаются: "kvs.workingPath", "kvs.host", "kvs.port" (но в конфигурационном файле допустимы и другие проперти)
+     * Читаются: "kvs.workingPath", "kvs.host", "kvs.port", "kvs.segment.mmap.enabled", "kvs.segment.mmap.maxBytes",
+     * "kvs.segment.size", "kvs.table.&lt;имя таблицы&gt;.segment.size", "kvs.compaction.*", "kvs.init.parallelism",
+     * "kvs.segment.verifyChecksums", "kvs.segment.compression.*", "kvs.get.zeroCopyMinBytes",
+     * "kvs.index.type", "kvs.table.&lt;имя таблицы&gt;.index.type", "kvs.sstable.bloom.falsePositiveRate",
+     * "kvs.sstable.memtableBytes", "kvs.ttl.tickMillis", "kvs.ttl.expireBatchSize", "kvs.snapshot.path",
+     * "kvs.cache.bytes", "kvs.table.&lt;имя таблицы&gt;.cache.bytes", "kvs.cache.policy", "kvs.cache.shared",
+     * "kvs.table.&lt;имя таблицы&gt;.cache.minShare", "kvs.table.&lt;имя таблицы&gt;.cache.maxShare", "kvs.cache.negative.enabled",
+     * "kvs.cache.offHeap.bytes"
+     * (но в конфигурационном файле допустимы и другие проперти)
      */
     public DatabaseServerConfig readConfig() {
 
@@ -51,10 +116,95 @@ public class ConfigLoader {
         String hostName = properties.getProperty("kvs.host", ServerConfig.DEFAULT_HOST);
         String workingPath = properties.getProperty("kvs.workingPath", DatabaseConfig.DEFAULT_WORKING_PATH);
         String portName = properties.getProperty("kvs.port", String.valueOf(ServerConfig.DEFAULT_PORT));
+        String mmapEnabled = properties.getProperty(KVS_MMAP_ENABLED, String.valueOf(DatabaseConfig.DEFAULT_MMAP_ENABLED));
+        String maxMappedBytes = properties.getProperty(KVS_MMAP_MAX_BYTES, String.valueOf(DatabaseConfig.DEFAULT_MAX_MAPPED_BYTES));
+        String segmentSize = properties.getProperty(KVS_SEGMENT_SIZE, String.valueOf(DatabaseConfig.DEFAULT_SEGMENT_SIZE));
+
+        Map<String, Long> tableSegmentSizes = new HashMap<>();
+        Map<String, IndexType> tableIndexTypes = new HashMap<>();
+        Map<String, Long> tableCacheBytes = new HashMap<>();
+        Map<String, Double> tableCacheMinShares = new HashMap<>();
+        Map<String, Double> tableCacheMaxShares = new HashMap<>();
+        for (String propertyName : properties.stringPropertyNames()) {
+            if (propertyName.startsWith(KVS_TABLE_PREFIX) && propertyName.endsWith(KVS_TABLE_SEGMENT_SIZE_SUFFIX)) {
+                String tableName = propertyName.substring(KVS_TABLE_PREFIX.length(), propertyName.length() - KVS_TABLE_SEGMENT_SIZE_SUFFIX.length());
+                tableSegmentSizes.put(tableName, Long.parseLong(properties.getProperty(propertyName)));
+            } else if (propertyName.startsWith(KVS_TABLE_PREFIX) && propertyName.endsWith(KVS_TABLE_INDEX_TYPE_SUFFIX)) {
+                String tableName = propertyName.substring(KVS_TABLE_PREFIX.length(), propertyName.length() - KVS_TABLE_INDEX_TYPE_SUFFIX.length());
+                tableIndexTypes.put(tableName, parseIndexType(properties.getProperty(propertyName)));
+            } else if (propertyName.startsWith(KVS_TABLE_PREFIX) && propertyName.endsWith(KVS_TABLE_CACHE_BYTES_SUFFIX)) {
+                String tableName = propertyName.substring(KVS_TABLE_PREFIX.length(), propertyName.length() - KVS_TABLE_CACHE_BYTES_SUFFIX.length());
+                tableCacheBytes.put(tableName, Long.parseLong(properties.getProperty(propertyName)));
+            } else if (propertyName.startsWith(KVS_TABLE_PREFIX) && propertyName.endsWith(KVS_TABLE_CACHE_MIN_SHARE_SUFFIX)) {
+                String tableName = propertyName.substring(KVS_TABLE_PREFIX.length(), propertyName.length() - KVS_TABLE_CACHE_MIN_SHARE_SUFFIX.length());
+                tableCacheMinShares.put(tableName, Double.parseDouble(properties.getProperty(propertyName)));
+            } else if (propertyName.startsWith(KVS_TABLE_PREFIX) && propertyName.endsWith(KVS_TABLE_CACHE_MAX_SHARE_SUFFIX)) {
+                String tableName = propertyName.substring(KVS_TABLE_PREFIX.length(), propertyName.length() - KVS_TABLE_CACHE_MAX_SHARE_SUFFIX.length());
+                tableCacheMaxShares.put(tableName, Double.parseDouble(properties.getProperty(propertyName)));
+            }
+        }
 
         ServerConfig serverConfig = new ServerConfig(hostName, Integer.parseInt(portName));
-        DatabaseConfig databaseConfig = new DatabaseConfig(workingPath);
+        DatabaseConfig databaseConfig = DatabaseConfig.builder()
+                .workingPath(workingPath)
+                .mmapEnabled(Boolean.parseBoolean(mmapEnabled))
+                .maxMappedBytes(Long.parseLong(maxMappedBytes))
+                .segmentSize(Long.parseLong(segmentSize))
+                .tableSegmentSizes(tableSegmentSizes)
+                .compactionEnabled(Boolean.parseBoolean(properties.getProperty(KVS_COMPACTION_ENABLED,
+                        String.valueOf(DatabaseConfig.DEFAULT_COMPACTION_ENABLED))))
+                .compactionIntervalMillis(Long.parseLong(properties.getProperty(KVS_COMPACTION_INTERVAL_MILLIS,
+                        String.valueOf(DatabaseConfig.DEFAULT_COMPACTION_INTERVAL_MILLIS))))
+                .compactionMinSegments(Integer.parseInt(properties.getProperty(KVS_COMPACTION_MIN_SEGMENTS,
+                        String.valueOf(DatabaseConfig.DEFAULT_COMPACTION_MIN_SEGMENTS))))
+                .compactionMaxSegments(Integer.parseInt(properties.getProperty(KVS_COMPACTION_MAX_SEGMENTS,
+                        String.valueOf(DatabaseConfig.DEFAULT_COMPACTION_MAX_SEGMENTS))))
+                .compactionMinGarbageRatio(Double.parseDouble(properties.getProperty(KVS_COMPACTION_MIN_GARBAGE_RATIO,
+                        String.valueOf(DatabaseConfig.DEFAULT_COMPACTION_MIN_GARBAGE_RATIO))))
+                .compactionMaxBytesPerSecond(Long.parseLong(properties.getProperty(KVS_COMPACTION_MAX_BYTES_PER_SECOND,
+                        String.valueOf(DatabaseConfig.DEFAULT_COMPACTION_MAX_BYTES_PER_SECOND))))
+                .initParallelism(Integer.parseInt(properties.getProperty(KVS_INIT_PARALLELISM,
+                        String.valueOf(DatabaseConfig.DEFAULT_INIT_PARALLELISM))))
+                .verifyChecksums(Boolean.parseBoolean(properties.getProperty(KVS_VERIFY_CHECKSUMS,
+                        String.valueOf(DatabaseConfig.DEFAULT_VERIFY_CHECKSUMS))))
+                .compressionEnabled(Boolean.parseBoolean(properties.getProperty(KVS_COMPRESSION_ENABLED,
+                        String.valueOf(DatabaseConfig.DEFAULT_COMPRESSION_ENABLED))))
+                .compressionBlockSize(Integer.parseInt(properties.getProperty(KVS_COMPRESSION_BLOCK_SIZE,
+                        String.valueOf(DatabaseConfig.DEFAULT_COMPRESSION_BLOCK_SIZE))))
+                .compressionCacheBytes(Long.parseLong(properties.getProperty(KVS_COMPRESSION_CACHE_BYTES,
+                        String.valueOf(DatabaseConfig.DEFAULT_COMPRESSION_CACHE_BYTES))))
+                .zeroCopyMinBytes(Integer.parseInt(properties.getProperty(KVS_ZERO_COPY_MIN_BYTES,
+                        String.valueOf(DatabaseConfig.DEFAULT_ZERO_COPY_MIN_BYTES))))
+                .indexType(parseIndexType(properties.getProperty(KVS_INDEX_TYPE, DatabaseConfig.DEFAULT_INDEX_TYPE.name())))
+                .tableIndexTypes(tableIndexTypes)
+                .bloomFalsePositiveRate(Double.parseDouble(properties.getProperty(KVS_BLOOM_FALSE_POSITIVE_RATE,
+                        String.valueOf(DatabaseConfig.DEFAULT_BLOOM_FALSE_POSITIVE_RATE))))
+                .memtableBytes(Long.parseLong(properties.getProperty(KVS_MEMTABLE_BYTES,
+                        String.valueOf(DatabaseConfig.DEFAULT_MEMTABLE_BYTES))))
+                .ttlTickMillis(Long.parseLong(properties.getProperty(KVS_TTL_TICK_MILLIS,
+                        String.valueOf(DatabaseConfig.DEFAULT_TTL_TICK_MILLIS))))
+                .ttlExpireBatchSize(Integer.parseInt(properties.getProperty(KVS_TTL_EXPIRE_BATCH_SIZE,
+                        String.valueOf(DatabaseConfig.DEFAULT_TTL_EXPIRE_BATCH_SIZE))))
+                .snapshotPath(properties.getProperty(KVS_SNAPSHOT_PATH, DatabaseConfig.DEFAULT_SNAPSHOT_PATH))
+                .cacheBytes(Long.parseLong(properties.getProperty(KVS_CACHE_BYTES,
+                        String.valueOf(DatabaseConfig.DEFAULT_CACHE_BYTES))))
+                .tableCacheBytes(tableCacheBytes)
+                .cachePolicy(CachePolicy.valueOf(properties.getProperty(KVS_CACHE_POLICY,
+                        DatabaseConfig.DEFAULT_CACHE_POLICY.name()).trim().toUpperCase()))
+                .cacheShared(Boolean.parseBoolean(properties.getProperty(KVS_CACHE_SHARED,
+                        String.valueOf(DatabaseConfig.DEFAULT_CACHE_SHARED))))
+                .tableCacheMinShares(tableCacheMinShares)
+                .tableCacheMaxShares(tableCacheMaxShares)
+                .negativeCacheEnabled(Boolean.parseBoolean(properties.getProperty(KVS_NEGATIVE_CACHE_ENABLED,
+                        String.valueOf(DatabaseConfig.DEFAULT_NEGATIVE_CACHE_ENABLED))))
+                .offHeapCacheBytes(Long.parseLong(properties.getProperty(KVS_OFF_HEAP_CACHE_BYTES,
+                        String.valueOf(DatabaseConfig.DEFAULT_OFF_HEAP_CACHE_BYTES))))
+                .build();
         DatabaseServerConfig databaseServerConfig = new DatabaseServerConfig(serverConfig, databaseConfig);
         return databaseServerConfig;
     }
+
+    private static IndexType parseIndexType(String value) {
+        return IndexType.valueOf(value.trim().toUpperCase());
+    }
 }
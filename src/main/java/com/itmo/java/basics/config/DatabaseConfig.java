@@ -1,19 +1,454 @@
 package com.itmo.java.basics.config;
 
+import com.itmo.java.basics.index.IndexType;
+import com.itmo.java.basics.logic.CachePolicy;
+import lombok.Builder;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * Настройки хранилища: рабочая директория и параметры работы с файлами сегментов
+ */
+@ToString
 public class DatabaseConfig {
     public static final String DEFAULT_WORKING_PATH = "db_files";
+    public static final boolean DEFAULT_MMAP_ENABLED = false;
+    public static final long DEFAULT_MAX_MAPPED_BYTES = 256L * 1024 * 1024;
+    public static final long DEFAULT_SEGMENT_SIZE = 16L * 1024 * 1024;
+    public static final boolean DEFAULT_COMPACTION_ENABLED = true;
+    public static final long DEFAULT_COMPACTION_INTERVAL_MILLIS = 30_000;
+    public static final int DEFAULT_COMPACTION_MIN_SEGMENTS = 4;
+    public static final int DEFAULT_COMPACTION_MAX_SEGMENTS = 8;
+    public static final double DEFAULT_COMPACTION_MIN_GARBAGE_RATIO = 0.3;
+    public static final long DEFAULT_COMPACTION_MAX_BYTES_PER_SECOND = 32L * 1024 * 1024;
+    public static final int DEFAULT_INIT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    public static final boolean DEFAULT_VERIFY_CHECKSUMS = false;
+    public static final boolean DEFAULT_COMPRESSION_ENABLED = false;
+    public static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 64 * 1024;
+    public static final long DEFAULT_COMPRESSION_CACHE_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_ZERO_COPY_MIN_BYTES = 16 * 1024;
+    public static final IndexType DEFAULT_INDEX_TYPE = IndexType.MAP;
+    public static final double DEFAULT_BLOOM_FALSE_POSITIVE_RATE = 0.01;
+    public static final long DEFAULT_MEMTABLE_BYTES = 4L * 1024 * 1024;
+    public static final long DEFAULT_TTL_TICK_MILLIS = 100;
+    public static final int DEFAULT_TTL_EXPIRE_BATCH_SIZE = 1000;
+    public static final String DEFAULT_SNAPSHOT_PATH = "db_snapshots";
+    public static final long DEFAULT_CACHE_BYTES = 8L * 1024 * 1024;
+    public static final CachePolicy DEFAULT_CACHE_POLICY = CachePolicy.LRU;
+    public static final boolean DEFAULT_CACHE_SHARED = false;
+    public static final boolean DEFAULT_NEGATIVE_CACHE_ENABLED = true;
+    public static final long DEFAULT_OFF_HEAP_CACHE_BYTES = 0;
 
     private final String workingPath;
 
+    /**
+     * Отображать ли read-only сегменты в память для чтения
+     */
+    private final boolean mmapEnabled;
+
+    /**
+     * Суммарный лимит байт, отображенных в память, на весь процесс
+     */
+    private final long maxMappedBytes;
+
+    /**
+     * Размер сегмента для таблиц, у которых он не задан явно
+     */
+    private final long segmentSize;
+
+    /**
+     * Размеры сегментов, заданные для отдельных таблиц (имя таблицы -> размер в байтах)
+     */
+    private final Map<String, Long> tableSegmentSizes;
+
+    /**
+     * Включено ли фоновое слияние read-only сегментов таблиц
+     */
+    private final boolean compactionEnabled;
+
+    /**
+     * Как часто проверять, пора ли сливать сегменты
+     */
+    private final long compactionIntervalMillis;
+
+    /**
+     * Сколько read-only сегментов должно быть у таблицы, чтобы их имело смысл сливать
+     */
+    private final int compactionMinSegments;
+
+    /**
+     * Сколько сегментов подряд сливается за один запуск: одно слияние переписывает не больше этих сегментов
+     */
+    private final int compactionMaxSegments;
+
+    /**
+     * Доля устаревших записей, начиная с которой сегмент стоит переписать
+     */
+    private final double compactionMinGarbageRatio;
+
+    /**
+     * Ограничение скорости записи при слиянии, чтобы не мешать основной нагрузке. 0 - без ограничения
+     */
+    private final long compactionMaxBytesPerSecond;
+
+    /**
+     * Сколько потоков использовать для инициализации баз, таблиц и сегментов при старте. 1 - последовательно
+     */
+    private final int initParallelism;
+
+    /**
+     * Проверять ли контрольную сумму записи при каждом чтении значения. При старте суммы проверяются всегда
+     */
+    private final boolean verifyChecksums;
+
+    /**
+     * Сжимать ли read-only сегменты в фоне
+     */
+    private final boolean compressionEnabled;
+
+    /**
+     * Сколько несжатых байт собирать в один сжатый блок
+     */
+    private final int compressionBlockSize;
+
+    /**
+     * Суммарный лимит распакованных блоков в кэше на весь процесс
+     */
+    private final long compressionCacheBytes;
+
+    /**
+     * Начиная с какого размера значение отдается клиенту прямо из файла сегмента, без копирования в память
+     */
+    private final int zeroCopyMinBytes;
+
+    /**
+     * Реализация индекса для таблиц, у которых она не задана явно
+     */
+    private final IndexType indexType;
+
+    /**
+     * Реализации индекса, заданные для отдельных таблиц (имя таблицы -> реализация)
+     */
+    private final Map<String, IndexType> tableIndexTypes;
+
+    /**
+     * Доля ложноположительных ответов фильтра Блума файла SSTable. 0 - фильтры не строятся.
+     * У сегментов таблиц hash фильтров нет
+     */
+    private final double bloomFalsePositiveRate;
+
+    /**
+     * Сколько байт записей копится в памяти таблицы движка {@link com.itmo.java.basics.logic.impl.SSTableStorageEngine},
+     * прежде чем они сбрасываются в отсортированный файл
+     */
+    private final long memtableBytes;
+
+    /**
+     * Шаг колеса таймеров, по которому истекают ключи со сроком: с такой точностью ключ удаляется после истечения
+     */
+    private final long ttlTickMillis;
+
+    /**
+     * Сколько удалений истекших ключей записывается за одну блокировку таблицы
+     */
+    private final int ttlExpireBatchSize;
+
+    /**
+     * Директория, в которой создаются снимки баз данных. Чтобы файлы снимка были жесткими ссылками, а не копиями,
+     * она должна быть на том же разделе, что и рабочая директория
+     */
+    private final String snapshotPath;
+
+    /**
+     * Сколько байт может занимать кэш значений таблицы, у которой лимит не задан явно. 0 - значения не кэшируются
+     */
+    private final long cacheBytes;
+
+    /**
+     * Лимиты кэша значений, заданные для отдельных таблиц (имя таблицы -> размер в байтах)
+     */
+    private final Map<String, Long> tableCacheBytes;
+
+    /**
+     * Политика вытеснения кэша значений таблиц
+     */
+    private final CachePolicy cachePolicy;
+
+    /**
+     * Один ли кэш значений на все таблицы сервера (см {@link com.itmo.java.basics.logic.impl.SharedDatabaseCache}).
+     * Тогда {@link #cacheBytes} - лимит на все таблицы сразу (на ходу меняется командой SET_CACHE_BYTES), лимиты
+     * отдельных таблиц задаются долями, а вытесняются давно не читанные значения независимо от {@link #cachePolicy}
+     */
+    private final boolean cacheShared;
+
+    /**
+     * Доли общего кэша, гарантированные отдельным таблицам (имя таблицы -> доля от 0 до 1)
+     */
+    private final Map<String, Double> tableCacheMinShares;
+
+    /**
+     * Доли общего кэша, больше которых отдельные таблицы занимать не могут (имя таблицы -> доля от 0 до 1)
+     */
+    private final Map<String, Double> tableCacheMaxShares;
+
+    /**
+     * Кэшировать ли отсутствие ключей в таблицах sstable, чтобы запросы несуществующих ключей не доходили до файлов таблицы.
+     * В хеш-таблицах отсутствие ключа не кэшируется: промах там - один поиск в индексе в памяти
+     */
+    private final boolean negativeCacheEnabled;
+
+    /**
+     * Сколько байт вне кучи может занимать второй уровень кэша значений: один лимит на все таблицы сервера
+     * (см {@link com.itmo.java.basics.logic.impl.OffHeapDatabaseCache#forConfig(DatabaseConfig)}). 0 - второго уровня нет
+     */
+    private final long offHeapCacheBytes;
+
     public DatabaseConfig() {
-        this.workingPath = DEFAULT_WORKING_PATH;
+        this(DEFAULT_WORKING_PATH);
     }
 
     public DatabaseConfig(String workingPath) {
+        this(workingPath, DEFAULT_MMAP_ENABLED, DEFAULT_MAX_MAPPED_BYTES, DEFAULT_SEGMENT_SIZE, Map.of(),
+                DEFAULT_COMPACTION_ENABLED, DEFAULT_COMPACTION_INTERVAL_MILLIS, DEFAULT_COMPACTION_MIN_SEGMENTS,
+                DEFAULT_COMPACTION_MAX_SEGMENTS, DEFAULT_COMPACTION_MIN_GARBAGE_RATIO, DEFAULT_COMPACTION_MAX_BYTES_PER_SECOND, DEFAULT_INIT_PARALLELISM,
+                DEFAULT_VERIFY_CHECKSUMS, DEFAULT_COMPRESSION_ENABLED, DEFAULT_COMPRESSION_BLOCK_SIZE,
+                DEFAULT_COMPRESSION_CACHE_BYTES, DEFAULT_ZERO_COPY_MIN_BYTES, DEFAULT_INDEX_TYPE, Map.of(),
+                DEFAULT_BLOOM_FALSE_POSITIVE_RATE, DEFAULT_MEMTABLE_BYTES, DEFAULT_TTL_TICK_MILLIS,
+                DEFAULT_TTL_EXPIRE_BATCH_SIZE, DEFAULT_SNAPSHOT_PATH, DEFAULT_CACHE_BYTES, Map.of(), DEFAULT_CACHE_POLICY,
+                DEFAULT_CACHE_SHARED, Map.of(), Map.of(), DEFAULT_NEGATIVE_CACHE_ENABLED,
+                DEFAULT_OFF_HEAP_CACHE_BYTES);
+    }
+
+    @Builder
+    private DatabaseConfig(String workingPath, boolean mmapEnabled, long maxMappedBytes,
+                           long segmentSize, Map<String, Long> tableSegmentSizes,
+                           boolean compactionEnabled, long compactionIntervalMillis, int compactionMinSegments,
+                           int compactionMaxSegments, double compactionMinGarbageRatio, long compactionMaxBytesPerSecond, int initParallelism, boolean verifyChecksums,
+                           boolean compressionEnabled, int compressionBlockSize, long compressionCacheBytes,
+                           int zeroCopyMinBytes, IndexType indexType, Map<String, IndexType> tableIndexTypes,
+                           double bloomFalsePositiveRate, long memtableBytes, long ttlTickMillis,
+                           int ttlExpireBatchSize, String snapshotPath, long cacheBytes, Map<String, Long> tableCacheBytes,
+                           CachePolicy cachePolicy, boolean cacheShared, Map<String, Double> tableCacheMinShares,
+                           Map<String, Double> tableCacheMaxShares, boolean negativeCacheEnabled,
+                           long offHeapCacheBytes) {
         this.workingPath = workingPath;
+        this.mmapEnabled = mmapEnabled;
+        this.maxMappedBytes = maxMappedBytes;
+        this.segmentSize = segmentSize;
+        this.tableSegmentSizes = Map.copyOf(tableSegmentSizes);
+        this.compactionEnabled = compactionEnabled;
+        this.compactionIntervalMillis = compactionIntervalMillis;
+        this.compactionMinSegments = compactionMinSegments;
+        this.compactionMaxSegments = compactionMaxSegments;
+        this.compactionMinGarbageRatio = compactionMinGarbageRatio;
+        this.compactionMaxBytesPerSecond = compactionMaxBytesPerSecond;
+        this.initParallelism = initParallelism;
+        this.verifyChecksums = verifyChecksums;
+        this.compressionEnabled = compressionEnabled;
+        this.compressionBlockSize = compressionBlockSize;
+        this.compressionCacheBytes = compressionCacheBytes;
+        this.zeroCopyMinBytes = zeroCopyMinBytes;
+        this.indexType = indexType;
+        this.tableIndexTypes = Map.copyOf(tableIndexTypes);
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+        this.memtableBytes = memtableBytes;
+        this.ttlTickMillis = ttlTickMillis;
+        this.ttlExpireBatchSize = ttlExpireBatchSize;
+        this.snapshotPath = snapshotPath;
+        this.cacheBytes = cacheBytes;
+        this.tableCacheBytes = Map.copyOf(tableCacheBytes);
+        this.cachePolicy = cachePolicy;
+        this.cacheShared = cacheShared;
+        this.tableCacheMinShares = Map.copyOf(tableCacheMinShares);
+        this.tableCacheMaxShares = Map.copyOf(tableCacheMaxShares);
+        this.negativeCacheEnabled = negativeCacheEnabled;
+        this.offHeapCacheBytes = offHeapCacheBytes;
     }
 
     public String getWorkingPath() {
         return workingPath;
     }
+
+    public boolean isMmapEnabled() {
+        return mmapEnabled;
+    }
+
+    public long getMaxMappedBytes() {
+        return maxMappedBytes;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @param tableName имя таблицы
+     * @return размер сегмента, заданный для таблицы, или размер по умолчанию
+     */
+    public long getSegmentSize(String tableName) {
+        return tableSegmentSizes.getOrDefault(tableName, segmentSize);
+    }
+
+    public boolean isCompactionEnabled() {
+        return compactionEnabled;
+    }
+
+    public long getCompactionIntervalMillis() {
+        return compactionIntervalMillis;
+    }
+
+    public int getCompactionMinSegments() {
+        return compactionMinSegments;
+    }
+
+    public int getCompactionMaxSegments() {
+        return compactionMaxSegments;
+    }
+
+    public double getCompactionMinGarbageRatio() {
+        return compactionMinGarbageRatio;
+    }
+
+    public long getCompactionMaxBytesPerSecond() {
+        return compactionMaxBytesPerSecond;
+    }
+
+    public int getInitParallelism() {
+        return initParallelism;
+    }
+
+    public boolean isVerifyChecksums() {
+        return verifyChecksums;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public int getCompressionBlockSize() {
+        return compressionBlockSize;
+    }
+
+    public long getCompressionCacheBytes() {
+        return compressionCacheBytes;
+    }
+
+    public int getZeroCopyMinBytes() {
+        return zeroCopyMinBytes;
+    }
+
+    public IndexType getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * @param tableName имя таблицы
+     * @return реализация индекса, заданная для таблицы, или реализация по умолчанию
+     */
+    public IndexType getIndexType(String tableName) {
+        return tableIndexTypes.getOrDefault(tableName, indexType);
+    }
+
+    public double getBloomFalsePositiveRate() {
+        return bloomFalsePositiveRate;
+    }
+
+    public long getMemtableBytes() {
+        return memtableBytes;
+    }
+
+    public long getTtlTickMillis() {
+        return ttlTickMillis;
+    }
+
+    public int getTtlExpireBatchSize() {
+        return ttlExpireBatchSize;
+    }
+
+    public String getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public long getCacheBytes() {
+        return cacheBytes;
+    }
+
+    /**
+     * @param tableName имя таблицы
+     * @return лимит кэша значений, заданный для таблицы, или лимит по умолчанию
+     */
+    public long getCacheBytes(String tableName) {
+        return tableCacheBytes.getOrDefault(tableName, cacheBytes);
+    }
+
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    public boolean isCacheShared() {
+        return cacheShared;
+    }
+
+    /**
+     * @param tableName имя таблицы
+     * @return доля общего кэша, гарантированная таблице, или 0
+     */
+    public double getCacheMinShare(String tableName) {
+        return tableCacheMinShares.getOrDefault(tableName, 0.0);
+    }
+
+    /**
+     * @param tableName имя таблицы
+     * @return доля общего кэша, больше которой таблица занимать не может, или 1
+     */
+    public double getCacheMaxShare(String tableName) {
+        return tableCacheMaxShares.getOrDefault(tableName, 1.0);
+    }
+
+    public boolean isNegativeCacheEnabled() {
+        return negativeCacheEnabled;
+    }
+
+    public long getOffHeapCacheBytes() {
+        return offHeapCacheBytes;
+    }
+
+    /**
+     * Значения по умолчанию для полей, не заданных при сборке конфига
+     */
+    public static class DatabaseConfigBuilder {
+        private String workingPath = DEFAULT_WORKING_PATH;
+        private boolean mmapEnabled = DEFAULT_MMAP_ENABLED;
+        private long maxMappedBytes = DEFAULT_MAX_MAPPED_BYTES;
+        private long segmentSize = DEFAULT_SEGMENT_SIZE;
+        private Map<String, Long> tableSegmentSizes = Map.of();
+        private boolean compactionEnabled = DEFAULT_COMPACTION_ENABLED;
+        private long compactionIntervalMillis = DEFAULT_COMPACTION_INTERVAL_MILLIS;
+        private int compactionMinSegments = DEFAULT_COMPACTION_MIN_SEGMENTS;
+        private int compactionMaxSegments = DEFAULT_COMPACTION_MAX_SEGMENTS;
+        private double compactionMinGarbageRatio = DEFAULT_COMPACTION_MIN_GARBAGE_RATIO;
+        private long compactionMaxBytesPerSecond = DEFAULT_COMPACTION_MAX_BYTES_PER_SECOND;
+        private int initParallelism = DEFAULT_INIT_PARALLELISM;
+        private boolean verifyChecksums = DEFAULT_VERIFY_CHECKSUMS;
+        private boolean compressionEnabled = DEFAULT_COMPRESSION_ENABLED;
+        private int compressionBlockSize = DEFAULT_COMPRESSION_BLOCK_SIZE;
+        private long compressionCacheBytes = DEFAULT_COMPRESSION_CACHE_BYTES;
+        private int zeroCopyMinBytes = DEFAULT_ZERO_COPY_MIN_BYTES;
+        private IndexType indexType = DEFAULT_INDEX_TYPE;
+        private Map<String, IndexType> tableIndexTypes = Map.of();
+        private double bloomFalsePositiveRate = DEFAULT_BLOOM_FALSE_POSITIVE_RATE;
+        private long memtableBytes = DEFAULT_MEMTABLE_BYTES;
+        private long ttlTickMillis = DEFAULT_TTL_TICK_MILLIS;
+        private int ttlExpireBatchSize = DEFAULT_TTL_EXPIRE_BATCH_SIZE;
+        private String snapshotPath = DEFAULT_SNAPSHOT_PATH;
+        private long cacheBytes = DEFAULT_CACHE_BYTES;
+        private Map<String, Long> tableCacheBytes = Map.of();
+        private CachePolicy cachePolicy = DEFAULT_CACHE_POLICY;
+        private boolean cacheShared = DEFAULT_CACHE_SHARED;
+        private Map<String, Double> tableCacheMinShares = Map.of();
+        private Map<String, Double> tableCacheMaxShares = Map.of();
+        private boolean negativeCacheEnabled = DEFAULT_NEGATIVE_CACHE_ENABLED;
+        private long offHeapCacheBytes = DEFAULT_OFF_HEAP_CACHE_BYTES;
+    }
 }
@@ -8,6 +8,7 @@ import com.itmo.java.basics.console.DatabaseCommandResult;
 import com.itmo.java.basics.console.ExecutionEnvironment;
 import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
 import com.itmo.java.basics.initialization.impl.*;
+import com.itmo.java.basics.logic.ValueLocation;
 import com.itmo.java.basics.resp.CommandReader;
 import com.itmo.java.client.client.KvsClient;
 import com.itmo.java.client.client.SimpleKvsClient;
@@ -20,16 +21,23 @@ import com.itmo.java.protocol.model.RespBulkString;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.logging.Logger;
 
 /**
  * Класс, который предоставляет доступ к серверу через сокеты
  */
 public class JavaSocketServerConnector implements Closeable {
+    private static final Logger logger = Logger.getLogger(JavaSocketServerConnector.class.getName());
 
     /**
      * Экзекьютор для выполнения ClientTask
@@ -43,11 +51,12 @@ public class JavaSocketServerConnector implements Closeable {
 
     /**
      * Стартует сервер. По аналогии с сокетом открывает коннекшн в конструкторе.
+     * Сокет открывается через канал, чтобы у клиентских сокетов тоже были каналы: в них значения отдаются прямо из файлов сегментов
      */
     public JavaSocketServerConnector(DatabaseServer databaseServer, ServerConfig config) throws IOException {
         this.databaseServer = databaseServer;
         this.config = config;
-        this.serverSocket = new ServerSocket(config.getPort());
+        this.serverSocket = ServerSocketChannel.open().bind(new InetSocketAddress(config.getPort())).socket();
     }
 
     /**
@@ -88,13 +97,13 @@ public class JavaSocketServerConnector implements Closeable {
         DatabaseServerConfig databaseServerConfig = configLoader.readConfig();
         ExecutionEnvironment executionEnvironment = new ExecutionEnvironmentImpl(databaseServerConfig.getDbConfig());
 
+        TableInitializer tableInitializer = new TableInitializer(new SegmentInitializer());
         DatabaseServerInitializer initializer =
                 new DatabaseServerInitializer(
-                        new DatabaseInitializer(
-                                new TableInitializer(
-                                        new SegmentInitializer())));
+                        new DatabaseInitializer(tableInitializer));
 
         DatabaseServer databaseServer = DatabaseServer.initialize(executionEnvironment, initializer);
+        tableInitializer.getInitTimings().forEach((table, millis) -> logger.info("Table " + table + " initialized in " + millis + " ms"));
         JavaSocketServerConnector javaSocketServerConnector = new JavaSocketServerConnector(databaseServer, databaseServerConfig.getServerConfig());
         javaSocketServerConnector.start();
 
@@ -120,6 +129,8 @@ public class JavaSocketServerConnector implements Closeable {
             this.client = client;
             this.server = server;
             try {
+                // ответ пишется несколькими короткими записями (заголовок, значение из файла, CRLF) - не ждем ACK между ними
+                client.setTcpNoDelay(true);
                 OutputStream outputStream = client.getOutputStream();
                 this.writer = new RespWriter(outputStream);
             } catch (IOException e) {
@@ -132,18 +143,19 @@ public class JavaSocketServerConnector implements Closeable {
          * Для кажной из задач:
          * 1. Читает из сокета команду с помощью {@link CommandReader}
          * 2. Исполняет ее на сервере
-         * 3. Записывает результат в сокет с помощью {@link RespWriter}
+         * 3. Записывает результат в сокет с помощью {@link RespWriter}. Если значение результата лежит в файле сегмента,
+         * из кучи пишется только заголовок строки, а само значение передается из файла в сокет без копирования
          */
         @Override
         public void run() {
             try (CommandReader commandReader = new CommandReader(new RespReader(client.getInputStream()), server.getEnv())) {
                 while (commandReader.hasNextCommand() && !Thread.currentThread().isInterrupted()) {
                     CompletableFuture<DatabaseCommandResult> commandResult = server.executeNextCommand(commandReader.readCommand());
-                        DatabaseCommandResult result = commandResult.get();
-                    if (result != null) {
-                        writer.write(result.serialize());
-                    } else {
+                    DatabaseCommandResult result = commandResult.get();
+                    if (result == null) {
                         writer.write(new RespBulkString(null));
+                    } else if (!transferValue(result)) {
+                        writer.write(result.serialize());
                     }
                 }
             } catch (Exception e) {
@@ -153,6 +165,26 @@ public class JavaSocketServerConnector implements Closeable {
             }
         }
 
+        /**
+         * Отдает значение результата из файла сегмента прямо в канал сокета
+         *
+         * @return {@code false} - если значение нужно сериализовать обычным образом
+         */
+        private boolean transferValue(DatabaseCommandResult result) throws IOException {
+            SocketChannel channel = client.getChannel();
+            Optional<ValueLocation> location = result.getValueLocation();
+            if (channel == null || location.isEmpty() || location.get().isInMemory()) {
+                return false;
+            }
+
+            if (location.get().transferTo(channel, length -> ByteBuffer.wrap(RespBulkString.header(length)))) {
+                ValueLocation.writeFully(channel, ByteBuffer.wrap(RespBulkString.CRLF));
+            } else {
+                writer.write(RespBulkString.NULL_STRING);
+            }
+            return true;
+        }
+
         /**
          * Закрывает клиентский сокет
          */
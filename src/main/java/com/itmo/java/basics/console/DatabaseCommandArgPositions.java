@@ -10,7 +10,29 @@ public enum DatabaseCommandArgPositions {
     DATABASE_NAME(2),
     TABLE_NAME(3),
     KEY(4),
-    VALUE(5);
+    VALUE(5),
+    /**
+     * Необязательный движок хранения таблицы в CREATE_TABLE: "1 CREATE_TABLE db1 table1 sstable"
+     */
+    TABLE_TYPE(4),
+    /**
+     * Аргументы SCAN_KEYS: "1 SCAN_KEYS db1 table1 prefix 100 cursor", курсор необязателен
+     */
+    SCAN_PREFIX(4),
+    SCAN_LIMIT(5),
+    SCAN_CURSOR(6),
+    /**
+     * Необязательный срок жизни ключа в SET_KEY, в миллисекундах: "1 SET_KEY db1 table1 key value 60000"
+     */
+    TTL_MILLIS(6),
+    /**
+     * Необязательное имя снимка в SNAPSHOT: "1 SNAPSHOT db1 backup1"
+     */
+    SNAPSHOT_NAME(3),
+    /**
+     * Новый лимит общего кэша в байтах в SET_CACHE_BYTES: "1 SET_CACHE_BYTES 268435456"
+     */
+    CACHE_BYTES(2);
 
     private final int positionIndex;
 
@@ -1,10 +1,14 @@
 package com.itmo.java.basics.console;
 
 import com.itmo.java.basics.console.impl.FailedDatabaseCommandResult;
+import com.itmo.java.basics.console.impl.ScanDatabaseCommandResult;
 import com.itmo.java.basics.console.impl.SuccessDatabaseCommandResult;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.basics.logic.ValueLocation;
 import com.itmo.java.protocol.model.RespObject;
 
 import java.util.Arrays;
+import java.util.Optional;
 
 public interface DatabaseCommandResult extends DatabaseApiSerializable {
 
@@ -18,6 +22,27 @@ public interface DatabaseCommandResult extends DatabaseApiSerializable {
         return new SuccessDatabaseCommandResult(result);
     }
 
+    /**
+     * Формирует успешный результат выполнения команды из места, где лежит значение результата.
+     * Значение читается, только когда оно понадобится
+     *
+     * @param result место значения результата
+     * @return успешный результат выполнения команды, который был сформирован
+     */
+    static DatabaseCommandResult successFrom(ValueLocation result) {
+        return new SuccessDatabaseCommandResult(result);
+    }
+
+    /**
+     * Формирует успешный результат обхода ключей таблицы.
+     *
+     * @param page страница ключей со значениями
+     * @return успешный результат выполнения команды, который был сформирован
+     */
+    static DatabaseCommandResult successFrom(ScanPage page) {
+        return new ScanDatabaseCommandResult(page);
+    }
+
     /**
      * Формирует зафейленный результат команды, при выполнении которой произошла ошибка.
      *
@@ -53,6 +78,13 @@ public interface DatabaseCommandResult extends DatabaseApiSerializable {
      */
     boolean isSuccess();
 
+    /**
+     * @return место значения результата, если его можно отдать клиенту прямо из файла, не сериализуя
+     */
+    default Optional<ValueLocation> getValueLocation() {
+        return Optional.empty();
+    }
+
 
     @Override
     RespObject serialize();
@@ -18,7 +18,7 @@ public enum DatabaseCommands {
     CREATE_DATABASE {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
-            return new CreateDatabaseCommand(env, DatabaseImpl::create, commandArgs);
+            return new CreateDatabaseCommand(env, (dbName, dbRoot) -> DatabaseImpl.create(dbName, dbRoot, env.getDatabaseConfig()), commandArgs);
         }
     },
     CREATE_TABLE {
@@ -44,6 +44,24 @@ public enum DatabaseCommands {
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
             return new DeleteKeyCommand(env, commandArgs);
         }
+    },
+    SCAN_KEYS {
+        @Override
+        public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+            return new ScanKeysCommand(env, commandArgs);
+        }
+    },
+    SNAPSHOT {
+        @Override
+        public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+            return new SnapshotCommand(env, commandArgs);
+        }
+    },
+    SET_CACHE_BYTES {
+        @Override
+        public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+            return new SetCacheBytesCommand(env, commandArgs);
+        }
     };
 
     /**
@@ -1,5 +1,6 @@
 package com.itmo.java.basics.console;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.logic.Database;
 
 import java.nio.file.Path;
@@ -11,6 +12,11 @@ public interface ExecutionEnvironment {
      */
     Path getWorkingPath();
 
+    /**
+     * @return настройки хранилища, с которыми создаются и инициализируются базы данных
+     */
+    DatabaseConfig getDatabaseConfig();
+
     /**
      * Возвращает {@code Optional<Database>} или {@code Optional#EMPTY}.
      *
@@ -3,6 +3,7 @@ package com.itmo.java.basics.console.impl;
 import com.itmo.java.basics.console.*;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.StorageEngines;
 import com.itmo.java.protocol.model.RespObject;
 
 import java.util.List;
@@ -18,6 +19,7 @@ public class CreateTableCommand implements DatabaseCommand {
     private final String commandId;
     private final String dbName;
     private final String tableName;
+    private final String engineName;
 
     /**
      * Создает команду
@@ -26,14 +28,14 @@ public class CreateTableCommand implements DatabaseCommand {
      *
      * @param env         env
      * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
-     *                    Id команды, имя команды, имя бд, имя таблицы
+     *                    Id команды, имя команды, имя бд, имя таблицы и необязательное имя движка хранения (см {@link StorageEngines}, по умолчанию hash)
      * @throws IllegalArgumentException если передано неправильное количество аргументов
      */
     public CreateTableCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
         this.env = env;
 
-        if (commandArgs.size() != 4) {
-            throw new IllegalArgumentException("Wrong amount of arguments: " + commandArgs.size() + ". Should be 6");
+        if (commandArgs.size() != 4 && commandArgs.size() != 5) {
+            throw new IllegalArgumentException("Wrong amount of arguments: " + commandArgs.size() + ". Should be 4 or 5");
         }
 
         RespObject commandIdRespObject = commandArgs.get(DatabaseCommandArgPositions.COMMAND_ID.getPositionIndex());
@@ -48,6 +50,10 @@ public class CreateTableCommand implements DatabaseCommand {
         RespObject tableRespObject = commandArgs.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex());
         this.tableName = tableRespObject.asString();
 
+        this.engineName = commandArgs.size() > DatabaseCommandArgPositions.TABLE_TYPE.getPositionIndex()
+                ? commandArgs.get(DatabaseCommandArgPositions.TABLE_TYPE.getPositionIndex()).asString()
+                : StorageEngines.DEFAULT_ENGINE;
+
         this.commandArgs = commandArgs;
     }
 
@@ -65,7 +71,7 @@ public class CreateTableCommand implements DatabaseCommand {
             Database database = optionalDatabase.get();
 
             try {
-                database.createTableIfNotExists(tableName);
+                database.createTableIfNotExists(tableName, engineName);
                 return DatabaseCommandResult.success(("Table: " + tableName + " in database: " + dbName + " is created").getBytes());
             } catch (DatabaseException e) {
                 return DatabaseCommandResult.error(e);
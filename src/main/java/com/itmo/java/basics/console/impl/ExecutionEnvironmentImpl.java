@@ -9,16 +9,17 @@ import com.itmo.java.basics.logic.impl.DatabaseImpl;
 import java.io.File;
 import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ExecutionEnvironmentImpl implements ExecutionEnvironment {
     private final DatabaseConfig config;
-    private final HashMap<String, Database> databases;
+    private final Map<String, Database> databases;
 
     public ExecutionEnvironmentImpl(DatabaseConfig config) {
         this.config = config;
-        databases = new HashMap<>();
+        databases = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -39,4 +40,9 @@ public class ExecutionEnvironmentImpl implements ExecutionEnvironment {
     public Path getWorkingPath() {
         return Path.of(config.getWorkingPath());
     }
+
+    @Override
+    public DatabaseConfig getDatabaseConfig() {
+        return config;
+    }
 }
@@ -3,6 +3,7 @@ package com.itmo.java.basics.console.impl;
 import com.itmo.java.basics.console.*;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.ValueLocation;
 import com.itmo.java.protocol.model.RespObject;
 
 import java.util.List;
@@ -59,7 +60,8 @@ public class GetKeyCommand implements DatabaseCommand {
     /**
      * Читает значение по ключу
      *
-     * @return {@link DatabaseCommandResult#success(byte[])} с прочитанным значением. Например, "previous". Null, если такого нет
+     * @return {@link DatabaseCommandResult#successFrom(ValueLocation)} с местом значения. Например, "previous". Null, если такого нет.
+     * Большое значение не читается в память: его можно отдать клиенту прямо из файла сегмента
      */
     @Override
     public DatabaseCommandResult execute() {
@@ -69,9 +71,9 @@ public class GetKeyCommand implements DatabaseCommand {
         } else {
             Database database = optionalDatabase.get();
             try {
-                Optional<byte[]> value = database.read(tableName, key);
+                Optional<ValueLocation> value = database.locate(tableName, key);
                 if(value.isPresent()) {
-                    return DatabaseCommandResult.success(value.get());
+                    return DatabaseCommandResult.successFrom(value.get());
                 } else {
                     return null;
                 }
@@ -0,0 +1,53 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Результат успешного обхода ключей: страница пар ключ-значение
+ */
+public class ScanDatabaseCommandResult implements DatabaseCommandResult {
+    private final ScanPage page;
+
+    public ScanDatabaseCommandResult(ScanPage page) {
+        this.page = page;
+    }
+
+    /**
+     * Курсор и пары ключ-значение через пробел
+     */
+    @Override
+    public String getPayLoad() {
+        return serialize().asString();
+    }
+
+    @Override
+    public boolean isSuccess() {
+        return true;
+    }
+
+    /**
+     * Сериализуется в {@link RespArray} из двух элементов: курсор следующей страницы ({@link RespBulkString},
+     * null-строка, если обход закончен) и {@link RespArray} с ключами и значениями вперемешку: ключ1, значение1, ключ2...
+     */
+    @Override
+    public RespObject serialize() {
+        List<Map.Entry<String, byte[]>> entries = page.getEntries();
+        RespObject[] pairs = new RespObject[entries.size() * 2];
+        for (int i = 0; i < entries.size(); i++) {
+            pairs[2 * i] = new RespBulkString(entries.get(i).getKey().getBytes(StandardCharsets.UTF_8));
+            pairs[2 * i + 1] = new RespBulkString(entries.get(i).getValue());
+        }
+        RespBulkString cursor = page.getNextCursor()
+                .map(nextCursor -> new RespBulkString(nextCursor.getBytes(StandardCharsets.UTF_8)))
+                .orElse(RespBulkString.NULL_STRING);
+        return new RespArray(cursor, new RespArray(pairs));
+    }
+}
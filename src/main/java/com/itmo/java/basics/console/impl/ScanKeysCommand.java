@@ -0,0 +1,94 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.*;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Команда для постраничного обхода ключей таблицы
+ */
+public class ScanKeysCommand implements DatabaseCommand {
+
+    /**
+     * Больше пар за одну страницу не отдается: страница целиком собирается в памяти сервера
+     */
+    public static final int MAX_LIMIT = 10_000;
+
+    private ExecutionEnvironment env;
+    private final List<RespObject> commandArgs;
+    private final String commandId;
+    private final String dbName;
+    private final String tableName;
+    private final String prefix;
+    private final int limit;
+    private final String cursor;
+
+    /**
+     * Создает команду.
+     * <br/>
+     * Обратите внимание, что в конструкторе нет логики проверки валидности данных. Не проверяется, можно ли исполнить команду. Только формальные признаки (например, количество переданных значений или ненуловость объектов
+     *
+     * @param env         env
+     * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
+     *                    Id команды, имя команды, имя бд, таблицы, префикс ключей, размер страницы и необязательный курсор
+     *                    из предыдущей страницы
+     * @throws IllegalArgumentException если передано неправильное количество аргументов или размер страницы не от 1 до {@link #MAX_LIMIT}
+     */
+    public ScanKeysCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+        this.env = env;
+
+        if (commandArgs.size() != 6 && commandArgs.size() != 7) {
+            throw new IllegalArgumentException("Wrong amount of arguments: " + commandArgs.size() + ". Should be 6 or 7");
+        }
+
+        RespObject commandIdRespObject = commandArgs.get(DatabaseCommandArgPositions.COMMAND_ID.getPositionIndex());
+        this.commandId = commandIdRespObject.asString();
+
+        RespObject dbRespObject = commandArgs.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex());
+        this.dbName = dbRespObject.asString();
+
+        RespObject tableRespObject = commandArgs.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex());
+        this.tableName = tableRespObject.asString();
+
+        RespObject prefixRespObject = commandArgs.get(DatabaseCommandArgPositions.SCAN_PREFIX.getPositionIndex());
+        this.prefix = prefixRespObject.asString() == null ? "" : prefixRespObject.asString();
+
+        RespObject limitRespObject = commandArgs.get(DatabaseCommandArgPositions.SCAN_LIMIT.getPositionIndex());
+        this.limit = Integer.parseInt(limitRespObject.asString());
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Wrong scan limit: " + limit + ". Should be from 1 to " + MAX_LIMIT);
+        }
+
+        String cursorArg = commandArgs.size() > DatabaseCommandArgPositions.SCAN_CURSOR.getPositionIndex()
+                ? commandArgs.get(DatabaseCommandArgPositions.SCAN_CURSOR.getPositionIndex()).asString()
+                : null;
+        this.cursor = cursorArg == null || cursorArg.isEmpty() ? null : cursorArg;
+
+        this.commandArgs = commandArgs;
+    }
+
+    /**
+     * Читает страницу ключей
+     *
+     * @return {@link DatabaseCommandResult#successFrom(ScanPage)} с парами ключ-значение и курсором следующей страницы
+     */
+    @Override
+    public DatabaseCommandResult execute() {
+        Optional<Database> optionalDatabase = env.getDatabase(dbName);
+        if (optionalDatabase.isEmpty()) {
+            return DatabaseCommandResult.error("Error! optionalDatabase can't be null");
+        } else {
+            Database database = optionalDatabase.get();
+            try {
+                return DatabaseCommandResult.successFrom(database.scanKeys(tableName, prefix, cursor, limit));
+            } catch (DatabaseException e) {
+                return DatabaseCommandResult.error(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.*;
+import com.itmo.java.basics.logic.impl.SharedDatabaseCache;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.util.List;
+
+/**
+ * Команда для изменения лимита общего кэша сервера на ходу (см {@link SharedDatabaseCache#setMaxBytes(long)})
+ */
+public class SetCacheBytesCommand implements DatabaseCommand {
+
+    private ExecutionEnvironment env;
+    private final List<RespObject> commandArgs;
+    private final String commandId;
+    private final long cacheBytes;
+
+    /**
+     * Создает команду.
+     * <br/>
+     * Обратите внимание, что в конструкторе нет логики проверки валидности данных. Не проверяется, можно ли исполнить команду. Только формальные признаки (например, количество переданных значений или ненуловость объектов
+     *
+     * @param env         env
+     * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
+     *                    Id команды, имя команды и новый лимит в байтах
+     * @throws IllegalArgumentException если передано неправильное количество аргументов или лимит отрицательный
+     */
+    public SetCacheBytesCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+        this.env = env;
+
+        if (commandArgs.size() != 3) {
+            throw new IllegalArgumentException("Wrong amount of arguments: " + commandArgs.size() + ". Should be 3");
+        }
+
+        RespObject commandIdRespObject = commandArgs.get(DatabaseCommandArgPositions.COMMAND_ID.getPositionIndex());
+        this.commandId = commandIdRespObject.asString();
+
+        RespObject cacheBytesRespObject = commandArgs.get(DatabaseCommandArgPositions.CACHE_BYTES.getPositionIndex());
+        this.cacheBytes = Long.parseLong(cacheBytesRespObject.asString());
+        if (cacheBytes < 0) {
+            throw new IllegalArgumentException("Wrong cache size: " + cacheBytes);
+        }
+
+        this.commandArgs = commandArgs;
+    }
+
+    /**
+     * Меняет лимит общего кэша. При уменьшении лишние записи вытесняются сразу
+     *
+     * @return {@link DatabaseCommandResult#success(byte[])} с сообщением о новом лимите или ошибку,
+     * если у таблиц сервера нет общего кэша (см {@link com.itmo.java.basics.config.DatabaseConfig#isCacheShared()})
+     */
+    @Override
+    public DatabaseCommandResult execute() {
+        if (!env.getDatabaseConfig().isCacheShared()) {
+            return DatabaseCommandResult.error("Error! Cache is not shared, its size can't be changed on the fly");
+        }
+        SharedDatabaseCache.forConfig(env.getDatabaseConfig()).setMaxBytes(cacheBytes);
+        return DatabaseCommandResult.success(("Cache size was set to " + cacheBytes + " bytes").getBytes());
+    }
+}
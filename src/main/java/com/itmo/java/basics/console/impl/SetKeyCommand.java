@@ -20,6 +20,10 @@ public class SetKeyCommand implements DatabaseCommand {
     private final String tableName;
     private final String key;
     private final String value;
+    /**
+     * Срок жизни ключа в миллисекундах. {@code null} - ключ не истекает
+     */
+    private final Long ttlMillis;
 
     /**
      * Создает команду.
@@ -28,15 +32,15 @@ public class SetKeyCommand implements DatabaseCommand {
      *
      * @param env         env
      * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
-     *                    Id команды, имя команды, имя бд, таблицы, ключ, значение
-     * @throws IllegalArgumentException если передано неправильное количество аргументов
+     *                    Id команды, имя команды, имя бд, таблицы, ключ, значение и необязательный срок жизни ключа в миллисекундах
+     * @throws IllegalArgumentException если передано неправильное количество аргументов или срок жизни не положителен
      */
 
     public SetKeyCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
         this.env = env;
 
-        if (commandArgs.size() != 6) {
-            throw new IllegalArgumentException("Wrong amount of arguments: " + commandArgs.size() + ". Should be 6");
+        if (commandArgs.size() != 6 && commandArgs.size() != 7) {
+            throw new IllegalArgumentException("Wrong amount of arguments: " + commandArgs.size() + ". Should be 6 or 7");
         }
 
         RespObject commandIdRespObject = commandArgs.get(DatabaseCommandArgPositions.COMMAND_ID.getPositionIndex());
@@ -58,11 +62,21 @@ public class SetKeyCommand implements DatabaseCommand {
         RespObject valueRespObject = commandArgs.get(DatabaseCommandArgPositions.VALUE.getPositionIndex());
         this.value = valueRespObject.asString();
 
+        if (commandArgs.size() > DatabaseCommandArgPositions.TTL_MILLIS.getPositionIndex()) {
+            RespObject ttlRespObject = commandArgs.get(DatabaseCommandArgPositions.TTL_MILLIS.getPositionIndex());
+            this.ttlMillis = Long.parseLong(ttlRespObject.asString());
+            if (ttlMillis <= 0) {
+                throw new IllegalArgumentException("Wrong ttl: " + ttlMillis + ". Should be positive");
+            }
+        } else {
+            this.ttlMillis = null;
+        }
+
         this.commandArgs = commandArgs;
     }
 
     /**
-     * Записывает значение
+     * Записывает значение. Если задан срок жизни, ключ истекает через него после записи
      *
      * @return {@link DatabaseCommandResult#success(byte[])} c предыдущим значением. Например, "previous" или null, если такого не было
      */
@@ -75,7 +89,11 @@ public class SetKeyCommand implements DatabaseCommand {
             Database database = optionalDatabase.get();
             try {
                 Optional<byte[]> oldBytesOptional = database.read(tableName, key);
-                database.write(tableName, key, value.getBytes());
+                if (ttlMillis == null) {
+                    database.write(tableName, key, value.getBytes());
+                } else {
+                    database.write(tableName, key, value.getBytes(), System.currentTimeMillis() + ttlMillis);
+                }
 
                 if (oldBytesOptional.isPresent()) {
                     return DatabaseCommandResult.success(oldBytesOptional.get());
@@ -0,0 +1,82 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.*;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Команда для создания снимка базы данных (см {@link Database#snapshot(Path)})
+ */
+public class SnapshotCommand implements DatabaseCommand {
+
+    private ExecutionEnvironment env;
+    private final List<RespObject> commandArgs;
+    private final String commandId;
+    private final String dbName;
+    private final String snapshotName;
+
+    /**
+     * Создает команду.
+     * <br/>
+     * Обратите внимание, что в конструкторе нет логики проверки валидности данных. Не проверяется, можно ли исполнить команду. Только формальные признаки (например, количество переданных значений или ненуловость объектов
+     *
+     * @param env         env
+     * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
+     *                    Id команды, имя команды, имя бд и необязательное имя снимка. По умолчанию снимок называется
+     *                    по имени бд и времени создания
+     * @throws IllegalArgumentException если передано неправильное количество аргументов или имя снимка не является именем директории
+     */
+    public SnapshotCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+        this.env = env;
+
+        if (commandArgs.size() != 3 && commandArgs.size() != 4) {
+            throw new IllegalArgumentException("Wrong amount of arguments: " + commandArgs.size() + ". Should be 3 or 4");
+        }
+
+        RespObject commandIdRespObject = commandArgs.get(DatabaseCommandArgPositions.COMMAND_ID.getPositionIndex());
+        this.commandId = commandIdRespObject.asString();
+
+        RespObject dbRespObject = commandArgs.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex());
+        this.dbName = dbRespObject.asString();
+
+        if (commandArgs.size() > DatabaseCommandArgPositions.SNAPSHOT_NAME.getPositionIndex()) {
+            this.snapshotName = commandArgs.get(DatabaseCommandArgPositions.SNAPSHOT_NAME.getPositionIndex()).asString();
+            Path namePath = Path.of(snapshotName).getFileName();
+            if (snapshotName.isEmpty() || namePath == null || !namePath.toString().equals(snapshotName)
+                    || snapshotName.equals(".") || snapshotName.equals("..")) {
+                throw new IllegalArgumentException("Wrong snapshot name: " + snapshotName);
+            }
+        } else {
+            this.snapshotName = dbName + "_" + System.currentTimeMillis();
+        }
+
+        this.commandArgs = commandArgs;
+    }
+
+    /**
+     * Создает снимок в директории снимков из настроек
+     *
+     * @return {@link DatabaseCommandResult#success(byte[])} с путем к директории снимка. Чтобы восстановиться из снимка,
+     * сервер запускается с этой директорией в качестве рабочей
+     */
+    @Override
+    public DatabaseCommandResult execute() {
+        Optional<Database> optionalDatabase = env.getDatabase(dbName);
+        if (optionalDatabase.isEmpty()) {
+            return DatabaseCommandResult.error("Error! optionalDatabase can't be null");
+        }
+
+        Path snapshotPath = Path.of(env.getDatabaseConfig().getSnapshotPath(), snapshotName).toAbsolutePath();
+        try {
+            optionalDatabase.get().snapshot(snapshotPath);
+            return DatabaseCommandResult.success(snapshotPath.toString().getBytes());
+        } catch (DatabaseException e) {
+            return DatabaseCommandResult.error(e);
+        }
+    }
+}
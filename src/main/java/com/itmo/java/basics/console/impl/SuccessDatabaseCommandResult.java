@@ -1,26 +1,43 @@
 package com.itmo.java.basics.console.impl;
 
 import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.basics.logic.ValueLocation;
 import com.itmo.java.protocol.model.RespBulkString;
 import com.itmo.java.protocol.model.RespError;
 import com.itmo.java.protocol.model.RespObject;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+
 /**
  * Результат успешной команды
  */
 public class SuccessDatabaseCommandResult implements DatabaseCommandResult {
     private final byte[] payLoad;
 
+    /**
+     * Место значения, которое еще не прочитано в память. {@code null}, если значение передано байтами
+     */
+    private final ValueLocation valueLocation;
+
     public SuccessDatabaseCommandResult(byte[] payload) {
         this.payLoad = payload;
+        this.valueLocation = null;
+    }
+
+    public SuccessDatabaseCommandResult(ValueLocation valueLocation) {
+        this.payLoad = null;
+        this.valueLocation = valueLocation;
     }
 
     @Override
     public String getPayLoad() {
-        if (payLoad == null) {
+        byte[] value = readPayLoad();
+        if (value == null) {
             return null;
         }
-        return new String(payLoad);
+        return new String(value);
     }
 
     @Override
@@ -28,12 +45,31 @@ public class SuccessDatabaseCommandResult implements DatabaseCommandResult {
         return true;
     }
 
+    @Override
+    public Optional<ValueLocation> getValueLocation() {
+        return Optional.ofNullable(valueLocation);
+    }
+
     /**
-     * Сериализуется в {@link RespBulkString}
+     * Сериализуется в {@link RespBulkString}. Значение, переданное местом, при этом читается в память
      */
     @Override
     public RespObject serialize() {
-        RespBulkString errorRespBulkString = new RespBulkString(payLoad);
-        return errorRespBulkString;
+        try {
+            return new RespBulkString(readPayLoad());
+        } catch (UncheckedIOException e) {
+            return new RespError(("Can't read value: " + e.getCause().getMessage()).getBytes());
+        }
+    }
+
+    private byte[] readPayLoad() {
+        if (valueLocation == null) {
+            return payLoad;
+        }
+        try {
+            return valueLocation.read().orElse(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
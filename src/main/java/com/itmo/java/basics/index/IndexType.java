@@ -0,0 +1,19 @@
+package com.itmo.java.basics.index;
+
+/**
+ * Реализация индекса таблицы
+ */
+public enum IndexType {
+    /**
+     * {@link java.util.HashMap}: на каждый ключ в куче лежат узел, строка ключа и запись индекса
+     */
+    MAP,
+    /**
+     * Открытая адресация в одном массиве байт в куче, без объектов на каждый ключ
+     */
+    PACKED,
+    /**
+     * Открытая адресация вне кучи (direct {@link java.nio.ByteBuffer}): индекс не нагружает сборщик мусора
+     */
+    OFF_HEAP
+}
@@ -1,6 +1,7 @@
 package com.itmo.java.basics.index;
 
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 public interface KvsIndex<K, V> {
     /**
@@ -11,6 +12,13 @@ public interface KvsIndex<K, V> {
      */
     void onIndexedEntityUpdated(K key, V value);
 
+    /**
+     * Удаляет ключ из индекса.
+     *
+     * @param key ключ, который больше не нужно индексировать
+     */
+    void onIndexedEntityRemoved(K key);
+
     /**
      * Ищет значение в индексе по указанному ключу.
      *
@@ -18,4 +26,11 @@ public interface KvsIndex<K, V> {
      * @return {@code Optional<V>}
      */
     Optional<V> searchForKey(K key);
+
+    /**
+     * Обходит все пары ключ-значение индекса.
+     *
+     * @param action действие, которое нужно выполнить для каждой пары
+     */
+    void forEach(BiConsumer<? super K, ? super V> action);
 }
@@ -1,5 +1,24 @@
 package com.itmo.java.basics.index;
 
+import com.itmo.java.basics.logic.DatabaseRecord;
+
 public interface SegmentOffsetInfo {
     long getOffset();
+
+    /**
+     * @return размер записи в сегменте вместе с контрольной суммой
+     */
+    int getRecordSize();
+
+    /**
+     * @return {@code true} - если запись отмечает удаление ключа
+     */
+    boolean isRemoved();
+
+    /**
+     * @return момент истечения записи в миллисекундах от эпохи, {@link DatabaseRecord#NO_EXPIRATION} - если запись не истекает
+     */
+    default long getExpirationTime() {
+        return DatabaseRecord.NO_EXPIRATION;
+    }
 }
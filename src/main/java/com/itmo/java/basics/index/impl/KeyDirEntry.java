@@ -0,0 +1,53 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.Segment;
+
+/**
+ * Запись индекса таблицы: сегмент, в котором лежит последняя версия ключа, и положение записи в нем.
+ * Неизменяема: при перезаписи ключа в индекс кладется новая запись. Индекс может создавать записи заново
+ * при каждом поиске, поэтому сравнивать их нужно через {@link #pointsToSameRecord(KeyDirEntry)}
+ */
+public class KeyDirEntry implements SegmentOffsetInfo {
+    private final Segment segment;
+    private final long offset;
+    private final int recordSize;
+    private final boolean removed;
+
+    public KeyDirEntry(Segment segment, long offset, int recordSize, boolean removed) {
+        this.segment = segment;
+        this.offset = offset;
+        this.recordSize = recordSize;
+        this.removed = removed;
+    }
+
+    public KeyDirEntry(Segment segment, SegmentOffsetInfo offsetInfo) {
+        this(segment, offsetInfo.getOffset(), offsetInfo.getRecordSize(), offsetInfo.isRemoved());
+    }
+
+    /**
+     * @return {@code true} - если обе записи индекса указывают на одну и ту же запись в одном и том же сегменте
+     */
+    public boolean pointsToSameRecord(KeyDirEntry other) {
+        return segment == other.segment && offset == other.offset;
+    }
+
+    public Segment getSegment() {
+        return segment;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    @Override
+    public boolean isRemoved() {
+        return removed;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.EqualsAndHashCode;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 @EqualsAndHashCode
 public class MapBasedKvsIndex<K, V> implements KvsIndex<K, V> {
@@ -16,8 +17,25 @@ public class MapBasedKvsIndex<K, V> implements KvsIndex<K, V> {
         index.put(key, value);
     }
 
+    @Override
+    public void onIndexedEntityRemoved(K key) {
+        index.remove(key);
+    }
+
     @Override
     public Optional<V> searchForKey(K key) {
         return Optional.ofNullable(index.get(key));
     }
+
+    /**
+     * @return количество ключей в индексе
+     */
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        index.forEach(action);
+    }
 }
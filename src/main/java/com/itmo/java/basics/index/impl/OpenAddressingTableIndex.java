@@ -0,0 +1,380 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.index.KvsIndex;
+import com.itmo.java.basics.logic.Segment;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Индекс таблицы на открытой адресации (линейное пробирование) без объектов на каждый ключ.
+ * <p>
+ * Слоты лежат подряд в одном буфере, в куче или вне ее: позиция ключа в области ключей | хэш ключа |
+ * номер сегмента (старший бит - признак удаления) | размер записи | смещение записи.
+ * Ключи хранятся в отдельной области как размер и байты UTF-8. Сегменты нумеруются внутри индекса,
+ * номер освобождается, когда на сегмент не ссылается ни один ключ.
+ * Записи {@link KeyDirEntry} создаются только при поиске и обходе.
+ * <p>
+ * Как и {@link MapBasedKvsIndex}, не потокобезопасен: таблица меняет индекс под блокировкой на запись.
+ * Поиск и обход индекс не меняют, поэтому могут идти одновременно под блокировкой на чтение
+ */
+public class OpenAddressingTableIndex implements KvsIndex<String, KeyDirEntry> {
+    private static final int SLOT_SIZE = 24;
+    private static final int KEY_REF = 0;
+    private static final int HASH = 4;
+    private static final int SEGMENT = 8;
+    private static final int RECORD_SIZE = 12;
+    private static final int OFFSET = 16;
+
+    private static final int REMOVED_FLAG = 0x80000000;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final int INITIAL_KEYS_BYTES = 16 * 1024;
+
+    private final boolean offHeap;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size = 0;
+
+    /**
+     * Область ключей. Ключи удаленных из индекса записей остаются в ней мусором до перестроения индекса
+     */
+    private ByteBuffer keys;
+    private int keysEnd = 0;
+    private int garbageKeyBytes = 0;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<Segment, Integer> segmentIds = new IdentityHashMap<>();
+    private int[] segmentRefs = new int[16];
+    private final Deque<Integer> freeSegmentIds = new ArrayDeque<>();
+
+    /**
+     * @param offHeap хранить ли слоты и ключи вне кучи
+     */
+    public OpenAddressingTableIndex(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.capacity = INITIAL_CAPACITY;
+        this.slots = allocate(capacity * SLOT_SIZE);
+        this.keys = allocate(INITIAL_KEYS_BYTES);
+    }
+
+    @Override
+    public void onIndexedEntityUpdated(String key, KeyDirEntry value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        int slot = find(keyBytes, hash);
+
+        int segmentId = acquireSegment(value.getSegment());
+        if (slot >= 0) {
+            releaseSegment(slots.getInt(slot * SLOT_SIZE + SEGMENT) & ~REMOVED_FLAG);
+        } else {
+            if ((long) (size + 1) * 10 > (long) capacity * 7) {
+                rebuild(capacity * 2);
+                slot = find(keyBytes, hash);
+            }
+            slot = -slot - 1;
+            int keyRef = appendKey(keyBytes);
+            int position = slot * SLOT_SIZE;
+            slots.putInt(position + KEY_REF, keyRef + 1);
+            slots.putInt(position + HASH, hash);
+            size++;
+        }
+
+        int position = slot * SLOT_SIZE;
+        slots.putInt(position + SEGMENT, value.isRemoved() ? segmentId | REMOVED_FLAG : segmentId);
+        slots.putInt(position + RECORD_SIZE, value.getRecordSize());
+        slots.putLong(position + OFFSET, value.getOffset());
+    }
+
+    @Override
+    public void onIndexedEntityRemoved(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int slot = find(keyBytes, hash(key));
+        if (slot < 0) {
+            return;
+        }
+
+        releaseSegment(slots.getInt(slot * SLOT_SIZE + SEGMENT) & ~REMOVED_FLAG);
+        garbageKeyBytes += Integer.BYTES + keyBytes.length;
+        deleteSlot(slot);
+        size--;
+
+        if (garbageKeyBytes > INITIAL_KEYS_BYTES && garbageKeyBytes > keysEnd / 2) {
+            rebuild(capacity);
+        }
+    }
+
+    @Override
+    public Optional<KeyDirEntry> searchForKey(String key) {
+        int slot = find(key.getBytes(StandardCharsets.UTF_8), hash(key));
+        if (slot < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(entryAt(slot * SLOT_SIZE));
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super KeyDirEntry> action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slot * SLOT_SIZE;
+            int keyRef = slots.getInt(position + KEY_REF);
+            if (keyRef != 0) {
+                action.accept(readKey(keyRef - 1), entryAt(position));
+            }
+        }
+    }
+
+    /**
+     * @return сколько ключей в индексе
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return сколько байт занимают слоты и область ключей
+     */
+    public long getAllocatedBytes() {
+        return (long) slots.capacity() + keys.capacity();
+    }
+
+    private ByteBuffer allocate(int bytes) {
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        return buffer.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Перемешивает биты хэша строки (финализатор MurmurHash3), чтобы по младшим битам слоты заполнялись равномерно
+     */
+    private static int hash(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * @return номер слота с ключом или {@code -(номер свободного слота) - 1}, если ключа нет
+     */
+    private int find(byte[] keyBytes, int hash) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        while (true) {
+            int position = slot * SLOT_SIZE;
+            int keyRef = slots.getInt(position + KEY_REF);
+            if (keyRef == 0) {
+                return -slot - 1;
+            }
+            if (slots.getInt(position + HASH) == hash && keyEquals(keyRef - 1, keyBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int keyPosition, byte[] keyBytes) {
+        if (keys.getInt(keyPosition) != keyBytes.length) {
+            return false;
+        }
+        int bytesPosition = keyPosition + Integer.BYTES;
+        if (keys.hasArray()) {
+            int from = keys.arrayOffset() + bytesPosition;
+            return Arrays.equals(keys.array(), from, from + keyBytes.length, keyBytes, 0, keyBytes.length);
+        }
+
+        ByteBuffer key = ByteBuffer.wrap(keyBytes).order(keys.order());
+        int i = 0;
+        for (; i + Long.BYTES <= keyBytes.length; i += Long.BYTES) {
+            if (keys.getLong(bytesPosition + i) != key.getLong(i)) {
+                return false;
+            }
+        }
+        for (; i < keyBytes.length; i++) {
+            if (keys.get(bytesPosition + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readKey(int keyPosition) {
+        byte[] keyBytes = new byte[keys.getInt(keyPosition)];
+        ByteBuffer source = keys.duplicate();
+        source.position(keyPosition + Integer.BYTES);
+        source.get(keyBytes);
+        return new String(keyBytes, StandardCharsets.UTF_8);
+    }
+
+    private KeyDirEntry entryAt(int position) {
+        int segment = slots.getInt(position + SEGMENT);
+        return new KeyDirEntry(segments.get(segment & ~REMOVED_FLAG), slots.getLong(position + OFFSET),
+                slots.getInt(position + RECORD_SIZE), (segment & REMOVED_FLAG) != 0);
+    }
+
+    /**
+     * Дописывает ключ в область ключей, при необходимости увеличивая ее
+     *
+     * @return позиция ключа
+     */
+    private int appendKey(byte[] keyBytes) {
+        long required = (long) keysEnd + Integer.BYTES + keyBytes.length;
+        if (required > keys.capacity()) {
+            long newCapacity = Math.max(required, (long) keys.capacity() * 2);
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Index keys don't fit into " + (Integer.MAX_VALUE - 8) + " bytes");
+            }
+            ByteBuffer newKeys = allocate((int) Math.min(newCapacity, Integer.MAX_VALUE - 8));
+            copyKeys(keys, newKeys);
+            keys = newKeys;
+        }
+
+        int keyPosition = keysEnd;
+        keys.putInt(keyPosition, keyBytes.length);
+        ByteBuffer target = keys.duplicate();
+        target.position(keyPosition + Integer.BYTES);
+        target.put(keyBytes);
+        keysEnd += Integer.BYTES + keyBytes.length;
+        return keyPosition;
+    }
+
+    private void copyKeys(ByteBuffer source, ByteBuffer target) {
+        ByteBuffer data = source.duplicate();
+        data.position(0).limit(keysEnd);
+        target.duplicate().put(data);
+    }
+
+    /**
+     * Удаляет слот со сдвигом следующих за ним слотов назад, чтобы цепочки пробирования не рвались
+     */
+    private void deleteSlot(int slot) {
+        int mask = capacity - 1;
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (true) {
+            int nextPosition = next * SLOT_SIZE;
+            if (slots.getInt(nextPosition + KEY_REF) == 0) {
+                break;
+            }
+            int home = slots.getInt(nextPosition + HASH) & mask;
+            boolean canMove = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+            if (canMove) {
+                copySlot(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        clearSlot(hole);
+    }
+
+    private void copySlot(int from, int to) {
+        ByteBuffer source = slots.duplicate();
+        source.position(from * SLOT_SIZE).limit(from * SLOT_SIZE + SLOT_SIZE);
+        ByteBuffer target = slots.duplicate();
+        target.position(to * SLOT_SIZE);
+        target.put(source);
+    }
+
+    private void clearSlot(int slot) {
+        int position = slot * SLOT_SIZE;
+        slots.putLong(position, 0);
+        slots.putLong(position + 8, 0);
+        slots.putLong(position + 16, 0);
+    }
+
+    /**
+     * Раскладывает ключи по новому массиву слотов. Если в области ключей много мусора, заодно переписывает ее
+     */
+    private void rebuild(int newCapacity) {
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Index can't hold more than " + MAX_CAPACITY * 7L / 10 + " keys");
+        }
+
+        boolean compactKeys = garbageKeyBytes > keysEnd / 2;
+        ByteBuffer newSlots = allocate(newCapacity * SLOT_SIZE);
+        ByteBuffer newKeys = compactKeys
+                ? allocate((int) Math.min(Math.max(INITIAL_KEYS_BYTES, (keysEnd - garbageKeyBytes) * 2L), Integer.MAX_VALUE - 8))
+                : keys;
+        int newKeysEnd = compactKeys ? 0 : keysEnd;
+        int mask = newCapacity - 1;
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slot * SLOT_SIZE;
+            int keyRef = slots.getInt(position + KEY_REF);
+            if (keyRef == 0) {
+                continue;
+            }
+
+            if (compactKeys) {
+                int keyPosition = keyRef - 1;
+                int keyLength = Integer.BYTES + keys.getInt(keyPosition);
+                ByteBuffer key = keys.duplicate();
+                key.position(keyPosition).limit(keyPosition + keyLength);
+                ByteBuffer target = newKeys.duplicate();
+                target.position(newKeysEnd);
+                target.put(key);
+                keyRef = newKeysEnd + 1;
+                newKeysEnd += keyLength;
+            }
+
+            int newSlot = slots.getInt(position + HASH) & mask;
+            while (newSlots.getInt(newSlot * SLOT_SIZE + KEY_REF) != 0) {
+                newSlot = (newSlot + 1) & mask;
+            }
+            int newPosition = newSlot * SLOT_SIZE;
+            newSlots.putInt(newPosition + KEY_REF, keyRef);
+            newSlots.putInt(newPosition + HASH, slots.getInt(position + HASH));
+            newSlots.putInt(newPosition + SEGMENT, slots.getInt(position + SEGMENT));
+            newSlots.putInt(newPosition + RECORD_SIZE, slots.getInt(position + RECORD_SIZE));
+            newSlots.putLong(newPosition + OFFSET, slots.getLong(position + OFFSET));
+        }
+
+        slots = newSlots;
+        capacity = newCapacity;
+        if (compactKeys) {
+            keys = newKeys;
+            keysEnd = newKeysEnd;
+            garbageKeyBytes = 0;
+        }
+    }
+
+    private int acquireSegment(Segment segment) {
+        Integer id = segmentIds.get(segment);
+        if (id == null) {
+            if (freeSegmentIds.isEmpty()) {
+                id = segments.size();
+                segments.add(segment);
+                if (id >= segmentRefs.length) {
+                    segmentRefs = Arrays.copyOf(segmentRefs, segmentRefs.length * 2);
+                }
+            } else {
+                id = freeSegmentIds.pop();
+                segments.set(id, segment);
+            }
+            segmentIds.put(segment, id);
+        }
+        segmentRefs[id]++;
+        return id;
+    }
+
+    private void releaseSegment(int id) {
+        if (--segmentRefs[id] == 0) {
+            segmentIds.remove(segments.get(id));
+            segments.set(id, null);
+            freeSegmentIds.push(id);
+        }
+    }
+}
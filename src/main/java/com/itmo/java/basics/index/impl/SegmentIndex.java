@@ -2,5 +2,9 @@ package com.itmo.java.basics.index.impl;
 
 import com.itmo.java.basics.index.SegmentOffsetInfo;
 
+/**
+ * Положения записей одного сегмента. Нужен, пока сегмент загружается или открыт на запись,
+ * чтения идут через {@link TableIndex}
+ */
 public class SegmentIndex extends MapBasedKvsIndex<String, SegmentOffsetInfo> {
 }
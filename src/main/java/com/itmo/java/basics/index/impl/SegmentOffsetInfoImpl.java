@@ -1,18 +1,44 @@
 package com.itmo.java.basics.index.impl;
 
 import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.DatabaseRecord;
 import lombok.EqualsAndHashCode;
 
 @EqualsAndHashCode
 public class SegmentOffsetInfoImpl implements SegmentOffsetInfo {
     private final long offset;
+    private final int recordSize;
+    private final boolean removed;
+    private final long expirationTime;
 
-    public SegmentOffsetInfoImpl(long offset) {
+    public SegmentOffsetInfoImpl(long offset, int recordSize, boolean removed) {
+        this(offset, recordSize, removed, DatabaseRecord.NO_EXPIRATION);
+    }
+
+    public SegmentOffsetInfoImpl(long offset, int recordSize, boolean removed, long expirationTime) {
         this.offset = offset;
+        this.recordSize = recordSize;
+        this.removed = removed;
+        this.expirationTime = expirationTime;
     }
 
     @Override
     public long getOffset() {
         return this.offset;
     }
+
+    @Override
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    @Override
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    @Override
+    public long getExpirationTime() {
+        return expirationTime;
+    }
 }
@@ -1,8 +1,25 @@
 package com.itmo.java.basics.index.impl;
 
-import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.index.IndexType;
+import com.itmo.java.basics.index.KvsIndex;
 import lombok.EqualsAndHashCode;
 
+/**
+ * Единый индекс таблицы (keydir): ключ -> сегмент и положение последней записи ключа в нем
+ */
 @EqualsAndHashCode
-public class TableIndex extends MapBasedKvsIndex<String, Segment> {
+public class TableIndex extends MapBasedKvsIndex<String, KeyDirEntry> {
+    /**
+     * @return пустой индекс таблицы заданной реализации
+     */
+    public static KvsIndex<String, KeyDirEntry> create(IndexType type) {
+        switch (type) {
+            case PACKED:
+                return new OpenAddressingTableIndex(false);
+            case OFF_HEAP:
+                return new OpenAddressingTableIndex(true);
+            default:
+                return new TableIndex();
+        }
+    }
 }
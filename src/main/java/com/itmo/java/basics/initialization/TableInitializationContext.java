@@ -1,9 +1,12 @@
 package com.itmo.java.basics.initialization;
 
-import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.index.KvsIndex;
+import com.itmo.java.basics.index.impl.KeyDirEntry;
 import com.itmo.java.basics.logic.Segment;
 
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 public interface TableInitializationContext {
     /**
@@ -25,7 +28,7 @@ public interface TableInitializationContext {
      *
      * @return индекс инициализируемой таблицы
      */
-    TableIndex getTableIndex();
+    KvsIndex<String, KeyDirEntry> getTableIndex();
 
     /**
      * Возвращает текущий активный сегмент для инициализируемой таблицы.
@@ -40,4 +43,18 @@ public interface TableInitializationContext {
      * @param segment новый сегмент
      */
     void updateCurrentSegment(Segment segment);
+
+    /**
+     * Возвращает все проинициализированные сегменты таблицы в порядке их создания.
+     *
+     * @return список сегментов таблицы
+     */
+    List<Segment> getSegments();
+
+    /**
+     * Возвращает моменты истечения ключей, самая новая версия которых истекает.
+     *
+     * @return изменяемое отображение ключ - момент истечения в миллисекундах от эпохи
+     */
+    Map<String, Long> getExpirationTimes();
 }
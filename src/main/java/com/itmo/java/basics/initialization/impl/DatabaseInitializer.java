@@ -12,6 +12,7 @@ import com.itmo.java.basics.logic.impl.DatabaseImpl;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -25,7 +26,7 @@ public class DatabaseInitializer implements Initializer {
 
     /**
      * Добавляет в контекст информацию об инициализируемой бд.
-     * Запускает инициализацию всех таблиц это базы
+     * Запускает инициализацию всех таблиц это базы (параллельно, см. {@link com.itmo.java.basics.config.DatabaseConfig#getInitParallelism()})
      *
      * @param initialContext контекст с информацией об инициализируемой бд и об окружении
      * @throws DatabaseException если в контексте лежит неправильный путь к базе, невозможно прочитать содержимого папки,
@@ -61,8 +62,10 @@ public class DatabaseInitializer implements Initializer {
                 .filter(File::isDirectory)
                 .collect(Collectors.toList());
 
+        List<ParallelInitialization.InitializationTask> tableTasks = new ArrayList<>(tableDirs.size());
         for (File tableDir : tableDirs) {
-            TableInitializationContext tableInitContext = new TableInitializationContextImpl(tableDir.getName(), dbDir.toPath(), new TableIndex());
+            TableInitializationContext tableInitContext = new TableInitializationContextImpl(tableDir.getName(), dbDir.toPath(),
+                    TableIndex.create(initialContext.executionEnvironment().getDatabaseConfig().getIndexType(tableDir.getName())));
 
             InitializationContext contextWithTable = InitializationContextImpl.builder()
                     .executionEnvironment(initialContext.executionEnvironment())
@@ -70,10 +73,11 @@ public class DatabaseInitializer implements Initializer {
                     .currentTableContext(tableInitContext)
                     .build();
 
-            tableInitializer.perform(contextWithTable);
+            tableTasks.add(() -> tableInitializer.perform(contextWithTable));
         }
+        ParallelInitialization.runAll(tableTasks, initialContext.executionEnvironment().getDatabaseConfig().getInitParallelism());
 
-        Database db = DatabaseImpl.initializeFromContext(dbContext);
+        Database db = DatabaseImpl.initializeFromContext(dbContext, initialContext.executionEnvironment().getDatabaseConfig());
 
         initialContext.executionEnvironment().addDatabase(db);
     }
@@ -6,6 +6,7 @@ import com.itmo.java.basics.initialization.InitializationContext;
 import com.itmo.java.basics.initialization.Initializer;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -19,7 +20,8 @@ public class DatabaseServerInitializer implements Initializer {
 
     /**
      * Если заданная в окружении директория не существует - создает ее
-     * Добавляет информацию о существующих в директории базах, начинает их инициализацию
+     * Добавляет информацию о существующих в директории базах, начинает их инициализацию.
+     * Базы, их таблицы и сегменты инициализируются параллельно на одном fork-join пуле
      *
      * @param context контекст, содержащий информацию об окружении
      * @throws DatabaseException если произошла ошибка при создании директории, ее обходе или ошибка инициализации бд
@@ -49,6 +51,7 @@ public class DatabaseServerInitializer implements Initializer {
                     .filter(File::isDirectory)
                     .collect(Collectors.toList());
 
+            List<ParallelInitialization.InitializationTask> databaseTasks = new ArrayList<>(databaseDirs.size());
             for(File databaseDir : databaseDirs) {
                 DatabaseInitializationContext databaseInitContext = new DatabaseInitializationContextImpl(databaseDir.getName(), context.executionEnvironment().getWorkingPath());
 
@@ -57,8 +60,9 @@ public class DatabaseServerInitializer implements Initializer {
                         .currentDatabaseContext(databaseInitContext)
                         .build();
 
-                databaseInitializer.perform(contextWithDatabase);
+                databaseTasks.add(() -> databaseInitializer.perform(contextWithDatabase));
             }
+            ParallelInitialization.runAll(databaseTasks, context.executionEnvironment().getDatabaseConfig().getInitParallelism());
         } catch (NullPointerException e) {
             throw new DatabaseException("rootDir can't be null");
         }
@@ -0,0 +1,108 @@
+package com.itmo.java.basics.initialization.impl;
+
+import com.itmo.java.basics.exceptions.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Параллельный запуск независимых шагов инициализации (баз, таблиц, сегментов) на ограниченном fork-join пуле.
+ * Вложенные вызовы из задач пула выполняются в том же пуле, поэтому общее число потоков не растет
+ */
+final class ParallelInitialization {
+
+    @FunctionalInterface
+    interface InitializationTask {
+        void run() throws DatabaseException;
+    }
+
+    private ParallelInitialization() {
+    }
+
+    /**
+     * Выполняет задачи и дожидается окончания всех, даже если какие-то из них упали
+     *
+     * @param parallelism сколько потоков использовать, если вызов идет не из задачи пула. 1 - выполнить по очереди в текущем потоке
+     * @throws DatabaseException первая из ошибок задач
+     */
+    static void runAll(List<InitializationTask> tasks, int parallelism) throws DatabaseException {
+        if (tasks.size() <= 1 || (parallelism <= 1 && !ForkJoinTask.inForkJoinPool())) {
+            for (InitializationTask task : tasks) {
+                task.run();
+            }
+            return;
+        }
+
+        if (ForkJoinTask.inForkJoinPool()) {
+            forkAndJoin(tasks);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            ForkJoinTask<?> root = pool.submit(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    try {
+                        forkAndJoin(tasks);
+                    } catch (DatabaseException e) {
+                        throw new InitializationFailure(e);
+                    }
+                }
+            });
+            root.quietlyJoin();
+            rethrow(root);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void forkAndJoin(List<InitializationTask> tasks) throws DatabaseException {
+        List<ForkJoinTask<?>> forked = new ArrayList<>(tasks.size());
+        for (InitializationTask task : tasks) {
+            forked.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    try {
+                        task.run();
+                    } catch (DatabaseException e) {
+                        throw new InitializationFailure(e);
+                    }
+                }
+            }.fork());
+        }
+
+        for (ForkJoinTask<?> task : forked) {
+            task.quietlyJoin();
+        }
+        for (ForkJoinTask<?> task : forked) {
+            rethrow(task);
+        }
+    }
+
+    private static void rethrow(ForkJoinTask<?> task) throws DatabaseException {
+        Throwable exception = task.getException();
+        if (exception == null) {
+            return;
+        }
+        while (exception instanceof InitializationFailure) {
+            exception = exception.getCause();
+        }
+        if (exception instanceof DatabaseException) {
+            throw (DatabaseException) exception;
+        }
+        throw new DatabaseException("Initialization failed", exception);
+    }
+
+    /**
+     * Переносит проверяемое исключение задачи через fork-join пул
+     */
+    private static class InitializationFailure extends RuntimeException {
+        InitializationFailure(DatabaseException cause) {
+            super(cause);
+        }
+    }
+}
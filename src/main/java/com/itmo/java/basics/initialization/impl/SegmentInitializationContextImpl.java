@@ -9,17 +9,17 @@ import java.nio.file.Paths;
 public class SegmentInitializationContextImpl implements SegmentInitializationContext {
     private final String segmentName;
     private Path segmentPath;
-    private final int currentSize;
+    private final long currentSize;
     private SegmentIndex index;
 
-    public SegmentInitializationContextImpl(String segmentName, Path segmentPath, int currentSize, SegmentIndex index) {
+    public SegmentInitializationContextImpl(String segmentName, Path segmentPath, long currentSize, SegmentIndex index) {
         this.segmentName = segmentName;
         this.segmentPath = segmentPath;
         this.currentSize = currentSize;
         this.index = index;
     }
 
-    public SegmentInitializationContextImpl(String segmentName, Path tablePath, int currentSize) {
+    public SegmentInitializationContextImpl(String segmentName, Path tablePath, long currentSize) {
         this.segmentName = segmentName;
         this.segmentPath = Paths.get(tablePath.toString(), segmentName);
         this.currentSize = currentSize;
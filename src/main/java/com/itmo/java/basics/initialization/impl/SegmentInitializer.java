@@ -1,55 +1,210 @@
 package com.itmo.java.basics.initialization.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.KeyDirEntry;
+import com.itmo.java.basics.index.impl.SegmentIndex;
 import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
 import com.itmo.java.basics.initialization.InitializationContext;
 import com.itmo.java.basics.initialization.Initializer;
+import com.itmo.java.basics.initialization.SegmentInitializationContext;
+import com.itmo.java.basics.initialization.TableInitializationContext;
 import com.itmo.java.basics.logic.DatabaseRecord;
 import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.impl.CompressedSegmentFile;
+import com.itmo.java.basics.logic.impl.RemoveDatabaseRecord;
+import com.itmo.java.basics.logic.impl.SegmentHintFile;
 import com.itmo.java.basics.logic.impl.SegmentImpl;
 import com.itmo.java.basics.logic.io.DatabaseInputStream;
+import com.itmo.java.basics.logic.io.SegmentFormat;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.logging.Logger;
 
 public class SegmentInitializer implements Initializer {
+    private static final Logger logger = Logger.getLogger(SegmentInitializer.class.getName());
+
 
     /**
      * Добавляет в контекст информацию об инициализируемом сегменте.
-     * Составляет индекс сегмента
-     * Обновляет инфу в индексе таблицы
+     * Составляет индекс сегмента: по файлу-подсказке, если он есть и цел, иначе читая весь сегмент
+     * Переносит положения записей сегмента в индекс таблицы
+     * Предыдущий сегмент таблицы становится read-only: писать можно только в последний
      *
      * @param context контекст с информацией об инициализируемой бд и об окружении
      * @throws DatabaseException если в контексте лежит неправильный путь к сегменту, невозможно прочитать содержимое. Ошибка в содержании
      */
     @Override
     public void perform(InitializationContext context) throws DatabaseException {
-        HashSet<String> keys = new HashSet<>();
-        int pos = 0;
+        attach(context, load(context.currentSegmentContext(), true));
+    }
+
+    /**
+     * Загружает все сегменты таблицы: индексы сегментов составляются параллельно, затем сегменты добавляются
+     * в таблицу в порядке их создания, так что в индексе таблицы остается самая новая версия каждого ключа
+     *
+     * @param context      контекст с информацией об инициализируемой таблице
+     * @param segmentFiles файлы сегментов в порядке их создания
+     * @throws DatabaseException если не удалось загрузить один из сегментов
+     */
+    public void loadAll(InitializationContext context, List<File> segmentFiles) throws DatabaseException {
+        loadAll(context, segmentFiles, 1);
+    }
+
+    /**
+     * @param writableSegments сколько последних сегментов могли быть открыты на запись при падении: у них оборванный хвост
+     *                         отбрасывается (см {@link #load(SegmentInitializationContext, boolean)})
+     */
+    public void loadAll(InitializationContext context, List<File> segmentFiles, int writableSegments) throws DatabaseException {
+        int parallelism = context.executionEnvironment().getDatabaseConfig().getInitParallelism();
+        LoadedSegment[] loadedSegments = new LoadedSegment[segmentFiles.size()];
+        List<ParallelInitialization.InitializationTask> loadTasks = new ArrayList<>(segmentFiles.size());
+        for (int i = 0; i < segmentFiles.size(); i++) {
+            int segmentNumber = i;
+            File segmentFile = segmentFiles.get(i);
+            boolean lastSegment = segmentNumber >= segmentFiles.size() - writableSegments;
+            loadTasks.add(() -> loadedSegments[segmentNumber] = load(new SegmentInitializationContextImpl(
+                    segmentFile.getName(), segmentFile.toPath(), 0, new SegmentIndex()), lastSegment));
+        }
+        ParallelInitialization.runAll(loadTasks, parallelism);
+
+        for (int i = 0; i < loadedSegments.length; i++) {
+            attach(context, loadedSegments[i]);
+            loadedSegments[i] = null;
+        }
+    }
+
+    /**
+     * Составляет индекс сегмента, не трогая таблицу. Сегменты одной таблицы можно загружать параллельно
+     *
+     * @param segmentContext контекст сегмента, индекс которого нужно заполнить
+     * @param lastSegment    последний ли это сегмент таблицы. Оборванный или поврежденный хвост последнего сегмента
+     *                       (запись, которую не успели дописать при падении) отбрасывается
+     * @return контекст сегмента с размером его данных и заполненным индексом
+     * @throws DatabaseException если невозможно прочитать содержимое сегмента или оно повреждено
+     */
+    LoadedSegment load(SegmentInitializationContext segmentContext, boolean lastSegment) throws DatabaseException {
+        long pos;
+
+        Optional<SegmentHintFile.Contents> hint = SegmentHintFile.read(segmentContext.getSegmentPath());
+        if (hint.isPresent()) {
+            pos = loadHint(segmentContext, hint.get());
+        } else {
+            deleteStaleHint(segmentContext.getSegmentPath());
+            pos = scanSegment(segmentContext, lastSegment);
+        }
+
+        return new LoadedSegment(new SegmentInitializationContextImpl(
+                segmentContext.getSegmentName(),
+                segmentContext.getSegmentPath(),
+                pos,
+                segmentContext.getIndex()
+        ));
+    }
+
+    /**
+     * Добавляет загруженный сегмент в таблицу. Сегменты должны добавляться в порядке их создания,
+     * тогда в индексе таблицы остается самая новая версия каждого ключа, а момент истечения запоминается,
+     * только если истекает самая новая версия. Индекс сегмента после этого
+     * нужен, только если сегмент остался открыт на запись
+     *
+     * @param context        контекст с информацией об инициализируемой таблице
+     * @param loadedSegment  результат {@link #load(SegmentInitializationContext, boolean)}
+     * @throws DatabaseException если не удалось открыть сегмент или сделать read-only предыдущий
+     */
+    void attach(InitializationContext context, LoadedSegment loadedSegment) throws DatabaseException {
+        Segment previousSegment = context.currentTableContext().getCurrentSegment();
+        if (previousSegment != null) {
+            try {
+                previousSegment.seal();
+            } catch (IOException e) {
+                throw new DatabaseException("Can't seal segment " + previousSegment.getName(), e);
+            }
+        }
+
+        DatabaseConfig config = context.executionEnvironment().getDatabaseConfig();
+        Segment segment = SegmentImpl.initializeFromContext(loadedSegment.segmentContext,
+                config.getSegmentSize(context.currentTableContext().getTableName()), config);
+
+        TableInitializationContext tableContext = context.currentTableContext();
+        loadedSegment.segmentContext.getIndex().forEach((key, offsetInfo) -> {
+            tableContext.getTableIndex().onIndexedEntityUpdated(key, new KeyDirEntry(segment, offsetInfo));
+            if (offsetInfo.getExpirationTime() != DatabaseRecord.NO_EXPIRATION && !offsetInfo.isRemoved()) {
+                tableContext.getExpirationTimes().put(key, offsetInfo.getExpirationTime());
+            } else {
+                tableContext.getExpirationTimes().remove(key);
+            }
+        });
+        context.currentTableContext().updateCurrentSegment(segment);
+    }
+
+    /**
+     * Читает сегмент запись за записью и составляет его индекс.
+     * В сегментах нового формата (см {@link SegmentFormat}) проверяются контрольные суммы записей.
+     * Сжатый сегмент всегда read-only, поэтому любое повреждение в нем - ошибка
+     *
+     * @return размер данных сегмента. Для последнего сегмента - до первой оборванной или поврежденной записи
+     */
+    private long scanSegment(SegmentInitializationContext segmentContext, boolean lastSegment) throws DatabaseException {
+        Path segmentPath = segmentContext.getSegmentPath();
+        long pos;
+
+        try (DatabaseInputStream databaseInputStream = new DatabaseInputStream(new FileInputStream(segmentPath.toFile()))) {
+            int version = databaseInputStream.readFormatVersion();
+            if (version < SegmentFormat.LEGACY_VERSION || version > SegmentFormat.COMPRESSED_VERSION) {
+                throw new DatabaseException("Segment " + segmentPath + " has unknown format version " + version);
+            }
+            if (version == SegmentFormat.COMPRESSED_VERSION) {
+                return CompressedSegmentFile.indexRecords(segmentPath, segmentContext.getIndex());
+            }
+            pos = SegmentFormat.headerSize(version);
 
-        try {
-            DatabaseInputStream databaseInputStream = new DatabaseInputStream(new FileInputStream(context.currentSegmentContext().getSegmentPath().toFile()));
             while (databaseInputStream.available() > 0) {
                 Optional<DatabaseRecord> optionalDatabaseRecord;
 
                 try {
-                    optionalDatabaseRecord = databaseInputStream.readDbUnit();
+                    optionalDatabaseRecord = version == SegmentFormat.LEGACY_VERSION
+                            ? databaseInputStream.readDbUnit()
+                            : databaseInputStream.readCheckedDbUnit();
                 } catch (IOException e) {
                     throw new DatabaseException("There is a problem with input/output", e);
                 }
 
                 if (optionalDatabaseRecord.isEmpty()) {
-                    throw new DatabaseException(optionalDatabaseRecord + " is empty");
+                    if (lastSegment) {
+                        long tornBytes = Files.size(segmentPath) - pos;
+                        long tornPosition = pos;
+                        logger.warning(() -> "Segment " + segmentPath + " has a torn or corrupted record at position " + tornPosition
+                                + ", truncating " + tornBytes + " bytes");
+                        break;
+                    }
+                    throw new DatabaseException("Segment " + segmentPath + " has a torn or corrupted record at position " + pos);
                 }
 
                 DatabaseRecord databaseRecord = optionalDatabaseRecord.get();
-                String lastKey = new String(databaseRecord.getKey());
-                context.currentSegmentContext().getIndex().onIndexedEntityUpdated(lastKey, new SegmentOffsetInfoImpl(pos));
-                keys.add(lastKey);
-                pos += databaseRecord.size();
+                if (databaseRecord.getKey().length == 0) {
+                    if (!lastSegment) {
+                        checkPreallocatedTail(segmentPath, pos);
+                    }
+                    break;
+                }
+
+                int recordSize = (int) databaseRecord.size() + SegmentFormat.checksumSize(version);
+                segmentContext.getIndex().onIndexedEntityUpdated(new String(databaseRecord.getKey()),
+                        new SegmentOffsetInfoImpl(pos, recordSize, databaseRecord instanceof RemoveDatabaseRecord,
+                                databaseRecord.getExpirationTime()));
+                pos += recordSize;
 
             }
 
@@ -59,14 +214,64 @@ public class SegmentInitializer implements Initializer {
             throw new DatabaseException("There is a problem with input/output", e);
         }
 
-        Segment segment = SegmentImpl.initializeFromContext(new SegmentInitializationContextImpl(
-               context.currentSegmentContext().getSegmentName(),
-               context.currentSegmentContext().getSegmentPath(),
-               pos,
-               context.currentSegmentContext().getIndex()
-        ));
+        return pos;
+    }
 
-        keys.forEach(k -> context.currentTableContext().getTableIndex().onIndexedEntityUpdated(k, segment));
-        context.currentTableContext().updateCurrentSegment(segment);
+    /**
+     * Составляет индекс сегмента по файлу-подсказке, не читая сам сегмент
+     *
+     * @return размер данных сегмента
+     */
+    private long loadHint(SegmentInitializationContext segmentContext, SegmentHintFile.Contents hint) {
+        for (SegmentHintFile.Entry entry : hint.getEntries()) {
+            segmentContext.getIndex().onIndexedEntityUpdated(entry.getKey(),
+                    new SegmentOffsetInfoImpl(entry.getOffset(), entry.getRecordSize(), entry.isRemoved(), entry.getExpirationTime()));
+        }
+        return hint.getDataSize();
+    }
+
+    /**
+     * Удаляет поврежденную или устаревшую подсказку, чтобы она была записана заново, когда сегмент станет read-only
+     */
+    private void deleteStaleHint(Path segmentPath) throws DatabaseException {
+        try {
+            SegmentHintFile.delete(segmentPath);
+        } catch (IOException e) {
+            throw new DatabaseException("Can't delete hint file of segment " + segmentPath, e);
+        }
+    }
+
+    /**
+     * Пустой ключ означает начало предвыделенной, еще не записанной части файла.
+     * Проверяет, что дальше в файле только нули, иначе содержимое сегмента повреждено
+     */
+    private void checkPreallocatedTail(Path segmentPath, long dataEnd) throws DatabaseException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long position = dataEnd;
+            while (channel.read(buffer, position) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() != 0) {
+                        throw new DatabaseException("Segment " + segmentPath + " is corrupted after position " + dataEnd);
+                    }
+                }
+                position += buffer.limit();
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            throw new DatabaseException("There is a problem with input/output", e);
+        }
+    }
+
+    /**
+     * Сегмент, индекс которого уже составлен, но который еще не добавлен в таблицу
+     */
+    static class LoadedSegment {
+        private final SegmentInitializationContext segmentContext;
+
+        private LoadedSegment(SegmentInitializationContext segmentContext) {
+            this.segmentContext = segmentContext;
+        }
     }
 }
@@ -1,21 +1,28 @@
 package com.itmo.java.basics.initialization.impl;
 
-import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.index.KvsIndex;
+import com.itmo.java.basics.index.impl.KeyDirEntry;
 import com.itmo.java.basics.initialization.TableInitializationContext;
 import com.itmo.java.basics.logic.Segment;
 import com.itmo.java.basics.logic.io.DatabaseInputStream;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class TableInitializationContextImpl implements TableInitializationContext {
     private final String tableName;
     private final Path databasePath;
     private final Path tablePath;
-    private final TableIndex tableIndex;
+    private final KvsIndex<String, KeyDirEntry> tableIndex;
     private Segment segment;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<String, Long> expirationTimes = new HashMap<>();
 
-    public TableInitializationContextImpl(String tableName, Path databasePath, TableIndex tableIndex) {
+    public TableInitializationContextImpl(String tableName, Path databasePath, KvsIndex<String, KeyDirEntry> tableIndex) {
         this.tableName = tableName;
         this.databasePath = databasePath;
         this.tableIndex = tableIndex;
@@ -33,7 +40,7 @@ public class TableInitializationContextImpl implements TableInitializationContex
     }
 
     @Override
-    public TableIndex getTableIndex() {
+    public KvsIndex<String, KeyDirEntry> getTableIndex() {
         return tableIndex;
     }
 
@@ -46,5 +53,16 @@ public class TableInitializationContextImpl implements TableInitializationContex
     @Override
     public void updateCurrentSegment(Segment segment) {
         this.segment = segment;
+        segments.add(segment);
+    }
+
+    @Override
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    @Override
+    public Map<String, Long> getExpirationTimes() {
+        return expirationTimes;
     }
 }
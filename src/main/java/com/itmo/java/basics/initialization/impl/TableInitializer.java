@@ -1,18 +1,21 @@
 package com.itmo.java.basics.initialization.impl;
 
 import com.itmo.java.basics.exceptions.DatabaseException;
-import com.itmo.java.basics.index.impl.SegmentIndex;
 import com.itmo.java.basics.initialization.InitializationContext;
 import com.itmo.java.basics.initialization.Initializer;
-import com.itmo.java.basics.initialization.SegmentInitializationContext;
+import com.itmo.java.basics.logic.StorageEngine;
+import com.itmo.java.basics.logic.StorageEngines;
 import com.itmo.java.basics.logic.Table;
-import com.itmo.java.basics.logic.impl.TableImpl;
 
 import java.io.File;
-import java.util.*;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class TableInitializer implements Initializer {
     private final SegmentInitializer segmentInitializer;
+    private final Map<String, Long> initTimings = new ConcurrentHashMap<>();
 
     public TableInitializer(SegmentInitializer segmentInitializer) {
         this.segmentInitializer = segmentInitializer;
@@ -20,7 +23,7 @@ public class TableInitializer implements Initializer {
 
     /**
      * Добавляет в контекст информацию об инициализируемой таблице.
-     * Запускает инициализацию всех сегментов в порядке их создания (из имени)
+     * Таблицу открывает движок хранения, записанный в ее метаданных (см {@link StorageEngines#readFrom})
      *
      * @param context контекст с информацией об инициализируемой бд, окружении, таблицы
      * @throws DatabaseException если в контексте лежит неправильный путь к таблице, невозможно прочитать содержимого папки,
@@ -32,6 +35,8 @@ public class TableInitializer implements Initializer {
             throw new DatabaseException("Database context can't be null");
         }
 
+        long startNanos = System.nanoTime();
+
         File tableDirFile = new File(context.currentTableContext().getTablePath().toString());
         if (!tableDirFile.exists()) {
             boolean dirWasCreated = tableDirFile.mkdir();
@@ -41,31 +46,18 @@ public class TableInitializer implements Initializer {
             throw new DatabaseException(tableDirFile + "doesn't exist");
         }
 
-        File[] files = tableDirFile.listFiles();
-        if (files == null) {
-            throw new DatabaseException("There is no files in  " + tableDirFile);
-        }
-
-        var segmentFiles = Arrays.asList(files);
-        Collections.sort(segmentFiles);
-
-        for (File segmentFile : segmentFiles) {
-
-            SegmentInitializationContext segmentInitContext = new SegmentInitializationContextImpl(segmentFile.getName(),
-                    segmentFile.toPath(), 0, new SegmentIndex());
-
-            InitializationContext contextWithSegment = InitializationContextImpl.builder()
-                    .executionEnvironment(context.executionEnvironment())
-                    .currentDatabaseContext(context.currentDbContext())
-                    .currentTableContext(context.currentTableContext())
-                    .currentSegmentContext(segmentInitContext)
-                    .build();
-
-            segmentInitializer.perform(contextWithSegment);
-        }
-
-        Table table = TableImpl.initializeFromContext(context.currentTableContext());
+        StorageEngine engine = StorageEngines.readFrom(tableDirFile.toPath());
+        Table table = engine.initializeTable(context, segmentInitializer);
         context.currentDbContext().addTable(table);
 
+        initTimings.put(context.currentDbContext().getDbName() + "/" + table.getName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * @return сколько миллисекунд заняла инициализация каждой таблицы ("имя бд/имя таблицы" -> мс)
+     */
+    public Map<String, Long> getInitTimings() {
+        return Collections.unmodifiableMap(initTimings);
     }
 }
@@ -0,0 +1,16 @@
+package com.itmo.java.basics.logic;
+
+/**
+ * Политика вытеснения кэша значений таблиц
+ */
+public enum CachePolicy {
+    /**
+     * Вытесняются давно не читанные значения (см {@link com.itmo.java.basics.logic.impl.StripedDatabaseCache})
+     */
+    LRU,
+    /**
+     * W-TinyLFU: новое значение вытесняет старое, только если его ключ читают чаще. Однократный проход
+     * по множеству ключей не вымывает из кэша часто читаемые (см {@link com.itmo.java.basics.logic.impl.TinyLfuDatabaseCache})
+     */
+    TINY_LFU
+}
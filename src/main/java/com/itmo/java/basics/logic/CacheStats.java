@@ -0,0 +1,30 @@
+package com.itmo.java.basics.logic;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Счетчики обращений к кэшу значений таблицы
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CacheStats {
+    /**
+     * Сколько раз значение нашлось в кэше
+     */
+    private final long hits;
+    /**
+     * Сколько из них значение нашлось во втором уровне кэша вне кучи
+     */
+    private final long offHeapHits;
+    /**
+     * Сколько раз в кэше нашлась отметка, что ключа в таблице нет, и таблица не читалась
+     */
+    private final long negativeHits;
+    /**
+     * Сколько раз пришлось читать таблицу
+     */
+    private final long misses;
+}
@@ -2,6 +2,7 @@ package com.itmo.java.basics.logic;
 
 import com.itmo.java.basics.exceptions.DatabaseException;
 
+import java.nio.file.Path;
 import java.util.Optional;
 
 public interface Database {
@@ -20,6 +21,15 @@ public interface Database {
      */
     void createTableIfNotExists(String tableName) throws DatabaseException;
 
+    /**
+     * Создает таблицу с указанным именем на заданном движке хранения, если это имя еще не занято.
+     *
+     * @param tableName  имя таблицы
+     * @param engineName имя движка хранения (см {@link StorageEngines})
+     * @throws DatabaseException если таблица с данным именем уже существует, движок не найден или если произошла ошибка ввода-вывода
+     */
+    void createTableIfNotExists(String tableName, String engineName) throws DatabaseException;
+
     /**
      * Записывает значение в указанную таблицу по переданному ключу.
      *
@@ -30,6 +40,17 @@ public interface Database {
      */
     void write(String tableName, String objectKey, byte[] objectValue) throws DatabaseException;
 
+    /**
+     * Записывает в указанную таблицу значение, которое истекает в заданный момент (см {@link Table#write(String, byte[], long)}).
+     *
+     * @param tableName      таблица, в которую нужно записать значение
+     * @param objectKey      ключ, по которому нужно записать значение
+     * @param objectValue    значение, которое нужно записать
+     * @param expirationTime момент истечения в миллисекундах от эпохи
+     * @throws DatabaseException если указанная таблица не была найдена, не поддерживает истечение ключей или если произошла ошибка ввода-вывода
+     */
+    void write(String tableName, String objectKey, byte[] objectValue, long expirationTime) throws DatabaseException;
+
     /**
      * Считывает значение из указанной таблицы по заданному ключу.
      *
@@ -40,5 +61,47 @@ public interface Database {
      */
     Optional<byte[]> read(String tableName, String objectKey) throws DatabaseException;
 
+    /**
+     * Находит, где лежит значение из указанной таблицы по заданному ключу (см {@link Table#locate(String)}).
+     *
+     * @param tableName таблица, в которой нужно найти значение
+     * @param objectKey ключ, по которому нужно найти значение
+     * @return место значения
+     * @throws DatabaseException если не была найдена указанная таблица, или произошла ошибка ввода-вывода
+     */
+    default Optional<ValueLocation> locate(String tableName, String objectKey) throws DatabaseException {
+        return read(tableName, objectKey).map(ValueLocation::of);
+    }
+
     void delete(String tableName, String objectKey) throws DatabaseException;
+
+    /**
+     * Возвращает страницу живых ключей указанной таблицы (см {@link Table#scanKeys(String, String, int)}).
+     *
+     * @param tableName таблица, ключи которой нужно обойти
+     * @param prefix    префикс ключей, пустая строка - все ключи
+     * @param cursor    курсор из предыдущей страницы, {@code null} - первая страница
+     * @param limit     сколько пар вернуть не больше
+     * @return страница ключей
+     * @throws DatabaseException если не была найдена указанная таблица, курсор поврежден или произошла ошибка ввода-вывода
+     */
+    ScanPage scanKeys(String tableName, String prefix, String cursor, int limit) throws DatabaseException;
+
+    /**
+     * Сохраняет снимок базы данных в директорию {@code snapshotPath/<имя бд>} и пишет манифест снимка
+     * (см {@link com.itmo.java.basics.logic.impl.SnapshotFiles}). Снимок соответствует одному моменту для всех таблиц:
+     * записи во все таблицы блокируются, пока фиксируются их файлы (см {@link TableSnapshot}), а переносятся файлы
+     * уже без блокировки. Чтобы восстановиться из снимка, достаточно запустить сервер с рабочей директорией {@code snapshotPath}
+     *
+     * @param snapshotPath директория снимка
+     * @throws DatabaseException если снимок уже существует, одна из таблиц не поддерживает снимки или произошла ошибка ввода-вывода
+     */
+    void snapshot(Path snapshotPath) throws DatabaseException;
+
+    /**
+     * Закрывает все таблицы базы данных.
+     *
+     * @throws DatabaseException если не удалось закрыть одну из таблиц
+     */
+    void close() throws DatabaseException;
 }
\ No newline at end of file
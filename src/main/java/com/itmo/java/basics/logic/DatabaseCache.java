@@ -6,4 +6,10 @@ public interface DatabaseCache {
     void set(String key, byte[] value);
 
     void delete(String key);
+
+    /**
+     * Освобождает память кэша, когда таблица закрывается. Нужно кэшам, чья память живет дольше таблицы
+     */
+    default void clear() {
+    }
 }
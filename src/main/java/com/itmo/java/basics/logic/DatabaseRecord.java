@@ -4,6 +4,8 @@ package com.itmo.java.basics.logic;
  * Представляет собой единицу хранения в БД
  */
 public interface DatabaseRecord {
+    long NO_EXPIRATION = 0;
+
     /**
      * Возвращает ключ
      */
@@ -23,5 +25,12 @@ public interface DatabaseRecord {
      * Индикатор, есть ли значение
      */
     boolean isValuePresented();
+
+    /**
+     * Возвращает момент истечения записи в миллисекундах от эпохи. {@link #NO_EXPIRATION}, если запись не истекает
+     */
+    default long getExpirationTime() {
+        return NO_EXPIRATION;
+    }
 }
 
@@ -0,0 +1,79 @@
+package com.itmo.java.basics.logic;
+
+import com.itmo.java.basics.exceptions.DatabaseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Страница обхода ключей таблицы (см {@link Table#scanKeys(String, String, int)}): пары ключ-значение
+ * и курсор, с которого начинается следующая страница.
+ * <p>
+ * Курсор непрозрачен для клиента: это закодированный последний ключ страницы. Порядок обхода задает таблица,
+ * поэтому курсор можно передавать только в ту таблицу, которая его вернула
+ */
+public class ScanPage {
+    private final List<Map.Entry<String, byte[]>> entries;
+    private final String nextCursor;
+
+    public ScanPage(List<Map.Entry<String, byte[]>> entries, String nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @param entries пары страницы
+     * @param hasMore есть ли ключи после последнего ключа страницы
+     */
+    public static ScanPage of(List<Map.Entry<String, byte[]>> entries, boolean hasMore) {
+        if (!hasMore || entries.isEmpty()) {
+            return new ScanPage(entries, null);
+        }
+        return new ScanPage(entries, encodeCursor(entries.get(entries.size() - 1).getKey()));
+    }
+
+    public List<Map.Entry<String, byte[]>> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return курсор следующей страницы. {@link Optional#empty()} - если обход закончен
+     */
+    public Optional<String> getNextCursor() {
+        return Optional.ofNullable(nextCursor);
+    }
+
+    /**
+     * @return наименьшая строка, которая больше всех строк с этим префиксом. {@code null} - если такой нет
+     */
+    public static String prefixEnd(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+
+    public static String encodeCursor(String lastKey) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor курсор, полученный с предыдущей страницей
+     * @return последний ключ предыдущей страницы
+     * @throws DatabaseException если курсор поврежден
+     */
+    public static String decodeCursor(String cursor) throws DatabaseException {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new DatabaseException("Invalid scan cursor: " + cursor, e);
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package com.itmo.java.basics.logic;
 
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+
 import java.io.IOException;
 import java.util.Optional;
 
 /**
  * Сегмент - append-only файл, хранящий пары ключ-значение, разделенные специальным символом.
- * - имеет ограниченный размер, большие значения (>100000) записываются в последний сегмент, если он не read-only
+ * - имеет ограниченный размер (задается для таблицы), большие значения записываются в последний сегмент, если он не read-only
  * - при превышении размера сегмента создается новый сегмент и дальнейшие операции записи производятся в него
  * - именование файла-сегмента должно позволять установить очередность их появления
  * - является неизменяемым после появления более нового сегмента
@@ -20,6 +22,7 @@ public interface Segment {
 
     /**
      * Записывает значение по указанному ключу в сегмент.
+     * Запись дописывается в конец сегмента, то есть начинается со смещения {@link #getSize()} до записи.
      *
      * @param objectKey ключ, по которому нужно записать значение
      * @param objectValue значение, которое нужно записать
@@ -28,14 +31,36 @@ public interface Segment {
      */
     boolean write(String objectKey, byte[] objectValue) throws IOException;
 
+    /**
+     * Записывает значение, которое истекает в заданный момент. Момент хранится в самой записи
+     *
+     * @param expirationTime момент истечения в миллисекундах от эпохи
+     * @return {@code true} - если значение записалось, {@code false} - если нет
+     * @throws IOException если произошла ошибка ввода-вывода.
+     */
+    boolean write(String objectKey, byte[] objectValue, long expirationTime) throws IOException;
+
     /**
      * Считывает значение из сегмента по переданному ключу.
      *
-     * @param objectKey ключ, по которому нужно получить значение
+     * @param objectKey  ключ, по которому нужно получить значение
+     * @param offsetInfo положение записи ключа в сегменте (из индекса таблицы)
      * @return значение, которое находится по ключу
+     * @throws java.nio.channels.ClosedChannelException если сегмент закрыт
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    Optional<byte[]> read(String objectKey, SegmentOffsetInfo offsetInfo) throws IOException;
+
+    /**
+     * Находит, где в сегменте лежит значение по переданному ключу. Небольшие значения сразу читаются в память.
+     *
+     * @param objectKey  ключ, по которому нужно найти значение
+     * @param offsetInfo положение записи ключа в сегменте (из индекса таблицы)
+     * @return место значения. {@link Optional#empty()} - если ключ удален
+     * @throws java.nio.channels.ClosedChannelException если сегмент закрыт
      * @throws IOException если произошла ошибка ввода-вывода
      */
-    Optional<byte[]> read(String objectKey) throws IOException;
+    Optional<ValueLocation> locate(String objectKey, SegmentOffsetInfo offsetInfo) throws IOException;
 
     /**
      * Возвращает {@code true} - если данный сегмент открыт только на чтение, {@code false} - если данный сегмент открыт на чтение и запись.
@@ -44,5 +69,34 @@ public interface Segment {
      */
     boolean isReadOnly();
 
+    /**
+     * Возвращает размер записанных в сегмент данных в байтах.
+     *
+     * @return размер данных сегмента
+     */
+    long getSize();
+
+    /**
+     * Делает сегмент read-only, даже если он еще не заполнен. Дальнейшие записи в него невозможны.
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    void seal() throws IOException;
+
     boolean delete(String objectKey) throws IOException;
+
+    /**
+     * Переписывает read-only сегмент в сжатый формат, если это возможно и уменьшает его размер.
+     *
+     * @return {@code true} - если сегмент был сжат
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    boolean compress() throws IOException;
+
+    /**
+     * Освобождает файловые ресурсы сегмента. После закрытия сегмент нельзя использовать.
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    void close() throws IOException;
 }
\ No newline at end of file
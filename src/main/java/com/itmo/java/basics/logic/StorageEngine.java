@@ -0,0 +1,46 @@
+package com.itmo.java.basics.logic;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.initialization.InitializationContext;
+import com.itmo.java.basics.initialization.impl.SegmentInitializer;
+
+import java.nio.file.Path;
+
+/**
+ * Движок хранения: формат файлов таблицы и реализация {@link Table} поверх них.
+ * Движки находятся через {@link java.util.ServiceLoader} (см {@link StorageEngines}), имя движка таблицы
+ * записывается в файл метаданных в ее директории, поэтому в одной базе могут быть таблицы разных движков.
+ * <p>
+ * Реализация должна иметь публичный конструктор без аргументов и быть указана в
+ * META-INF/services/com.itmo.java.basics.logic.StorageEngine
+ */
+public interface StorageEngine {
+    /**
+     * @return имя движка, под которым он записывается в метаданные таблиц. Сравнивается без учета регистра
+     */
+    String getName();
+
+    /**
+     * Создает директорию и файлы новой таблицы. Имя движка должно быть записано в метаданные таблицы
+     * (см {@link StorageEngines#writeTo(Path, String)}) до того, как в директории появятся файлы данных
+     *
+     * @param tableName    имя таблицы
+     * @param databasePath директория базы данных
+     * @param config       настройки хранилища
+     * @return созданная таблица
+     * @throws DatabaseException если таблица уже существует или произошла ошибка ввода-вывода
+     */
+    Table createTable(String tableName, Path databasePath, DatabaseConfig config) throws DatabaseException;
+
+    /**
+     * Открывает существующую таблицу по ее файлам
+     *
+     * @param context            контекст с информацией об инициализируемой бд, окружении и таблице
+     * @param segmentInitializer инициализатор сегментов из цепочки инициализации.
+     *                           Движки со своим форматом файлов его не используют
+     * @return открытая таблица
+     * @throws DatabaseException если файлы таблицы не удалось прочитать или они повреждены
+     */
+    Table initializeTable(InitializationContext context, SegmentInitializer segmentInitializer) throws DatabaseException;
+}
@@ -0,0 +1,92 @@
+package com.itmo.java.basics.logic;
+
+import com.itmo.java.basics.exceptions.DatabaseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+
+/**
+ * Движки хранения, найденные через {@link ServiceLoader}, и метаданные таблиц: имя движка таблицы лежит
+ * в файле {@link #METADATA_FILE_NAME} в ее директории. Таблица без такого файла относится к {@link #DEFAULT_ENGINE}
+ */
+public final class StorageEngines {
+    public static final String METADATA_FILE_NAME = "table.type";
+
+    /**
+     * Append-only сегменты и индекс всех ключей в памяти
+     */
+    public static final String DEFAULT_ENGINE = "hash";
+
+    private static final Map<String, StorageEngine> ENGINES = load();
+
+    private StorageEngines() {
+    }
+
+    private static Map<String, StorageEngine> load() {
+        Map<String, StorageEngine> engines = new LinkedHashMap<>();
+        for (StorageEngine engine : ServiceLoader.load(StorageEngine.class, StorageEngine.class.getClassLoader())) {
+            engines.putIfAbsent(normalize(engine.getName()), engine);
+        }
+        return Collections.unmodifiableMap(engines);
+    }
+
+    private static String normalize(String engineName) {
+        return engineName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param engineName имя движка без учета регистра
+     * @return движок. {@link Optional#empty()} - если такого движка нет
+     */
+    public static Optional<StorageEngine> find(String engineName) {
+        return Optional.ofNullable(ENGINES.get(normalize(engineName)));
+    }
+
+    /**
+     * @param engineName имя движка без учета регистра
+     * @throws DatabaseException если такого движка нет
+     */
+    public static StorageEngine get(String engineName) throws DatabaseException {
+        Optional<StorageEngine> engine = find(engineName);
+        if (engine.isEmpty()) {
+            throw new DatabaseException("Unknown storage engine: " + engineName + ". Available: " + ENGINES.keySet());
+        }
+        return engine.get();
+    }
+
+    /**
+     * @param tablePath директория таблицы
+     * @return движок, записанный в метаданных таблицы, или {@link #DEFAULT_ENGINE}, если он не записан
+     * @throws DatabaseException если файл метаданных не удалось прочитать или в нем неизвестный движок
+     */
+    public static StorageEngine readFrom(Path tablePath) throws DatabaseException {
+        Path metadataPath = tablePath.resolve(METADATA_FILE_NAME);
+        if (!Files.exists(metadataPath)) {
+            return get(DEFAULT_ENGINE);
+        }
+        try {
+            return get(new String(Files.readAllBytes(metadataPath), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new DatabaseException("Can't read storage engine from " + metadataPath, e);
+        }
+    }
+
+    /**
+     * Записывает имя движка в метаданные таблицы
+     */
+    public static void writeTo(Path tablePath, String engineName) throws DatabaseException {
+        try {
+            Files.write(tablePath.resolve(METADATA_FILE_NAME), engineName.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new DatabaseException("Can't write storage engine to " + tablePath, e);
+        }
+    }
+}
@@ -2,7 +2,11 @@ package com.itmo.java.basics.logic;
 
 import com.itmo.java.basics.exceptions.DatabaseException;
 
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 
 /**
  * Таблица - логическая сущность, представляющая собой набор файлов-сегментов, которые объединены одним
@@ -30,6 +34,27 @@ public interface Table {
      */
     void write(String objectKey, byte[] objectValue) throws DatabaseException;
 
+    /**
+     * Записывает значение, которое перестает читаться после заданного момента и затем удаляется из таблицы.
+     * Поддерживается не всеми движками хранения (см {@link StorageEngine}).
+     *
+     * @param objectKey      ключ, по которому нужно записать значение
+     * @param objectValue    значение, которое нужно записать
+     * @param expirationTime момент истечения в миллисекундах от эпохи
+     * @throws DatabaseException если таблица не поддерживает истечение ключей или произошла ошибка ввода-вывода
+     */
+    default void write(String objectKey, byte[] objectValue, long expirationTime) throws DatabaseException {
+        throw new DatabaseException("Table " + getName() + " doesn't support expiring keys");
+    }
+
+    /**
+     * @return момент истечения живого ключа в миллисекундах от эпохи. {@link OptionalLong#empty()} - если ключ не истекает или его нет
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    default OptionalLong getExpirationTime(String objectKey) throws DatabaseException {
+        return OptionalLong.empty();
+    }
+
     /**
      * Считывает значение из таблицы по заданному ключу.
      *
@@ -39,6 +64,90 @@ public interface Table {
      */
     Optional<byte[]> read(String objectKey) throws DatabaseException;
 
+    /**
+     * Находит, где лежит значение по заданному ключу, чтобы отдать его без лишнего копирования.
+     * По умолчанию значение просто читается в память.
+     *
+     * @param objectKey ключ, по которому нужно найти значение
+     * @return место значения
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    default Optional<ValueLocation> locate(String objectKey) throws DatabaseException {
+        return read(objectKey).map(ValueLocation::of);
+    }
+
     void delete(String objectKey) throws DatabaseException;
+
+    /**
+     * Возвращает живые ключи таблицы из диапазона в порядке возрастания вместе со значениями.
+     * Поддерживается не всеми движками хранения (см {@link StorageEngine}).
+     *
+     * @param fromKey первый ключ диапазона (включительно)
+     * @param toKey   конец диапазона (не включительно), {@code null} - до конца таблицы
+     * @param limit   сколько пар вернуть не больше
+     * @return пары ключ-значение
+     * @throws DatabaseException если таблица не поддерживает чтение диапазонов или произошла ошибка ввода-вывода
+     */
+    default List<Map.Entry<String, byte[]>> scan(String fromKey, String toKey, int limit) throws DatabaseException {
+        throw new DatabaseException("Table " + getName() + " doesn't support range reads");
+    }
+
+    /**
+     * Возвращает страницу живых ключей с заданным префиксом вместе со значениями. Страницы следуют друг за другом
+     * по курсору: ключ, который жил все время обхода, попадет ровно в одну страницу. Ключи, записанные или удаленные
+     * во время обхода, могут как попасть, так и не попасть в следующие страницы.
+     * По умолчанию ключи идут по возрастанию и читаются через {@link #scan(String, String, int)}
+     *
+     * @param prefix префикс ключей, пустая строка - все ключи
+     * @param cursor курсор из предыдущей страницы, {@code null} - первая страница
+     * @param limit  сколько пар вернуть не больше
+     * @return страница ключей
+     * @throws DatabaseException если курсор поврежден, таблица не поддерживает обход или произошла ошибка ввода-вывода
+     */
+    default ScanPage scanKeys(String prefix, String cursor, int limit) throws DatabaseException {
+        String fromKey = prefix;
+        if (cursor != null) {
+            String afterCursor = ScanPage.decodeCursor(cursor) + Character.MIN_VALUE;
+            if (afterCursor.compareTo(fromKey) > 0) {
+                fromKey = afterCursor;
+            }
+        }
+        List<Map.Entry<String, byte[]>> entries = scan(fromKey, ScanPage.prefixEnd(prefix), limit + 1);
+        boolean hasMore = entries.size() > limit;
+        return ScanPage.of(hasMore ? entries.subList(0, limit) : entries, hasMore);
+    }
+
+    /**
+     * Начинает снимок таблицы (см {@link TableSnapshot}): снимок - директория таблицы, с которой таблица
+     * инициализируется обычным образом. Поддерживается не всеми движками хранения (см {@link StorageEngine}).
+     *
+     * @return снимок, который нужно закрыть
+     * @throws DatabaseException если таблица не поддерживает снимки
+     */
+    default TableSnapshot prepareSnapshot() throws DatabaseException {
+        throw new DatabaseException("Table " + getName() + " doesn't support snapshots");
+    }
+
+    /**
+     * Сохраняет снимок таблицы со всеми записями, сделанными до вызова. Запись в таблицу блокируется только на время,
+     * пока фиксируется набор файлов снимка
+     *
+     * @param snapshotTablePath директория таблицы в снимке, не должна существовать
+     * @throws DatabaseException если таблица не поддерживает снимки или произошла ошибка ввода-вывода
+     */
+    default void snapshot(Path snapshotTablePath) throws DatabaseException {
+        try (TableSnapshot snapshot = prepareSnapshot()) {
+            snapshot.seal(() -> {
+            });
+            snapshot.writeTo(snapshotTablePath);
+        }
+    }
+
+    /**
+     * Закрывает таблицу и освобождает файловые ресурсы ее сегментов.
+     *
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    void close() throws DatabaseException;
 }
 
@@ -0,0 +1,42 @@
+package com.itmo.java.basics.logic;
+
+import com.itmo.java.basics.exceptions.DatabaseException;
+
+import java.nio.file.Path;
+
+/**
+ * Снимок таблицы в процессе создания (см {@link Table#prepareSnapshot()}). Создается по шагам, чтобы база данных
+ * могла заблокировать записи во все свои таблицы сразу:
+ * - {@link #seal(WhileSealed)} под блокировкой записей таблицы фиксирует набор файлов снимка и, не отпуская ее,
+ * вызывает следующий шаг - например, фиксацию следующей таблицы
+ * - {@link #writeTo(Path)} переносит зафиксированные файлы в снимок уже без блокировки
+ * <p>
+ * Пока снимок не закрыт, таблица не заменяет и не удаляет файлы, которые могут в него попасть
+ */
+public interface TableSnapshot extends AutoCloseable {
+
+    /**
+     * Фиксирует набор файлов снимка: в него попадут все записи, сделанные до вызова
+     *
+     * @param whileSealed вызывается, пока записи в таблицу еще заблокированы
+     * @throws DatabaseException если произошла ошибка ввода-вывода или ее вернул {@code whileSealed}
+     */
+    void seal(WhileSealed whileSealed) throws DatabaseException;
+
+    /**
+     * @param snapshotTablePath директория таблицы в снимке, не должна существовать
+     * @throws DatabaseException если снимок еще не зафиксирован или произошла ошибка ввода-вывода
+     */
+    void writeTo(Path snapshotTablePath) throws DatabaseException;
+
+    /**
+     * Разрешает таблице снова заменять и удалять файлы
+     */
+    @Override
+    void close();
+
+    @FunctionalInterface
+    interface WhileSealed {
+        void run() throws DatabaseException;
+    }
+}
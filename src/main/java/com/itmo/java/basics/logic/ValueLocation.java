@@ -0,0 +1,82 @@
+package com.itmo.java.basics.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+/**
+ * Место, где лежит значение ключа: участок файла сегмента или уже прочитанные байты.
+ * Позволяет отдать большое значение в канал прямо из файла ({@link java.nio.channels.FileChannel#transferTo}),
+ * не копируя его в кучу
+ */
+public interface ValueLocation {
+    /**
+     * @return размер значения в байтах
+     */
+    int getLength();
+
+    /**
+     * @return {@code true} - если значение уже прочитано в память
+     */
+    boolean isInMemory();
+
+    /**
+     * Читает значение в память.
+     *
+     * @return значение. {@link Optional#empty()} - если значение больше не лежит в этом месте
+     * (например, сегмент был слит или сжат) и найти его заново не удалось
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    Optional<byte[]> read() throws IOException;
+
+    /**
+     * Записывает в канал заголовок, построенный по размеру значения, а затем само значение.
+     *
+     * @param target канал, в который пишется значение
+     * @param header заголовок по размеру значения
+     * @return {@code true} - если значение записано, {@code false} - если значение больше не лежит в этом месте
+     * и найти его заново не удалось. В этом случае в канал ничего не записано
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    boolean transferTo(WritableByteChannel target, IntFunction<ByteBuffer> header) throws IOException;
+
+    /**
+     * @return место для значения, которое уже лежит в памяти
+     */
+    static ValueLocation of(byte[] value) {
+        return new ValueLocation() {
+            @Override
+            public int getLength() {
+                return value.length;
+            }
+
+            @Override
+            public boolean isInMemory() {
+                return true;
+            }
+
+            @Override
+            public Optional<byte[]> read() {
+                return Optional.of(value);
+            }
+
+            @Override
+            public boolean transferTo(WritableByteChannel target, IntFunction<ByteBuffer> header) throws IOException {
+                writeFully(target, header.apply(value.length));
+                writeFully(target, ByteBuffer.wrap(value));
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Записывает буфер в канал целиком
+     */
+    static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+}
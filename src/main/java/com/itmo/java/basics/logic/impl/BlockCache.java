@@ -0,0 +1,55 @@
+package com.itmo.java.basics.logic.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Общий на процесс LRU-кэш распакованных блоков сжатых сегментов, ограниченный суммарным размером блоков
+ */
+final class BlockCache {
+    private static final Map<Long, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes = 0;
+
+    private BlockCache() {
+    }
+
+    private static long key(long segmentId, int block) {
+        return (segmentId << 32) | (block & 0xFFFFFFFFL);
+    }
+
+    static synchronized byte[] get(long segmentId, int block) {
+        return blocks.get(key(segmentId, block));
+    }
+
+    /**
+     * Кладет блок в кэш и вытесняет давно не использованные блоки, пока кэш больше {@code capacity} байт
+     */
+    static synchronized void put(long segmentId, int block, byte[] data, long capacity) {
+        if (data.length > capacity) {
+            return;
+        }
+        byte[] previous = blocks.put(key(segmentId, block), data);
+        cachedBytes += data.length - (previous == null ? 0 : previous.length);
+
+        Iterator<byte[]> eldest = blocks.values().iterator();
+        while (cachedBytes > capacity && eldest.hasNext()) {
+            cachedBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Удаляет из кэша все блоки сегмента
+     */
+    static synchronized void invalidate(long segmentId) {
+        Iterator<Map.Entry<Long, byte[]>> entries = blocks.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Long, byte[]> entry = entries.next();
+            if (entry.getKey() >>> 32 == segmentId) {
+                cachedBytes -= entry.getValue().length;
+                entries.remove();
+            }
+        }
+    }
+}
@@ -1,23 +1,135 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.CachePolicy;
+import com.itmo.java.basics.logic.CacheStats;
 import com.itmo.java.basics.logic.DatabaseCache;
+import com.itmo.java.basics.logic.ScanPage;
 import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.TableSnapshot;
+import com.itmo.java.basics.logic.ValueLocation;
 import lombok.EqualsAndHashCode;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
 
 @EqualsAndHashCode
 /**
- * Декоратор для таблицы. Кэширует данные
+ * Декоратор для таблицы. Кэширует данные.
+ * Ключи со сроком истечения не кэшируются: таблица удаляет их сама, мимо кэша.
+ * <p>
+ * Может кэшироваться и отсутствие ключа: вместо значения кладется отметка {@link #ABSENT}, и повторные запросы
+ * несуществующего ключа не доходят до файлов таблицы. Запись и удаление ключа сбрасывают отметку.
+ * Это имеет смысл только для таблиц, в которых промах читает диск.
+ * <p>
+ * Вторым уровнем может стоять кэш вне кучи ({@link OffHeapDatabaseCache}): тогда кэш в куче делают небольшим,
+ * а основной объем значений не нагружает сборщик мусора. Значения кладутся в оба уровня; прочитанное со второго уровня
+ * поднимается в первый, а найденное при {@link #locate(String)} отдается клиенту прямо из памяти вне кучи.
+ * Отметки об отсутствии ключа хранятся только в первом уровне
+ * <p>
+ * Ключи распределены по хешу между частями {@link KeyStripe}. Запись, удаление и заполнение кэша прочитанным из таблицы
+ * значением идут под блокировкой части ключа, а чтение из кэша и из таблицы - без нее. Заполнение кладет значение,
+ * только если с начала чтения в части ключа ничего не записывалось, поэтому прочитанное до записи значение
+ * не перекрывает записанное
  */
 public class CachingTable implements Table {
+    /**
+     * Отметка об отсутствии ключа. Сравнивается по ссылке, поэтому не путается с записанным пустым значением
+     */
+    private static final byte[] ABSENT = new byte[0];
+    private static final int KEY_STRIPES = 64;
+
     private final DatabaseCache dbCache;
+    /**
+     * Второй уровень кэша вне кучи. {@code null} - не используется
+     */
+    private final OffHeapDatabaseCache offHeapCache;
     private final Table table;
+    private final boolean cacheAbsent;
+
+    @EqualsAndHashCode.Exclude
+    private final KeyStripe[] keyStripes = new KeyStripe[KEY_STRIPES];
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong hits = new AtomicLong();
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong offHeapHits = new AtomicLong();
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong negativeHits = new AtomicLong();
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong misses = new AtomicLong();
 
     public CachingTable(Table table) {
-        this.dbCache = new DatabaseCacheImpl();
+        this(table, new StripedDatabaseCache(DatabaseConfig.DEFAULT_CACHE_BYTES));
+    }
+
+    /**
+     * @param dbCache кэш значений таблицы. Должен быть потокобезопасным: таблицу читают одновременно
+     */
+    public CachingTable(Table table, DatabaseCache dbCache) {
+        this(table, dbCache, DatabaseConfig.DEFAULT_NEGATIVE_CACHE_ENABLED);
+    }
+
+    /**
+     * @param cacheAbsent кэшировать ли отсутствие ключей
+     */
+    public CachingTable(Table table, DatabaseCache dbCache, boolean cacheAbsent) {
+        this(table, dbCache, null, cacheAbsent);
+    }
+
+    /**
+     * @param offHeapCache второй уровень кэша вне кучи или {@code null}
+     */
+    public CachingTable(Table table, DatabaseCache dbCache, OffHeapDatabaseCache offHeapCache, boolean cacheAbsent) {
+        this.dbCache = dbCache;
+        this.offHeapCache = offHeapCache;
         this.table = table;
+        this.cacheAbsent = cacheAbsent;
+        for (int i = 0; i < KEY_STRIPES; i++) {
+            keyStripes[i] = new KeyStripe();
+        }
+    }
+
+    /**
+     * Оборачивает таблицу в кэш с политикой и лимитом из настроек (см {@link DatabaseConfig#getCacheBytes(String)}).
+     * Если кэш общий на сервер (см {@link DatabaseConfig#isCacheShared()}), таблица получает в нем свою часть.
+     * Если задан лимит кэша вне кучи (см {@link DatabaseConfig#getOffHeapCacheBytes()}), вторым уровнем становится
+     * часть таблицы в кэше вне кучи сервера
+     *
+     * @param tablePath   директория таблицы: по ней определяется база данных, которой принадлежит таблица
+     * @param cacheAbsent кэшировать ли отсутствие ключей: промах в таблице читает диск
+     */
+    public static Table create(Table table, Path tablePath, DatabaseConfig config, boolean cacheAbsent) {
+        String databaseName = tablePath.toAbsolutePath().getParent().getFileName().toString();
+        DatabaseCache dbCache;
+        if (config.isCacheShared()) {
+            dbCache = SharedDatabaseCache.forConfig(config).forTable(databaseName, table.getName(), config);
+        } else {
+            long cacheBytes = config.getCacheBytes(table.getName());
+            dbCache = config.getCachePolicy() == CachePolicy.TINY_LFU
+                    ? new TinyLfuDatabaseCache(cacheBytes)
+                    : new StripedDatabaseCache(cacheBytes);
+        }
+        OffHeapDatabaseCache offHeapCache = config.getOffHeapCacheBytes() > 0
+                ? OffHeapDatabaseCache.forConfig(config).forTable(databaseName, table.getName())
+                : null;
+        return new CachingTable(table, dbCache, offHeapCache, cacheAbsent);
+    }
+
+    /**
+     * @return сколько раз с открытия таблицы значение нашлось в кэше (из них во втором уровне вне кучи),
+     * сколько раз нашлась отметка об отсутствии ключа и сколько раз читалась таблица
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hits.get(), offHeapHits.get(), negativeHits.get(), misses.get());
     }
 
     @Override
@@ -27,30 +139,243 @@ public class CachingTable implements Table {
 
     @Override
     public void write(String objectKey, byte[] objectValue) throws DatabaseException {
-        table.write(objectKey, objectValue);
-        dbCache.set(objectKey, objectValue);
+        KeyStripe keyStripe = keyStripeFor(objectKey);
+        synchronized (keyStripe) {
+            table.write(objectKey, objectValue);
+            fill(objectKey, objectValue);
+            keyStripe.version++;
+        }
+    }
+
+    @Override
+    public void write(String objectKey, byte[] objectValue, long expirationTime) throws DatabaseException {
+        KeyStripe keyStripe = keyStripeFor(objectKey);
+        synchronized (keyStripe) {
+            table.write(objectKey, objectValue, expirationTime);
+            invalidate(objectKey);
+            keyStripe.version++;
+        }
+    }
+
+    @Override
+    public OptionalLong getExpirationTime(String objectKey) throws DatabaseException {
+        return table.getExpirationTime(objectKey);
     }
 
     @Override
     public Optional<byte[]> read(String objectKey) throws DatabaseException {
         byte[] valueInCache = dbCache.get(objectKey);
+        if (valueInCache == ABSENT) {
+            negativeHits.incrementAndGet();
+            return Optional.empty();
+        }
+
+        KeyStripe keyStripe = keyStripeFor(objectKey);
+        long versionBeforeRead = keyStripe.version;
+        if (valueInCache == null && offHeapCache != null) {
+            valueInCache = offHeapCache.get(objectKey);
+            if (valueInCache != null) {
+                offHeapHits.incrementAndGet();
+                byte[] promoted = valueInCache;
+                fillIfUnchanged(keyStripe, versionBeforeRead, () -> dbCache.set(objectKey, promoted));
+            }
+        }
 
         if (valueInCache == null) {
+            misses.incrementAndGet();
             Optional<byte[]> valueInTable = table.read(objectKey);
 
-            if (valueInTable.isPresent()) {
-                dbCache.set(objectKey, valueInTable.get());
+            if (valueInTable.isPresent() && table.getExpirationTime(objectKey).isEmpty()) {
+                fillIfUnchanged(keyStripe, versionBeforeRead, () -> fill(objectKey, valueInTable.get()));
+            } else if (valueInTable.isEmpty()) {
+                cacheAbsent(keyStripe, objectKey, versionBeforeRead);
             }
 
             return valueInTable;
         }
 
+        hits.incrementAndGet();
         return Optional.of(valueInCache);
     }
 
+    /**
+     * Значения, прочитанные в память, кэшируются так же, как при {@link #read(String)}.
+     * Большие значения, которые отдаются прямо из файла, в кэш не попадают.
+     * Значение из второго уровня не поднимается в первый: оно отдается из памяти вне кучи, а если к тому времени
+     * вытеснено - из таблицы
+     */
+    @Override
+    public Optional<ValueLocation> locate(String objectKey) throws DatabaseException {
+        byte[] valueInCache = dbCache.get(objectKey);
+        if (valueInCache == ABSENT) {
+            negativeHits.incrementAndGet();
+            return Optional.empty();
+        }
+        if (valueInCache != null) {
+            hits.incrementAndGet();
+            return Optional.of(ValueLocation.of(valueInCache));
+        }
+        if (offHeapCache != null) {
+            Optional<ValueLocation> offHeapLocation = offHeapCache.locate(objectKey);
+            if (offHeapLocation.isPresent()) {
+                hits.incrementAndGet();
+                offHeapHits.incrementAndGet();
+                return Optional.of(withTableFallback(objectKey, offHeapLocation.get()));
+            }
+        }
+
+        misses.incrementAndGet();
+        KeyStripe keyStripe = keyStripeFor(objectKey);
+        long versionBeforeRead = keyStripe.version;
+        Optional<ValueLocation> location = table.locate(objectKey);
+        if (location.isEmpty()) {
+            cacheAbsent(keyStripe, objectKey, versionBeforeRead);
+        } else if (location.get().isInMemory() && table.getExpirationTime(objectKey).isEmpty()) {
+            try {
+                Optional<byte[]> value = location.get().read();
+                if (value.isPresent()) {
+                    fillIfUnchanged(keyStripe, versionBeforeRead, () -> fill(objectKey, value.get()));
+                }
+            } catch (IOException e) {
+                throw new DatabaseException("There is problem with input/output. Key = " + objectKey, e);
+            }
+        }
+        return location;
+    }
+
     @Override
     public void delete(String objectKey) throws DatabaseException {
+        KeyStripe keyStripe = keyStripeFor(objectKey);
+        synchronized (keyStripe) {
+            table.delete(objectKey);
+            invalidate(objectKey);
+            keyStripe.version++;
+        }
+    }
+
+    private KeyStripe keyStripeFor(String objectKey) {
+        int hash = objectKey.hashCode();
+        return keyStripes[(hash ^ (hash >>> 16)) & (KEY_STRIPES - 1)];
+    }
+
+    /**
+     * Заполняет кэш прочитанным без блокировки значением, если с начала чтения в части ключа ничего не записывалось.
+     * Запись меняет версию части последним шагом, уже положив свое значение в кэш: если версия не изменилась,
+     * прочитанное значение не старше записанного
+     *
+     * @param versionBeforeRead версия части ключа до чтения кэша или таблицы
+     */
+    private void fillIfUnchanged(KeyStripe keyStripe, long versionBeforeRead, Runnable fill) {
+        synchronized (keyStripe) {
+            if (keyStripe.version == versionBeforeRead) {
+                fill.run();
+            }
+        }
+    }
+
+    /**
+     * Кладет значение в оба уровня кэша
+     */
+    private void fill(String objectKey, byte[] value) {
+        dbCache.set(objectKey, value);
+        if (offHeapCache != null) {
+            offHeapCache.set(objectKey, value);
+        }
+    }
+
+    private void invalidate(String objectKey) {
         dbCache.delete(objectKey);
-        table.delete(objectKey);
+        if (offHeapCache != null) {
+            offHeapCache.delete(objectKey);
+        }
+    }
+
+    /**
+     * @return место значения во втором уровне кэша. Если значение вытеснят до того, как его прочитают,
+     * оно будет найдено в таблице
+     */
+    private ValueLocation withTableFallback(String objectKey, ValueLocation offHeapLocation) {
+        return new ValueLocation() {
+            @Override
+            public int getLength() {
+                return offHeapLocation.getLength();
+            }
+
+            @Override
+            public boolean isInMemory() {
+                return false;
+            }
+
+            @Override
+            public Optional<byte[]> read() throws IOException {
+                Optional<byte[]> value = offHeapLocation.read();
+                if (value.isPresent()) {
+                    return value;
+                }
+                Optional<ValueLocation> location = locateInTable();
+                return location.isPresent() ? location.get().read() : Optional.empty();
+            }
+
+            @Override
+            public boolean transferTo(WritableByteChannel target, IntFunction<ByteBuffer> header) throws IOException {
+                if (offHeapLocation.transferTo(target, header)) {
+                    return true;
+                }
+                Optional<ValueLocation> location = locateInTable();
+                return location.isPresent() && location.get().transferTo(target, header);
+            }
+
+            private Optional<ValueLocation> locateInTable() throws IOException {
+                try {
+                    return table.locate(objectKey);
+                } catch (DatabaseException e) {
+                    throw new IOException("Can't locate key " + objectKey + " in table " + table.getName(), e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Кладет отметку об отсутствии ключа, если с начала чтения ключ не записывали (см {@link #fillIfUnchanged})
+     */
+    private void cacheAbsent(KeyStripe keyStripe, String objectKey, long versionBeforeRead) {
+        if (cacheAbsent) {
+            fillIfUnchanged(keyStripe, versionBeforeRead, () -> dbCache.set(objectKey, ABSENT));
+        }
+    }
+
+    /**
+     * Диапазоны читаются из таблицы, кэш не используется
+     */
+    @Override
+    public List<Map.Entry<String, byte[]>> scan(String fromKey, String toKey, int limit) throws DatabaseException {
+        return table.scan(fromKey, toKey, limit);
+    }
+
+    @Override
+    public ScanPage scanKeys(String prefix, String cursor, int limit) throws DatabaseException {
+        return table.scanKeys(prefix, cursor, limit);
+    }
+
+    @Override
+    public TableSnapshot prepareSnapshot() throws DatabaseException {
+        return table.prepareSnapshot();
+    }
+
+    /**
+     * Часть ключей таблицы. Ее блокировка упорядочивает записи ключей части с заполнением кэша,
+     * а версия меняется после каждой записи
+     */
+    private static final class KeyStripe {
+        private volatile long version = 0;
+    }
+
+    @Override
+    public void close() throws DatabaseException {
+        dbCache.clear();
+        if (offHeapCache != null) {
+            offHeapCache.clear();
+        }
+        table.close();
     }
 }
@@ -0,0 +1,264 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.index.impl.SegmentIndex;
+import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.DatabaseInputStream;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Таблица блоков сжатого сегмента (версия {@link SegmentFormat#COMPRESSED_VERSION}).
+ * <p>
+ * Формат файла: заголовок | блоки | таблица блоков | концевик.
+ * Блок - сжатые Deflate подряд идущие целые записи версии {@link SegmentFormat#CHECKSUM_VERSION}. Смещения записей
+ * в несжатых данных совпадают с их смещениями в исходном сегменте, поэтому подсказка сегмента остается верной.
+ * Таблица блоков: количество блоков, затем для каждого (смещение в файле, сжатый размер, смещение в несжатых данных, несжатый размер).
+ * Концевик: смещение таблицы блоков | размер несжатых данных | MAGIC
+ */
+public class CompressedSegmentFile {
+    private static final int TRAILER_SIZE = 8 + 8 + 4;
+    private static final int BLOCK_ENTRY_SIZE = 8 + 4 + 8 + 4;
+
+    private final long[] fileOffsets;
+    private final int[] compressedSizes;
+    private final long[] dataOffsets;
+    private final int[] dataSizes;
+    private final long dataSize;
+
+    private CompressedSegmentFile(long[] fileOffsets, int[] compressedSizes, long[] dataOffsets, int[] dataSizes, long dataSize) {
+        this.fileOffsets = fileOffsets;
+        this.compressedSizes = compressedSizes;
+        this.dataOffsets = dataOffsets;
+        this.dataSizes = dataSizes;
+        this.dataSize = dataSize;
+    }
+
+    /**
+     * Сжимает записи сегмента версии 2 в файл {@code target}. Блок закрывается, как только в нем набралось
+     * {@code blockSize} несжатых байт, поэтому записи не разрываются между блоками
+     *
+     * @param sourcePath файл исходного сегмента
+     * @param dataSize   размер данных исходного сегмента
+     */
+    static CompressedSegmentFile write(Path sourcePath, long dataSize, Path target, int blockSize) throws IOException {
+        List<long[]> blocks = new ArrayList<>();
+        ByteArrayOutputStream blockData = new ByteArrayOutputStream(blockSize + blockSize / 4);
+        DatabaseOutputStream blockWriter = new DatabaseOutputStream(blockData);
+        byte[] compressBuffer = new byte[blockSize];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try (DatabaseInputStream input = new DatabaseInputStream(new FileInputStream(sourcePath.toFile()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target.toFile())))) {
+            if (input.readFormatVersion() != SegmentFormat.CHECKSUM_VERSION) {
+                throw new IOException("Only segments of version " + SegmentFormat.CHECKSUM_VERSION + " can be compressed: " + sourcePath);
+            }
+            output.writeInt(SegmentFormat.MAGIC);
+            output.writeInt(SegmentFormat.COMPRESSED_VERSION);
+
+            long filePosition = SegmentFormat.HEADER_SIZE;
+            long dataPosition = SegmentFormat.HEADER_SIZE;
+            long blockStart = dataPosition;
+            while (dataPosition < dataSize) {
+                Optional<DatabaseRecord> record = input.readCheckedDbUnit();
+                if (record.isEmpty() || record.get().getKey().length == 0) {
+                    throw new IOException("Segment " + sourcePath + " is corrupted at position " + dataPosition);
+                }
+                dataPosition += blockWriter.writeWithChecksum((WritableDatabaseRecord) record.get());
+
+                if (blockData.size() >= blockSize || dataPosition >= dataSize) {
+                    int compressedSize = compressBlock(deflater, blockData, output, compressBuffer);
+                    blocks.add(new long[]{filePosition, compressedSize, blockStart, blockData.size()});
+                    filePosition += compressedSize;
+                    blockStart = dataPosition;
+                    blockData.reset();
+                }
+            }
+
+            output.writeInt(blocks.size());
+            for (long[] block : blocks) {
+                output.writeLong(block[0]);
+                output.writeInt((int) block[1]);
+                output.writeLong(block[2]);
+                output.writeInt((int) block[3]);
+            }
+            output.writeLong(filePosition);
+            output.writeLong(dataSize);
+            output.writeInt(SegmentFormat.MAGIC);
+        } finally {
+            deflater.end();
+        }
+
+        return fromBlocks(blocks, dataSize);
+    }
+
+    private static int compressBlock(Deflater deflater, ByteArrayOutputStream blockData, DataOutputStream output, byte[] buffer) throws IOException {
+        deflater.reset();
+        deflater.setInput(blockData.toByteArray());
+        deflater.finish();
+        int compressedSize = 0;
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            output.write(buffer, 0, length);
+            compressedSize += length;
+        }
+        return compressedSize;
+    }
+
+    /**
+     * Читает таблицу блоков из концевика сжатого сегмента
+     */
+    static CompressedSegmentFile open(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < SegmentFormat.HEADER_SIZE + 4 + TRAILER_SIZE) {
+            throw new IOException("Compressed segment is too short: " + fileSize + " bytes");
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        readFully(channel, trailer, fileSize - TRAILER_SIZE);
+        trailer.flip();
+        long tableOffset = trailer.getLong();
+        long dataSize = trailer.getLong();
+        if (trailer.getInt() != SegmentFormat.MAGIC || tableOffset < SegmentFormat.HEADER_SIZE || tableOffset > fileSize - TRAILER_SIZE - 4) {
+            throw new IOException("Compressed segment has a broken trailer");
+        }
+
+        ByteBuffer table = ByteBuffer.allocate((int) (fileSize - TRAILER_SIZE - tableOffset));
+        readFully(channel, table, tableOffset);
+        table.flip();
+        int count = table.getInt();
+        if (count < 0 || (long) count * BLOCK_ENTRY_SIZE != table.remaining()) {
+            throw new IOException("Compressed segment has a broken block table");
+        }
+
+        List<long[]> blocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            blocks.add(new long[]{table.getLong(), table.getInt(), table.getLong(), table.getInt()});
+        }
+        return fromBlocks(blocks, dataSize);
+    }
+
+    private static CompressedSegmentFile fromBlocks(List<long[]> blocks, long dataSize) {
+        int count = blocks.size();
+        long[] fileOffsets = new long[count];
+        int[] compressedSizes = new int[count];
+        long[] dataOffsets = new long[count];
+        int[] dataSizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            long[] block = blocks.get(i);
+            fileOffsets[i] = block[0];
+            compressedSizes[i] = (int) block[1];
+            dataOffsets[i] = block[2];
+            dataSizes[i] = (int) block[3];
+        }
+        return new CompressedSegmentFile(fileOffsets, compressedSizes, dataOffsets, dataSizes, dataSize);
+    }
+
+    /**
+     * Составляет индекс сжатого сегмента, распаковывая блоки по очереди и проверяя контрольные суммы записей
+     *
+     * @return размер несжатых данных сегмента
+     * @throws IOException если сегмент поврежден или его не удалось прочитать
+     */
+    public static long indexRecords(Path segmentPath, SegmentIndex index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            CompressedSegmentFile file = open(channel);
+            for (int block = 0; block < file.getBlockCount(); block++) {
+                byte[] data = file.readBlock(channel, block);
+                DatabaseInputStream input = new DatabaseInputStream(new ByteArrayInputStream(data));
+                int offsetInBlock = 0;
+                while (offsetInBlock < data.length) {
+                    Optional<DatabaseRecord> record = input.readCheckedDbUnit();
+                    if (record.isEmpty() || record.get().getKey().length == 0) {
+                        throw new IOException("Compressed segment " + segmentPath + " has a corrupted record in block " + block);
+                    }
+                    int recordSize = (int) record.get().size() + SegmentFormat.CHECKSUM_SIZE;
+                    index.onIndexedEntityUpdated(new String(record.get().getKey()), new SegmentOffsetInfoImpl(
+                            file.getBlockDataOffset(block) + offsetInBlock, recordSize, record.get() instanceof RemoveDatabaseRecord));
+                    offsetInBlock += recordSize;
+                }
+            }
+            return file.getDataSize();
+        }
+    }
+
+    /**
+     * @return размер несжатых данных сегмента
+     */
+    long getDataSize() {
+        return dataSize;
+    }
+
+    int getBlockCount() {
+        return dataOffsets.length;
+    }
+
+    /**
+     * @return смещение начала блока в несжатых данных
+     */
+    long getBlockDataOffset(int block) {
+        return dataOffsets[block];
+    }
+
+    /**
+     * @return номер блока, в котором лежит запись с данным смещением в несжатых данных
+     */
+    int locate(long dataOffset) {
+        int position = Arrays.binarySearch(dataOffsets, dataOffset);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    /**
+     * Читает и распаковывает блок
+     */
+    byte[] readBlock(FileChannel channel, int block) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(compressedSizes[block]);
+        readFully(channel, compressed, fileOffsets[block]);
+
+        byte[] data = new byte[dataSizes[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int inflated = inflater.inflate(data);
+            if (inflated != data.length || !inflater.finished()) {
+                throw new IOException("Compressed block " + block + " is corrupted");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed block " + block + " is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of compressed segment at position " + position);
+            }
+            position += read;
+        }
+    }
+}
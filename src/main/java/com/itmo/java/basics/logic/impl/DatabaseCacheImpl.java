@@ -6,6 +6,9 @@ import lombok.EqualsAndHashCode;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * LRU-кэш, ограниченный числом записей. Не потокобезопасен: для таблиц используется {@link StripedDatabaseCache}
+ */
 @EqualsAndHashCode
 public class DatabaseCacheImpl implements DatabaseCache {
     private static final int CAPACITY = 5_000;
@@ -40,7 +43,7 @@ public class DatabaseCacheImpl implements DatabaseCache {
         private final int capacity;
 
         public LRU() {
-            this.capacity = 5000;
+            this(CAPACITY);
         }
 
         public LRU(int initialCapacity) {
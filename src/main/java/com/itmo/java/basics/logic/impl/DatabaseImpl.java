@@ -1,15 +1,24 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.exceptions.DatabaseException;
-import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.initialization.DatabaseInitializationContext;
 import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.basics.logic.StorageEngines;
 import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.TableSnapshot;
+import com.itmo.java.basics.logic.ValueLocation;
 import lombok.EqualsAndHashCode;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -19,15 +28,13 @@ public class DatabaseImpl implements Database {
     private final Path databaseRoot;
     private final Path dbPath;
     private final Map<String, Table> allTables;
+    private final DatabaseConfig config;
 
-    public DatabaseImpl(String dbName, Path databaseRoot) throws DatabaseException {
-       this(dbName, databaseRoot, new HashMap<>());
-    }
-
-    public DatabaseImpl(String dbName, Path databaseRoot,  Map<String, Table> allTables) throws DatabaseException {
+    public DatabaseImpl(String dbName, Path databaseRoot, Map<String, Table> allTables, DatabaseConfig config) throws DatabaseException {
         this.dbName = dbName;
         this.databaseRoot = databaseRoot;
         this.allTables = allTables;
+        this.config = config;
 
         File dbDir = new File(databaseRoot.toAbsolutePath().toString(), dbName);
         if(!dbDir.exists()) {
@@ -43,8 +50,9 @@ public class DatabaseImpl implements Database {
     /**
      * @param databaseRoot путь к директории, которая может содержать несколько БД,
      *                     поэтому при создании БД необходимо создать директорию внутри databaseRoot.
+     * @param config       настройки хранилища, с которыми будут создаваться таблицы этой БД
      */
-    public static Database create(String dbName, Path databaseRoot) throws DatabaseException {
+    public static Database create(String dbName, Path databaseRoot, DatabaseConfig config) throws DatabaseException {
         DatabaseImpl database;
         if (dbName == null) {
             throw new DatabaseException("dbName can't be null");
@@ -52,14 +60,14 @@ public class DatabaseImpl implements Database {
         if (databaseRoot == null) {
             throw new DatabaseException("databaseRoot can't be null");
         }
-        database = new DatabaseImpl(dbName, databaseRoot);
+        database = new DatabaseImpl(dbName, databaseRoot, new HashMap<>(), config);
         return database;
     }
 
-    public static Database initializeFromContext(DatabaseInitializationContext context) {
+    public static Database initializeFromContext(DatabaseInitializationContext context, DatabaseConfig config) {
         DatabaseImpl initializedDatabase;
         try {
-            initializedDatabase = new DatabaseImpl(context.getDbName(), context.getDatabasePath().getParent(), context.getTables());
+            initializedDatabase = new DatabaseImpl(context.getDbName(), context.getDatabasePath().getParent(), context.getTables(), config);
         } catch (DatabaseException e) {
             throw new RuntimeException(e);
         }
@@ -73,9 +81,13 @@ public class DatabaseImpl implements Database {
 
     @Override
     public void createTableIfNotExists(String tableName) throws DatabaseException {
+        createTableIfNotExists(tableName, StorageEngines.DEFAULT_ENGINE);
+    }
+
+    @Override
+    public void createTableIfNotExists(String tableName, String engineName) throws DatabaseException {
         if (!allTables.containsKey(tableName)) {
-            TableIndex newTableIndex = new TableIndex();
-            Table newTable = TableImpl.create(tableName, dbPath, newTableIndex);
+            Table newTable = StorageEngines.get(engineName).createTable(tableName, dbPath, config);
             allTables.put(tableName, newTable);
         } else {
             throw new DatabaseException("Can't create table because database already contains table with that name: " + tableName);
@@ -92,6 +104,16 @@ public class DatabaseImpl implements Database {
         }
     }
 
+    @Override
+    public void write(String tableName, String objectKey, byte[] objectValue, long expirationTime) throws DatabaseException {
+        if (allTables.containsKey(tableName)) {
+            Table table = allTables.get(tableName);
+            table.write(objectKey, objectValue, expirationTime);
+        } else {
+            throw new DatabaseException("There is no such table: " + tableName);
+        }
+    }
+
     @Override
     public Optional<byte[]> read(String tableName, String objectKey) throws DatabaseException {
         if (allTables.containsKey(tableName)) {
@@ -103,6 +125,16 @@ public class DatabaseImpl implements Database {
         }
     }
 
+    @Override
+    public Optional<ValueLocation> locate(String tableName, String objectKey) throws DatabaseException {
+        if (allTables.containsKey(tableName)) {
+            Table table = allTables.get(tableName);
+            return table.locate(objectKey);
+        } else {
+            throw new DatabaseException("There is no such table: " + tableName);
+        }
+    }
+
     @Override
     public void delete(String tableName, String objectKey) throws DatabaseException {
         if (allTables.containsKey(tableName)) {
@@ -112,4 +144,62 @@ public class DatabaseImpl implements Database {
             throw new DatabaseException("There is no such table: " + tableName);
         }
     }
+
+    @Override
+    public ScanPage scanKeys(String tableName, String prefix, String cursor, int limit) throws DatabaseException {
+        if (allTables.containsKey(tableName)) {
+            Table table = allTables.get(tableName);
+            return table.scanKeys(prefix, cursor, limit);
+        } else {
+            throw new DatabaseException("There is no such table: " + tableName);
+        }
+    }
+
+    @Override
+    public void snapshot(Path snapshotPath) throws DatabaseException {
+        Path snapshotDbPath = snapshotPath.resolve(dbName);
+        if (Files.exists(snapshotDbPath) || Files.exists(snapshotPath.resolve(SnapshotFiles.MANIFEST_FILE_NAME))) {
+            throw new DatabaseException("Snapshot already exists: " + snapshotPath);
+        }
+
+        List<Table> tables = new ArrayList<>(allTables.values());
+        tables.sort(Comparator.comparing(Table::getName));
+        List<TableSnapshot> snapshots = new ArrayList<>(tables.size());
+        try {
+            for (Table table : tables) {
+                snapshots.add(table.prepareSnapshot());
+            }
+            sealAll(snapshots, 0);
+
+            Files.createDirectories(snapshotDbPath);
+            for (int i = 0; i < tables.size(); i++) {
+                snapshots.get(i).writeTo(snapshotDbPath.resolve(tables.get(i).getName()));
+            }
+            SnapshotFiles.writeManifest(snapshotPath, dbName);
+        } catch (IOException e) {
+            throw new DatabaseException("Can't write snapshot of database " + dbName + " to " + snapshotPath, e);
+        } finally {
+            for (TableSnapshot snapshot : snapshots) {
+                snapshot.close();
+            }
+        }
+    }
+
+    /**
+     * Фиксирует снимки таблиц, начиная с {@code from}, не отпуская блокировки записей уже зафиксированных таблиц:
+     * снимок всех таблиц соответствует одному моменту. Таблицы блокируются всегда в порядке имен
+     */
+    private static void sealAll(List<TableSnapshot> snapshots, int from) throws DatabaseException {
+        if (from == snapshots.size()) {
+            return;
+        }
+        snapshots.get(from).seal(() -> sealAll(snapshots, from + 1));
+    }
+
+    @Override
+    public void close() throws DatabaseException {
+        for (Table table : allTables.values()) {
+            table.close();
+        }
+    }
 }
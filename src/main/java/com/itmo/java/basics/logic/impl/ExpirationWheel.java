@@ -0,0 +1,212 @@
+package com.itmo.java.basics.logic.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Иерархическое колесо таймеров, по которому таблица находит истекшие ключи, не перебирая индекс.
+ * <p>
+ * Время делится на тики по {@code tickMillis}. Колесо из {@link #LEVELS} уровней по {@link #SLOTS} слотов:
+ * слот уровня {@code l} покрывает {@code SLOTS^l} тиков. Ключ кладется на самый нижний уровень, до которого
+ * дотягивается его срок, и при обороте колеса уровнем выше спускается вниз, пока не истечет.
+ * Сроки дальше всего колеса ждут в очереди по сроку. Добавление и снятие ключа - O(1), продвижение - O(1)
+ * на тик плюс по одному переносу ключа на уровень.
+ * <p>
+ * Снятие ленивое: актуальный срок ключа хранится отдельно, а устаревшие записи в слотах отбрасываются,
+ * когда до них доходит колесо. Не потокобезопасно: таблица меняет колесо под блокировкой индекса на запись,
+ * а сроки ключей проверяет под блокировкой на чтение
+ */
+class ExpirationWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    /**
+     * Сколько тиков вперед покрывает колесо
+     */
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final Map<String, Long> deadlines = new HashMap<>();
+    private final List<List<List<Entry>>> wheel = new ArrayList<>(LEVELS);
+    private final PriorityQueue<Entry> overflow = new PriorityQueue<>(Comparator.comparingLong(entry -> entry.tick));
+    private long currentTick;
+
+    /**
+     * @param tickMillis длительность тика в миллисекундах: точность, с которой истекают ключи
+     * @param now        текущее время в миллисекундах от эпохи
+     */
+    ExpirationWheel(long tickMillis, long now) {
+        this.tickMillis = Math.max(tickMillis, 1);
+        this.currentTick = now / this.tickMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            List<List<Entry>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new ArrayList<>());
+            }
+            wheel.add(slots);
+        }
+    }
+
+    /**
+     * Назначает ключу срок истечения, заменяя прежний
+     *
+     * @param deadline момент истечения в миллисекундах от эпохи
+     */
+    void schedule(String key, long deadline) {
+        deadlines.put(key, deadline);
+        place(new Entry(key, deadline, (deadline + tickMillis - 1) / tickMillis), null);
+    }
+
+    /**
+     * Снимает срок с ключа: ключ перезаписан без срока или удален
+     */
+    void cancel(String key) {
+        deadlines.remove(key);
+    }
+
+    /**
+     * @return срок истечения ключа или {@code null}, если ключ не истекает
+     */
+    Long getDeadline(String key) {
+        return deadlines.get(key);
+    }
+
+    /**
+     * @return {@code true} - если у ключа есть срок и он наступил
+     */
+    boolean isExpired(String key, long now) {
+        Long deadline = deadlines.get(key);
+        return deadline != null && deadline <= now;
+    }
+
+    /**
+     * @return сколько ключей сейчас имеют срок
+     */
+    int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * @return копия сроков всех ключей
+     */
+    Map<String, Long> getDeadlines() {
+        return new HashMap<>(deadlines);
+    }
+
+    /**
+     * Продвигает колесо до текущего времени. Срок истекших ключей остается назначенным, пока таблица
+     * не запишет для них удаление и не снимет его через {@link #cancel(String)}
+     *
+     * @return ключи, срок которых наступил
+     */
+    List<String> advance(long now) {
+        List<String> expired = new ArrayList<>();
+        long targetTick = now / tickMillis;
+        if (targetTick - currentTick > SLOTS) {
+            rebuild(targetTick, expired);
+        } else {
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade(expired);
+                List<Entry> slot = wheel.get(0).get((int) (currentTick & (SLOTS - 1)));
+                List<Entry> due = new ArrayList<>(slot);
+                slot.clear();
+                for (Entry entry : due) {
+                    place(entry, expired);
+                }
+            }
+        }
+        while (!overflow.isEmpty() && overflow.peek().tick - currentTick < SPAN) {
+            place(overflow.poll(), expired);
+        }
+        return expired;
+    }
+
+    /**
+     * На обороте уровня спускает ключи из очередного слота уровня выше, начиная с верхнего
+     */
+    private void cascade(List<String> expired) {
+        for (int level = LEVELS - 1; level > 0; level--) {
+            long levelTicks = 1L << (SLOT_BITS * level);
+            if ((currentTick & (levelTicks - 1)) != 0) {
+                continue;
+            }
+            List<Entry> slot = wheel.get(level).get((int) ((currentTick >> (SLOT_BITS * level)) & (SLOTS - 1)));
+            List<Entry> entries = new ArrayList<>(slot);
+            slot.clear();
+            for (Entry entry : entries) {
+                place(entry, expired);
+            }
+        }
+    }
+
+    /**
+     * Время прыгнуло дальше оборота нижнего уровня (простой процесса или перевод часов):
+     * вместо прохода по каждому тику колесо собирается заново
+     */
+    private void rebuild(long targetTick, List<String> expired) {
+        List<Entry> entries = new ArrayList<>(overflow);
+        overflow.clear();
+        for (List<List<Entry>> slots : wheel) {
+            for (List<Entry> slot : slots) {
+                entries.addAll(slot);
+                slot.clear();
+            }
+        }
+        currentTick = targetTick;
+        for (Entry entry : entries) {
+            place(entry, expired);
+        }
+    }
+
+    /**
+     * Кладет ключ в слот по оставшемуся сроку. Устаревшая запись отбрасывается, истекший ключ попадает в {@code expired}
+     *
+     * @param expired куда складывать истекшие ключи. {@code null} - при назначении срока, тогда истекший ключ кладется в текущий слот
+     */
+    private void place(Entry entry, List<String> expired) {
+        Long deadline = deadlines.get(entry.key);
+        if (deadline == null || deadline != entry.deadline) {
+            return;
+        }
+
+        long delta = entry.tick - currentTick;
+        if (delta <= 0) {
+            if (expired != null) {
+                expired.add(entry.key);
+            } else {
+                wheel.get(0).get((int) ((currentTick + 1) & (SLOTS - 1))).add(entry);
+            }
+            return;
+        }
+        if (delta >= SPAN) {
+            overflow.add(entry);
+            return;
+        }
+
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        wheel.get(level).get((int) ((entry.tick >> (SLOT_BITS * level)) & (SLOTS - 1))).add(entry);
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final long deadline;
+        /**
+         * Первый тик, к началу которого срок уже наступил
+         */
+        private final long tick;
+
+        private Entry(String key, long deadline, long tick) {
+            this.key = key;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+    }
+}
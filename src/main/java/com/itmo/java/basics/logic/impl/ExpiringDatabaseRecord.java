@@ -0,0 +1,59 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Запись в БД, означающая добавление значения по ключу, которое истекает в заданный момент
+ */
+@EqualsAndHashCode
+public class ExpiringDatabaseRecord implements WritableDatabaseRecord {
+    private final byte[] key;
+    private final byte[] value;
+    private final long expirationTime;
+
+    /**
+     * @param expirationTime момент истечения в миллисекундах от эпохи
+     */
+    public ExpiringDatabaseRecord(byte[] key, byte[] value, long expirationTime) {
+        this.key = key;
+        this.value = value;
+        this.expirationTime = expirationTime;
+    }
+
+    @Override
+    public int getKeySize() {
+        return key.length;
+    }
+
+    @Override
+    public int getValueSize() {
+        return value.length;
+    }
+
+    @Override
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    @Override
+    public byte[] getKey() {
+        return key;
+    }
+
+    @Override
+    public byte[] getValue() {
+        return value;
+    }
+
+    @Override
+    public long size() {
+        return 4 + getKeySize() + 4 + SegmentFormat.EXPIRATION_SIZE + getValueSize();
+    }
+
+    @Override
+    public boolean isValuePresented() {
+        return getValueSize() != 0;
+    }
+}
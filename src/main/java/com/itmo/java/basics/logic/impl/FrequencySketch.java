@@ -0,0 +1,87 @@
+package com.itmo.java.basics.logic.impl;
+
+/**
+ * Count-min sketch: приблизительная частота обращений к ключам в фиксированном объеме памяти.
+ * <p>
+ * Счетчики четырехбитные, по 16 в одном long. Ключ увеличивает по одному счетчику в каждой из {@link #DEPTH} строк,
+ * частота ключа - минимум из них, поэтому коллизии могут только завысить ее. Когда число увеличений доходит
+ * до {@code 10 * ширина}, все счетчики делятся пополам: старая популярность постепенно забывается.
+ * Не потокобезопасен: вызывается под блокировкой кэша
+ */
+class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size = 0;
+
+    /**
+     * @param expectedKeys сколько ключей примерно хранит кэш: от этого зависит ширина и точность
+     */
+    FrequencySketch(long expectedKeys) {
+        int width = (int) Math.min(1 << 24, Math.max(16, Long.highestOneBit(Math.max(expectedKeys, 1) - 1) << 1));
+        this.table = new long[width];
+        this.tableMask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * @return оценка числа обращений к ключу, от 0 до 15
+     */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            int offset = (start + i) << 2;
+            frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offset) & MAX_COUNT));
+        }
+        return frequency;
+    }
+
+    /**
+     * Учитывает обращение к ключу
+     */
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            int offset = (start + i) << 2;
+            if (((table[index] >>> offset) & MAX_COUNT) != MAX_COUNT) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Делит все счетчики пополам
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,166 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.initialization.InitializationContext;
+import com.itmo.java.basics.initialization.impl.SegmentInitializer;
+import com.itmo.java.basics.logic.StorageEngine;
+import com.itmo.java.basics.logic.StorageEngines;
+import com.itmo.java.basics.logic.Table;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Движок по умолчанию: append-only сегменты и индекс всех ключей в памяти (см {@link TableImpl}).
+ * Быстрая запись и чтение одним обращением к диску
+ */
+public class HashStorageEngine implements StorageEngine {
+    public static final String NAME = StorageEngines.DEFAULT_ENGINE;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Table createTable(String tableName, Path databasePath, DatabaseConfig config) throws DatabaseException {
+        Table table = TableImpl.create(tableName, databasePath, TableIndex.create(config.getIndexType(tableName)), config);
+        StorageEngines.writeTo(databasePath.resolve(tableName), NAME);
+        return table;
+    }
+
+    /**
+     * Список и порядок сегментов берется из манифеста таблицы (см {@link SegmentManifest}), директория не читается.
+     * Если таблица в прошлый раз не была закрыта штатно, из директории удаляются файлы, которых нет в манифесте:
+     * недописанные файлы слияния, сегменты, которые не успели попасть в манифест или уже заменены слиянием,
+     * файлы-подсказки без сегмента и фильтры Блума прежних версий. Кроме того, последним в манифесте тогда может быть заранее созданный
+     * пустой сегмент, поэтому оборванный хвост допускается у двух последних сегментов.
+     * <p>
+     * Таблица без манифеста (созданная до его появления) загружается по-старому: сегменты в порядке их имен, - и для нее
+     * создается манифест
+     */
+    @Override
+    public Table initializeTable(InitializationContext context, SegmentInitializer segmentInitializer) throws DatabaseException {
+        Path tablePath = context.currentTableContext().getTablePath();
+        SegmentManifest manifest;
+        List<File> segmentFiles;
+        try {
+            if (SegmentManifest.exists(tablePath)) {
+                manifest = SegmentManifest.open(tablePath);
+                segmentFiles = new ArrayList<>();
+                for (String segmentName : manifest.getSegmentNames()) {
+                    File segmentFile = tablePath.resolve(segmentName).toFile();
+                    if (!segmentFile.isFile()) {
+                        throw new DatabaseException("Segment " + segmentName + " from manifest of table "
+                                + context.currentTableContext().getTableName() + " is missing");
+                    }
+                    segmentFiles.add(segmentFile);
+                }
+                if (!manifest.wasClosedCleanly()) {
+                    deleteFilesNotInManifest(tablePath.toFile(), manifest.getSegmentNames());
+                }
+            } else {
+                segmentFiles = listLegacySegmentFiles(tablePath.toFile());
+                manifest = null;
+            }
+        } catch (IOException e) {
+            throw new DatabaseException("Can't read segment manifest of table " + context.currentTableContext().getTableName(), e);
+        }
+
+        segmentInitializer.loadAll(context, segmentFiles, manifest == null || manifest.wasClosedCleanly() ? 1 : 2);
+        try {
+            if (manifest == null) {
+                List<String> segmentNames = new ArrayList<>();
+                for (File segmentFile : segmentFiles) {
+                    segmentNames.add(segmentFile.getName());
+                }
+                manifest = SegmentManifest.create(tablePath, segmentNames);
+            }
+        } catch (IOException e) {
+            throw new DatabaseException("Can't create segment manifest of table " + context.currentTableContext().getTableName(), e);
+        }
+        return TableImpl.initializeFromContext(context.currentTableContext(), context.executionEnvironment().getDatabaseConfig(), manifest);
+    }
+
+    /**
+     * Удаляет из директории таблицы все файлы, кроме сегментов из манифеста, их подсказок,
+     * самого манифеста и файла с движком таблицы
+     */
+    private void deleteFilesNotInManifest(File tableDirFile, List<String> segmentNames) throws DatabaseException {
+        File[] files = tableDirFile.listFiles();
+        if (files == null) {
+            throw new DatabaseException("There is no files in  " + tableDirFile);
+        }
+
+        Set<String> knownFiles = new HashSet<>();
+        knownFiles.add(StorageEngines.METADATA_FILE_NAME);
+        knownFiles.add(SegmentManifest.FILE_NAME);
+        for (String segmentName : segmentNames) {
+            knownFiles.add(segmentName);
+            knownFiles.add(segmentName + SegmentHintFile.HINT_SUFFIX);
+        }
+        for (File file : files) {
+            if (!knownFiles.contains(file.getName())) {
+                deleteUnfinishedFile(file);
+            }
+        }
+    }
+
+    /**
+     * Удаляет файлы незавершенного слияния сегментов, недописанный манифест и фильтры Блума, которые прежние версии
+     * хранили рядом с сегментами. Файлы-подсказки сегментов пропускаются, подсказки без сегмента удаляются
+     *
+     * @return остальные файлы - сегменты в порядке их создания (из имени)
+     */
+    private List<File> listLegacySegmentFiles(File tableDirFile) throws DatabaseException {
+        File[] files = tableDirFile.listFiles();
+        if (files == null) {
+            throw new DatabaseException("There is no files in  " + tableDirFile);
+        }
+
+        List<File> segmentFiles = new ArrayList<>();
+        Map<File, String> segmentSideFiles = new HashMap<>();
+        for (File file : files) {
+            String fileName = file.getName();
+            if (fileName.equals(StorageEngines.METADATA_FILE_NAME)) {
+                continue;
+            }
+            if (fileName.endsWith(SegmentCompactor.TEMP_SUFFIX) || fileName.startsWith(SegmentManifest.FILE_NAME)
+                    || fileName.endsWith(SegmentBloomFilter.BLOOM_SUFFIX)) {
+                deleteUnfinishedFile(file);
+            } else if (fileName.contains(SegmentHintFile.HINT_SUFFIX)) {
+                segmentSideFiles.put(file, SegmentHintFile.HINT_SUFFIX);
+            } else {
+                segmentFiles.add(file);
+            }
+        }
+        for (Map.Entry<File, String> sideFile : segmentSideFiles.entrySet()) {
+            String fileName = sideFile.getKey().getName();
+            String segmentName = fileName.substring(0, fileName.indexOf(sideFile.getValue()));
+            if (!fileName.endsWith(sideFile.getValue()) || !new File(tableDirFile, segmentName).exists()) {
+                deleteUnfinishedFile(sideFile.getKey());
+            }
+        }
+        Collections.sort(segmentFiles);
+        return segmentFiles;
+    }
+
+    /**
+     * Удаляет файл, оставшийся от незавершенной операции: слияния сегментов, создания сегмента, записи подсказки
+     */
+    private void deleteUnfinishedFile(File file) throws DatabaseException {
+        if (!file.delete()) {
+            throw new DatabaseException("Can't delete unfinished file " + file);
+        }
+    }
+}
@@ -0,0 +1,698 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.logic.DatabaseCache;
+import com.itmo.java.basics.logic.ValueLocation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * Потокобезопасный кэш значений таблицы вне кучи: ключи и значения лежат в direct-буферах и не нагружают сборщик мусора.
+ * Рассчитан на роль второго уровня за небольшим кэшем в куче (см {@link CachingTable}).
+ * <p>
+ * Как и {@link StripedDatabaseCache}, разделен на независимые части по хешу ключа. Память части выделяется slab-ами
+ * (до {@link #MAX_SLAB_SIZE} байт) по мере заполнения, каждый slab нарезан на куски одного класса размера.
+ * Классы растут в {@link #CHUNK_GROWTH} раза, начиная с {@link #MIN_CHUNK_SIZE}. Кусок: размер ключа | размер значения |
+ * UTF-8 байты ключа | значение. Запись кладется в кусок наименьшего подходящего класса. Если свободных кусков
+ * и новых slab-ов нет, вытесняется давно не читанная запись того же класса, а если у класса еще нет slab-ов -
+ * slab забирается у класса, у которого их больше всего.
+ * <p>
+ * Индекс части - открытая адресация по массиву int: хеш ключа -> номер slab-а и куска. Объектов на запись нет.
+ * Значение больше slab-а не кэшируется
+ * <p>
+ * На сервер один такой кэш (см {@link #forConfig(DatabaseConfig)}), а таблицы работают с ним через свои части
+ * (см {@link #forTable(String, String)}): ключи части дополняются именами бд и таблицы, и память вне кучи
+ * не растет с числом таблиц
+ */
+public class OffHeapDatabaseCache implements DatabaseCache {
+    private static final int STRIPES = 16;
+    private static final int MAX_SLAB_SIZE = 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final double CHUNK_GROWTH = 1.25;
+    private static final int CHUNK_HEADER = 2 * Integer.BYTES;
+    /**
+     * Номер куска занимает младшие 16 бит ссылки, номер slab-а - старшие
+     */
+    private static final int MAX_SLABS = 0xFFFE;
+    private static final int NONE = -1;
+    /**
+     * Отметка свободного куска в списке предыдущих
+     */
+    private static final int FREE = -2;
+    private static final int INITIAL_INDEX_CAPACITY = 256;
+
+    /**
+     * Буфер потока, через который значение отдается в канал: копирование идет из памяти вне кучи в память вне кучи
+     */
+    private static final ThreadLocal<ByteBuffer> transferBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(MIN_CHUNK_SIZE));
+
+    /**
+     * Кэш вне кучи на каждый сервер: у сервера один объект настроек
+     */
+    private static final Map<DatabaseConfig, OffHeapDatabaseCache> instances = new WeakHashMap<>();
+
+    private final Stripe[] stripes;
+    private final long maxBytes;
+    /**
+     * Префикс ключей части таблицы в общем кэше. Пустой - кэш используется целиком
+     */
+    private final String keyPrefix;
+
+    /**
+     * @param maxBytes сколько байт вне кучи могут занимать slab-ы кэша. Память выделяется по мере заполнения
+     */
+    public OffHeapDatabaseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.keyPrefix = "";
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxBytes / STRIPES);
+        }
+    }
+
+    private OffHeapDatabaseCache(OffHeapDatabaseCache cache, String keyPrefix) {
+        this.maxBytes = cache.maxBytes;
+        this.keyPrefix = keyPrefix;
+        this.stripes = cache.stripes;
+    }
+
+    /**
+     * @return кэш вне кучи сервера с этими настройками. Создается при первом обращении с лимитом
+     * {@link DatabaseConfig#getOffHeapCacheBytes()}
+     */
+    public static OffHeapDatabaseCache forConfig(DatabaseConfig config) {
+        synchronized (instances) {
+            return instances.computeIfAbsent(config, key -> new OffHeapDatabaseCache(key.getOffHeapCacheBytes()));
+        }
+    }
+
+    /**
+     * @return часть кэша для таблицы: записи всех таблиц делят slab-ы и лимит кэша, а ключи не пересекаются.
+     * Имена бд и таблиц - имена директорий, поэтому не содержат "/"
+     */
+    public OffHeapDatabaseCache forTable(String databaseName, String tableName) {
+        return new OffHeapDatabaseCache(this, databaseName + "/" + tableName + "/");
+    }
+
+    @Override
+    public byte[] get(String key) {
+        String cacheKey = keyPrefix + key;
+        return stripeFor(cacheKey).get(cacheKey.getBytes(StandardCharsets.UTF_8), cacheKey.hashCode());
+    }
+
+    @Override
+    public void set(String key, byte[] value) {
+        String cacheKey = keyPrefix + key;
+        stripeFor(cacheKey).set(cacheKey.getBytes(StandardCharsets.UTF_8), cacheKey.hashCode(), value);
+    }
+
+    @Override
+    public void delete(String key) {
+        String cacheKey = keyPrefix + key;
+        stripeFor(cacheKey).delete(cacheKey.getBytes(StandardCharsets.UTF_8), cacheKey.hashCode());
+    }
+
+    /**
+     * Освобождает все slab-ы. У части таблицы - только удаляет ее записи: их куски достаются другим таблицам
+     */
+    @Override
+    public void clear() {
+        byte[] prefix = keyPrefix.getBytes(StandardCharsets.UTF_8);
+        for (Stripe stripe : stripes) {
+            if (prefix.length == 0) {
+                stripe.clear();
+            } else {
+                stripe.deleteWithPrefix(prefix);
+            }
+        }
+    }
+
+    /**
+     * Находит значение, не копируя его в кучу. Значение остается в кэше и может быть вытеснено до того,
+     * как место будет прочитано: тогда {@link ValueLocation#read()} вернет {@link Optional#empty()},
+     * а {@link ValueLocation#transferTo} - {@code false}
+     *
+     * @return место значения в кэше. {@link Optional#empty()} - если значения в кэше нет
+     */
+    public Optional<ValueLocation> locate(String key) {
+        String cacheKey = keyPrefix + key;
+        byte[] keyBytes = cacheKey.getBytes(StandardCharsets.UTF_8);
+        int hash = cacheKey.hashCode();
+        Stripe stripe = stripeFor(cacheKey);
+        int length = stripe.valueLength(keyBytes, hash);
+        if (length < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new ValueLocation() {
+            @Override
+            public int getLength() {
+                return length;
+            }
+
+            @Override
+            public boolean isInMemory() {
+                return false;
+            }
+
+            @Override
+            public Optional<byte[]> read() {
+                return Optional.ofNullable(stripe.get(keyBytes, hash));
+            }
+
+            @Override
+            public boolean transferTo(WritableByteChannel target, IntFunction<ByteBuffer> header) throws IOException {
+                ByteBuffer value = stripe.copyToTransferBuffer(keyBytes, hash);
+                if (value == null) {
+                    return false;
+                }
+                ValueLocation.writeFully(target, header.apply(value.remaining()));
+                ValueLocation.writeFully(target, value);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @return сколько байт вне кучи сейчас выделено под slab-ы, у части таблицы - под slab-ы всего кэша
+     */
+    public long getAllocatedBytes() {
+        long allocatedBytes = 0;
+        for (Stripe stripe : stripes) {
+            allocatedBytes += stripe.getAllocatedBytes();
+        }
+        return allocatedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static int slabOf(int ref) {
+        return ref >>> 16;
+    }
+
+    private static int chunkOf(int ref) {
+        return ref & 0xFFFF;
+    }
+
+    private static int ref(int slab, int chunk) {
+        return slab << 16 | chunk;
+    }
+
+    /**
+     * Перемешивание для индекса: младшие биты хеша уже использованы при выборе части
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int slabSize;
+        private final int maxSlabs;
+        private final int[] chunkSizes;
+
+        private ByteBuffer[] slabs;
+        private int[] slabClasses;
+        private int[][] chunkHashes;
+        private int[][] prev;
+        private int[][] next;
+        private int slabCount;
+
+        private int[] freeHeads;
+        private int[] lruHeads;
+        private int[] lruTails;
+        private int[] classSlabCounts;
+
+        private int[] index;
+        private int indexSize;
+
+        private Stripe(long capacity) {
+            this.slabSize = (int) Math.min(MAX_SLAB_SIZE, Long.highestOneBit(Math.max(capacity, 1)));
+            this.maxSlabs = slabSize < MIN_CHUNK_SIZE ? 0 : (int) Math.min(capacity / slabSize, MAX_SLABS);
+            this.chunkSizes = chunkSizes(slabSize);
+            clear();
+        }
+
+        private static int[] chunkSizes(int slabSize) {
+            List<Integer> sizes = new ArrayList<>();
+            int size = MIN_CHUNK_SIZE;
+            while (size < slabSize) {
+                sizes.add(size);
+                size = ((int) (size * CHUNK_GROWTH) + 7) & ~7;
+            }
+            sizes.add(slabSize);
+            return sizes.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                slabs = new ByteBuffer[0];
+                slabClasses = new int[0];
+                chunkHashes = new int[0][];
+                prev = new int[0][];
+                next = new int[0][];
+                slabCount = 0;
+                freeHeads = filled(chunkSizes.length);
+                lruHeads = filled(chunkSizes.length);
+                lruTails = filled(chunkSizes.length);
+                classSlabCounts = new int[chunkSizes.length];
+                index = filled(INITIAL_INDEX_CAPACITY);
+                indexSize = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static int[] filled(int length) {
+            int[] array = new int[length];
+            Arrays.fill(array, NONE);
+            return array;
+        }
+
+        private byte[] get(byte[] key, int hash) {
+            lock.lock();
+            try {
+                int position = find(key, hash);
+                if (position < 0) {
+                    return null;
+                }
+                int ref = index[position];
+                touch(ref);
+                byte[] value = new byte[slabs[slabOf(ref)].getInt(offset(ref) + Integer.BYTES)];
+                selectValue(ref).get(value);
+                slabs[slabOf(ref)].clear();
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return размер значения или -1, если значения нет
+         */
+        private int valueLength(byte[] key, int hash) {
+            lock.lock();
+            try {
+                int position = find(key, hash);
+                if (position < 0) {
+                    return -1;
+                }
+                touch(index[position]);
+                return slabs[slabOf(index[position])].getInt(offset(index[position]) + Integer.BYTES);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Копирует значение в буфер потока. Канал пишется уже без блокировки части
+         *
+         * @return буфер, готовый к чтению, или {@code null}, если значения нет
+         */
+        private ByteBuffer copyToTransferBuffer(byte[] key, int hash) {
+            lock.lock();
+            try {
+                int position = find(key, hash);
+                if (position < 0) {
+                    return null;
+                }
+                int ref = index[position];
+                ByteBuffer slab = slabs[slabOf(ref)];
+                int length = slab.getInt(offset(ref) + Integer.BYTES);
+                ByteBuffer buffer = transferBuffer.get();
+                if (buffer.capacity() < length) {
+                    buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(length - 1) << 1);
+                    transferBuffer.set(buffer);
+                }
+                buffer.clear();
+                buffer.put(selectValue(ref));
+                slab.clear();
+                buffer.flip();
+                return buffer;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Кладет значение в кусок наименьшего подходящего класса. Прежнее значение ключа удаляется,
+         * даже если новое не удалось положить, чтобы не читалось устаревшее
+         */
+        private void set(byte[] key, int hash, byte[] value) {
+            long recordSize = (long) CHUNK_HEADER + key.length + value.length;
+            lock.lock();
+            try {
+                int position = find(key, hash);
+                if (position >= 0) {
+                    remove(position);
+                }
+                int chunkClass = classFor(recordSize);
+                if (chunkClass < 0) {
+                    return;
+                }
+                int ref = allocate(chunkClass);
+                if (ref == NONE) {
+                    return;
+                }
+
+                ByteBuffer slab = slabs[slabOf(ref)];
+                int offset = offset(ref);
+                slab.putInt(offset, key.length);
+                slab.putInt(offset + Integer.BYTES, value.length);
+                slab.position(offset + CHUNK_HEADER);
+                slab.put(key);
+                slab.put(value);
+                slab.clear();
+                chunkHashes[slabOf(ref)][chunkOf(ref)] = hash;
+                linkLast(chunkClass, ref);
+                insert(ref, hash);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void delete(byte[] key, int hash) {
+            lock.lock();
+            try {
+                int position = find(key, hash);
+                if (position >= 0) {
+                    remove(position);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void deleteWithPrefix(byte[] prefix) {
+            lock.lock();
+            try {
+                List<Integer> refs = new ArrayList<>();
+                for (int ref : index) {
+                    if (ref != NONE && keyStartsWith(ref, prefix)) {
+                        refs.add(ref);
+                    }
+                }
+                for (int ref : refs) {
+                    remove(positionOf(ref));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long getAllocatedBytes() {
+            lock.lock();
+            try {
+                return (long) slabCount * slabSize;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int classFor(long recordSize) {
+            for (int i = 0; i < chunkSizes.length; i++) {
+                if (chunkSizes[i] >= recordSize) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int offset(int ref) {
+            return chunkOf(ref) * chunkSizes[slabClasses[slabOf(ref)]];
+        }
+
+        /**
+         * Выставляет позицию и предел slab-а на значение куска. После чтения предел нужно сбросить
+         */
+        private ByteBuffer selectValue(int ref) {
+            ByteBuffer slab = slabs[slabOf(ref)];
+            int offset = offset(ref);
+            int valueOffset = offset + CHUNK_HEADER + slab.getInt(offset);
+            slab.limit(valueOffset + slab.getInt(offset + Integer.BYTES));
+            slab.position(valueOffset);
+            return slab;
+        }
+
+        /**
+         * @return позиция ключа в индексе или -1
+         */
+        private int find(byte[] key, int hash) {
+            int mask = index.length - 1;
+            for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+                int ref = index[i];
+                if (ref == NONE) {
+                    return -1;
+                }
+                if (chunkHashes[slabOf(ref)][chunkOf(ref)] == hash && keyEquals(ref, key)) {
+                    return i;
+                }
+            }
+        }
+
+        private boolean keyEquals(int ref, byte[] key) {
+            ByteBuffer slab = slabs[slabOf(ref)];
+            int offset = offset(ref);
+            if (slab.getInt(offset) != key.length) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (slab.get(offset + CHUNK_HEADER + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean keyStartsWith(int ref, byte[] prefix) {
+            ByteBuffer slab = slabs[slabOf(ref)];
+            int offset = offset(ref);
+            if (slab.getInt(offset) < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (slab.get(offset + CHUNK_HEADER + i) != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void insert(int ref, int hash) {
+            if ((indexSize + 1) * 4L > index.length * 3L) {
+                int[] oldIndex = index;
+                index = filled(oldIndex.length * 2);
+                for (int oldRef : oldIndex) {
+                    if (oldRef != NONE) {
+                        place(oldRef, chunkHashes[slabOf(oldRef)][chunkOf(oldRef)]);
+                    }
+                }
+            }
+            place(ref, hash);
+            indexSize++;
+        }
+
+        private void place(int ref, int hash) {
+            int mask = index.length - 1;
+            int i = mix(hash) & mask;
+            while (index[i] != NONE) {
+                i = (i + 1) & mask;
+            }
+            index[i] = ref;
+        }
+
+        /**
+         * Удаляет запись из индекса сдвигом следующих за ней записей, не оставляя пометок об удалении,
+         * и возвращает ее кусок в список свободных
+         */
+        private void remove(int position) {
+            int ref = index[position];
+            removeFromIndex(position);
+            int chunkClass = slabClasses[slabOf(ref)];
+            unlink(chunkClass, ref);
+            prev[slabOf(ref)][chunkOf(ref)] = FREE;
+            next[slabOf(ref)][chunkOf(ref)] = freeHeads[chunkClass];
+            freeHeads[chunkClass] = ref;
+        }
+
+        private void removeFromIndex(int position) {
+            int mask = index.length - 1;
+            int hole = position;
+            for (int i = (position + 1) & mask; index[i] != NONE; i = (i + 1) & mask) {
+                int ref = index[i];
+                int home = mix(chunkHashes[slabOf(ref)][chunkOf(ref)]) & mask;
+                boolean staysInPlace = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+                if (!staysInPlace) {
+                    index[hole] = ref;
+                    hole = i;
+                }
+            }
+            index[hole] = NONE;
+            indexSize--;
+        }
+
+        private int positionOf(int ref) {
+            int mask = index.length - 1;
+            int i = mix(chunkHashes[slabOf(ref)][chunkOf(ref)]) & mask;
+            while (index[i] != ref) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /**
+         * Берет свободный кусок класса: из списка свободных, из нового slab-а, вытесняя давно не читанную запись класса
+         * или забирая slab у другого класса
+         *
+         * @return кусок или {@link #NONE}, если память кэша не выделяется
+         */
+        private int allocate(int chunkClass) {
+            if (freeHeads[chunkClass] == NONE && !addSlab(chunkClass)) {
+                if (lruHeads[chunkClass] != NONE) {
+                    remove(positionOf(lruHeads[chunkClass]));
+                } else if (!stealSlab(chunkClass)) {
+                    return NONE;
+                }
+            }
+            int ref = freeHeads[chunkClass];
+            freeHeads[chunkClass] = next[slabOf(ref)][chunkOf(ref)];
+            return ref;
+        }
+
+        private boolean addSlab(int chunkClass) {
+            if (slabCount >= maxSlabs) {
+                return false;
+            }
+            if (slabCount == slabs.length) {
+                int length = Math.min(Math.max(slabs.length * 2, 4), maxSlabs);
+                slabs = Arrays.copyOf(slabs, length);
+                slabClasses = Arrays.copyOf(slabClasses, length);
+                chunkHashes = Arrays.copyOf(chunkHashes, length);
+                prev = Arrays.copyOf(prev, length);
+                next = Arrays.copyOf(next, length);
+            }
+            int slab = slabCount++;
+            slabs[slab] = ByteBuffer.allocateDirect(slabSize);
+            assignSlab(slab, chunkClass);
+            return true;
+        }
+
+        /**
+         * Отдает slab классу: нарезает на куски и кладет их в список свободных
+         */
+        private void assignSlab(int slab, int chunkClass) {
+            int chunks = slabSize / chunkSizes[chunkClass];
+            slabClasses[slab] = chunkClass;
+            chunkHashes[slab] = new int[chunks];
+            prev[slab] = new int[chunks];
+            next[slab] = new int[chunks];
+            for (int chunk = chunks - 1; chunk >= 0; chunk--) {
+                prev[slab][chunk] = FREE;
+                next[slab][chunk] = freeHeads[chunkClass];
+                freeHeads[chunkClass] = ref(slab, chunk);
+            }
+            classSlabCounts[chunkClass]++;
+        }
+
+        /**
+         * Забирает у класса с наибольшим числом slab-ов тот slab, где лежит его самая давно читанная запись,
+         * и вытесняет все записи этого slab-а
+         */
+        private boolean stealSlab(int chunkClass) {
+            int donor = 0;
+            for (int i = 1; i < classSlabCounts.length; i++) {
+                if (classSlabCounts[i] > classSlabCounts[donor]) {
+                    donor = i;
+                }
+            }
+            if (classSlabCounts[donor] == 0 || donor == chunkClass) {
+                return false;
+            }
+
+            int slab = lruHeads[donor] != NONE ? slabOf(lruHeads[donor]) : anySlabOf(donor);
+            for (int chunk = 0; chunk < prev[slab].length; chunk++) {
+                int ref = ref(slab, chunk);
+                if (prev[slab][chunk] != FREE) {
+                    removeFromIndex(positionOf(ref));
+                    unlink(donor, ref);
+                }
+            }
+            classSlabCounts[donor]--;
+            freeHeads[donor] = NONE;
+            for (int other = slabCount - 1; other >= 0; other--) {
+                if (other == slab || slabClasses[other] != donor) {
+                    continue;
+                }
+                for (int chunk = prev[other].length - 1; chunk >= 0; chunk--) {
+                    if (prev[other][chunk] == FREE) {
+                        next[other][chunk] = freeHeads[donor];
+                        freeHeads[donor] = ref(other, chunk);
+                    }
+                }
+            }
+            assignSlab(slab, chunkClass);
+            return true;
+        }
+
+        private int anySlabOf(int chunkClass) {
+            for (int slab = 0; slab < slabCount; slab++) {
+                if (slabClasses[slab] == chunkClass) {
+                    return slab;
+                }
+            }
+            throw new IllegalStateException("Chunk class " + chunkClass + " has no slabs");
+        }
+
+        private void touch(int ref) {
+            int chunkClass = slabClasses[slabOf(ref)];
+            unlink(chunkClass, ref);
+            linkLast(chunkClass, ref);
+        }
+
+        private void linkLast(int chunkClass, int ref) {
+            int tail = lruTails[chunkClass];
+            prev[slabOf(ref)][chunkOf(ref)] = tail;
+            next[slabOf(ref)][chunkOf(ref)] = NONE;
+            if (tail == NONE) {
+                lruHeads[chunkClass] = ref;
+            } else {
+                next[slabOf(tail)][chunkOf(tail)] = ref;
+            }
+            lruTails[chunkClass] = ref;
+        }
+
+        private void unlink(int chunkClass, int ref) {
+            int before = prev[slabOf(ref)][chunkOf(ref)];
+            int after = next[slabOf(ref)][chunkOf(ref)];
+            if (before == NONE) {
+                lruHeads[chunkClass] = after;
+            } else {
+                next[slabOf(before)][chunkOf(before)] = after;
+            }
+            if (after == NONE) {
+                lruTails[chunkClass] = before;
+            } else {
+                prev[slabOf(after)][chunkOf(after)] = before;
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Неизменяемый файл таблицы движка {@link SSTableStorageEngine}: записи отсортированы по ключу.
+ * <p>
+ * Формат: заголовок | записи | разреженный индекс | концевик.
+ * Записи - в формате сегмента версии {@link SegmentFormat#CHECKSUM_VERSION}, запись об удалении хранится,
+ * пока файл не сольется с самым старым файлом таблицы. Записи разбиты на блоки примерно по {@link #BLOCK_SIZE} байт,
+ * в памяти держится только первый ключ и смещение каждого блока, поэтому поиск ключа - один бинарный поиск
+ * и одно чтение блока. Индекс: для каждого блока (размер ключа, ключ, смещение).
+ * Концевик: смещение индекса | количество записей | MAGIC.
+ * <p>
+ * Имя файла - {@code <таблица>_<первый номер>_<последний номер>.sst}: файл, полученный слиянием, покрывает номера
+ * всех слитых файлов. Рядом с файлом хранится фильтр Блума по его ключам (см {@link SegmentBloomFilter})
+ */
+public class SSTableFile {
+    public static final String SUFFIX = ".sst";
+    public static final String TEMP_SUFFIX = ".tmp";
+    /**
+     * Примерный размер блока, по которому строится разреженный индекс
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    private static final int MAGIC = 0x53535442;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 8 + 8 + 4;
+    private static final int REMOVED_OBJECT_SIZE = -1;
+    private static final Pattern NAME_PATTERN = Pattern.compile("_(\\d{19})_(\\d{19})" + Pattern.quote(SUFFIX) + "$");
+
+    private final Path path;
+    private final FileChannel channel;
+    private final String[] blockKeys;
+    private final long[] blockOffsets;
+    private final long indexOffset;
+    private final long recordCount;
+    private final long firstNumber;
+    private final long lastNumber;
+    private final SegmentBloomFilter bloomFilter;
+    private final boolean verifyChecksums;
+
+    private SSTableFile(Path path, FileChannel channel, String[] blockKeys, long[] blockOffsets, long indexOffset,
+                        long recordCount, long[] numbers, SegmentBloomFilter bloomFilter, boolean verifyChecksums) {
+        this.path = path;
+        this.channel = channel;
+        this.blockKeys = blockKeys;
+        this.blockOffsets = blockOffsets;
+        this.indexOffset = indexOffset;
+        this.recordCount = recordCount;
+        this.firstNumber = numbers[0];
+        this.lastNumber = numbers[1];
+        this.bloomFilter = bloomFilter;
+        this.verifyChecksums = verifyChecksums;
+    }
+
+    static String createFileName(String tableName, long firstNumber, long lastNumber) {
+        return String.format("%s_%019d_%019d%s", tableName, firstNumber, lastNumber, SUFFIX);
+    }
+
+    /**
+     * @return первый и последний номер файла из его имени или {@link Optional#empty()}, если это не имя файла таблицы
+     */
+    static Optional<long[]> parseNumbers(String fileName) {
+        Matcher matcher = NAME_PATTERN.matcher(fileName);
+        if (!matcher.find()) {
+            return Optional.empty();
+        }
+        return Optional.of(new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))});
+    }
+
+    /**
+     * Записывает отсортированные по ключу записи в новый файл. Файл пишется во временный и атомарно переименовывается
+     * после того, как записан его фильтр Блума
+     *
+     * @param entries      записи в порядке возрастания ключей, значение {@code null} - запись об удалении
+     * @param expectedKeys сколько записей будет (для размера фильтра Блума)
+     * @return открытый файл. {@link Optional#empty()} - если записей не оказалось и файл не создан
+     */
+    static Optional<SSTableFile> write(Path path, Iterator<Map.Entry<String, byte[]>> entries, int expectedKeys,
+                                       DatabaseConfig config) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        double falsePositiveRate = config.getBloomFalsePositiveRate();
+        SegmentBloomFilter bloomFilter = falsePositiveRate > 0 ? SegmentBloomFilter.create(expectedKeys, falsePositiveRate) : null;
+        List<String> blockKeys = new ArrayList<>();
+        List<Long> blockOffsets = new ArrayList<>();
+        long position = HEADER_SIZE;
+        long recordCount = 0;
+
+        try (DatabaseOutputStream output = new DatabaseOutputStream(new BufferedOutputStream(new FileOutputStream(tempPath.toFile())))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            long blockStart = -BLOCK_SIZE;
+            while (entries.hasNext()) {
+                Map.Entry<String, byte[]> entry = entries.next();
+                if (position - blockStart >= BLOCK_SIZE) {
+                    blockStart = position;
+                    blockKeys.add(entry.getKey());
+                    blockOffsets.add(position);
+                }
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                WritableDatabaseRecord record = entry.getValue() == null
+                        ? new RemoveDatabaseRecord(key)
+                        : new SetDatabaseRecord(key, entry.getValue());
+                position += output.writeWithChecksum(record);
+                recordCount++;
+                if (bloomFilter != null) {
+                    bloomFilter.add(entry.getKey());
+                }
+            }
+
+            for (int i = 0; i < blockKeys.size(); i++) {
+                byte[] key = blockKeys.get(i).getBytes(StandardCharsets.UTF_8);
+                output.writeInt(key.length);
+                output.write(key);
+                output.writeLong(blockOffsets.get(i));
+            }
+            output.writeLong(position);
+            output.writeLong(recordCount);
+            output.writeInt(MAGIC);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+
+        if (recordCount == 0) {
+            Files.delete(tempPath);
+            return Optional.empty();
+        }
+        if (bloomFilter != null) {
+            try {
+                bloomFilter.write(path, position);
+            } catch (IOException e) {
+                Files.deleteIfExists(tempPath);
+                SegmentBloomFilter.delete(path);
+                throw e;
+            }
+        }
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        return Optional.of(new SSTableFile(path, FileChannel.open(path, StandardOpenOption.READ),
+                blockKeys.toArray(new String[0]), blockOffsets.stream().mapToLong(Long::longValue).toArray(),
+                position, recordCount, parseNumbers(path.getFileName().toString()).orElseThrow(), bloomFilter,
+                config.isVerifyChecksums()));
+    }
+
+    /**
+     * Открывает файл: читает концевик и разреженный индекс. Фильтр Блума читается из файла рядом,
+     * а если его нет или он поврежден - строится заново по ключам файла
+     *
+     * @throws IOException если файл оборван или поврежден
+     */
+    static SSTableFile open(Path path, DatabaseConfig config) throws IOException {
+        long[] numbers = parseNumbers(path.getFileName().toString())
+                .orElseThrow(() -> new IOException("Unexpected table file name " + path));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            ByteBuffer header = readAt(channel, 0, HEADER_SIZE, fileSize);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("File " + path + " is not a sorted table file");
+            }
+            ByteBuffer trailer = readAt(channel, fileSize - TRAILER_SIZE, TRAILER_SIZE, fileSize);
+            long indexOffset = trailer.getLong();
+            long recordCount = trailer.getLong();
+            if (trailer.getInt() != MAGIC || indexOffset < HEADER_SIZE || indexOffset > fileSize - TRAILER_SIZE) {
+                throw new IOException("File " + path + " has a broken trailer");
+            }
+
+            ByteBuffer index = readAt(channel, indexOffset, (int) (fileSize - TRAILER_SIZE - indexOffset), fileSize);
+            List<String> blockKeys = new ArrayList<>();
+            List<Long> blockOffsets = new ArrayList<>();
+            while (index.hasRemaining()) {
+                byte[] key = new byte[index.getInt()];
+                index.get(key);
+                blockKeys.add(new String(key, StandardCharsets.UTF_8));
+                blockOffsets.add(index.getLong());
+            }
+
+            return new SSTableFile(path, channel, blockKeys.toArray(new String[0]),
+                    blockOffsets.stream().mapToLong(Long::longValue).toArray(), indexOffset, recordCount, numbers,
+                    loadBloomFilter(path, indexOffset, recordCount, channel, blockOffsets, config), config.isVerifyChecksums());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("File " + path + " is corrupted", e);
+        }
+    }
+
+    private static SegmentBloomFilter loadBloomFilter(Path path, long indexOffset, long recordCount, FileChannel channel,
+                                                      List<Long> blockOffsets, DatabaseConfig config) throws IOException {
+        double falsePositiveRate = config.getBloomFalsePositiveRate();
+        if (falsePositiveRate <= 0) {
+            return null;
+        }
+        Optional<SegmentBloomFilter> stored = SegmentBloomFilter.read(path, indexOffset);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        SegmentBloomFilter bloomFilter = SegmentBloomFilter.create((int) Math.min(recordCount, Integer.MAX_VALUE), falsePositiveRate);
+        for (int block = 0; block < blockOffsets.size(); block++) {
+            long end = block + 1 < blockOffsets.size() ? blockOffsets.get(block + 1) : indexOffset;
+            ByteBuffer buffer = readAt(channel, blockOffsets.get(block), (int) (end - blockOffsets.get(block)), indexOffset);
+            while (buffer.hasRemaining()) {
+                bloomFilter.add(readRecord(buffer, path, true).getKey());
+            }
+        }
+        bloomFilter.write(path, indexOffset);
+        return bloomFilter;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getFirstNumber() {
+        return firstNumber;
+    }
+
+    public long getLastNumber() {
+        return lastNumber;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return размер данных файла (без индекса)
+     */
+    public long getDataSize() {
+        return indexOffset;
+    }
+
+    /**
+     * Ищет запись ключа. Если по фильтру Блума ключа в файле нет, файл не читается
+     *
+     * @return запись ключа, значение {@code null} - запись об удалении. {@code null} - если записи ключа в файле нет
+     */
+    Map.Entry<String, byte[]> find(String key) throws IOException {
+        if (bloomFilter != null && !bloomFilter.mightContain(key)) {
+            return null;
+        }
+        int block = floorBlock(key);
+        if (block < 0) {
+            return null;
+        }
+
+        ByteBuffer buffer = readBlock(block);
+        while (buffer.hasRemaining()) {
+            Map.Entry<String, byte[]> entry = readRecord(buffer, path, verifyChecksums);
+            int comparison = entry.getKey().compareTo(key);
+            if (comparison == 0) {
+                return entry;
+            }
+            if (comparison > 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Обходит записи файла по возрастанию ключей, начиная с {@code fromKey}. Блоки читаются по одному по мере обхода
+     *
+     * @param fromKey первый ключ (включительно)
+     */
+    Iterator<Map.Entry<String, byte[]>> iterator(String fromKey) {
+        return new BlockIterator(Math.max(floorBlock(fromKey), 0), fromKey);
+    }
+
+    /**
+     * @return номер блока, в котором может лежать ключ, или -1, если ключ меньше всех ключей файла
+     */
+    private int floorBlock(String key) {
+        int position = Arrays.binarySearch(blockKeys, key);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    private ByteBuffer readBlock(int block) throws IOException {
+        long end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : indexOffset;
+        return readAt(channel, blockOffsets[block], (int) (end - blockOffsets[block]), indexOffset);
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length, long limit) throws IOException {
+        if (length < 0 || position < 0 || position + length > limit) {
+            throw new EOFException("Can't read " + length + " bytes at " + position + ", file data ends at " + limit);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Читает запись из блока и, если нужно, сверяет ее контрольную сумму
+     */
+    private static Map.Entry<String, byte[]> readRecord(ByteBuffer buffer, Path path, boolean verifyChecksum) throws IOException {
+        int start = buffer.position();
+        byte[] key;
+        byte[] value = null;
+        int end;
+        int storedChecksum;
+        try {
+            key = new byte[buffer.getInt()];
+            buffer.get(key);
+            int valueSize = buffer.getInt();
+            if (valueSize != REMOVED_OBJECT_SIZE) {
+                value = new byte[valueSize];
+                buffer.get(value);
+            }
+            end = buffer.position();
+            storedChecksum = buffer.getInt();
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Record at block position " + start + " in " + path + " is corrupted", e);
+        }
+
+        if (verifyChecksum && SegmentFormat.checksum(ByteBuffer.wrap(buffer.array(), start, end - start)) != storedChecksum) {
+            throw new IOException("Checksum mismatch for record at block position " + start + " in " + path);
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(new String(key, StandardCharsets.UTF_8), value);
+    }
+
+    /**
+     * Закрывает файл. После закрытия файл нельзя читать
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Удаляет закрытый файл вместе с его фильтром Блума
+     */
+    void delete() throws IOException {
+        SegmentBloomFilter.delete(path);
+        Files.deleteIfExists(path);
+    }
+
+    private class BlockIterator implements Iterator<Map.Entry<String, byte[]>> {
+        private int nextBlock;
+        private ByteBuffer block;
+        private Map.Entry<String, byte[]> next;
+
+        private BlockIterator(int firstBlock, String fromKey) {
+            this.nextBlock = firstBlock;
+            advance();
+            while (next != null && next.getKey().compareTo(fromKey) < 0) {
+                advance();
+            }
+        }
+
+        private void advance() {
+            try {
+                while (block == null || !block.hasRemaining()) {
+                    if (nextBlock >= blockOffsets.length) {
+                        next = null;
+                        return;
+                    }
+                    block = readBlock(nextBlock++);
+                }
+                next = readRecord(block, path, verifyChecksums);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't read " + path, e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, byte[]> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, byte[]> current = next;
+            advance();
+            return current;
+        }
+    }
+}
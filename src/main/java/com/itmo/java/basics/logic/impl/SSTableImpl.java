@@ -0,0 +1,630 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.initialization.TableInitializationContext;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.StorageEngines;
+import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.TableSnapshot;
+import com.itmo.java.basics.logic.io.DatabaseInputStream;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.SegmentFormat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Таблица движка {@link SSTableStorageEngine}: записи копятся в отсортированной таблице в памяти (memtable)
+ * и сбрасываются в неизменяемые отсортированные файлы (см {@link SSTableFile}).
+ * <p>
+ * - каждая запись сначала дописывается в журнал {@link #WAL_FILE_NAME} (формат сегмента версии {@link SegmentFormat#CHECKSUM_VERSION}),
+ * при инициализации журнал проигрывается заново, оборванный хвост отбрасывается
+ * - когда в памяти набирается {@link DatabaseConfig#getMemtableBytes()} байт, memtable сбрасывается в новый файл, журнал начинается заново
+ * - чтение идет от новых данных к старым: memtable, затем файлы от нового к старому; в каждом файле - фильтр Блума,
+ * бинарный поиск по разреженному индексу и одно чтение блока
+ * - чтение диапазона сливает memtable и все файлы, оставляя самую новую версию ключа
+ * - в фоне (если включено слияние сегментов) несколько новых файлов сравнимого размера сливаются в один;
+ * записи об удалении выбрасываются, когда в слияние попадает самый старый файл
+ */
+public class SSTableImpl implements Table {
+    public static final String WAL_FILE_NAME = "memtable.wal";
+
+    /**
+     * Значение удаленного ключа в memtable. Сравнивается по ссылке, поэтому пустые значения ему не равны
+     */
+    private static final byte[] TOMBSTONE = new byte[0];
+    /**
+     * Примерный расход памяти на запись memtable сверх ключа и значения
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private static final Logger logger = Logger.getLogger(SSTableImpl.class.getName());
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sstable-merger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String tableName;
+    private final Path tablePath;
+    private final DatabaseConfig config;
+
+    private NavigableMap<String, byte[]> memtable = new TreeMap<>();
+    private long memtableBytes = 0;
+    /**
+     * Файлы таблицы от старого к новому
+     */
+    private final List<SSTableFile> files = new ArrayList<>();
+    private long nextFileNumber = 1;
+
+    private FileChannel walChannel;
+    private DatabaseOutputStream walStream;
+
+    /**
+     * Удерживается на время слияния, чтобы закрытие таблицы и начало снимка дождались его окончания
+     */
+    private final ReentrantLock mergeLock = new ReentrantLock();
+    private ScheduledFuture<?> scheduledMerge;
+    private volatile boolean stopped = false;
+    /**
+     * Сколько открытых снимков таблицы: пока они есть, файлы не сливаются
+     */
+    private final AtomicInteger mergePauses = new AtomicInteger();
+    private final AtomicLong mergeFailures = new AtomicLong();
+    private volatile Exception lastMergeFailure;
+
+    private SSTableImpl(String tableName, Path tablePath, DatabaseConfig config) {
+        this.tableName = tableName;
+        this.tablePath = tablePath;
+        this.config = config;
+    }
+
+    public static Table create(String tableName, Path pathToDatabaseRoot, DatabaseConfig config) throws DatabaseException {
+        if (tableName == null) {
+            throw new DatabaseException("tableName can't be null");
+        }
+        if (pathToDatabaseRoot == null) {
+            throw new DatabaseException("pathToDatabaseRoot can't be null");
+        }
+
+        File tableDir = new File(pathToDatabaseRoot.toAbsolutePath().toString(), tableName);
+        if (!tableDir.mkdir()) {
+            throw new DatabaseException("tableDir.mkdir returns false");
+        }
+        StorageEngines.writeTo(tableDir.toPath(), SSTableStorageEngine.NAME);
+
+        SSTableImpl table = new SSTableImpl(tableName, tableDir.toPath(), config);
+        try {
+            table.resetWal();
+        } catch (IOException e) {
+            throw new DatabaseException("Can't create write-ahead log of table " + tableName, e);
+        }
+        table.startMerger();
+        return CachingTable.create(table, tableDir.toPath(), config, config.isNegativeCacheEnabled());
+    }
+
+    /**
+     * Открывает файлы таблицы и проигрывает журнал. Удаляет недописанные файлы и файлы, которые уже покрыты
+     * результатом слияния (процесс упал до их удаления)
+     */
+    public static Table initializeFromContext(TableInitializationContext context, DatabaseConfig config) throws DatabaseException {
+        SSTableImpl table = new SSTableImpl(context.getTableName(), context.getTablePath(), config);
+        try {
+            table.openFiles();
+            table.replayWal();
+        } catch (IOException e) {
+            table.closeFiles();
+            throw new DatabaseException("Can't initialize table " + context.getTableName(), e);
+        }
+        table.startMerger();
+        return CachingTable.create(table, context.getTablePath(), config, config.isNegativeCacheEnabled());
+    }
+
+    private void openFiles() throws IOException, DatabaseException {
+        File[] listing = tablePath.toFile().listFiles();
+        if (listing == null) {
+            throw new DatabaseException("Can't list files of table " + tablePath);
+        }
+
+        List<Path> candidates = new ArrayList<>();
+        for (File file : listing) {
+            if (file.getName().endsWith(SSTableFile.TEMP_SUFFIX)) {
+                Files.delete(file.toPath());
+            } else if (SSTableFile.parseNumbers(file.getName()).isPresent()) {
+                candidates.add(file.toPath());
+            }
+        }
+
+        List<Path> covered = new ArrayList<>();
+        for (Path candidate : candidates) {
+            long[] numbers = SSTableFile.parseNumbers(candidate.getFileName().toString()).orElseThrow();
+            for (Path other : candidates) {
+                long[] otherNumbers = SSTableFile.parseNumbers(other.getFileName().toString()).orElseThrow();
+                if (other != candidate && otherNumbers[0] <= numbers[0] && numbers[1] <= otherNumbers[1]) {
+                    covered.add(candidate);
+                    break;
+                }
+            }
+        }
+        for (Path path : covered) {
+            SegmentBloomFilter.delete(path);
+            Files.delete(path);
+        }
+        candidates.removeAll(covered);
+        candidates.sort(Comparator.comparingLong(path -> SSTableFile.parseNumbers(path.getFileName().toString()).orElseThrow()[1]));
+
+        for (Path path : candidates) {
+            SSTableFile file = SSTableFile.open(path, config);
+            files.add(file);
+            nextFileNumber = Math.max(nextFileNumber, file.getLastNumber() + 1);
+        }
+
+        for (File file : listing) {
+            String fileName = file.getName();
+            if (fileName.endsWith(SegmentBloomFilter.BLOOM_SUFFIX)
+                    && !Files.exists(tablePath.resolve(fileName.substring(0, fileName.length() - SegmentBloomFilter.BLOOM_SUFFIX.length())))) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * Восстанавливает memtable по журналу. Журнал дописывается дальше с конца последней целой записи
+     */
+    private void replayWal() throws IOException, DatabaseException {
+        Path walPath = tablePath.resolve(WAL_FILE_NAME);
+        if (!Files.exists(walPath) || Files.size(walPath) < SegmentFormat.HEADER_SIZE) {
+            resetWal();
+            return;
+        }
+
+        long validSize = SegmentFormat.HEADER_SIZE;
+        try (DatabaseInputStream input = new DatabaseInputStream(new FileInputStream(walPath.toFile()))) {
+            if (input.readFormatVersion() != SegmentFormat.CHECKSUM_VERSION) {
+                throw new DatabaseException("Write-ahead log " + walPath + " has unknown format");
+            }
+            while (input.available() > 0) {
+                Optional<DatabaseRecord> record = input.readCheckedDbUnit();
+                if (record.isEmpty() || record.get().getKey().length == 0) {
+                    long tornBytes = Files.size(walPath) - validSize;
+                    long tornPosition = validSize;
+                    logger.warning(() -> "Write-ahead log " + walPath + " has a torn or corrupted record at position " + tornPosition
+                            + ", truncating " + tornBytes + " bytes");
+                    break;
+                }
+                String key = new String(record.get().getKey(), StandardCharsets.UTF_8);
+                putToMemtable(key, record.get() instanceof RemoveDatabaseRecord ? null : record.get().getValue());
+                validSize += record.get().size() + SegmentFormat.CHECKSUM_SIZE;
+            }
+        }
+
+        walChannel = FileChannel.open(walPath, StandardOpenOption.WRITE);
+        walChannel.truncate(validSize);
+        walChannel.position(validSize);
+        walStream = new DatabaseOutputStream(Channels.newOutputStream(walChannel));
+    }
+
+    /**
+     * Начинает пустой журнал
+     */
+    private void resetWal() throws IOException {
+        if (walChannel != null) {
+            walChannel.close();
+        }
+        walChannel = FileChannel.open(tablePath.resolve(WAL_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        walChannel.truncate(0);
+        walStream = new DatabaseOutputStream(Channels.newOutputStream(walChannel));
+        walStream.writeSegmentHeader();
+    }
+
+    private void startMerger() {
+        if (config.isCompactionEnabled()) {
+            long interval = config.getCompactionIntervalMillis();
+            scheduledMerge = scheduler.scheduleWithFixedDelay(this::mergeIfNeeded, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return tableName;
+    }
+
+    @Override
+    public synchronized void write(String objectKey, byte[] objectValue) throws DatabaseException {
+        if (objectKey.isEmpty()) {
+            throw new DatabaseException("objectKey can't be empty");
+        }
+        try {
+            append(objectKey, objectValue);
+        } catch (IOException e) {
+            throw new DatabaseException("Can't write in table, there is a problem with input/output. Key = " + objectKey, e);
+        }
+    }
+
+    /**
+     * Дописывает запись в журнал и в memtable. Если memtable переполнена, сбрасывает ее в файл
+     *
+     * @param objectValue значение или {@code null} для удаления ключа
+     */
+    private void append(String objectKey, byte[] objectValue) throws IOException {
+        byte[] key = objectKey.getBytes(StandardCharsets.UTF_8);
+        walStream.writeWithChecksum(objectValue == null ? new RemoveDatabaseRecord(key) : new SetDatabaseRecord(key, objectValue));
+        putToMemtable(objectKey, objectValue);
+        if (memtableBytes >= config.getMemtableBytes()) {
+            flush();
+        }
+    }
+
+    private void putToMemtable(String objectKey, byte[] objectValue) {
+        byte[] previous = memtable.put(objectKey, objectValue == null ? TOMBSTONE : objectValue);
+        if (previous == null) {
+            memtableBytes += objectKey.length() * 2L + ENTRY_OVERHEAD;
+        } else {
+            memtableBytes -= previous.length;
+        }
+        if (objectValue != null) {
+            memtableBytes += objectValue.length;
+        }
+    }
+
+    /**
+     * Сбрасывает memtable в новый файл и начинает журнал заново. Файл появляется раньше, чем очищается журнал,
+     * поэтому при падении между ними записи будут проиграны из журнала поверх файла с ними же
+     */
+    private void flush() throws IOException {
+        if (memtable.isEmpty()) {
+            return;
+        }
+
+        long number = nextFileNumber++;
+        Path path = tablePath.resolve(SSTableFile.createFileName(tableName, number, number));
+        SSTableFile.write(path, withNullTombstones(memtable.entrySet().iterator()), memtable.size(), config).ifPresent(files::add);
+        resetWal();
+        memtable = new TreeMap<>();
+        memtableBytes = 0;
+    }
+
+    @Override
+    public synchronized Optional<byte[]> read(String objectKey) throws DatabaseException {
+        byte[] value = memtable.get(objectKey);
+        if (value != null) {
+            return value == TOMBSTONE ? Optional.empty() : Optional.of(value);
+        }
+
+        try {
+            for (int i = files.size() - 1; i >= 0; i--) {
+                Map.Entry<String, byte[]> entry = files.get(i).find(objectKey);
+                if (entry != null) {
+                    return Optional.ofNullable(entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new DatabaseException("There is problem with input/output. Key = " + objectKey, e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Запись об удалении пишется, только если ключ есть в таблице
+     */
+    @Override
+    public synchronized void delete(String objectKey) throws DatabaseException {
+        if (read(objectKey).isEmpty()) {
+            return;
+        }
+        try {
+            append(objectKey, null);
+        } catch (IOException e) {
+            throw new DatabaseException("There is problem with input/output. Key = " + objectKey, e);
+        }
+    }
+
+    /**
+     * Сливает memtable и файлы, начиная с {@code fromKey}. Файлы читаются по блокам по мере обхода
+     */
+    @Override
+    public synchronized List<Map.Entry<String, byte[]>> scan(String fromKey, String toKey, int limit) throws DatabaseException {
+        List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>(files.size() + 1);
+        sources.add(withNullTombstones(memtable.tailMap(fromKey, true).entrySet().iterator()));
+        for (int i = files.size() - 1; i >= 0; i--) {
+            sources.add(files.get(i).iterator(fromKey));
+        }
+
+        List<Map.Entry<String, byte[]>> result = new ArrayList<>();
+        try {
+            Iterator<Map.Entry<String, byte[]>> merged = new MergingIterator(sources, true);
+            while (result.size() < limit && merged.hasNext()) {
+                Map.Entry<String, byte[]> entry = merged.next();
+                if (toKey != null && entry.getKey().compareTo(toKey) >= 0) {
+                    break;
+                }
+                result.add(entry);
+            }
+        } catch (IllegalStateException e) {
+            throw new DatabaseException("There is problem with input/output while scanning table " + tableName, e);
+        }
+        return result;
+    }
+
+    /**
+     * Выбирает файлы для слияния: самый новый файл и предшествующие ему, пока очередной более старый файл
+     * не больше всех уже выбранных вместе. Сливаются, только если таких файлов набралось
+     * {@link DatabaseConfig#getCompactionMinSegments()}. Так каждый файл переписывается логарифмическое число раз
+     */
+    private synchronized List<SSTableFile> pickFilesToMerge() {
+        if (files.isEmpty()) {
+            return List.of();
+        }
+        int first = files.size() - 1;
+        long runBytes = files.get(first).getDataSize();
+        while (first > 0 && files.get(first - 1).getDataSize() <= runBytes) {
+            first--;
+            runBytes += files.get(first).getDataSize();
+        }
+        if (files.size() - first < Math.max(2, config.getCompactionMinSegments())) {
+            return List.of();
+        }
+        return new ArrayList<>(files.subList(first, files.size()));
+    }
+
+    void mergeIfNeeded() {
+        mergeLock.lock();
+        try {
+            if (!stopped && mergePauses.get() == 0) {
+                List<SSTableFile> run = pickFilesToMerge();
+                if (!run.isEmpty()) {
+                    merge(run);
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            mergeFailures.incrementAndGet();
+            lastMergeFailure = e;
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    /**
+     * @return сколько фоновых слияний файлов завершились ошибкой. Следующее слияние пробует снова
+     */
+    public long getMergeFailures() {
+        return mergeFailures.get();
+    }
+
+    /**
+     * @return ошибка последнего неудачного слияния или {@code null}, если ошибок не было
+     */
+    public Exception getLastMergeFailure() {
+        return lastMergeFailure;
+    }
+
+    /**
+     * Сливает подряд идущие файлы в один. Файлы неизменяемы, поэтому слияние идет без блокировки таблицы,
+     * таблица блокируется только на время подмены файлов. Новые файлы за это время могут только добавиться в конец
+     */
+    private void merge(List<SSTableFile> run) throws IOException {
+        boolean dropTombstones;
+        synchronized (this) {
+            dropTombstones = files.get(0) == run.get(0);
+        }
+
+        List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>(run.size());
+        long expectedKeys = 0;
+        for (int i = run.size() - 1; i >= 0; i--) {
+            sources.add(run.get(i).iterator(""));
+            expectedKeys += run.get(i).getRecordCount();
+        }
+        Path path = tablePath.resolve(SSTableFile.createFileName(tableName, run.get(0).getFirstNumber(), run.get(run.size() - 1).getLastNumber()));
+        Optional<SSTableFile> merged = SSTableFile.write(path, new MergingIterator(sources, dropTombstones),
+                (int) Math.min(expectedKeys, Integer.MAX_VALUE), config);
+
+        synchronized (this) {
+            int index = files.indexOf(run.get(0));
+            files.subList(index, index + run.size()).clear();
+            merged.ifPresent(file -> files.add(index, file));
+            for (SSTableFile file : run) {
+                file.close();
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Слияние файлов приостанавливается, пока снимок не закрыт, чтобы файлы снимка не удалили
+     */
+    @Override
+    public TableSnapshot prepareSnapshot() {
+        mergePauses.incrementAndGet();
+        mergeLock.lock();
+        mergeLock.unlock();
+        return new FilesSnapshot();
+    }
+
+    /**
+     * Под блокировкой таблицы memtable сбрасывается в файл, после чего все записи таблицы лежат в неизменяемых файлах.
+     * Они связываются со снимком без блокировки. Журнал в снимок не попадает: при запуске из снимка он начнется заново
+     */
+    private final class FilesSnapshot implements TableSnapshot {
+        private List<SSTableFile> snapshotFiles;
+        private boolean closed = false;
+
+        @Override
+        public void seal(WhileSealed whileSealed) throws DatabaseException {
+            synchronized (SSTableImpl.this) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new DatabaseException("Can't flush memtable of table " + tableName + " for snapshot", e);
+                }
+                snapshotFiles = new ArrayList<>(files);
+                whileSealed.run();
+            }
+        }
+
+        @Override
+        public void writeTo(Path snapshotTablePath) throws DatabaseException {
+            if (snapshotFiles == null) {
+                throw new DatabaseException("Snapshot of table " + tableName + " is not sealed");
+            }
+            try {
+                Files.createDirectories(snapshotTablePath);
+                for (SSTableFile file : snapshotFiles) {
+                    Path snapshotFilePath = snapshotTablePath.resolve(file.getPath().getFileName());
+                    SnapshotFiles.link(file.getPath(), snapshotFilePath);
+                    SnapshotFiles.linkIfExists(SegmentBloomFilter.bloomPath(file.getPath()), SegmentBloomFilter.bloomPath(snapshotFilePath));
+                }
+                SnapshotFiles.copyMetadata(tablePath, snapshotTablePath);
+            } catch (IOException e) {
+                throw new DatabaseException("Can't write snapshot of table " + tableName + " to " + snapshotTablePath, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                mergePauses.decrementAndGet();
+            }
+            closed = true;
+        }
+    }
+
+    @Override
+    public void close() throws DatabaseException {
+        stopped = true;
+        if (scheduledMerge != null) {
+            scheduledMerge.cancel(false);
+        }
+        mergeLock.lock();
+        mergeLock.unlock();
+
+        synchronized (this) {
+            try {
+                if (walChannel != null) {
+                    walChannel.close();
+                }
+            } catch (IOException e) {
+                throw new DatabaseException("Can't close write-ahead log of table " + tableName, e);
+            }
+            closeFiles();
+        }
+    }
+
+    private synchronized void closeFiles() throws DatabaseException {
+        for (SSTableFile file : files) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new DatabaseException("Can't close file " + file.getPath() + " of table " + tableName, e);
+            }
+        }
+    }
+
+    /**
+     * Заменяет значение удаленного ключа из memtable на {@code null}, как в файлах
+     */
+    private static Iterator<Map.Entry<String, byte[]>> withNullTombstones(Iterator<Map.Entry<String, byte[]>> entries) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                Map.Entry<String, byte[]> entry = entries.next();
+                return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue() == TOMBSTONE ? null : entry.getValue());
+            }
+        };
+    }
+
+    /**
+     * Слияние отсортированных по ключу источников. Для каждого ключа остается запись из самого нового источника
+     */
+    private static class MergingIterator implements Iterator<Map.Entry<String, byte[]>> {
+        /**
+         * Текущие записи источников: запись и номер источника. Меньший номер - более новый источник
+         */
+        private final PriorityQueue<Map.Entry<Map.Entry<String, byte[]>, Integer>> heads = new PriorityQueue<>(
+                Comparator.comparing((Map.Entry<Map.Entry<String, byte[]>, Integer> head) -> head.getKey().getKey())
+                        .thenComparing(Map.Entry::getValue));
+        private final List<Iterator<Map.Entry<String, byte[]>>> sources;
+        private final boolean skipRemoved;
+        private Map.Entry<String, byte[]> next;
+
+        /**
+         * @param sources     источники от нового к старому
+         * @param skipRemoved пропускать ли записи об удалении
+         */
+        private MergingIterator(List<Iterator<Map.Entry<String, byte[]>>> sources, boolean skipRemoved) {
+            this.sources = sources;
+            this.skipRemoved = skipRemoved;
+            for (int i = 0; i < sources.size(); i++) {
+                pull(i);
+            }
+            advance();
+        }
+
+        private void pull(int source) {
+            if (sources.get(source).hasNext()) {
+                heads.add(new AbstractMap.SimpleImmutableEntry<>(sources.get(source).next(), source));
+            }
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && !heads.isEmpty()) {
+                Map.Entry<Map.Entry<String, byte[]>, Integer> newest = heads.poll();
+                pull(newest.getValue());
+                while (!heads.isEmpty() && heads.peek().getKey().getKey().equals(newest.getKey().getKey())) {
+                    pull(heads.poll().getValue());
+                }
+                if (!skipRemoved || newest.getKey().getValue() != null) {
+                    next = newest.getKey();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, byte[]> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, byte[]> current = next;
+            advance();
+            return current;
+        }
+    }
+}
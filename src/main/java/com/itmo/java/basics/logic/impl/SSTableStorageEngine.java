@@ -0,0 +1,33 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.initialization.InitializationContext;
+import com.itmo.java.basics.initialization.impl.SegmentInitializer;
+import com.itmo.java.basics.logic.StorageEngine;
+import com.itmo.java.basics.logic.Table;
+
+import java.nio.file.Path;
+
+/**
+ * Движок отсортированных неизменяемых файлов с разреженным индексом (см {@link SSTableImpl}):
+ * индекс в памяти ограничен, поддерживается чтение диапазонов ключей
+ */
+public class SSTableStorageEngine implements StorageEngine {
+    public static final String NAME = "sstable";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Table createTable(String tableName, Path databasePath, DatabaseConfig config) throws DatabaseException {
+        return SSTableImpl.create(tableName, databasePath, config);
+    }
+
+    @Override
+    public Table initializeTable(InitializationContext context, SegmentInitializer segmentInitializer) throws DatabaseException {
+        return SSTableImpl.initializeFromContext(context.currentTableContext(), context.executionEnvironment().getDatabaseConfig());
+    }
+}
@@ -0,0 +1,218 @@
+package com.itmo.java.basics.logic.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Фильтр Блума по ключам неизменяемого файла: отвечает, что ключа в файле точно нет или что он может там быть.
+ * Нужен там, где ключ ищется в нескольких файлах по очереди, - в файлах {@link SSTableFile}. Хеш-движку он не нужен:
+ * индекс таблицы сразу указывает сегмент ключа. Строится вместе с файлом и хранится рядом с ним.
+ * Позиции битов вычисляются двойным хешированием по 64-битному хешу UTF-8 байт ключа.
+ * <p>
+ * Формат файла: magic | размер данных сегмента | количество хешей | количество слов | слова | CRC32
+ */
+public class SegmentBloomFilter {
+    public static final String BLOOM_SUFFIX = ".bloom";
+
+    private static final int MAGIC = 0x4B564246;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final double LN2 = Math.log(2);
+    /**
+     * Не больше 2^31 слов по 64 бита
+     */
+    private static final long MAX_BITS = (long) Integer.MAX_VALUE * Long.SIZE;
+
+    /**
+     * Сколько раз фильтры всех сегментов процесса ответили, что ключ может быть в сегменте
+     */
+    private static final AtomicLong hits = new AtomicLong();
+    /**
+     * Сколько раз фильтры всех сегментов процесса ответили, что ключа в сегменте нет, и сегмент не читался
+     */
+    private static final AtomicLong misses = new AtomicLong();
+
+    private final long[] words;
+    private final int hashCount;
+
+    private SegmentBloomFilter(long[] words, int hashCount) {
+        this.words = words;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Создает пустой фильтр, рассчитанный на заданное количество ключей
+     *
+     * @param expectedKeys       сколько ключей будет добавлено
+     * @param falsePositiveRate  допустимая доля ложноположительных ответов, от 0 до 1
+     */
+    public static SegmentBloomFilter create(int expectedKeys, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1), got " + falsePositiveRate);
+        }
+        long keys = Math.max(expectedKeys, 1);
+        long bits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (LN2 * LN2));
+        bits = Math.min(Math.max(bits, Long.SIZE), MAX_BITS);
+        int hashCount = (int) Math.max(1, Math.round((double) bits / keys * LN2));
+        return new SegmentBloomFilter(new long[(int) ((bits + Long.SIZE - 1) / Long.SIZE)], hashCount);
+    }
+
+    public void add(String key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        long bitCount = (long) words.length * Long.SIZE;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((first + (long) i * second) & Long.MAX_VALUE) % bitCount;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Проверяет ключ и учитывает ответ в счетчиках попаданий и промахов
+     *
+     * @return {@code false} - если ключа в сегменте точно нет
+     */
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        long bitCount = (long) words.length * Long.SIZE;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((first + (long) i * second) & Long.MAX_VALUE) % bitCount;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                misses.incrementAndGet();
+                return false;
+            }
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return размер битового массива фильтра в байтах
+     */
+    public long getSizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * @return сколько раз фильтры ответили, что ключ может быть в сегменте
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return сколько раз фильтры ответили, что ключа в сегменте нет
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * FNV-1a по UTF-8 байтам ключа с финальным перемешиванием из MurmurHash3
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public static Path bloomPath(Path segmentPath) {
+        return segmentPath.resolveSibling(segmentPath.getFileName() + BLOOM_SUFFIX);
+    }
+
+    /**
+     * Записывает фильтр во временный файл и атомарно переименовывает его,
+     * чтобы при падении не остался недописанный файл
+     *
+     * @param dataSize размер данных сегмента, к которому относится фильтр. У сжатого сегмента - размер несжатых данных
+     */
+    public void write(Path segmentPath, long dataSize) throws IOException {
+        Path bloomPath = bloomPath(segmentPath);
+        Path tempPath = bloomPath.resolveSibling(bloomPath.getFileName() + TEMP_SUFFIX);
+
+        CRC32 checksum = new CRC32();
+        try (DataOutputStream output = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempPath.toFile())), checksum))) {
+            output.writeInt(MAGIC);
+            output.writeLong(dataSize);
+            output.writeInt(hashCount);
+            output.writeInt(words.length);
+            for (long word : words) {
+                output.writeLong(word);
+            }
+            output.flush();
+            output.writeLong(checksum.getValue());
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+
+        Files.move(tempPath, bloomPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Читает фильтр сегмента. Сжатие не меняет ключей и размера несжатых данных, поэтому фильтр сжатого сегмента остается верным
+     *
+     * @param dataSize размер данных сегмента
+     * @return фильтр. {@link Optional#empty()} - если файла нет, он поврежден или относится к другому содержимому сегмента
+     */
+    public static Optional<SegmentBloomFilter> read(Path segmentPath, long dataSize) {
+        Path bloomPath = bloomPath(segmentPath);
+        if (!Files.exists(bloomPath)) {
+            return Optional.empty();
+        }
+
+        CRC32 checksum = new CRC32();
+        try (DataInputStream input = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(bloomPath.toFile())), checksum))) {
+            if (input.readInt() != MAGIC || input.readLong() != dataSize) {
+                return Optional.empty();
+            }
+            int hashCount = input.readInt();
+            int wordCount = input.readInt();
+            if (hashCount <= 0 || wordCount <= 0 || (long) wordCount * Long.BYTES > Files.size(bloomPath)) {
+                return Optional.empty();
+            }
+            long[] words = new long[wordCount];
+            for (int i = 0; i < wordCount; i++) {
+                words[i] = input.readLong();
+            }
+
+            long expectedChecksum = checksum.getValue();
+            if (input.readLong() != expectedChecksum || input.read() != -1) {
+                return Optional.empty();
+            }
+            return Optional.of(new SegmentBloomFilter(words, hashCount));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static void delete(Path segmentPath) throws IOException {
+        Files.deleteIfExists(bloomPath(segmentPath));
+    }
+}
@@ -0,0 +1,428 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.KeyDirEntry;
+import com.itmo.java.basics.index.impl.SegmentIndex;
+import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.initialization.impl.SegmentInitializationContextImpl;
+import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Фоновое слияние read-only сегментов таблицы.
+ * <p>
+ * Если включено сжатие, после слияния read-only сегменты, которые еще не сжаты, переписываются в сжатый формат.
+ * Слияние и сжатие идут в одном потоке, поэтому не мешают друг другу.
+ * <p>
+ * За один запуск сливается ограниченный набор read-only сегментов, идущих подряд (см {@link #selectMergeSet(List)}):
+ * они переписываются в новые, в которых остается только актуальная (по {@link com.itmo.java.basics.index.impl.TableIndex})
+ * версия каждого ключа, после чего сегменты в таблице подменяются, а старые файлы удаляются вместе с их подсказками.
+ * Подмена сначала записывается в манифест таблицы (см {@link SegmentManifest}), и новые сегменты встают в нем на место заменяемых:
+ * если процесс упадет до записи, при инициализации таблица останется со старыми сегментами, если после - с новыми,
+ * а лишние файлы будут удалены.
+ * <p>
+ * Удаленные и истекшие ключи выбрасываются, только если слияние начинается с самого старого сегмента таблицы:
+ * тогда вместе с ним пропадают и все старые версии ключа. Иначе более старая версия могла бы ожить при инициализации,
+ * поэтому для такого ключа переписывается запись об удалении. Ключи со сроком, который еще не наступил,
+ * переписываются вместе со сроком
+ */
+public class SegmentCompactor implements Runnable {
+    /**
+     * Суффикс недописанных файлов слияния. Такие файлы удаляются при инициализации таблицы
+     */
+    public static final String TEMP_SUFFIX = ".compacting";
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final TableImpl table;
+    private final String tableName;
+    private final Path tablePath;
+    private final long segmentSize;
+    private final DatabaseConfig config;
+
+    /**
+     * Удерживается на время слияния, чтобы остановка и приостановка дождались его окончания
+     */
+    private final ReentrantLock runLock = new ReentrantLock();
+    private ScheduledFuture<?> scheduledRun;
+    private volatile boolean stopped = false;
+    /**
+     * Сколько раз слияние приостановлено и еще не возобновлено
+     */
+    private final AtomicInteger pauses = new AtomicInteger();
+
+    private final AtomicLong bytesReclaimed = new AtomicLong();
+    private final AtomicLong compactionsCount = new AtomicLong();
+    private final AtomicLong segmentsCompacted = new AtomicLong();
+    private final AtomicLong segmentsCompressed = new AtomicLong();
+    private final AtomicLong failuresCount = new AtomicLong();
+    private volatile Exception lastFailure;
+
+    SegmentCompactor(TableImpl table, String tableName, Path tablePath, long segmentSize, DatabaseConfig config) {
+        this.table = table;
+        this.tableName = tableName;
+        this.tablePath = tablePath;
+        this.segmentSize = segmentSize;
+        this.config = config;
+    }
+
+    void start() {
+        long interval = config.getCompactionIntervalMillis();
+        scheduledRun = scheduler.scheduleWithFixedDelay(this, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Отменяет следующие запуски и дожидается окончания текущего слияния
+     */
+    void stop() {
+        stopped = true;
+        if (scheduledRun != null) {
+            scheduledRun.cancel(false);
+        }
+        runLock.lock();
+        runLock.unlock();
+    }
+
+    /**
+     * Приостанавливает слияние и сжатие этой таблицы: текущий запуск прерывается при первой возможности
+     * и его окончание дожидается, а следующие запуски ничего не делают до {@link #resume()}.
+     * Пока слияние приостановлено, файлы read-only сегментов не заменяются и не удаляются.
+     * Поток слияния при этом не занят, и слияние других таблиц продолжается
+     */
+    void pause() {
+        pauses.incrementAndGet();
+        runLock.lock();
+        runLock.unlock();
+    }
+
+    void resume() {
+        pauses.decrementAndGet();
+    }
+
+    /**
+     * @return {@code true} - если слияние остановлено или приостановлено и текущий запуск нужно прервать
+     */
+    private boolean isInterrupted() {
+        return stopped || pauses.get() > 0;
+    }
+
+    @Override
+    public void run() {
+        runLock.lock();
+        try {
+            if (!isInterrupted() && config.isCompactionEnabled()) {
+                compactIfNeeded();
+            }
+            if (!isInterrupted() && config.isCompressionEnabled()) {
+                compressSealedSegments();
+            }
+        } catch (DatabaseException | IOException e) {
+            failuresCount.incrementAndGet();
+            lastFailure = e;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * Сливает очередной набор read-only сегментов, если в них есть что освободить
+     *
+     * @return {@code true} - если слияние было выполнено
+     */
+    boolean compactIfNeeded() throws DatabaseException, IOException {
+        List<Segment> sealedSegments = table.getSealedSegments();
+        if (sealedSegments.size() < config.getCompactionMinSegments()) {
+            return false;
+        }
+
+        List<Segment> mergeSet = selectMergeSet(sealedSegments);
+        if (mergeSet.isEmpty()) {
+            return false;
+        }
+        compact(mergeSet, mergeSet.get(0) == sealedSegments.get(0));
+        return true;
+    }
+
+    /**
+     * Выбирает до {@link DatabaseConfig#getCompactionMaxSegments()} сегментов подряд, начиная с самого старого сегмента,
+     * который стоит переписать: в нем не меньше {@link DatabaseConfig#getCompactionMinGarbageRatio()} устаревших записей
+     * или он заполнен меньше чем наполовину. Сегменты берутся подряд, чтобы результат слияния встал на их место,
+     * не нарушая порядок версий ключей. Набор сливается, только если это освобождает ту же долю места
+     * или уменьшает число сегментов, иначе проверяется набор со следующего сегмента
+     *
+     * @param sealedSegments read-only сегменты таблицы в порядке создания
+     * @return сегменты для слияния в порядке создания или пустой список, если сливать нечего
+     */
+    private List<Segment> selectMergeSet(List<Segment> sealedSegments) {
+        Set<Segment> sourceSegments = Collections.newSetFromMap(new IdentityHashMap<>());
+        sourceSegments.addAll(sealedSegments);
+        Map<Segment, Long> liveBytes = table.getLiveBytes(sourceSegments);
+        double minGarbageRatio = config.getCompactionMinGarbageRatio();
+        int maxSegments = Math.max(config.getCompactionMaxSegments(), 1);
+
+        for (int from = 0; from < sealedSegments.size(); from++) {
+            Segment first = sealedSegments.get(from);
+            long firstLiveBytes = liveBytes.getOrDefault(first, 0L);
+            if (first.getSize() - firstLiveBytes < minGarbageRatio * first.getSize() && first.getSize() >= segmentSize / 2) {
+                continue;
+            }
+
+            int to = Math.min(from + maxSegments, sealedSegments.size());
+            long size = 0;
+            long live = 0;
+            for (Segment segment : sealedSegments.subList(from, to)) {
+                size += segment.getSize();
+                live += liveBytes.getOrDefault(segment, 0L);
+            }
+            long outputSegmentsCount = (live + segmentSize - 1) / segmentSize;
+            if (size - live >= minGarbageRatio * size || outputSegmentsCount < to - from) {
+                return new ArrayList<>(sealedSegments.subList(from, to));
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Сжимает read-only сегменты, которые еще не сжаты (см {@link Segment#compress()})
+     *
+     * @return сколько сегментов было сжато
+     */
+    int compressSealedSegments() throws IOException {
+        int compressed = 0;
+        for (Segment segment : table.getSealedSegments()) {
+            if (isInterrupted()) {
+                break;
+            }
+            long sizeBefore = Files.size(tablePath.resolve(segment.getName()));
+            if (segment.compress()) {
+                bytesReclaimed.addAndGet(sizeBefore - Files.size(tablePath.resolve(segment.getName())));
+                segmentsCompressed.incrementAndGet();
+                compressed++;
+            }
+        }
+        return compressed;
+    }
+
+    /**
+     * @param sealedSegments сливаемые сегменты, идущие подряд
+     * @param dropRemoved    можно ли выбросить удаленные и истекшие ключи: старше сливаемых сегментов в таблице нет
+     */
+    private void compact(List<Segment> sealedSegments, boolean dropRemoved) throws DatabaseException, IOException {
+        Set<Segment> sourceSegments = Collections.newSetFromMap(new IdentityHashMap<>());
+        sourceSegments.addAll(sealedSegments);
+        Map<String, KeyDirEntry> keysToMove = table.getKeysLocatedIn(sourceSegments);
+        Map<String, Long> expirationTimes = table.getExpirationTimes();
+        long now = System.currentTimeMillis();
+
+        List<Segment> compactedSegments = new ArrayList<>();
+        Map<String, KeyDirEntry> newLocations = new HashMap<>();
+        SegmentIndex currentIndex = new SegmentIndex();
+        String currentName = null;
+        Path tempPath = null;
+        DatabaseOutputStream outputStream = null;
+        long currentSize = 0;
+
+        long startNanos = System.nanoTime();
+        long bytesWritten = 0;
+        boolean completed = false;
+
+        try {
+            for (Map.Entry<String, KeyDirEntry> entry : keysToMove.entrySet()) {
+                if (isInterrupted()) {
+                    return;
+                }
+
+                Long expirationTime = expirationTimes.get(entry.getKey());
+                WritableDatabaseRecord record;
+                if (entry.getValue().isRemoved() || (expirationTime != null && expirationTime <= now)) {
+                    if (dropRemoved) {
+                        continue;
+                    }
+                    record = new RemoveDatabaseRecord(entry.getKey().getBytes());
+                } else {
+                    Optional<byte[]> value = entry.getValue().getSegment().read(entry.getKey(), entry.getValue());
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    record = expirationTime == null
+                            ? new SetDatabaseRecord(entry.getKey().getBytes(), value.get())
+                            : new ExpiringDatabaseRecord(entry.getKey().getBytes(), value.get(), expirationTime);
+                }
+
+                if (outputStream == null) {
+                    currentName = table.nextSegmentName();
+                    tempPath = tablePath.resolve(currentName + TEMP_SUFFIX);
+                    outputStream = new DatabaseOutputStream(new BufferedOutputStream(new FileOutputStream(tempPath.toFile())));
+                    currentSize = outputStream.writeSegmentHeader();
+                }
+
+                int recordSize = outputStream.writeWithChecksum(record);
+                currentIndex.onIndexedEntityUpdated(entry.getKey(), new SegmentOffsetInfoImpl(currentSize, recordSize,
+                        !record.isValuePresented(), record.getExpirationTime()));
+                currentSize += recordSize;
+                bytesWritten += recordSize;
+
+                if (currentSize >= segmentSize) {
+                    Segment segment = finishSegment(outputStream, tempPath, currentName, currentIndex, currentSize);
+                    compactedSegments.add(segment);
+                    addLocations(newLocations, segment, currentIndex);
+                    outputStream = null;
+                    currentIndex = new SegmentIndex();
+                }
+
+                throttle(bytesWritten, startNanos);
+            }
+
+            if (outputStream != null) {
+                Segment segment = finishSegment(outputStream, tempPath, currentName, currentIndex, currentSize);
+                compactedSegments.add(segment);
+                addLocations(newLocations, segment, currentIndex);
+                outputStream = null;
+            }
+            table.replaceSegments(sealedSegments, compactedSegments, keysToMove, newLocations);
+            completed = true;
+        } finally {
+            if (outputStream != null) {
+                outputStream.close();
+                Files.deleteIfExists(tempPath);
+            }
+            if (!completed) {
+                for (Segment segment : compactedSegments) {
+                    segment.close();
+                    SegmentHintFile.delete(tablePath.resolve(segment.getName()));
+                    Files.deleteIfExists(tablePath.resolve(segment.getName()));
+                }
+            }
+        }
+
+        long oldSize = 0;
+        for (Segment segment : sealedSegments) {
+            oldSize += Files.size(tablePath.resolve(segment.getName()));
+            segment.close();
+            SegmentHintFile.delete(tablePath.resolve(segment.getName()));
+            Files.deleteIfExists(tablePath.resolve(segment.getName()));
+        }
+        long newSize = 0;
+        for (Segment segment : compactedSegments) {
+            newSize += Files.size(tablePath.resolve(segment.getName()));
+        }
+
+        bytesReclaimed.addAndGet(oldSize - newSize);
+        segmentsCompacted.addAndGet(sealedSegments.size());
+        compactionsCount.incrementAndGet();
+    }
+
+    /**
+     * Дописывает файл слияния, переименовывает его в сегмент и открывает его как read-only сегмент
+     */
+    private Segment finishSegment(DatabaseOutputStream outputStream, Path tempPath, String segmentName,
+                                  SegmentIndex index, long size) throws IOException, DatabaseException {
+        outputStream.flush();
+        outputStream.close();
+
+        Path segmentPath = tablePath.resolve(segmentName);
+        Files.move(tempPath, segmentPath, StandardCopyOption.ATOMIC_MOVE);
+
+        Segment segment = SegmentImpl.initializeFromContext(
+                new SegmentInitializationContextImpl(segmentName, segmentPath, size, index), segmentSize, config);
+        segment.seal();
+        return segment;
+    }
+
+    /**
+     * Добавляет положения ключей нового сегмента для индекса таблицы
+     */
+    private static void addLocations(Map<String, KeyDirEntry> newLocations, Segment segment, SegmentIndex index) {
+        index.forEach((key, offsetInfo) -> newLocations.put(key, new KeyDirEntry(segment, offsetInfo)));
+    }
+
+    /**
+     * Притормаживает слияние, если оно пишет быстрее, чем разрешено настройками
+     */
+    private void throttle(long bytesWritten, long startNanos) {
+        long maxBytesPerSecond = config.getCompactionMaxBytesPerSecond();
+        if (maxBytesPerSecond <= 0) {
+            return;
+        }
+
+        long expectedNanos = bytesWritten * TimeUnit.SECONDS.toNanos(1) / maxBytesPerSecond;
+        long aheadNanos = expectedNanos - (System.nanoTime() - startNanos);
+        if (aheadNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return сколько байт на диске освобождено слияниями
+     */
+    public long getBytesReclaimed() {
+        return bytesReclaimed.get();
+    }
+
+    /**
+     * @return сколько слияний было выполнено
+     */
+    public long getCompactionsCount() {
+        return compactionsCount.get();
+    }
+
+    /**
+     * @return сколько сегментов было заменено слияниями
+     */
+    public long getSegmentsCompacted() {
+        return segmentsCompacted.get();
+    }
+
+    /**
+     * @return сколько сегментов было сжато
+     */
+    public long getSegmentsCompressed() {
+        return segmentsCompressed.get();
+    }
+
+    /**
+     * @return сколько запусков слияния завершились ошибкой. Следующий запуск пробует снова
+     */
+    public long getFailuresCount() {
+        return failuresCount.get();
+    }
+
+    /**
+     * @return ошибка последнего неудачного запуска или {@code null}, если ошибок не было
+     */
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+}
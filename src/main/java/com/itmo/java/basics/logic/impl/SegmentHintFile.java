@@ -0,0 +1,203 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.logic.DatabaseRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Файл-подсказка рядом с read-only сегментом: для каждого ключа сегмента хранит смещение его последней записи,
+ * размер записи, признак удаления и момент истечения. При инициализации читается вместо самого сегмента, чтобы не читать значения.
+ * <p>
+ * Формат: magic | размер данных сегмента | размер файла сегмента | количество записей |
+ * записи (размер ключа, ключ, смещение, размер, удален, момент истечения) | CRC32.
+ * Подсказки, записанные до появления истекающих записей (с {@link #MAGIC_WITHOUT_EXPIRATION}), читаются без момента истечения:
+ * в таких сегментах истекающих записей нет
+ */
+public class SegmentHintFile {
+    public static final String HINT_SUFFIX = ".hint";
+
+    private static final int MAGIC = 0x4B565345;
+    private static final int MAGIC_WITHOUT_EXPIRATION = 0x4B565349;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private SegmentHintFile() {
+    }
+
+    /**
+     * Запись файла-подсказки
+     */
+    public static class Entry {
+        private final String key;
+        private final long offset;
+        private final int recordSize;
+        private final boolean removed;
+        private final long expirationTime;
+
+        public Entry(String key, long offset, int recordSize, boolean removed, long expirationTime) {
+            this.key = key;
+            this.offset = offset;
+            this.recordSize = recordSize;
+            this.removed = removed;
+            this.expirationTime = expirationTime;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getRecordSize() {
+            return recordSize;
+        }
+
+        public boolean isRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return момент истечения записи, {@link DatabaseRecord#NO_EXPIRATION} - если запись не истекает
+         */
+        public long getExpirationTime() {
+            return expirationTime;
+        }
+    }
+
+    /**
+     * Содержимое файла-подсказки
+     */
+    public static class Contents {
+        private final long dataSize;
+        private final List<Entry> entries;
+
+        private Contents(long dataSize, List<Entry> entries) {
+            this.dataSize = dataSize;
+            this.entries = entries;
+        }
+
+        /**
+         * @return размер данных сегмента, к которому относится подсказка
+         */
+        public long getDataSize() {
+            return dataSize;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+    }
+
+    public static Path hintPath(Path segmentPath) {
+        return segmentPath.resolveSibling(segmentPath.getFileName() + HINT_SUFFIX);
+    }
+
+    /**
+     * Записывает файл-подсказку во временный файл и атомарно переименовывает его,
+     * чтобы при падении не остался недописанный файл
+     *
+     * @param dataSize размер данных сегмента, к которому относится подсказка. У сжатого сегмента - размер несжатых данных
+     */
+    public static void write(Path segmentPath, long dataSize, List<Entry> entries) throws IOException {
+        Path hintPath = hintPath(segmentPath);
+        Path tempPath = hintPath.resolveSibling(hintPath.getFileName() + TEMP_SUFFIX);
+
+        CRC32 checksum = new CRC32();
+        try (DataOutputStream output = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempPath.toFile())), checksum))) {
+            output.writeInt(MAGIC);
+            output.writeLong(dataSize);
+            output.writeLong(Files.size(segmentPath));
+            output.writeInt(entries.size());
+            for (Entry entry : entries) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                output.writeInt(key.length);
+                output.write(key);
+                output.writeLong(entry.getOffset());
+                output.writeInt(entry.getRecordSize());
+                output.writeBoolean(entry.isRemoved());
+                output.writeLong(entry.getExpirationTime());
+            }
+            output.flush();
+            output.writeLong(checksum.getValue());
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+
+        Files.move(tempPath, hintPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Читает файл-подсказку сегмента
+     *
+     * @return содержимое подсказки. {@link Optional#empty()} - если подсказки нет, она повреждена
+     * или относится к другому содержимому сегмента (размер файла не совпадает с записанным в подсказке)
+     */
+    public static Optional<Contents> read(Path segmentPath) {
+        Path hintPath = hintPath(segmentPath);
+        if (!Files.exists(hintPath)) {
+            return Optional.empty();
+        }
+
+        CRC32 checksum = new CRC32();
+        try (DataInputStream input = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(hintPath.toFile())), checksum))) {
+            int magic = input.readInt();
+            if (magic != MAGIC && magic != MAGIC_WITHOUT_EXPIRATION) {
+                return Optional.empty();
+            }
+            long dataSize = input.readLong();
+            if (input.readLong() != Files.size(segmentPath)) {
+                return Optional.empty();
+            }
+
+            int count = input.readInt();
+            if (count < 0 || count > dataSize) {
+                return Optional.empty();
+            }
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int keySize = input.readInt();
+                if (keySize <= 0 || keySize > dataSize) {
+                    return Optional.empty();
+                }
+                byte[] key = input.readNBytes(keySize);
+                if (key.length != keySize) {
+                    return Optional.empty();
+                }
+                entries.add(new Entry(new String(key, StandardCharsets.UTF_8), input.readLong(), input.readInt(), input.readBoolean(),
+                        magic == MAGIC ? input.readLong() : DatabaseRecord.NO_EXPIRATION));
+            }
+
+            long expectedChecksum = checksum.getValue();
+            if (input.readLong() != expectedChecksum || input.read() != -1) {
+                return Optional.empty();
+            }
+            return Optional.of(new Contents(dataSize, entries));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static void delete(Path segmentPath) throws IOException {
+        Files.deleteIfExists(hintPath(segmentPath));
+    }
+}
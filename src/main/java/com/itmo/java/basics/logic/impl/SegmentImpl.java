@@ -1,46 +1,144 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.initialization.SegmentInitializationContext;
 import com.itmo.java.basics.logic.Segment;
-import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.ValueLocation;
 import com.itmo.java.basics.index.SegmentOffsetInfo;
 import com.itmo.java.basics.index.impl.SegmentIndex;
 import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
-import com.itmo.java.basics.logic.DatabaseRecord;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
-import com.itmo.java.basics.logic.io.DatabaseInputStream;
 import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.SegmentFormat;
 import lombok.EqualsAndHashCode;
-import java.io.*;
 
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
 
 /**
  * Сегмент - append-only файл, хранящий пары ключ-значение, разделенные специальным символом.
- * - имеет ограниченный размер, большие значения (>100000) записываются в последний сегмент, если он не read-only
+ * - имеет ограниченный размер (задается для таблицы), большие значения записываются в последний сегмент, если он не read-only
  * - при превышении размера сегмента создается новый сегмент и дальнейшие операции записи производятся в него
  * - именование файла-сегмента должно позволять установить очередность их появления
  * - является неизменяемым после появления более нового сегмента
  */
 @EqualsAndHashCode
 public class SegmentImpl implements Segment {
+    private static final Logger logger = Logger.getLogger(SegmentImpl.class.getName());
+
     private final String segmentName;
     private final Path segmentPath;
-    private final SegmentIndex segmentIndex;
+    /**
+     * Положения записей сегмента, пока он открыт на запись: по ним пишется файл-подсказка, когда сегмент становится read-only.
+     * После этого индекс не нужен (чтения идут по индексу таблицы) и обнуляется
+     */
+    private SegmentIndex writableIndex;
     private long segmentSize = 0;
-    private final long maxSegmentBytesCount = 100_000;
+    private static final int INT_SIZE = 4;
+    private static final int REMOVED_OBJECT_SIZE = -1;
+    /**
+     * Блок нулей, которыми файл сегмента заполняется при выделении
+     */
+    private static final ByteBuffer ZERO_BLOCK = ByteBuffer.allocateDirect(64 * 1024).asReadOnlyBuffer();
+
+    private final long maxSegmentBytesCount;
     private boolean isReadOnly = false;
 
-    private SegmentImpl(String segmentName, Path segmentPath, SegmentIndex segmentIndex) {
+    /**
+     * Версия формата файла сегмента (см {@link SegmentFormat}). Новые сегменты пишутся в текущей версии,
+     * старые дописываются в своей
+     */
+    private int formatVersion = SegmentFormat.CURRENT_VERSION;
+
+    /**
+     * Канал для дозаписи в конец файла. Открыт, пока сегмент доступен на запись
+     */
+    @EqualsAndHashCode.Exclude
+    private FileChannel appendChannel;
+    @EqualsAndHashCode.Exclude
+    private DatabaseOutputStream outputStream;
+    /**
+     * Общий канал для позиционного чтения. Открыт, пока сегмент не закрыт
+     */
+    @EqualsAndHashCode.Exclude
+    private FileChannel readChannel;
+    /**
+     * Отображение read-only сегмента в память. null, если сегмент не отображен
+     */
+    @EqualsAndHashCode.Exclude
+    private MappedByteBuffer mappedBuffer;
+    /**
+     * Таблица блоков, если сегмент сжат. null, если сегмент не сжат
+     */
+    @EqualsAndHashCode.Exclude
+    private CompressedSegmentFile compressedFile;
+    /**
+     * Сжатие не уменьшило сегмент, повторно не пробуем
+     */
+    @EqualsAndHashCode.Exclude
+    private boolean compressionSkipped = false;
+    /**
+     * Чтение идет под read-блокировкой, замена файла сегмента сжатым и закрытие - под write-блокировкой
+     */
+    @EqualsAndHashCode.Exclude
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    /**
+     * Идентификатор сегмента в общем кэше распакованных блоков
+     */
+    @EqualsAndHashCode.Exclude
+    private final long blockCacheId = nextBlockCacheId.incrementAndGet();
+
+    private static final AtomicLong nextBlockCacheId = new AtomicLong();
+
+    /**
+     * Сколько байт сейчас отображено в память всеми сегментами процесса
+     */
+    private static final AtomicLong mappedBytesTotal = new AtomicLong();
+
+    /**
+     * Сколько раз не удалось записать подсказку сегмента, заполненного записью
+     */
+    private static final AtomicLong hintWriteFailures = new AtomicLong();
+
+    @EqualsAndHashCode.Exclude
+    private final DatabaseConfig config;
+
+    private SegmentImpl(String segmentName, Path segmentPath, SegmentIndex writableIndex, long maxSegmentBytesCount, DatabaseConfig config) {
         this.segmentName = segmentName;
         this.segmentPath = segmentPath;
-        this.segmentIndex = segmentIndex;
+        this.writableIndex = writableIndex;
+        this.maxSegmentBytesCount = maxSegmentBytesCount;
+        this.config = config;
     }
 
-    public static Segment create(String segmentName, Path tableRootPath) throws DatabaseException {
+    /**
+     * Создает сегмент и заранее выделяет под него файл размером {@code maxSegmentBytesCount}
+     *
+     * @param maxSegmentBytesCount размер сегмента таблицы
+     */
+    public static Segment create(String segmentName, Path tableRootPath, long maxSegmentBytesCount, DatabaseConfig config) throws DatabaseException {
         File segmentFile = new File(tableRootPath.toAbsolutePath().toString(), segmentName);
         boolean fileCreated;
         try {
@@ -53,28 +151,147 @@ public class SegmentImpl implements Segment {
         }
 
         Path segmentPath = segmentFile.toPath();
-        Segment segment = new SegmentImpl(segmentName, segmentPath, new SegmentIndex());
+        SegmentImpl segment = new SegmentImpl(segmentName, segmentPath, new SegmentIndex(), maxSegmentBytesCount, config);
+        try {
+            segment.openReadChannel();
+            segment.openAppendChannel();
+            segment.segmentSize = segment.outputStream.writeSegmentHeader();
+        } catch (IOException e) {
+            throw new DatabaseException("Can't open segment file. segmentName = " + segmentName, e);
+        }
 
         return segment;
     }
 
-    public static Segment initializeFromContext(SegmentInitializationContext context) {
-        SegmentImpl initializedSegment = new SegmentImpl(context.getSegmentName(), context.getSegmentPath(), context.getIndex());
+    /**
+     * Восстанавливает сегмент. Неиспользованный предвыделенный хвост файла за концом данных обрезается,
+     * у сегмента, открытого на запись, место выделяется заново при первой записи.
+     * Сжатый сегмент всегда read-only. Индекс из контекста сегмент хранит, только пока открыт на запись
+     *
+     * @param maxSegmentBytesCount размер сегмента таблицы
+     */
+    public static Segment initializeFromContext(SegmentInitializationContext context, long maxSegmentBytesCount, DatabaseConfig config) throws DatabaseException {
+        SegmentImpl initializedSegment = new SegmentImpl(context.getSegmentName(), context.getSegmentPath(), context.getIndex(), maxSegmentBytesCount, config);
         initializedSegment.segmentSize = context.getCurrentSize();
 
         if(initializedSegment.checkIsOverloaded()){
             initializedSegment.isReadOnly = true;
         }
 
+        try {
+            initializedSegment.openReadChannel();
+            initializedSegment.detectFormatVersion();
+            if (initializedSegment.formatVersion == SegmentFormat.COMPRESSED_VERSION) {
+                initializedSegment.compressedFile = CompressedSegmentFile.open(initializedSegment.readChannel);
+                initializedSegment.isReadOnly = true;
+            } else {
+                initializedSegment.trimTail();
+            }
+            if (initializedSegment.isReadOnly) {
+                initializedSegment.mapIfEnabled();
+                if (!Files.exists(SegmentHintFile.hintPath(initializedSegment.segmentPath))) {
+                    initializedSegment.writeHintFile();
+                }
+                initializedSegment.writableIndex = null;
+            }
+        } catch (IOException e) {
+            throw new DatabaseException("Can't open segment file. segmentName = " + context.getSegmentName(), e);
+        }
+
         return initializedSegment;
     }
 
-    private boolean checkIsOverloaded() {
-        return segmentSize >= maxSegmentBytesCount;
+    private void openReadChannel() throws IOException {
+        readChannel = FileChannel.open(segmentPath, StandardOpenOption.READ);
     }
 
-    static String createSegmentName(String tableName) {
-        return tableName + "_" + System.currentTimeMillis();
+    private void detectFormatVersion() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SegmentFormat.HEADER_SIZE);
+        readChannel.read(header, 0);
+        header.flip();
+        formatVersion = SegmentFormat.detectVersion(header);
+    }
+
+    /**
+     * Открывает канал на запись, выделяет файл на весь размер сегмента и встает в конец данных.
+     * Файл расширяется сразу, поэтому дозапись не меняет его длину
+     */
+    private void openAppendChannel() throws IOException {
+        SegmentHintFile.delete(segmentPath);
+        appendChannel = FileChannel.open(segmentPath, StandardOpenOption.WRITE);
+        preallocate();
+        appendChannel.position(segmentSize);
+        outputStream = new DatabaseOutputStream(Channels.newOutputStream(appendChannel));
+    }
+
+    /**
+     * Дописывает файл нулями до размера сегмента. Блоки записываются на самом деле, а не расширением длины файла:
+     * у разреженного файла место выделялось бы все равно при дозаписи
+     */
+    private void preallocate() throws IOException {
+        long position = appendChannel.size();
+        while (position < maxSegmentBytesCount) {
+            ByteBuffer block = ZERO_BLOCK.duplicate();
+            block.limit((int) Math.min(block.capacity(), maxSegmentBytesCount - position));
+            position += appendChannel.write(block, position);
+        }
+    }
+
+    private void trimTail() throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.WRITE)) {
+            if (channel.size() > segmentSize) {
+                channel.truncate(segmentSize);
+            }
+        }
+    }
+
+    /**
+     * Обрезает предвыделенный хвост и закрывает канал на запись.
+     * Вызывается, когда сегмент становится read-only, и при закрытии
+     */
+    private void closeAppendChannel() throws IOException {
+        if (appendChannel != null) {
+            appendChannel.truncate(segmentSize);
+            appendChannel.close();
+            appendChannel = null;
+            outputStream = null;
+        }
+    }
+
+    /**
+     * Отображает read-only сегмент в память целиком, если это разрешено настройками
+     * и не превышен общий лимит отображенных байт. Иначе чтение идет через канал
+     */
+    private void mapIfEnabled() throws IOException {
+        if (!config.isMmapEnabled() || compressedFile != null || segmentSize == 0 || segmentSize > Integer.MAX_VALUE) {
+            return;
+        }
+
+        long mapped;
+        do {
+            mapped = mappedBytesTotal.get();
+            if (mapped + segmentSize > config.getMaxMappedBytes()) {
+                return;
+            }
+        } while (!mappedBytesTotal.compareAndSet(mapped, mapped + segmentSize));
+
+        try {
+            mappedBuffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+        } catch (IOException e) {
+            mappedBytesTotal.addAndGet(-segmentSize);
+            throw e;
+        }
+    }
+
+    private void unmap() {
+        if (mappedBuffer != null) {
+            mappedBuffer = null;
+            mappedBytesTotal.addAndGet(-segmentSize);
+        }
+    }
+
+    private boolean checkIsOverloaded() {
+        return segmentSize >= maxSegmentBytesCount;
     }
 
     @Override
@@ -97,54 +314,278 @@ public class SegmentImpl implements Segment {
             record = new SetDatabaseRecord(key, objectValue);
         }
 
-        try (FileOutputStream fileOutputStream = new FileOutputStream(String.valueOf(segmentPath), true);
-             DatabaseOutputStream outputStream = new DatabaseOutputStream(fileOutputStream)) {
-            if (segmentSize + record.size() >= maxSegmentBytesCount) {
-                isReadOnly = true;
-            }
+        appendRecord(objectKey, record);
 
-            segmentIndex.onIndexedEntityUpdated(objectKey, new SegmentOffsetInfoImpl(segmentSize));
+        return true;
+    }
 
-            int bytesWritten = outputStream.write(record);
+    @Override
+    public boolean write(String objectKey, byte[] objectValue, long expirationTime) throws IOException {
+        if (isReadOnly) {
+            return false;
+        }
 
-            outputStream.close();
+        appendRecord(objectKey, new ExpiringDatabaseRecord(objectKey.getBytes(), objectValue, expirationTime));
 
-            segmentSize += bytesWritten;
+        return true;
+    }
+
+    /**
+     * Дописывает запись в конец сегмента через постоянно открытый канал.
+     * Если после записи сегмент переполнен, он становится read-only и канал закрывается
+     *
+     * @return количество записанных байт
+     */
+    private int appendRecord(String objectKey, WritableDatabaseRecord record) throws IOException {
+        if (segmentSize + record.size() + SegmentFormat.checksumSize(formatVersion) >= maxSegmentBytesCount) {
+            isReadOnly = true;
         }
 
-        return true;
+        if (outputStream == null) {
+            openAppendChannel();
+        }
+
+        int bytesWritten = formatVersion == SegmentFormat.LEGACY_VERSION
+                ? outputStream.write(record)
+                : outputStream.writeWithChecksum(record);
+        writableIndex.onIndexedEntityUpdated(objectKey, new SegmentOffsetInfoImpl(segmentSize, bytesWritten,
+                record.getValueSize() == REMOVED_OBJECT_SIZE, record.getExpirationTime()));
+        segmentSize += bytesWritten;
+
+        if (isReadOnly) {
+            finishWritingAfterAppend();
+        }
+
+        return bytesWritten;
     }
 
+    /**
+     * Читает запись по ее положению из индекса таблицы. Запись из канала читается целиком одним позиционным чтением:
+     * ее размер известен из индекса. Если это включено в настройках, проверяет контрольную сумму записи
+     *
+     * @throws ClosedChannelException если сегмент уже закрыт: например, его заменили результатом слияния
+     */
     @Override
-    public Optional<byte[]> read(String objectKey) throws IOException {
-        FileInputStream fileInputStream = new FileInputStream(String.valueOf(segmentPath));
+    public Optional<byte[]> read(String objectKey, SegmentOffsetInfo offsetInfo) throws IOException {
+        stateLock.readLock().lock();
+        try {
+            checkOpen();
+            return readRecord(objectKey, offsetInfo);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+        if (readChannel == null) {
+            throw new ClosedChannelException();
+        }
+    }
 
-        long offset;
-        Optional<SegmentOffsetInfo> segmentOffsetInfo = segmentIndex.searchForKey(objectKey);
-        if (segmentOffsetInfo.isEmpty()) {
+    private Optional<byte[]> readRecord(String objectKey, SegmentOffsetInfo offsetInfo) throws IOException {
+        if (offsetInfo.isRemoved()) {
             return Optional.empty();
         }
 
-        offset = segmentOffsetInfo.get().getOffset();
+        long offset = offsetInfo.getOffset();
+        ByteBuffer record;
+        if (compressedFile != null) {
+            record = blockRecord(offset);
+        } else if (mappedBuffer != null) {
+            record = mappedBuffer.duplicate();
+            record.position((int) offset);
+        } else {
+            record = ByteBuffer.allocate(offsetInfo.getRecordSize());
+            readFully(record, offset);
+            record.flip();
+        }
+        return readFromBuffer(record, offset, objectKey.getBytes(), shouldVerifyChecksums());
+    }
+
+    /**
+     * Значения сжатых сегментов, значения, контрольную сумму которых нужно проверить, и значения меньше
+     * {@link DatabaseConfig#getZeroCopyMinBytes()} читаются в память сразу. Для остальных запоминается канал
+     * и участок файла, откуда значение можно отдать без копирования. Размер значения вычисляется по размеру записи из индекса,
+     * а у записи с моментом истечения значение сдвинуто на {@link SegmentFormat#EXPIRATION_SIZE} байт: это видно по размеру значения в файле
+     */
+    @Override
+    public Optional<ValueLocation> locate(String objectKey, SegmentOffsetInfo offsetInfo) throws IOException {
+        stateLock.readLock().lock();
+        try {
+            checkOpen();
+            if (offsetInfo.isRemoved()) {
+                return Optional.empty();
+            }
+            if (compressedFile != null || shouldVerifyChecksums()) {
+                return readRecord(objectKey, offsetInfo).map(ValueLocation::of);
+            }
+
+            int keySize = objectKey.getBytes().length;
+            int valueSize = offsetInfo.getRecordSize() - INT_SIZE - keySize - INT_SIZE - SegmentFormat.checksumSize(formatVersion);
+            if (valueSize < config.getZeroCopyMinBytes()) {
+                return readRecord(objectKey, offsetInfo).map(ValueLocation::of);
+            }
 
-        long skip = fileInputStream.skip(offset);
-        if (skip != offset) {
-            throw new IOException("Amount of skipped bytes is wrong. Skipped bytes = " + skip + " but offset = " + offset);
+            long valueOffset = offsetInfo.getOffset() + INT_SIZE + keySize + INT_SIZE;
+            ByteBuffer storedValueSize = ByteBuffer.allocate(INT_SIZE);
+            readFully(storedValueSize, valueOffset - INT_SIZE);
+            if (storedValueSize.getInt(0) == SegmentFormat.EXPIRING_VALUE_SIZE) {
+                valueOffset += SegmentFormat.EXPIRATION_SIZE;
+                valueSize -= SegmentFormat.EXPIRATION_SIZE;
+            }
+            return Optional.of(new FileValueLocation(readChannel, valueOffset, valueSize));
+        } finally {
+            stateLock.readLock().unlock();
         }
+    }
 
-        DatabaseInputStream databaseInputStream = new DatabaseInputStream(fileInputStream);
+    private boolean shouldVerifyChecksums() {
+        return config.isVerifyChecksums() && formatVersion != SegmentFormat.LEGACY_VERSION;
+    }
+
+    /**
+     * Возвращает распакованный блок сжатого сегмента (из кэша, если он там есть), встав на начало записи
+     *
+     * @param offset смещение записи в несжатых данных сегмента
+     */
+    private ByteBuffer blockRecord(long offset) throws IOException {
+        int blockNumber = compressedFile.locate(offset);
+        byte[] block = BlockCache.get(blockCacheId, blockNumber);
+        if (block == null) {
+            block = compressedFile.readBlock(readChannel, blockNumber);
+            BlockCache.put(blockCacheId, blockNumber, block, config.getCompressionCacheBytes());
+        }
+        ByteBuffer record = ByteBuffer.wrap(block);
+        record.position((int) (offset - compressedFile.getBlockDataOffset(blockNumber)));
+        return record;
+    }
 
-        Optional<DatabaseRecord> databaseRecord = databaseInputStream.readDbUnit();
+    /**
+     * Сверяет контрольную сумму записи. Заголовок восстанавливается по искомому ключу,
+     * поэтому запись с другим ключом по этому смещению тоже не пройдет проверку
+     *
+     * @param sizes байты записи между ключом и значением: размер значения и, если есть, момент истечения
+     */
+    private void verifyChecksum(long offset, byte[] key, ByteBuffer sizes, ByteBuffer value, int storedChecksum) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(INT_SIZE + key.length + sizes.remaining());
+        header.putInt(key.length).put(key).put(sizes.duplicate()).flip();
+        if (SegmentFormat.checksum(header, value) != storedChecksum) {
+            throw new IOException("Checksum mismatch for record at offset " + offset + " in segment " + segmentName);
+        }
+    }
 
-        if (databaseRecord.isEmpty()) {
-            return Optional.empty();
+    /**
+     * Декодирует запись из буфера: отображения сегмента, распакованного блока или прочитанной целиком записи
+     *
+     * @param record буфер, стоящий на начале записи
+     */
+    private Optional<byte[]> readFromBuffer(ByteBuffer record, long offset, byte[] key, boolean verifyChecksum) throws IOException {
+        int storedKeySize = record.getInt();
+        if (storedKeySize != key.length) {
+            throw new IOException("Record at offset " + offset + " in segment " + segmentName + " has key size " + storedKeySize + " but expected " + key.length);
+        }
+        record.position(record.position() + key.length);
+        ByteBuffer sizes = record.slice();
+        int valueSize = record.getInt();
+        if (valueSize == SegmentFormat.EXPIRING_VALUE_SIZE) {
+            record.getLong();
+            valueSize = record.getInt();
+            sizes.limit(INT_SIZE + SegmentFormat.EXPIRATION_SIZE);
         } else {
-            if (databaseRecord.get().getValue() == null)
+            sizes.limit(INT_SIZE);
+        }
+
+        if (verifyChecksum) {
+            int storedValueSize = Math.max(valueSize, 0);
+            ByteBuffer value = record.slice();
+            value.limit(storedValueSize);
+            verifyChecksum(offset, key, sizes, value, record.getInt(record.position() + storedValueSize));
+        }
+
+        if (valueSize == REMOVED_OBJECT_SIZE) {
+            return Optional.empty();
+        }
+
+        byte[] value = new byte[valueSize];
+        record.get(value);
+        return Optional.of(value);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = readChannel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of segment " + segmentName + " at position " + position);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Значение, лежащее в файле сегмента. Пока значение отдается, держится блокировка сегмента на чтение,
+     * поэтому сжатие и закрытие сегмента дожидаются конца передачи. Если канал, в котором значение было найдено,
+     * успели закрыть, значение считается недоступным
+     */
+    private class FileValueLocation implements ValueLocation {
+        private final FileChannel channel;
+        private final long position;
+        private final int length;
+
+        private FileValueLocation(FileChannel channel, long position, int length) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return false;
+        }
+
+        @Override
+        public Optional<byte[]> read() throws IOException {
+            stateLock.readLock().lock();
+            try {
+                return readValue();
+            } finally {
+                stateLock.readLock().unlock();
+            }
+        }
+
+        private Optional<byte[]> readValue() throws IOException {
+            if (channel != readChannel) {
                 return Optional.empty();
-            if (new String(databaseRecord.get().getValue()).equals("")) {
-                return Optional.of(new byte[0]);
-            } else {
-                return Optional.of(databaseRecord.get().getValue());
+            }
+            ByteBuffer value = ByteBuffer.allocate(length);
+            readFully(value, position);
+            return Optional.of(value.array());
+        }
+
+        @Override
+        public boolean transferTo(WritableByteChannel target, IntFunction<ByteBuffer> header) throws IOException {
+            stateLock.readLock().lock();
+            try {
+                if (channel != readChannel) {
+                    return false;
+                }
+                ValueLocation.writeFully(target, header.apply(length));
+
+                long transferred = 0;
+                while (transferred < length) {
+                    long count = channel.transferTo(position + transferred, length - transferred, target);
+                    if (count <= 0) {
+                        throw new EOFException("Unexpected end of segment " + segmentName + " at position " + (position + transferred));
+                    }
+                    transferred += count;
+                }
+                return true;
+            } finally {
+                stateLock.readLock().unlock();
             }
         }
     }
@@ -155,26 +596,161 @@ public class SegmentImpl implements Segment {
     }
 
     @Override
-    public boolean delete(String objectKey) throws IOException {
-        byte[] key = objectKey.getBytes();
-        RemoveDatabaseRecord removeDatabaseRecord = new RemoveDatabaseRecord(key);
-        segmentIndex.onIndexedEntityUpdated(objectKey, null);
+    public long getSize() {
+        return segmentSize;
+    }
 
-        int bytesWritten;
-        try (FileOutputStream fileOutputStream = new FileOutputStream(String.valueOf(segmentPath), true);
-             DatabaseOutputStream outputStream = new DatabaseOutputStream(fileOutputStream)) {
-            if (segmentSize + removeDatabaseRecord.size() >= maxSegmentBytesCount) {
-                isReadOnly = true;
-            }
-            segmentIndex.onIndexedEntityUpdated(objectKey, new SegmentOffsetInfoImpl(segmentSize));
+    @Override
+    public void seal() throws IOException {
+        if (isReadOnly) {
+            return;
+        }
+
+        isReadOnly = true;
+        finishWriting();
+    }
+
+    /**
+     * Закрывает канал на запись, отображает файл и пишет подсказку сегмента
+     */
+    private void finishWriting() throws IOException {
+        switchToReadOnly();
+        try {
+            writeHintFile();
+        } finally {
+            writableIndex = null;
+        }
+    }
+
+    /**
+     * Завершает запись в сегмент, который заполнила последняя запись. Запись к этому моменту уже в файле, поэтому
+     * операция не должна завершиться ошибкой из-за подсказки: если ее не удалось записать, сбой учитывается
+     * (см {@link #getHintWriteFailures()}), а при инициализации сегмент будет прочитан целиком
+     */
+    private void finishWritingAfterAppend() throws IOException {
+        switchToReadOnly();
+        try {
+            writeHintFile();
+        } catch (IOException e) {
+            hintWriteFailures.incrementAndGet();
+            logger.warning(() -> "Can't write hint file of segment " + segmentName + ": " + e);
+        } finally {
+            writableIndex = null;
+        }
+    }
+
+    /**
+     * Закрывает канал на запись и отображает файл под блокировкой сегмента на запись: таблица читает сегменты
+     * без своей блокировки, и чтение не должно застать сегмент наполовину переключенным
+     */
+    private void switchToReadOnly() throws IOException {
+        stateLock.writeLock().lock();
+        try {
+            closeAppendChannel();
+            mapIfEnabled();
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return сколько раз с запуска процесса не удалось записать подсказку сегмента, заполненного записью
+     */
+    public static long getHintWriteFailures() {
+        return hintWriteFailures.get();
+    }
+
+    /**
+     * Записывает файл-подсказку с последней записью каждого ключа сегмента по индексу, который сегмент держал, пока был открыт на запись
+     */
+    private void writeHintFile() throws IOException {
+        SegmentHintFile.write(segmentPath, segmentSize, collectHintEntries());
+    }
 
-            bytesWritten = outputStream.write(removeDatabaseRecord);
+    private List<SegmentHintFile.Entry> collectHintEntries() {
+        List<SegmentHintFile.Entry> entries = new ArrayList<>();
+        writableIndex.forEach((key, offsetInfo) -> entries.add(
+                new SegmentHintFile.Entry(key, offsetInfo.getOffset(), offsetInfo.getRecordSize(), offsetInfo.isRemoved(),
+                        offsetInfo.getExpirationTime())));
+        entries.sort(Comparator.comparingLong(SegmentHintFile.Entry::getOffset));
+        return entries;
+    }
 
-            outputStream.close();
+    /**
+     * Переписывает read-only сегмент в сжатый по блокам файл (см {@link CompressedSegmentFile}) и переключает чтение на него.
+     * Файл пишется во временный и атомарно подменяет исходный, смещения записей сохраняются,
+     * поэтому подсказка сегмента переписывается с теми же записями. Если подсказку переписать не удалось,
+     * сегмент уже сжат и читается, а ошибка передается вызывающему
+     */
+    @Override
+    public boolean compress() throws IOException {
+        if (!isReadOnly || compressedFile != null || compressionSkipped
+                || formatVersion != SegmentFormat.CHECKSUM_VERSION || segmentSize <= SegmentFormat.HEADER_SIZE) {
+            return false;
+        }
 
-            segmentSize += bytesWritten;
+        Path tempPath = segmentPath.resolveSibling(segmentName + SegmentCompactor.TEMP_SUFFIX);
+        CompressedSegmentFile compressed;
+        try {
+            compressed = CompressedSegmentFile.write(segmentPath, segmentSize, tempPath, config.getCompressionBlockSize());
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        if (Files.size(tempPath) >= segmentSize) {
+            Files.delete(tempPath);
+            compressionSkipped = true;
+            return false;
+        }
+
+        Optional<SegmentHintFile.Contents> hint = SegmentHintFile.read(segmentPath);
+        stateLock.writeLock().lock();
+        try {
+            Files.move(tempPath, segmentPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            unmap();
+            readChannel.close();
+            openReadChannel();
+            compressedFile = compressed;
+            formatVersion = SegmentFormat.COMPRESSED_VERSION;
+        } finally {
+            stateLock.writeLock().unlock();
         }
 
+        if (hint.isPresent()) {
+            SegmentHintFile.write(segmentPath, segmentSize, hint.get().getEntries());
+        } else {
+            SegmentHintFile.delete(segmentPath);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean delete(String objectKey) throws IOException {
+        if (isReadOnly) {
+            return false;
+        }
+
+        byte[] key = objectKey.getBytes();
+        RemoveDatabaseRecord removeDatabaseRecord = new RemoveDatabaseRecord(key);
+
+        int bytesWritten = appendRecord(objectKey, removeDatabaseRecord);
+
         return bytesWritten > 0;
     }
+
+    @Override
+    public void close() throws IOException {
+        stateLock.writeLock().lock();
+        try {
+            closeAppendChannel();
+            unmap();
+            if (readChannel != null) {
+                readChannel.close();
+                readChannel = null;
+            }
+            BlockCache.invalidate(blockCacheId);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
 }
@@ -0,0 +1,389 @@
+package com.itmo.java.basics.logic.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Манифест сегментов таблицы - append-only журнал, по которому при инициализации восстанавливается список сегментов
+ * и их порядок без чтения директории и сортировки имен. Порядок сегментов задает манифест, а не имена:
+ * имя сегмента - имя таблицы и номер из счетчика манифеста, поэтому имена не совпадают, даже если сегменты создаются в одну миллисекунду.
+ * <p>
+ * Записи журнала:
+ * - ADD - сегмент создан и добавлен в конец таблицы;
+ * - SWAP - слияние заменило сегменты другими, новые встают на место самого старого из замененных;
+ * - CLOSE - таблица закрыта штатно. Такая запись бывает только последней и при открытии отрезается.
+ * Если ее нет, таблица упала, и в директории могут остаться файлы, которых нет в манифесте (см {@link #wasClosedCleanly()}).
+ * <p>
+ * Формат: magic | номер первой записи | следующий номер сегмента | записи (номер записи, тип, данные, CRC32).
+ * Номера записей идут подряд, поэтому мусор после оборванной записи не примется за запись. Оборванный хвост отрезается.
+ * Когда журнал становится много длиннее списка сегментов, он переписывается заново
+ */
+public class SegmentManifest implements Closeable {
+    public static final String FILE_NAME = "segments.manifest";
+
+    private static final int MAGIC = 0x4B56534D;
+    private static final int HEADER_SIZE = 4 + 8 + 8;
+    private static final byte ADD = 1;
+    private static final byte SWAP = 2;
+    private static final byte CLOSE = 3;
+    private static final String TEMP_SUFFIX = ".tmp";
+    /**
+     * Размер записи ADD без имени сегмента: номер записи, тип, номер сегмента, длина имени и CRC32
+     */
+    private static final int ADD_RECORD_SIZE = 8 + 1 + 8 + 2 + 4;
+    /**
+     * Журнал переписывается, когда он больше манифеста из одних записей ADD в столько раз плюс {@link #REWRITE_SLACK_BYTES}
+     */
+    private static final int REWRITE_RATIO = 4;
+    private static final int REWRITE_SLACK_BYTES = 16 * 1024;
+
+    private final Path manifestPath;
+    private final List<String> segmentNames;
+    private FileChannel channel;
+    private long nextRecordNumber;
+    private long nextSegmentNumber;
+    private boolean closedCleanly;
+
+    private SegmentManifest(Path manifestPath, List<String> segmentNames, long nextRecordNumber, long nextSegmentNumber) {
+        this.manifestPath = manifestPath;
+        this.segmentNames = segmentNames;
+        this.nextRecordNumber = nextRecordNumber;
+        this.nextSegmentNumber = nextSegmentNumber;
+    }
+
+    public static Path manifestPath(Path tablePath) {
+        return tablePath.resolve(FILE_NAME);
+    }
+
+    public static boolean exists(Path tablePath) {
+        return Files.exists(manifestPath(tablePath));
+    }
+
+    /**
+     * Создает новый манифест с заданными сегментами, заменяя существующий
+     *
+     * @param segmentNames сегменты таблицы в порядке создания
+     */
+    public static SegmentManifest create(Path tablePath, List<String> segmentNames) throws IOException {
+        SegmentManifest manifest = new SegmentManifest(manifestPath(tablePath), new ArrayList<>(segmentNames), 1, 1);
+        manifest.rewrite();
+        return manifest;
+    }
+
+    /**
+     * Проигрывает журнал и открывает его для дозаписи
+     *
+     * @throws IOException если манифест не удалось прочитать или его записи противоречат друг другу
+     */
+    public static SegmentManifest open(Path tablePath) throws IOException {
+        Path manifestPath = manifestPath(tablePath);
+        List<String> segmentNames = new ArrayList<>();
+        long validSize;
+        long nextRecordNumber;
+        long nextSegmentNumber;
+        boolean closedCleanly = false;
+        long closeRecordPosition = -1;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestPath.toFile())))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Segment manifest " + manifestPath + " has unknown format");
+            }
+            nextRecordNumber = input.readLong();
+            nextSegmentNumber = input.readLong();
+            validSize = HEADER_SIZE;
+
+            while (true) {
+                byte[] record = readRecord(input, nextRecordNumber);
+                if (record == null) {
+                    break;
+                }
+                DataInputStream payload = new DataInputStream(new ByteArrayInputStream(record));
+                payload.readLong();
+                byte type = payload.readByte();
+                if (closedCleanly) {
+                    throw new IOException("Segment manifest " + manifestPath + " has records after close");
+                }
+                if (type == ADD) {
+                    nextSegmentNumber = Math.max(nextSegmentNumber, payload.readLong() + 1);
+                    segmentNames.add(payload.readUTF());
+                } else if (type == SWAP) {
+                    List<String> removed = readNames(payload);
+                    int addedCount = payload.readInt();
+                    List<String> added = new ArrayList<>(addedCount);
+                    for (int i = 0; i < addedCount; i++) {
+                        nextSegmentNumber = Math.max(nextSegmentNumber, payload.readLong() + 1);
+                        added.add(payload.readUTF());
+                    }
+                    applySwap(manifestPath, segmentNames, removed, added);
+                } else if (type == CLOSE) {
+                    closedCleanly = true;
+                    closeRecordPosition = validSize;
+                } else {
+                    throw new IOException("Segment manifest " + manifestPath + " has unknown record type " + type);
+                }
+                validSize += record.length + 4;
+                nextRecordNumber++;
+            }
+        } catch (EOFException e) {
+            throw new IOException("Segment manifest " + manifestPath + " is truncated", e);
+        }
+
+        SegmentManifest manifest = new SegmentManifest(manifestPath, segmentNames, nextRecordNumber, nextSegmentNumber);
+        manifest.closedCleanly = closedCleanly;
+        manifest.channel = FileChannel.open(manifestPath, StandardOpenOption.WRITE);
+        manifest.channel.truncate(closedCleanly ? closeRecordPosition : validSize);
+        manifest.channel.position(manifest.channel.size());
+        manifest.channel.force(true);
+        if (closedCleanly) {
+            manifest.nextRecordNumber--;
+        }
+        manifest.rewriteIfLong();
+        return manifest;
+    }
+
+    /**
+     * Пишет манифест для копии таблицы (например, снимка): с заданными сегментами и отметкой о штатном закрытии
+     */
+    public static void write(Path tablePath, List<String> segmentNames, long nextSegmentNumber) throws IOException {
+        SegmentManifest manifest = new SegmentManifest(manifestPath(tablePath), new ArrayList<>(segmentNames), 1, nextSegmentNumber);
+        manifest.rewrite();
+        manifest.close();
+    }
+
+    /**
+     * @return запись целиком без CRC или {@code null}, если дальше записей нет или запись оборвана
+     */
+    private static byte[] readRecord(DataInputStream input, long expectedNumber) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(record);
+        try {
+            long number = input.readLong();
+            if (number != expectedNumber) {
+                return null;
+            }
+            output.writeLong(number);
+            byte type = input.readByte();
+            output.writeByte(type);
+            if (type == ADD) {
+                output.writeLong(input.readLong());
+                output.writeUTF(input.readUTF());
+            } else if (type == SWAP) {
+                int removedCount = input.readInt();
+                output.writeInt(removedCount);
+                for (int i = 0; i < removedCount; i++) {
+                    output.writeUTF(input.readUTF());
+                }
+                int addedCount = input.readInt();
+                output.writeInt(addedCount);
+                for (int i = 0; i < addedCount; i++) {
+                    output.writeLong(input.readLong());
+                    output.writeUTF(input.readUTF());
+                }
+            } else if (type != CLOSE) {
+                return null;
+            }
+            int checksum = input.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(record.toByteArray());
+            return (int) crc.getValue() == checksum ? record.toByteArray() : null;
+        } catch (EOFException | UTFDataFormatException e) {
+            return null;
+        }
+    }
+
+    private static List<String> readNames(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(input.readUTF());
+        }
+        return names;
+    }
+
+    private static void applySwap(Path manifestPath, List<String> segmentNames, List<String> removed, List<String> added) throws IOException {
+        int position = segmentNames.size();
+        for (String name : removed) {
+            int index = segmentNames.indexOf(name);
+            if (index < 0) {
+                throw new IOException("Segment manifest " + manifestPath + " replaces unknown segment " + name);
+            }
+            position = Math.min(position, index);
+        }
+        segmentNames.removeAll(new HashSet<>(removed));
+        segmentNames.addAll(position, added);
+    }
+
+    /**
+     * @return сегменты таблицы в порядке создания
+     */
+    public synchronized List<String> getSegmentNames() {
+        return Collections.unmodifiableList(new ArrayList<>(segmentNames));
+    }
+
+    /**
+     * @return {@code false} - если таблица в прошлый раз не была закрыта штатно и в директории могут быть лишние файлы
+     */
+    public boolean wasClosedCleanly() {
+        return closedCleanly;
+    }
+
+    public synchronized long getNextSegmentNumber() {
+        return nextSegmentNumber;
+    }
+
+    /**
+     * Выделяет имя для нового сегмента. Номер попадает в журнал вместе с сегментом (см {@link #segmentAdded(String)})
+     */
+    public synchronized String nextSegmentName(String tableName) {
+        return tableName + "_" + String.format("%019d", nextSegmentNumber++);
+    }
+
+    /**
+     * Записывает в журнал, что файл сегмента создан и сегмент стал последним в таблице
+     */
+    public synchronized void segmentAdded(String segmentName) throws IOException {
+        append(ADD, output -> {
+            output.writeLong(parseNumber(segmentName));
+            output.writeUTF(segmentName);
+        });
+        segmentNames.add(segmentName);
+    }
+
+    /**
+     * Записывает в журнал замену сегментов результатом слияния. После записи старые файлы можно удалять:
+     * при инициализации их уже не будет в манифесте
+     *
+     * @param removed слитые сегменты
+     * @param added   сегменты - результат слияния в порядке создания
+     */
+    public synchronized void segmentsReplaced(List<String> removed, List<String> added) throws IOException {
+        append(SWAP, output -> {
+            output.writeInt(removed.size());
+            for (String name : removed) {
+                output.writeUTF(name);
+            }
+            output.writeInt(added.size());
+            for (String name : added) {
+                output.writeLong(parseNumber(name));
+                output.writeUTF(name);
+            }
+        });
+        applySwap(manifestPath, segmentNames, removed, added);
+        rewriteIfLong();
+    }
+
+    /**
+     * Отмечает штатное закрытие таблицы и закрывает журнал
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        append(CLOSE, output -> {
+        });
+        channel.close();
+        channel = null;
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    /**
+     * Дописывает запись и сбрасывает ее на диск
+     */
+    private void append(byte type, RecordWriter payload) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(record);
+        output.writeLong(nextRecordNumber);
+        output.writeByte(type);
+        payload.write(output);
+        CRC32 crc = new CRC32();
+        crc.update(record.toByteArray());
+        output.writeInt((int) crc.getValue());
+
+        ByteBuffer buffer = ByteBuffer.wrap(record.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        nextRecordNumber++;
+    }
+
+    private void rewriteIfLong() throws IOException {
+        long compactSize = HEADER_SIZE;
+        for (String name : segmentNames) {
+            compactSize += ADD_RECORD_SIZE + name.length();
+        }
+        if (channel.size() > REWRITE_RATIO * compactSize + REWRITE_SLACK_BYTES) {
+            rewrite();
+        }
+    }
+
+    /**
+     * Переписывает журнал: по записи ADD на каждый сегмент. Новый журнал пишется во временный файл и атомарно
+     * подменяет старый. Номера записей продолжаются с того же места
+     */
+    private void rewrite() throws IOException {
+        Path tempPath = manifestPath.resolveSibling(FILE_NAME + TEMP_SUFFIX);
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putLong(nextRecordNumber).putLong(nextSegmentNumber).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            for (String name : segmentNames) {
+                append(ADD, output -> {
+                    output.writeLong(parseNumber(name));
+                    output.writeUTF(name);
+                });
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, manifestPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return номер сегмента из его имени или 0 для сегментов, созданных до появления манифеста
+     */
+    private static long parseNumber(String segmentName) {
+        int separator = segmentName.lastIndexOf('_');
+        String suffix = segmentName.substring(separator + 1);
+        if (suffix.length() != 19) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(suffix);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.logic.DatabaseCache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Общий на сервер LRU-кэш значений всех таблиц с единым лимитом в байтах. Память достается таблицам, которые читают,
+ * а не делится поровну: сотня редко читаемых таблиц не держит место, нужное нескольким горячим.
+ * <p>
+ * Записи адресуются тройкой (бд, таблица, ключ): каждая таблица работает со своей частью кэша (см {@link #forTable(String, String)}).
+ * Таблице можно гарантировать минимальную долю лимита - ее записи не вытесняются ради других таблиц, пока таблица
+ * занимает меньше, - и ограничить максимальную: сверх нее таблица вытесняет свои же записи.
+ * <p>
+ * Как и в {@link StripedDatabaseCache}, ключи распределены по независимым частям по хешу, у каждой своя блокировка
+ * и своя доля лимита; доли таблиц тоже соблюдаются в каждой части. Внутри части у каждой таблицы свой порядок доступа,
+ * а при вытеснении выбирается та таблица, чья самая давно читанная запись читалась раньше всех.
+ * Лимит можно менять на ходу (см {@link #setMaxBytes(long)}, команда SET_CACHE_BYTES)
+ */
+public class SharedDatabaseCache {
+    private static final int STRIPES = 16;
+
+    /**
+     * Общий кэш на каждый сервер: у сервера один объект настроек
+     */
+    private static final Map<DatabaseConfig, SharedDatabaseCache> instances = new WeakHashMap<>();
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Map<String, Partition> partitions = new HashMap<>();
+    private volatile long maxBytes;
+
+    /**
+     * @param maxBytes сколько байт могут занимать записи всех таблиц
+     */
+    public SharedDatabaseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxBytes / STRIPES);
+        }
+    }
+
+    /**
+     * @return общий кэш сервера с этими настройками. Создается при первом обращении с лимитом {@link DatabaseConfig#getCacheBytes()}
+     */
+    public static SharedDatabaseCache forConfig(DatabaseConfig config) {
+        synchronized (instances) {
+            return instances.computeIfAbsent(config, key -> new SharedDatabaseCache(key.getCacheBytes()));
+        }
+    }
+
+    /**
+     * @return часть кэша для таблицы с долями лимита из настроек
+     * (см {@link DatabaseConfig#getCacheMinShare(String)}, {@link DatabaseConfig#getCacheMaxShare(String)})
+     */
+    public DatabaseCache forTable(String databaseName, String tableName, DatabaseConfig config) {
+        return forTable(databaseName, tableName, config.getCacheMinShare(tableName), config.getCacheMaxShare(tableName));
+    }
+
+    public DatabaseCache forTable(String databaseName, String tableName) {
+        return forTable(databaseName, tableName, 0, 1);
+    }
+
+    /**
+     * @param minShare доля лимита, в пределах которой записи таблицы не вытесняются ради других таблиц
+     * @param maxShare доля лимита, больше которой таблица занимать не может
+     * @throws IllegalArgumentException если доли не из [0, 1] или минимальная больше максимальной
+     */
+    public synchronized DatabaseCache forTable(String databaseName, String tableName, double minShare, double maxShare) {
+        if (minShare < 0 || maxShare > 1 || minShare > maxShare) {
+            throw new IllegalArgumentException("Wrong cache shares of table " + tableName + ": min " + minShare + ", max " + maxShare);
+        }
+        Partition partition = partitions.computeIfAbsent(databaseName + "/" + tableName, name -> new Partition(name));
+        partition.minShare = minShare;
+        partition.maxShare = maxShare;
+        return partition;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Меняет лимит кэша. При уменьшении лишние записи вытесняются сразу, под блокировкой каждой части
+     *
+     * @throws IllegalArgumentException если лимит отрицательный
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Wrong cache size: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        for (Stripe stripe : stripes) {
+            stripe.resize(maxBytes / STRIPES);
+        }
+    }
+
+    /**
+     * @return сколько байт сейчас занимают записи всех таблиц
+     */
+    public long getCachedBytes() {
+        long cachedBytes = 0;
+        for (Stripe stripe : stripes) {
+            cachedBytes += stripe.getCachedBytes(null);
+        }
+        return cachedBytes;
+    }
+
+    /**
+     * @return сколько байт сейчас занимают записи таблицы
+     */
+    public long getCachedBytes(String databaseName, String tableName) {
+        Partition partition;
+        synchronized (this) {
+            partition = partitions.get(databaseName + "/" + tableName);
+        }
+        if (partition == null) {
+            return 0;
+        }
+        long cachedBytes = 0;
+        for (Stripe stripe : stripes) {
+            cachedBytes += stripe.getCachedBytes(partition);
+        }
+        return cachedBytes;
+    }
+
+    private Stripe stripeFor(Partition partition, String key) {
+        int hash = 31 * partition.hashCode() + key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Часть кэша одной таблицы
+     */
+    private final class Partition implements DatabaseCache {
+        private final String name;
+        private volatile double minShare;
+        private volatile double maxShare;
+
+        private Partition(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public byte[] get(String key) {
+            return stripeFor(this, key).get(this, key);
+        }
+
+        @Override
+        public void set(String key, byte[] value) {
+            stripeFor(this, key).set(this, key, value);
+        }
+
+        @Override
+        public void delete(String key) {
+            stripeFor(this, key).delete(this, key);
+        }
+
+        /**
+         * Удаляет из общего кэша все записи таблицы
+         */
+        @Override
+        public void clear() {
+            for (Stripe stripe : stripes) {
+                stripe.clear(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] value;
+        private long lastAccess;
+
+        private Entry(byte[] value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * Записи одной таблицы в части кэша
+     */
+    private static final class PartitionEntries {
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long cachedBytes = 0;
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Partition, PartitionEntries> partitions = new HashMap<>();
+        private long capacity;
+        private long cachedBytes = 0;
+        /**
+         * Счетчик обращений части: по нему сравнивается, какая запись читалась раньше
+         */
+        private long clock = 0;
+
+        private Stripe(long capacity) {
+            this.capacity = capacity;
+        }
+
+        private byte[] get(Partition partition, String key) {
+            lock.lock();
+            try {
+                PartitionEntries partitionEntries = partitions.get(partition);
+                Entry entry = partitionEntries == null ? null : partitionEntries.entries.get(key);
+                if (entry == null) {
+                    return null;
+                }
+                entry.lastAccess = ++clock;
+                return entry.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Кладет значение, затем вытесняет записи таблицы сверх ее максимальной доли и записи всех таблиц сверх лимита части.
+         * Значение, которое не помещается в долю таблицы, не кладется, а прежнее значение ключа удаляется
+         */
+        private void set(Partition partition, String key, byte[] value) {
+            long weight = StripedDatabaseCache.weigh(key, value);
+            lock.lock();
+            try {
+                if (weight > maxBytesOf(partition)) {
+                    remove(partition, key);
+                    return;
+                }
+                PartitionEntries partitionEntries = partitions.computeIfAbsent(partition, p -> new PartitionEntries());
+                Entry previous = partitionEntries.entries.put(key, new Entry(value, ++clock));
+                long delta = weight - (previous == null ? 0 : StripedDatabaseCache.weigh(key, previous.value));
+                partitionEntries.cachedBytes += delta;
+                cachedBytes += delta;
+
+                while (partitionEntries.cachedBytes > maxBytesOf(partition)) {
+                    evictEldest(partition, partitionEntries);
+                }
+                evict();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void delete(Partition partition, String key) {
+            lock.lock();
+            try {
+                remove(partition, key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear(Partition partition) {
+            lock.lock();
+            try {
+                PartitionEntries partitionEntries = partitions.remove(partition);
+                if (partitionEntries != null) {
+                    cachedBytes -= partitionEntries.cachedBytes;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void resize(long capacity) {
+            lock.lock();
+            try {
+                this.capacity = capacity;
+                for (Map.Entry<Partition, PartitionEntries> partition : new HashMap<>(partitions).entrySet()) {
+                    while (partition.getValue().cachedBytes > maxBytesOf(partition.getKey())) {
+                        evictEldest(partition.getKey(), partition.getValue());
+                    }
+                }
+                evict();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @param partition таблица или {@code null} - все таблицы
+         */
+        private long getCachedBytes(Partition partition) {
+            lock.lock();
+            try {
+                if (partition == null) {
+                    return cachedBytes;
+                }
+                PartitionEntries partitionEntries = partitions.get(partition);
+                return partitionEntries == null ? 0 : partitionEntries.cachedBytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Пока часть больше своего лимита, вытесняет самую давно читанную запись среди таблиц, которые занимают больше
+         * своей минимальной доли. Если таких нет, минимальные доли не соблюдаются: лимит важнее
+         */
+        private void evict() {
+            while (cachedBytes > capacity) {
+                Partition victim = null;
+                Partition fallbackVictim = null;
+                long victimAccess = Long.MAX_VALUE;
+                long fallbackAccess = Long.MAX_VALUE;
+                for (Map.Entry<Partition, PartitionEntries> partition : partitions.entrySet()) {
+                    long eldestAccess = partition.getValue().entries.values().iterator().next().lastAccess;
+                    if (partition.getValue().cachedBytes > minBytesOf(partition.getKey())) {
+                        if (eldestAccess < victimAccess) {
+                            victim = partition.getKey();
+                            victimAccess = eldestAccess;
+                        }
+                    } else if (eldestAccess < fallbackAccess) {
+                        fallbackVictim = partition.getKey();
+                        fallbackAccess = eldestAccess;
+                    }
+                }
+                Partition partition = victim != null ? victim : fallbackVictim;
+                evictEldest(partition, partitions.get(partition));
+            }
+        }
+
+        private void evictEldest(Partition partition, PartitionEntries partitionEntries) {
+            Iterator<Map.Entry<String, Entry>> eldest = partitionEntries.entries.entrySet().iterator();
+            Map.Entry<String, Entry> entry = eldest.next();
+            eldest.remove();
+            long weight = StripedDatabaseCache.weigh(entry.getKey(), entry.getValue().value);
+            partitionEntries.cachedBytes -= weight;
+            cachedBytes -= weight;
+            if (partitionEntries.entries.isEmpty()) {
+                partitions.remove(partition);
+            }
+        }
+
+        private void remove(Partition partition, String key) {
+            PartitionEntries partitionEntries = partitions.get(partition);
+            if (partitionEntries == null) {
+                return;
+            }
+            Entry previous = partitionEntries.entries.remove(key);
+            if (previous != null) {
+                long weight = StripedDatabaseCache.weigh(key, previous.value);
+                partitionEntries.cachedBytes -= weight;
+                cachedBytes -= weight;
+                if (partitionEntries.entries.isEmpty()) {
+                    partitions.remove(partition);
+                }
+            }
+        }
+
+        private long minBytesOf(Partition partition) {
+            return (long) (capacity * partition.minShare);
+        }
+
+        private long maxBytesOf(Partition partition) {
+            return (long) (capacity * partition.maxShare);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.logic.StorageEngines;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Файлы снимка базы данных (см {@link com.itmo.java.basics.logic.Database#snapshot(Path)}).
+ * <p>
+ * Снимок устроен как рабочая директория сервера: {@code <снимок>/<бд>/<таблица>/<файлы таблицы>}, поэтому восстановление -
+ * обычный запуск с {@code kvs.workingPath}, указывающим на снимок. Неизменяемые файлы таблиц связываются жесткими ссылками,
+ * а файлы, которые сервер при запуске из снимка может дописать, копируются.
+ * <p>
+ * Манифест {@link #MANIFEST_FILE_NAME} пишется последним: снимок без манифеста не дописан.
+ * Формат манифеста - текст: имя бд, время создания и по строке "размер путь" на каждый файл снимка
+ */
+public final class SnapshotFiles {
+    public static final String MANIFEST_FILE_NAME = "snapshot.manifest";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private SnapshotFiles() {
+    }
+
+    /**
+     * Связывает файл снимка с файлом таблицы жесткой ссылкой. Если файловая система не поддерживает ссылки
+     * или снимок лежит на другом разделе, файл копируется
+     */
+    public static void link(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            if (Files.exists(target)) {
+                throw e;
+            }
+            Files.copy(source, target);
+        }
+    }
+
+    /**
+     * Связывает файл снимка с файлом таблицы, если он есть
+     */
+    public static void linkIfExists(Path source, Path target) throws IOException {
+        if (Files.exists(source)) {
+            link(source, target);
+        }
+    }
+
+    /**
+     * Копирует в снимок файл с движком таблицы (см {@link StorageEngines#METADATA_FILE_NAME}), если он есть
+     */
+    public static void copyMetadata(Path tablePath, Path snapshotTablePath) throws IOException {
+        Path metadata = tablePath.resolve(StorageEngines.METADATA_FILE_NAME);
+        if (Files.exists(metadata)) {
+            Files.copy(metadata, snapshotTablePath.resolve(StorageEngines.METADATA_FILE_NAME));
+        }
+    }
+
+    /**
+     * Записывает манифест по всем файлам снимка во временный файл и атомарно переименовывает его
+     */
+    public static void writeManifest(Path snapshotPath, String dbName) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(snapshotPath)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().startsWith(MANIFEST_FILE_NAME))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        Path manifestPath = snapshotPath.resolve(MANIFEST_FILE_NAME);
+        Path tempPath = snapshotPath.resolve(MANIFEST_FILE_NAME + TEMP_SUFFIX);
+        try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            writer.write("database " + dbName);
+            writer.newLine();
+            writer.write("createdAt " + System.currentTimeMillis());
+            writer.newLine();
+            for (Path file : files) {
+                writer.write(Files.size(file) + " " + snapshotPath.relativize(file).toString().replace('\\', '/'));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, manifestPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,150 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.logic.DatabaseCache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потокобезопасный LRU-кэш значений таблицы, ограниченный суммарным размером записей в байтах, а не их числом.
+ * <p>
+ * Ключи распределены по {@link #STRIPES} независимым частям по хешу ключа. У каждой части свой порядок доступа,
+ * своя блокировка и своя доля лимита, поэтому чтения разных ключей почти не ждут друг друга
+ * (чтение в LRU меняет порядок доступа, так что без блокировки оно не обходится).
+ * Вытесняются давно не читанные записи своей части. Значение больше доли части не кэшируется
+ */
+public class StripedDatabaseCache implements DatabaseCache {
+    private static final int STRIPES = 16;
+    /**
+     * Примерный расход памяти на запись помимо ключа и значения: узел списка, элемент таблицы и заголовки объектов
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long maxBytes;
+
+    /**
+     * @param maxBytes сколько байт могут занимать записи кэша. 0 - кэш ничего не хранит
+     */
+    public StripedDatabaseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxBytes / STRIPES);
+        }
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return stripeFor(key).get(key);
+    }
+
+    @Override
+    public void set(String key, byte[] value) {
+        stripeFor(key).set(key, value);
+    }
+
+    @Override
+    public void delete(String key) {
+        stripeFor(key).delete(key);
+    }
+
+    /**
+     * @return сколько байт сейчас занимают записи кэша
+     */
+    public long getCachedBytes() {
+        long cachedBytes = 0;
+        for (Stripe stripe : stripes) {
+            cachedBytes += stripe.getCachedBytes();
+        }
+        return cachedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return размер записи, по которому она учитывается в лимите кэша
+     */
+    public static long weigh(String key, byte[] value) {
+        return ENTRY_OVERHEAD + 2L * key.length() + value.length;
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long capacity;
+        private long cachedBytes = 0;
+
+        private Stripe(long capacity) {
+            this.capacity = capacity;
+        }
+
+        private byte[] get(String key) {
+            lock.lock();
+            try {
+                return entries.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Кладет значение и вытесняет давно не читанные записи, пока часть больше своей доли.
+         * Слишком большое значение не кладется, а прежнее значение ключа удаляется, чтобы не читалось устаревшее
+         */
+        private void set(String key, byte[] value) {
+            long weight = weigh(key, value);
+            lock.lock();
+            try {
+                if (weight > capacity) {
+                    removeEntry(key);
+                    return;
+                }
+                byte[] previous = entries.put(key, value);
+                cachedBytes += weight - (previous == null ? 0 : weigh(key, previous));
+
+                Iterator<Map.Entry<String, byte[]>> eldest = entries.entrySet().iterator();
+                while (cachedBytes > capacity && eldest.hasNext()) {
+                    Map.Entry<String, byte[]> entry = eldest.next();
+                    cachedBytes -= weigh(entry.getKey(), entry.getValue());
+                    eldest.remove();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void delete(String key) {
+            lock.lock();
+            try {
+                removeEntry(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void removeEntry(String key) {
+            byte[] previous = entries.remove(key);
+            if (previous != null) {
+                cachedBytes -= weigh(key, previous);
+            }
+        }
+
+        private long getCachedBytes() {
+            lock.lock();
+            try {
+                return cachedBytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -1,17 +1,50 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.exceptions.DatabaseException;
-import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.index.KvsIndex;
+import com.itmo.java.basics.index.impl.KeyDirEntry;
+import com.itmo.java.basics.logic.DatabaseRecord;
 import com.itmo.java.basics.logic.Segment;
 import com.itmo.java.basics.initialization.TableInitializationContext;
+import com.itmo.java.basics.logic.ScanPage;
 import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.TableSnapshot;
+import com.itmo.java.basics.logic.ValueLocation;
+import com.itmo.java.basics.logic.io.SegmentFormat;
 import lombok.EqualsAndHashCode;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * Таблица - логическая сущность, представляющая собой набор файлов-сегментов, которые объединены одним
@@ -21,35 +54,100 @@ import java.util.Optional;
  * - имеет единый размер сегмента
  * - представляет из себя директорию в файловой системе, именованную как таблица
  * и хранящую файлы-сегменты данной таблицы
+ * - хранит единый индекс (keydir): для каждого ключа сегмент, смещение и размер его последней записи,
+ * поэтому чтение - один поиск в индексе и одно чтение из сегмента. Реализация индекса задается для таблицы
+ * (см {@link DatabaseConfig#getIndexType(String)})
+ * - ключ может иметь срок истечения: он хранится в записи сегмента, а в памяти - только в колесе таймеров
+ * (см {@link ExpirationWheel}). Истекший ключ сразу перестает читаться, а фоновая задача дописывает для него
+ * записи об удалении пачками
+ * - следующий сегмент заранее создается в фоне (см {@link #createNewSegment()}), поэтому переход
+ * на новый сегмент при записи не ждет создания файла
+ * - записи идут под блокировкой таблицы, а индекс и колесо таймеров они меняют еще и под блокировкой индекса
+ * на запись. Чтение держит блокировку индекса на чтение только на время поиска ключа, а сегмент читает без блокировок
  */
 
 @EqualsAndHashCode
 public class TableImpl implements Table {
+    private static final Logger logger = Logger.getLogger(TableImpl.class.getName());
+
+    /**
+     * Порядок обхода ключей в {@link #scanKeys(String, String, int)}
+     */
+    private static final Comparator<String> SCAN_ORDER = Comparator.comparingInt(String::hashCode)
+            .thenComparing(Comparator.naturalOrder());
+
+    private static final ScheduledExecutorService expirationScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "key-expiration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ExecutorService segmentPreparer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-preparer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final String tableName;
-    private final TableIndex tableIndex;
+    private final KvsIndex<String, KeyDirEntry> tableIndex;
     private Path pathToDatabaseRoot;
     private Segment lastSegment;
+    /**
+     * Все сегменты таблицы в порядке создания, нужны для освобождения их файловых ресурсов
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    private final DatabaseConfig config;
+    /**
+     * Журнал состава сегментов: по нему таблица восстанавливается при инициализации
+     */
+    @EqualsAndHashCode.Exclude
+    private SegmentManifest manifest;
+    /**
+     * Заранее созданный следующий сегмент. Он уже записан в манифест последним, но еще не входит в {@link #segments}
+     */
+    @EqualsAndHashCode.Exclude
+    private Future<Segment> spareSegment;
+    @EqualsAndHashCode.Exclude
+    private SegmentCompactor compactor;
+    @EqualsAndHashCode.Exclude
+    private final ExpirationWheel expirationWheel;
+    /**
+     * Блокировка {@link #tableIndex} и {@link #expirationWheel}. Меняются они только под блокировкой таблицы,
+     * поэтому код, который уже держит блокировку таблицы, читает их без этой блокировки
+     */
+    @EqualsAndHashCode.Exclude
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    /**
+     * Задача удаления истекших ключей. Запускается при первом ключе со сроком
+     */
+    @EqualsAndHashCode.Exclude
+    private ScheduledFuture<?> expirationTask;
+    /**
+     * Сколько записей об удалении истекших ключей не удалось дописать и последняя такая ошибка.
+     * Ключ при ошибке остается в колесе таймеров и удаляется на следующем шаге
+     */
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong expirationFailures = new AtomicLong();
+    @EqualsAndHashCode.Exclude
+    private volatile Exception lastExpirationFailure;
 
-    private TableImpl(String tableName, TableIndex tableIndex, Segment lastSegment, Path pathToDatabaseRoot) {
-        this.tableName = tableName;
-        this.tableIndex = tableIndex;
-        this.lastSegment = lastSegment;
-        this.pathToDatabaseRoot = pathToDatabaseRoot;
-    }
-
-    private TableImpl(String tableName, TableIndex tableIndex, Path pathToDatabaseRoot) {
+    private TableImpl(String tableName, KvsIndex<String, KeyDirEntry> tableIndex, Path pathToDatabaseRoot, DatabaseConfig config) {
         this.tableName = tableName;
         this.tableIndex = tableIndex;
         this.pathToDatabaseRoot = pathToDatabaseRoot;
+        this.config = config;
+        this.expirationWheel = new ExpirationWheel(config.getTtlTickMillis(), System.currentTimeMillis());
     }
 
-    private TableImpl(String tableName, TableIndex tableIndex, Segment lastSegment) {
+    private TableImpl(String tableName, KvsIndex<String, KeyDirEntry> tableIndex, Segment lastSegment, DatabaseConfig config) {
         this.tableName = tableName;
         this.tableIndex = tableIndex;
         this.lastSegment = lastSegment;
+        this.config = config;
+        this.expirationWheel = new ExpirationWheel(config.getTtlTickMillis(), System.currentTimeMillis());
     }
 
-    public static Table create(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex) throws DatabaseException {
+    public static Table create(String tableName, Path pathToDatabaseRoot, KvsIndex<String, KeyDirEntry> tableIndex, DatabaseConfig config) throws DatabaseException {
         if (tableName == null) {
             throw new DatabaseException("tableName can't be null");
         }
@@ -64,16 +162,89 @@ public class TableImpl implements Table {
         }
 
         Path tablePath = tableDir.toPath();
-        TableImpl table = new TableImpl(tableName, tableIndex, pathToDatabaseRoot);
-        table.lastSegment = SegmentImpl.create(SegmentImpl.createSegmentName(tableName), tablePath);
+        TableImpl table = new TableImpl(tableName, tableIndex, pathToDatabaseRoot, config);
+        try {
+            table.manifest = SegmentManifest.create(tablePath, List.of());
+        } catch (IOException e) {
+            throw new DatabaseException("Can't create segment manifest of table " + tableName, e);
+        }
+        table.createNewSegment();
+        table.startCompactor();
 
-        return new CachingTable(table);
+        return CachingTable.create(table, tablePath, config, false);
     }
 
-    public static Table initializeFromContext(TableInitializationContext context) {
-        TableImpl table = new TableImpl(context.getTableName(), context.getTableIndex(), context.getCurrentSegment());
+    /**
+     * Открывает манифест таблицы, а если его нет - создает по сегментам из контекста
+     */
+    public static Table initializeFromContext(TableInitializationContext context, DatabaseConfig config) throws DatabaseException {
+        SegmentManifest manifest;
+        try {
+            manifest = SegmentManifest.exists(context.getTablePath())
+                    ? SegmentManifest.open(context.getTablePath())
+                    : SegmentManifest.create(context.getTablePath(), context.getSegments().stream().map(Segment::getName).collect(Collectors.toList()));
+        } catch (IOException e) {
+            throw new DatabaseException("Can't open segment manifest of table " + context.getTableName(), e);
+        }
+        return initializeFromContext(context, config, manifest);
+    }
+
+    /**
+     * @param manifest манифест, по которому загружены сегменты из контекста
+     */
+    public static Table initializeFromContext(TableInitializationContext context, DatabaseConfig config,
+                                              SegmentManifest manifest) throws DatabaseException {
+        TableImpl table = new TableImpl(context.getTableName(), context.getTableIndex(), context.getCurrentSegment(), config);
         table.pathToDatabaseRoot = context.getTablePath().getParent();
-        return new CachingTable(table);
+        table.manifest = manifest;
+        table.segments.addAll(context.getSegments());
+        if (table.lastSegment == null) {
+            table.createNewSegment();
+        } else {
+            table.prepareSpareSegment();
+        }
+        context.getExpirationTimes().forEach(table.expirationWheel::schedule);
+        if (table.expirationWheel.size() > 0) {
+            table.startExpiration();
+        }
+        table.startCompactor();
+        return CachingTable.create(table, context.getTablePath(), config, false);
+    }
+
+    private void startCompactor() {
+        if (config.isCompactionEnabled() || config.isCompressionEnabled()) {
+            compactor = new SegmentCompactor(this, tableName, Paths.get(pathToDatabaseRoot.toString(), tableName),
+                    config.getSegmentSize(tableName), config);
+            compactor.start();
+        }
+    }
+
+    private synchronized void startExpiration() {
+        if (expirationTask == null) {
+            long tick = Math.max(config.getTtlTickMillis(), 1);
+            expirationTask = expirationScheduler.scheduleWithFixedDelay(this::expireKeys, tick, tick, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return фоновое слияние сегментов таблицы или {@code null}, если оно выключено
+     */
+    public SegmentCompactor getCompactor() {
+        return compactor;
+    }
+
+    /**
+     * @return сколько раз не удалось дописать запись об удалении истекшего ключа
+     */
+    public long getExpirationFailures() {
+        return expirationFailures.get();
+    }
+
+    /**
+     * @return последняя ошибка удаления истекшего ключа или {@code null}, если ошибок не было
+     */
+    public Exception getLastExpirationFailure() {
+        return lastExpirationFailure;
     }
 
     @Override
@@ -82,56 +253,647 @@ public class TableImpl implements Table {
     }
 
     @Override
-    public void write(String objectKey, byte[] objectValue) throws DatabaseException {
+    public synchronized void write(String objectKey, byte[] objectValue) throws DatabaseException {
+        if (objectKey.isEmpty()) {
+            throw new DatabaseException("objectKey can't be empty");
+        }
         if (lastSegment.isReadOnly()) {
-            lastSegment = SegmentImpl.create(SegmentImpl.createSegmentName(tableName), Paths.get(pathToDatabaseRoot.toString(), tableName));
+            createNewSegment();
         }
 
         try {
-            lastSegment.write(objectKey, objectValue);
-            tableIndex.onIndexedEntityUpdated(objectKey, lastSegment);
+            appendToLastSegment(objectKey, objectValue, DatabaseRecord.NO_EXPIRATION);
         } catch (IOException e) {
             throw new DatabaseException("Can't write in segment, there is a problem with input/output. Key = " + objectKey, e);
         }
     }
 
+    /**
+     * Момент истечения уже в прошлом допустим: такой ключ сразу не читается и удаляется при следующем шаге колеса
+     */
     @Override
-    public Optional<byte[]> read(String objectKey) throws DatabaseException {
+    public void write(String objectKey, byte[] objectValue, long expirationTime) throws DatabaseException {
+        if (objectKey.isEmpty()) {
+            throw new DatabaseException("objectKey can't be empty");
+        }
+        if (objectValue == null) {
+            throw new DatabaseException("objectValue can't be null for an expiring key");
+        }
+        if (expirationTime <= DatabaseRecord.NO_EXPIRATION) {
+            throw new DatabaseException("expirationTime must be positive, got " + expirationTime);
+        }
+
+        synchronized (this) {
+            if (lastSegment.isReadOnly()) {
+                createNewSegment();
+            }
+            try {
+                appendToLastSegment(objectKey, objectValue, expirationTime);
+            } catch (IOException e) {
+                throw new DatabaseException("Can't write in segment, there is a problem with input/output. Key = " + objectKey, e);
+            }
+        }
+        startExpiration();
+    }
+
+    /**
+     * Дописывает запись в последний сегмент, переводит на нее ключ в индексе и назначает или снимает срок ключа.
+     * Запись ложится в конец сегмента, поэтому ее смещение и размер видны по размеру сегмента до и после записи
+     *
+     * @param objectValue    значение или {@code null} для удаления ключа
+     * @param expirationTime момент истечения или {@link DatabaseRecord#NO_EXPIRATION}
+     */
+    private void appendToLastSegment(String objectKey, byte[] objectValue, long expirationTime) throws IOException {
+        Segment segment = lastSegment;
+        long offset = segment.getSize();
+        if (expirationTime == DatabaseRecord.NO_EXPIRATION) {
+            segment.write(objectKey, objectValue);
+        } else {
+            segment.write(objectKey, objectValue, expirationTime);
+        }
+        KeyDirEntry entry = new KeyDirEntry(segment, offset, (int) (segment.getSize() - offset), objectValue == null);
+
+        indexLock.writeLock().lock();
         try {
-            Optional<Segment> optionalSegment = tableIndex.searchForKey(objectKey);
-            if (optionalSegment.isPresent()) {
-                Segment segment = optionalSegment.get();
-                return segment.read(objectKey);
+            if (expirationTime == DatabaseRecord.NO_EXPIRATION) {
+                expirationWheel.cancel(objectKey);
             } else {
+                expirationWheel.schedule(objectKey, expirationTime);
+            }
+            tableIndex.onIndexedEntityUpdated(objectKey, entry);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Делает последним заранее созданный сегмент и запускает создание следующего. Если запасной сегмент еще готовится,
+     * дожидается его: он уже может быть в манифесте, и другой сегмент не должен встать перед ним.
+     * Если подготовить его не удалось, сегмент создается здесь же, а если не удается и это - ошибка подготовки
+     * добавляется к ошибке записи
+     */
+    private void createNewSegment() throws DatabaseException {
+        Segment segment;
+        try {
+            segment = takeSpareSegment();
+        } catch (ExecutionException e) {
+            segment = addSegmentAfterSpareFailure(e.getCause());
+        }
+        if (segment == null) {
+            segment = addSegment();
+        }
+        lastSegment = segment;
+        segments.add(lastSegment);
+        prepareSpareSegment();
+    }
+
+    /**
+     * Создает файл сегмента с очередным номером из манифеста и только потом записывает сегмент в манифест:
+     * файл, не попавший в манифест из-за падения, удаляется при инициализации
+     */
+    private Segment addSegment() throws DatabaseException {
+        Segment segment = SegmentImpl.create(manifest.nextSegmentName(tableName), Paths.get(pathToDatabaseRoot.toString(), tableName), config.getSegmentSize(tableName), config);
+        try {
+            manifest.segmentAdded(segment.getName());
+        } catch (IOException e) {
+            throw new DatabaseException("Can't add segment " + segment.getName() + " to manifest of table " + tableName, e);
+        }
+        return segment;
+    }
+
+    /**
+     * Запускает создание следующего сегмента в фоне: файл создается и выделяется на весь размер сегмента заранее
+     */
+    private void prepareSpareSegment() {
+        spareSegment = segmentPreparer.submit(this::addSegment);
+    }
+
+    private Segment addSegmentAfterSpareFailure(Throwable spareFailure) throws DatabaseException {
+        Segment segment;
+        try {
+            segment = addSegment();
+        } catch (DatabaseException e) {
+            e.addSuppressed(spareFailure);
+            throw e;
+        }
+        logger.warning(() -> "Can't prepare next segment of table " + tableName + " in background: " + spareFailure);
+        return segment;
+    }
+
+    /**
+     * @return заранее созданный сегмент или {@code null}, если его нет
+     * @throws ExecutionException если подготовить сегмент не удалось
+     */
+    private Segment takeSpareSegment() throws DatabaseException, ExecutionException {
+        if (spareSegment == null) {
+            return null;
+        }
+        try {
+            Segment segment = spareSegment.get();
+            spareSegment = null;
+            return segment;
+        } catch (ExecutionException e) {
+            spareSegment = null;
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while waiting for the next segment of table " + tableName, e);
+        }
+    }
+
+    /**
+     * Убирает запасной сегмент из манифеста и удаляет его файл. Если подготовить его не удалось, удалять нечего
+     */
+    private void discardSpareSegment() throws DatabaseException {
+        Segment segment;
+        try {
+            segment = takeSpareSegment();
+        } catch (ExecutionException e) {
+            logger.warning(() -> "Can't prepare next segment of table " + tableName + " in background: " + e.getCause());
+            return;
+        }
+        if (segment == null) {
+            return;
+        }
+        Path segmentPath = Paths.get(pathToDatabaseRoot.toString(), tableName, segment.getName());
+        try {
+            manifest.segmentsReplaced(List.of(segment.getName()), List.of());
+            segment.close();
+            SegmentHintFile.delete(segmentPath);
+            Files.deleteIfExists(segmentPath);
+        } catch (IOException e) {
+            throw new DatabaseException("Can't discard spare segment " + segment.getName() + " of table " + tableName, e);
+        }
+    }
+
+    @Override
+    public Optional<byte[]> read(String objectKey) throws DatabaseException {
+        try {
+            return readFromSegment(objectKey, (segment, entry) -> segment.read(objectKey, entry));
+        } catch (IOException e) {
+            throw new DatabaseException("There is problem with input/output. Key = " + objectKey, e);
+        }
+    }
+
+    /**
+     * Чтение из сегмента по записи индекса
+     */
+    private interface SegmentRead<T> {
+        Optional<T> apply(Segment segment, KeyDirEntry entry) throws IOException;
+    }
+
+    /**
+     * Ищет ключ в индексе под блокировкой индекса на чтение, а сегмент читает уже без нее. Если сегмент успели закрыть,
+     * значит, его заменили результатом слияния и индекс уже указывает на новый сегмент: ключ ищется заново
+     *
+     * @throws ClosedChannelException если сегмент закрыт, а индекс все еще указывает на него: таблица закрыта
+     */
+    private <T> Optional<T> readFromSegment(String objectKey, SegmentRead<T> segmentRead) throws IOException {
+        while (true) {
+            KeyDirEntry entry = findLiveEntry(objectKey);
+            if (entry == null) {
                 return Optional.empty();
             }
+            try {
+                return segmentRead.apply(entry.getSegment(), entry);
+            } catch (ClosedChannelException e) {
+                KeyDirEntry currentEntry = findLiveEntry(objectKey);
+                if (currentEntry != null && currentEntry.pointsToSameRecord(entry)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return запись индекса о последней версии ключа или {@code null}, если ключа нет, он удален или истек
+     */
+    private KeyDirEntry findLiveEntry(String objectKey) {
+        indexLock.readLock().lock();
+        try {
+            Optional<KeyDirEntry> entry = tableIndex.searchForKey(objectKey);
+            if (entry.isEmpty() || entry.get().isRemoved() || expirationWheel.isExpired(objectKey, System.currentTimeMillis())) {
+                return null;
+            }
+            return entry.get();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Если значение лежит в файле сегмента, возвращаемое место умеет найти его заново:
+     * к моменту отдачи значения сегмент могли слить или сжать
+     */
+    @Override
+    public Optional<ValueLocation> locate(String objectKey) throws DatabaseException {
+        try {
+            Optional<ValueLocation> location = locateInSegments(objectKey);
+            if (location.isPresent() && !location.get().isInMemory()) {
+                return Optional.of(new RelocatingValueLocation(objectKey, location.get()));
+            }
+            return location;
         } catch (IOException e) {
             throw new DatabaseException("There is problem with input/output. Key = " + objectKey, e);
         }
     }
 
+    private Optional<ValueLocation> locateInSegments(String objectKey) throws IOException {
+        return readFromSegment(objectKey, (segment, entry) -> segment.locate(objectKey, entry));
+    }
+
+    /**
+     * Место значения в сегменте таблицы. Если сегмент успели заменить, значение ищется по ключу заново
+     */
+    private class RelocatingValueLocation implements ValueLocation {
+        private final String objectKey;
+        private ValueLocation location;
+
+        private RelocatingValueLocation(String objectKey, ValueLocation location) {
+            this.objectKey = objectKey;
+            this.location = location;
+        }
+
+        @Override
+        public int getLength() {
+            return location.getLength();
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return false;
+        }
+
+        @Override
+        public Optional<byte[]> read() throws IOException {
+            while (true) {
+                Optional<byte[]> value = location.read();
+                if (value.isPresent() || !relocate()) {
+                    return value;
+                }
+            }
+        }
+
+        @Override
+        public boolean transferTo(WritableByteChannel target, IntFunction<ByteBuffer> header) throws IOException {
+            while (true) {
+                if (location.transferTo(target, header)) {
+                    return true;
+                }
+                if (!relocate()) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * @return {@code false} - если ключа в таблице больше нет
+         */
+        private boolean relocate() throws IOException {
+            Optional<ValueLocation> newLocation = locateInSegments(objectKey);
+            newLocation.ifPresent(value -> location = value);
+            return newLocation.isPresent();
+        }
+    }
+
+    @Override
+    public OptionalLong getExpirationTime(String objectKey) {
+        Long deadline;
+        indexLock.readLock().lock();
+        try {
+            deadline = expirationWheel.getDeadline(objectKey);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        if (deadline == null || deadline <= System.currentTimeMillis()) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(deadline);
+    }
+
+    /**
+     * Дописывает в последний сегмент запись об удалении. Она нужна, чтобы при инициализации
+     * не ожила версия ключа из более старого сегмента. Ключ остается в индексе с пометкой удаления
+     */
+    @Override
+    public synchronized void delete(String objectKey) throws DatabaseException {
+        Optional<KeyDirEntry> entry = tableIndex.searchForKey(objectKey);
+        if (entry.isEmpty() || entry.get().isRemoved()) {
+            return;
+        }
+
+        try {
+            if (lastSegment.isReadOnly()) {
+                createNewSegment();
+            }
+            appendToLastSegment(objectKey, null, DatabaseRecord.NO_EXPIRATION);
+        } catch (IOException e) {
+            throw new DatabaseException("There is problem with input/output. Key = " + objectKey, e);
+        }
+    }
+
+    /**
+     * Шаг колеса таймеров: для истекших ключей дописываются записи об удалении, по {@link DatabaseConfig#getTtlExpireBatchSize()}
+     * за одну блокировку таблицы, чтобы не задерживать запросы. Перед удалением срок ключа проверяется заново:
+     * ключ могли перезаписать, пока задача ждала блокировку
+     */
+    private void expireKeys() {
+        List<String> expired;
+        synchronized (this) {
+            indexLock.writeLock().lock();
+            try {
+                expired = expirationWheel.advance(System.currentTimeMillis());
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+        }
+
+        int batchSize = Math.max(config.getTtlExpireBatchSize(), 1);
+        for (int from = 0; from < expired.size(); from += batchSize) {
+            synchronized (this) {
+                if (expirationTask.isCancelled()) {
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                for (String key : expired.subList(from, Math.min(from + batchSize, expired.size()))) {
+                    if (!expirationWheel.isExpired(key, now)) {
+                        continue;
+                    }
+                    try {
+                        if (lastSegment.isReadOnly()) {
+                            createNewSegment();
+                        }
+                        appendToLastSegment(key, null, DatabaseRecord.NO_EXPIRATION);
+                    } catch (DatabaseException | IOException e) {
+                        indexLock.writeLock().lock();
+                        try {
+                            expirationWheel.schedule(key, expirationWheel.getDeadline(key));
+                        } finally {
+                            indexLock.writeLock().unlock();
+                        }
+                        expirationFailures.incrementAndGet();
+                        lastExpirationFailure = e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Индекс таблицы не упорядочен, поэтому ключи обходятся в порядке (хеш ключа, ключ): он не зависит
+     * ни от реализации индекса, ни от его перестроений. Каждая страница - один проход по индексу, в котором
+     * в куче держатся только {@code limit + 1} наименьших ключей после курсора, поэтому весь набор ключей
+     * в памяти не собирается. Курсор - последний ключ страницы из индекса, даже если его удалили до чтения значения
+     */
     @Override
-    public void delete(String objectKey) throws DatabaseException {
-        Optional<Segment> optionalSegment = tableIndex.searchForKey(objectKey);
-        if (optionalSegment.isPresent()) {
-            Segment segment = optionalSegment.get();
-            if (!segment.isReadOnly()) {
-                try {
-                    boolean isDeleted = segment.delete(objectKey);
-                } catch (IOException e) {
-                    throw new DatabaseException("There is problem with input/output. Key = " + objectKey, e);
+    public ScanPage scanKeys(String prefix, String cursor, int limit) throws DatabaseException {
+        String lastKey = cursor == null ? null : ScanPage.decodeCursor(cursor);
+        long now = System.currentTimeMillis();
+        PriorityQueue<String> page = new PriorityQueue<>(SCAN_ORDER.reversed());
+        indexLock.readLock().lock();
+        try {
+            tableIndex.forEach((key, entry) -> {
+                if (entry.isRemoved() || !key.startsWith(prefix) || (lastKey != null && SCAN_ORDER.compare(key, lastKey) <= 0)
+                        || expirationWheel.isExpired(key, now)) {
+                    return;
                 }
-            } else {
-                if (lastSegment.isReadOnly()) {
-                    lastSegment = SegmentImpl.create(SegmentImpl.createSegmentName(tableName), Paths.get(pathToDatabaseRoot.toString(), tableName));
+                if (page.size() <= limit) {
+                    page.add(key);
+                } else if (SCAN_ORDER.compare(key, page.peek()) < 0) {
+                    page.poll();
+                    page.add(key);
+                }
+            });
+        } finally {
+            indexLock.readLock().unlock();
+        }
+
+        boolean hasMore = page.size() > limit;
+        if (hasMore) {
+            page.poll();
+        }
+        List<String> keys = new ArrayList<>(page);
+        keys.sort(SCAN_ORDER);
+
+        List<Map.Entry<String, byte[]>> entries = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            read(key).ifPresent(value -> entries.add(Map.entry(key, value)));
+        }
+        if (!hasMore || keys.isEmpty()) {
+            return new ScanPage(entries, null);
+        }
+        return new ScanPage(entries, ScanPage.encodeCursor(keys.get(keys.size() - 1)));
+    }
+
+    /**
+     * Слияние приостанавливается, пока снимок не закрыт, чтобы файлы снимка не удалили
+     */
+    @Override
+    public TableSnapshot prepareSnapshot() {
+        if (compactor != null) {
+            compactor.pause();
+        }
+        return new SegmentsSnapshot();
+    }
+
+    /**
+     * Под блокировкой таблицы только закрывается на запись текущий сегмент (если в нем есть записи) и начинается новый:
+     * все записи до снимка оказываются в read-only сегментах, которые больше не меняются. Их файлы связываются
+     * со снимком уже без блокировки. Самый новый сегмент снимка копируется: при запуске из снимка он снова
+     * открывается на запись. Для снимка пишется свой манифест таблицы с сегментами снимка
+     */
+    private final class SegmentsSnapshot implements TableSnapshot {
+        private List<Segment> snapshotSegments;
+        private long nextSegmentNumber;
+        private boolean closed = false;
+
+        @Override
+        public void seal(WhileSealed whileSealed) throws DatabaseException {
+            synchronized (TableImpl.this) {
+                if (lastSegment.getSize() > SegmentFormat.HEADER_SIZE) {
+                    try {
+                        lastSegment.seal();
+                    } catch (IOException e) {
+                        throw new DatabaseException("Can't seal last segment of table " + tableName + " for snapshot", e);
+                    }
+                    createNewSegment();
+                }
+                snapshotSegments = new ArrayList<>(segments.subList(0, segments.size() - 1));
+                nextSegmentNumber = manifest.getNextSegmentNumber();
+                whileSealed.run();
+            }
+        }
+
+        @Override
+        public void writeTo(Path snapshotTablePath) throws DatabaseException {
+            if (snapshotSegments == null) {
+                throw new DatabaseException("Snapshot of table " + tableName + " is not sealed");
+            }
+            Path tablePath = Paths.get(pathToDatabaseRoot.toString(), tableName);
+            try {
+                Files.createDirectories(snapshotTablePath);
+                for (int i = 0; i < snapshotSegments.size(); i++) {
+                    Path segmentPath = tablePath.resolve(snapshotSegments.get(i).getName());
+                    Path snapshotSegmentPath = snapshotTablePath.resolve(snapshotSegments.get(i).getName());
+                    if (i == snapshotSegments.size() - 1) {
+                        Files.copy(segmentPath, snapshotSegmentPath);
+                    } else {
+                        SnapshotFiles.link(segmentPath, snapshotSegmentPath);
+                    }
+                    SnapshotFiles.linkIfExists(SegmentHintFile.hintPath(segmentPath), SegmentHintFile.hintPath(snapshotSegmentPath));
+                }
+                List<String> snapshotSegmentNames = snapshotSegments.stream().map(Segment::getName).collect(Collectors.toList());
+                SegmentManifest.write(snapshotTablePath, snapshotSegmentNames, nextSegmentNumber);
+                SnapshotFiles.copyMetadata(tablePath, snapshotTablePath);
+            } catch (IOException e) {
+                throw new DatabaseException("Can't write snapshot of table " + tableName + " to " + snapshotTablePath, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed && compactor != null) {
+                compactor.resume();
+            }
+            closed = true;
+        }
+    }
+
+    /**
+     * @return read-only сегменты, которые можно сливать: все, кроме последнего, в порядке создания
+     */
+    synchronized List<Segment> getSealedSegments() {
+        return new ArrayList<>(segments.subList(0, segments.size() - 1));
+    }
+
+    /**
+     * @return ключи, актуальная версия которых лежит в одном из переданных сегментов, вместе с записями индекса
+     */
+    Map<String, KeyDirEntry> getKeysLocatedIn(Set<Segment> sourceSegments) {
+        Map<String, KeyDirEntry> keys = new HashMap<>();
+        indexLock.readLock().lock();
+        try {
+            tableIndex.forEach((key, entry) -> {
+                if (sourceSegments.contains(entry.getSegment())) {
+                    keys.put(key, entry);
+                }
+            });
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return keys;
+    }
+
+    /**
+     * @return сколько байт в каждом из переданных сегментов занимают записи, на которые указывает индекс.
+     * Остальное место сегмента занято устаревшими записями
+     */
+    Map<Segment, Long> getLiveBytes(Set<Segment> sourceSegments) {
+        Map<Segment, Long> liveBytes = new IdentityHashMap<>();
+        indexLock.readLock().lock();
+        try {
+            tableIndex.forEach((key, entry) -> {
+                if (sourceSegments.contains(entry.getSegment())) {
+                    liveBytes.merge(entry.getSegment(), (long) entry.getRecordSize(), Long::sum);
                 }
-                try {
-                    lastSegment.write(objectKey, new byte[0]);
-                    tableIndex.onIndexedEntityUpdated(objectKey, lastSegment);
-                } catch (IOException e) {
-                    throw new DatabaseException("There is problem with input/output. Key = " + objectKey, e);
+            });
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        return liveBytes;
+    }
+
+    /**
+     * @return сроки истечения ключей таблицы
+     */
+    Map<String, Long> getExpirationTimes() {
+        indexLock.readLock().lock();
+        try {
+            return expirationWheel.getDeadlines();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return имя для сегмента - результата слияния (см {@link SegmentManifest#nextSegmentName(String)})
+     */
+    String nextSegmentName() {
+        return manifest.nextSegmentName(tableName);
+    }
+
+    /**
+     * Подменяет слитые сегменты результатом слияния. Сначала замена записывается в манифест: с этого момента
+     * при инициализации таблица состоит из новых сегментов, а старые файлы можно удалять.
+     * Ключ переводится на новый сегмент, только если за время слияния его не перезаписали;
+     * ключи, удаленные или истекшие в слитых сегментах, убираются из индекса или указывают на запись об удалении.
+     * Новые сегменты встают на место слитых
+     *
+     * @param oldSegments   слитые сегменты, идущие подряд
+     * @param newSegments   сегменты - результат слияния
+     * @param movedKeys     ключи и записи индекса, по которым они копировались
+     * @param newLocations  положения живых ключей в новых сегментах
+     * @throws IOException если не удалось записать замену в манифест. Тогда таблица остается со старыми сегментами
+     */
+    synchronized void replaceSegments(List<Segment> oldSegments, List<Segment> newSegments,
+                                      Map<String, KeyDirEntry> movedKeys, Map<String, KeyDirEntry> newLocations) throws IOException {
+        manifest.segmentsReplaced(oldSegments.stream().map(Segment::getName).collect(Collectors.toList()),
+                newSegments.stream().map(Segment::getName).collect(Collectors.toList()));
+
+        indexLock.writeLock().lock();
+        try {
+            movedKeys.forEach((key, oldEntry) -> {
+                Optional<KeyDirEntry> current = tableIndex.searchForKey(key);
+                if (current.isPresent() && current.get().pointsToSameRecord(oldEntry)) {
+                    KeyDirEntry newEntry = newLocations.get(key);
+                    if (newEntry != null) {
+                        tableIndex.onIndexedEntityUpdated(key, newEntry);
+                        if (newEntry.isRemoved()) {
+                            expirationWheel.cancel(key);
+                        }
+                    } else {
+                        tableIndex.onIndexedEntityRemoved(key);
+                        expirationWheel.cancel(key);
+                    }
                 }
+            });
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+
+        int position = segments.indexOf(oldSegments.get(0));
+        segments.removeAll(oldSegments);
+        segments.addAll(position, newSegments);
+    }
+
+    @Override
+    public void close() throws DatabaseException {
+        if (compactor != null) {
+            compactor.stop();
+        }
+        stopExpiration();
+        closeSegments();
+    }
+
+    private synchronized void stopExpiration() {
+        if (expirationTask != null) {
+            expirationTask.cancel(false);
+        }
+    }
+
+    private synchronized void closeSegments() throws DatabaseException {
+        discardSpareSegment();
+        for (Segment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                throw new DatabaseException("Can't close segment " + segment.getName() + " of table " + tableName, e);
             }
         }
+        try {
+            manifest.close();
+        } catch (IOException e) {
+            throw new DatabaseException("Can't close segment manifest of table " + tableName, e);
+        }
     }
 }
@@ -0,0 +1,264 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.logic.DatabaseCache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потокобезопасный кэш значений таблицы с политикой W-TinyLFU, устойчивый к однократным проходам по ключам.
+ * Как и {@link StripedDatabaseCache}, ограничен суммарным размером записей и разделен на независимые части по хешу ключа.
+ * <p>
+ * Каждая часть состоит из окна - маленького LRU на 1% лимита - и основной области - сегментированного LRU
+ * из испытательной (20%) и защищенной (80%) частей. Новая запись попадает в окно. Вытесненная из окна запись
+ * попадает в основную область, только если читалась чаще, чем запись, которую придется ради нее вытеснить
+ * (частоты оцениваются по {@link FrequencySketch}). Повторное чтение переводит запись из испытательной части в защищенную.
+ * Поэтому ключ, прочитанный один раз, не вытесняет часто читаемые ключи
+ */
+public class TinyLfuDatabaseCache implements DatabaseCache {
+    private static final int STRIPES = 16;
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    /**
+     * Ожидаемый размер записи: по нему выбирается ширина счетчика частот
+     */
+    private static final int EXPECTED_ENTRY_BYTES = 256;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long maxBytes;
+
+    /**
+     * @param maxBytes сколько байт могут занимать записи кэша. 0 - кэш ничего не хранит
+     */
+    public TinyLfuDatabaseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxBytes / STRIPES);
+        }
+    }
+
+    /**
+     * Чтение учитывается в частоте ключа, даже если значения в кэше нет
+     */
+    @Override
+    public byte[] get(String key) {
+        return stripeFor(key).get(key);
+    }
+
+    @Override
+    public void set(String key, byte[] value) {
+        stripeFor(key).set(key, value);
+    }
+
+    @Override
+    public void delete(String key) {
+        stripeFor(key).delete(key);
+    }
+
+    /**
+     * @return сколько байт сейчас занимают записи кэша
+     */
+    public long getCachedBytes() {
+        long cachedBytes = 0;
+        for (Stripe stripe : stripes) {
+            cachedBytes += stripe.getCachedBytes();
+        }
+        return cachedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final FrequencySketch sketch;
+        private final LinkedHashMap<String, byte[]> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, byte[]> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, byte[]> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long windowCapacity;
+        private final long mainCapacity;
+        private final long protectedCapacity;
+        private long windowBytes = 0;
+        private long probationBytes = 0;
+        private long protectedBytes = 0;
+
+        private Stripe(long capacity) {
+            this.windowCapacity = capacity * WINDOW_PERCENT / 100;
+            this.mainCapacity = capacity - windowCapacity;
+            this.protectedCapacity = mainCapacity * PROTECTED_PERCENT / 100;
+            this.sketch = new FrequencySketch(capacity / EXPECTED_ENTRY_BYTES);
+        }
+
+        private byte[] get(String key) {
+            lock.lock();
+            try {
+                sketch.increment(key);
+                byte[] value = window.get(key);
+                if (value == null) {
+                    value = protectedEntries.get(key);
+                }
+                if (value == null) {
+                    value = probation.remove(key);
+                    if (value != null) {
+                        long weight = StripedDatabaseCache.weigh(key, value);
+                        probationBytes -= weight;
+                        protectedEntries.put(key, value);
+                        protectedBytes += weight;
+                        demoteProtected();
+                    }
+                }
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Новое значение кладется в окно, значение уже закэшированного ключа заменяется на месте.
+         * Слишком большое значение не кладется, а прежнее значение ключа удаляется, чтобы не читалось устаревшее
+         */
+        private void set(String key, byte[] value) {
+            long weight = StripedDatabaseCache.weigh(key, value);
+            lock.lock();
+            try {
+                if (weight > mainCapacity) {
+                    removeEntry(key);
+                    return;
+                }
+
+                if (window.containsKey(key)) {
+                    byte[] previous = window.put(key, value);
+                    windowBytes += weight - StripedDatabaseCache.weigh(key, previous);
+                } else if (!replaceInMain(key, value)) {
+                    window.put(key, value);
+                    windowBytes += weight;
+                }
+                evictFromWindow();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return {@code false} - если ключа нет в основной области
+         */
+        private boolean replaceInMain(String key, byte[] value) {
+            long weight = StripedDatabaseCache.weigh(key, value);
+            byte[] previous = probation.get(key);
+            if (previous != null) {
+                probation.put(key, value);
+                probationBytes += weight - StripedDatabaseCache.weigh(key, previous);
+            } else if ((previous = protectedEntries.get(key)) != null) {
+                protectedEntries.put(key, value);
+                protectedBytes += weight - StripedDatabaseCache.weigh(key, previous);
+                demoteProtected();
+            } else {
+                return false;
+            }
+            while (probationBytes + protectedBytes > mainCapacity) {
+                evictMainVictim();
+            }
+            return true;
+        }
+
+        /**
+         * Переносит вытесненные из окна записи в основную область, если они проходят отбор по частоте
+         */
+        private void evictFromWindow() {
+            Iterator<Map.Entry<String, byte[]>> eldest = window.entrySet().iterator();
+            while (windowBytes > windowCapacity && eldest.hasNext()) {
+                Map.Entry<String, byte[]> candidate = eldest.next();
+                eldest.remove();
+                windowBytes -= StripedDatabaseCache.weigh(candidate.getKey(), candidate.getValue());
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        }
+
+        /**
+         * Кладет запись в испытательную часть. Если места нет, вытесняет давно не читанные записи основной области,
+         * пока кандидат читался чаще каждой из них. Иначе кандидат отбрасывается
+         */
+        private void admit(String key, byte[] value) {
+            long weight = StripedDatabaseCache.weigh(key, value);
+            int candidateFrequency = sketch.frequency(key);
+            while (probationBytes + protectedBytes + weight > mainCapacity) {
+                Map<String, byte[]> victims = probation.isEmpty() ? protectedEntries : probation;
+                String victim = victims.keySet().iterator().next();
+                if (candidateFrequency <= sketch.frequency(victim)) {
+                    return;
+                }
+                evictMainVictim();
+            }
+            probation.put(key, value);
+            probationBytes += weight;
+        }
+
+        /**
+         * Вытесняет самую давно читанную запись испытательной части, а если она пуста - защищенной
+         */
+        private void evictMainVictim() {
+            boolean fromProbation = !probation.isEmpty();
+            Iterator<Map.Entry<String, byte[]>> eldest = (fromProbation ? probation : protectedEntries).entrySet().iterator();
+            Map.Entry<String, byte[]> victim = eldest.next();
+            eldest.remove();
+            long weight = StripedDatabaseCache.weigh(victim.getKey(), victim.getValue());
+            if (fromProbation) {
+                probationBytes -= weight;
+            } else {
+                protectedBytes -= weight;
+            }
+        }
+
+        /**
+         * Переводит давно не читанные записи переполненной защищенной части в испытательную
+         */
+        private void demoteProtected() {
+            Iterator<Map.Entry<String, byte[]>> eldest = protectedEntries.entrySet().iterator();
+            while (protectedBytes > protectedCapacity && eldest.hasNext()) {
+                Map.Entry<String, byte[]> entry = eldest.next();
+                eldest.remove();
+                long weight = StripedDatabaseCache.weigh(entry.getKey(), entry.getValue());
+                protectedBytes -= weight;
+                probation.put(entry.getKey(), entry.getValue());
+                probationBytes += weight;
+            }
+        }
+
+        private void delete(String key) {
+            lock.lock();
+            try {
+                removeEntry(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void removeEntry(String key) {
+            byte[] previous;
+            if ((previous = window.remove(key)) != null) {
+                windowBytes -= StripedDatabaseCache.weigh(key, previous);
+            } else if ((previous = probation.remove(key)) != null) {
+                probationBytes -= StripedDatabaseCache.weigh(key, previous);
+            } else if ((previous = protectedEntries.remove(key)) != null) {
+                protectedBytes -= StripedDatabaseCache.weigh(key, previous);
+            }
+        }
+
+        private long getCachedBytes() {
+            lock.lock();
+            try {
+                return windowBytes + probationBytes + protectedBytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -2,9 +2,11 @@ package com.itmo.java.basics.logic.io;
 
 import com.itmo.java.basics.logic.DatabaseRecord;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.impl.ExpiringDatabaseRecord;
 import com.itmo.java.basics.logic.impl.RemoveDatabaseRecord;
 import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
@@ -22,7 +24,23 @@ public class DatabaseInputStream extends DataInputStream {
     private long read = 0;
 
     public DatabaseInputStream(InputStream inputStream) {
-        super(inputStream);
+        super(inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream));
+    }
+
+    /**
+     * Читает заголовок сегмента (см {@link SegmentFormat}). Если заголовка нет, сегмент старого формата
+     * и поток остается в начале
+     *
+     * @return версию формата сегмента
+     */
+    public int readFormatVersion() throws IOException {
+        in.mark(SegmentFormat.HEADER_SIZE);
+        byte[] header = in.readNBytes(SegmentFormat.HEADER_SIZE);
+        int version = SegmentFormat.detectVersion(ByteBuffer.wrap(header));
+        if (version == SegmentFormat.LEGACY_VERSION) {
+            in.reset();
+        }
+        return version;
     }
 
     /**
@@ -45,19 +63,95 @@ public class DatabaseInputStream extends DataInputStream {
 
             read += 4 + keySize + 4;
 
+            long expirationTime = DatabaseRecord.NO_EXPIRATION;
+            if (valueSize == SegmentFormat.EXPIRING_VALUE_SIZE) {
+                buff = ByteBuffer.wrap(in.readNBytes(SegmentFormat.EXPIRATION_SIZE));
+                expirationTime = buff.getLong();
+                valueSize = buff.getInt();
+                read += SegmentFormat.EXPIRATION_SIZE;
+            }
+
             if (valueSize == REMOVED_OBJECT_SIZE) {
                 RemoveDatabaseRecord removeDatabaseRecord = new RemoveDatabaseRecord(keyBytes);
                 return Optional.of(removeDatabaseRecord);
             } else {
                 byte[] valueBytes = in.readNBytes(valueSize);
-                SetDatabaseRecord record = new SetDatabaseRecord(keyBytes, valueBytes);
 
                 read += valueSize;
-                return Optional.of(record);
+                if (expirationTime != DatabaseRecord.NO_EXPIRATION) {
+                    return Optional.of(new ExpiringDatabaseRecord(keyBytes, valueBytes, expirationTime));
+                }
+                return Optional.of(new SetDatabaseRecord(keyBytes, valueBytes));
             }
 
         } catch (IOException | BufferUnderflowException e) {
             return Optional.empty();
         }
     }
+
+    /**
+     * Читает следующую запись сегмента версии {@link SegmentFormat#CHECKSUM_VERSION} и проверяет ее контрольную сумму.
+     * Запись с пустым ключом означает начало предвыделенной части файла, после нее поток не читается
+     *
+     * @return следующую запись. {@link Optional#empty()} - если запись оборвана или ее контрольная сумма не сошлась
+     */
+    public Optional<DatabaseRecord> readCheckedDbUnit() throws IOException {
+        byte[] keySizeBytes = in.readNBytes(4);
+        if (keySizeBytes.length < 4) {
+            return Optional.empty();
+        }
+        int keySize = ByteBuffer.wrap(keySizeBytes).getInt();
+        if (keySize == 0) {
+            return Optional.of(new SetDatabaseRecord(new byte[0], new byte[0]));
+        }
+        if (keySize < 0 || keySize > available()) {
+            return Optional.empty();
+        }
+
+        byte[] keyBytes = in.readNBytes(keySize);
+        byte[] valueSizeBytes = in.readNBytes(4);
+        if (keyBytes.length < keySize || valueSizeBytes.length < 4) {
+            return Optional.empty();
+        }
+        int valueSize = ByteBuffer.wrap(valueSizeBytes).getInt();
+
+        byte[] expirationBytes = new byte[0];
+        long expirationTime = DatabaseRecord.NO_EXPIRATION;
+        if (valueSize == SegmentFormat.EXPIRING_VALUE_SIZE) {
+            expirationBytes = in.readNBytes(SegmentFormat.EXPIRATION_SIZE);
+            if (expirationBytes.length < SegmentFormat.EXPIRATION_SIZE) {
+                return Optional.empty();
+            }
+            ByteBuffer expiration = ByteBuffer.wrap(expirationBytes);
+            expirationTime = expiration.getLong();
+            valueSize = expiration.getInt();
+            if (expirationTime == DatabaseRecord.NO_EXPIRATION || valueSize < 0) {
+                return Optional.empty();
+            }
+        }
+        if (valueSize < REMOVED_OBJECT_SIZE || valueSize > available()) {
+            return Optional.empty();
+        }
+
+        byte[] valueBytes = valueSize == REMOVED_OBJECT_SIZE ? new byte[0] : in.readNBytes(valueSize);
+        byte[] checksumBytes = in.readNBytes(SegmentFormat.CHECKSUM_SIZE);
+        if (valueBytes.length < Math.max(valueSize, 0) || checksumBytes.length < SegmentFormat.CHECKSUM_SIZE) {
+            return Optional.empty();
+        }
+
+        int checksum = SegmentFormat.checksum(ByteBuffer.wrap(keySizeBytes), ByteBuffer.wrap(keyBytes),
+                ByteBuffer.wrap(valueSizeBytes), ByteBuffer.wrap(expirationBytes), ByteBuffer.wrap(valueBytes));
+        if (checksum != ByteBuffer.wrap(checksumBytes).getInt()) {
+            return Optional.empty();
+        }
+
+        read += 4 + keySize + 4 + expirationBytes.length + valueBytes.length + SegmentFormat.CHECKSUM_SIZE;
+        if (valueSize == REMOVED_OBJECT_SIZE) {
+            return Optional.of(new RemoveDatabaseRecord(keyBytes));
+        }
+        if (expirationTime != DatabaseRecord.NO_EXPIRATION) {
+            return Optional.of(new ExpiringDatabaseRecord(keyBytes, valueBytes, expirationTime));
+        }
+        return Optional.of(new SetDatabaseRecord(keyBytes, valueBytes));
+    }
 }
@@ -1,5 +1,6 @@
 package com.itmo.java.basics.logic.io;
 
+import com.itmo.java.basics.logic.DatabaseRecord;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
 
 import java.io.*;
@@ -29,21 +30,57 @@ public class DatabaseOutputStream extends DataOutputStream {
      * @throws IOException если запись не удалась
      */
     public int write(WritableDatabaseRecord databaseRecord) throws IOException {
-        byte[] data = new byte[(int) databaseRecord.size()];
-        byte[] keySizeByteArray = ByteBuffer.allocate(4).putInt(databaseRecord.getKeySize()).array();
-        byte[] valueSizeByteArray = ByteBuffer.allocate(4).putInt(databaseRecord.getValueSize()).array();
+        ByteBuffer buff = ByteBuffer.allocate((int) databaseRecord.size());
+        putRecord(buff, databaseRecord);
 
-        ByteBuffer buff = ByteBuffer.wrap(data);
-        buff.put(keySizeByteArray);
+        out.write(buff.array());
+        return buff.capacity();
+    }
+
+    /**
+     * Записывает заголовок сегмента текущей версии формата (см {@link SegmentFormat})
+     *
+     * @return размер заголовка
+     * @throws IOException если запись не удалась
+     */
+    public int writeSegmentHeader() throws IOException {
+        writeInt(SegmentFormat.MAGIC);
+        writeInt(SegmentFormat.CURRENT_VERSION);
+        return SegmentFormat.HEADER_SIZE;
+    }
+
+    /**
+     * Записывает запись так же, как {@link #write(WritableDatabaseRecord)}, и дописывает после нее CRC32C всех ее байт.
+     * Используется в сегментах версии {@link SegmentFormat#CHECKSUM_VERSION}
+     *
+     * @param databaseRecord запись
+     * @return размер записи вместе с контрольной суммой
+     * @throws IOException если запись не удалась
+     */
+    public int writeWithChecksum(WritableDatabaseRecord databaseRecord) throws IOException {
+        int recordSize = (int) databaseRecord.size();
+        ByteBuffer buff = ByteBuffer.allocate(recordSize + SegmentFormat.CHECKSUM_SIZE);
+        putRecord(buff, databaseRecord);
+        buff.putInt(SegmentFormat.checksum(ByteBuffer.wrap(buff.array(), 0, recordSize)));
+
+        out.write(buff.array());
+        return buff.capacity();
+    }
+
+    /**
+     * Кладет запись в буфер. У истекающей записи вместо размера значения пишется {@link SegmentFormat#EXPIRING_VALUE_SIZE},
+     * за ним момент истечения и настоящий размер значения
+     */
+    private static void putRecord(ByteBuffer buff, WritableDatabaseRecord databaseRecord) {
+        buff.putInt(databaseRecord.getKeySize());
         buff.put(databaseRecord.getKey());
-        buff.put(valueSizeByteArray);
+        if (databaseRecord.getExpirationTime() != DatabaseRecord.NO_EXPIRATION) {
+            buff.putInt(SegmentFormat.EXPIRING_VALUE_SIZE);
+            buff.putLong(databaseRecord.getExpirationTime());
+        }
+        buff.putInt(databaseRecord.getValueSize());
         if (databaseRecord.getValueSize() > 0) {
             buff.put(databaseRecord.getValue());
         }
-
-        data = buff.array();
-
-        out.write(data);
-        return data.length;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package com.itmo.java.basics.logic.io;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Версии формата файла сегмента.
+ * <p>
+ * Версия 1 (старая): записи {@code keySize|key|valueSize|value} с самого начала файла.
+ * Версия 2: заголовок {@code MAGIC|version}, затем записи {@code keySize|key|valueSize|value|crc32c},
+ * где контрольная сумма считается по всем предыдущим байтам записи.
+ * Версия 3: read-only сегмент, записи версии 2 которого сжаты блоками (см {@code CompressedSegmentFile}).
+ * <p>
+ * Размер значения -1 ({@link #REMOVED_VALUE_SIZE}) означает запись об удалении ключа.
+ * Размер значения -2 ({@link #EXPIRING_VALUE_SIZE}) означает запись с моментом истечения:
+ * {@code keySize|key|-2|expirationTime|valueSize|value}, где expirationTime - миллисекунды от эпохи.
+ * MAGIC отрицателен, поэтому не может совпасть с размером ключа в начале сегмента версии 1
+ */
+public final class SegmentFormat {
+    public static final int MAGIC = 0xDBC5C0DE;
+    public static final int LEGACY_VERSION = 1;
+    public static final int CHECKSUM_VERSION = 2;
+    public static final int COMPRESSED_VERSION = 3;
+    public static final int CURRENT_VERSION = CHECKSUM_VERSION;
+
+    /**
+     * Размер заголовка сегмента версии 2
+     */
+    public static final int HEADER_SIZE = 8;
+    public static final int CHECKSUM_SIZE = 4;
+
+    public static final int REMOVED_VALUE_SIZE = -1;
+    public static final int EXPIRING_VALUE_SIZE = -2;
+    /**
+     * Сколько байт добавляет к записи момент истечения: сам момент и настоящий размер значения
+     */
+    public static final int EXPIRATION_SIZE = 12;
+
+    private SegmentFormat() {
+    }
+
+    /**
+     * @return с какого смещения начинаются записи в сегменте данной версии
+     */
+    public static int headerSize(int version) {
+        return version == LEGACY_VERSION ? 0 : HEADER_SIZE;
+    }
+
+    /**
+     * @return сколько байт добавляется к каждой записи сегмента данной версии
+     */
+    public static int checksumSize(int version) {
+        return version == LEGACY_VERSION ? 0 : CHECKSUM_SIZE;
+    }
+
+    /**
+     * Определяет версию сегмента по первым байтам файла
+     *
+     * @param header начало файла, не меньше {@link #HEADER_SIZE} байт, если файл не короче
+     */
+    public static int detectVersion(ByteBuffer header) {
+        if (header.remaining() < HEADER_SIZE || header.getInt(header.position()) != MAGIC) {
+            return LEGACY_VERSION;
+        }
+        return header.getInt(header.position() + 4);
+    }
+
+    /**
+     * Считает контрольную сумму записи по ее частям, идущим подряд в файле
+     */
+    public static int checksum(ByteBuffer... parts) {
+        CRC32C crc = new CRC32C();
+        for (ByteBuffer part : parts) {
+            crc.update(part.duplicate());
+        }
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,28 @@
+package com.itmo.java.client.client;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Страница обхода ключей таблицы: пары ключ-значение в порядке, в котором их отдал сервер, и курсор следующей страницы
+ */
+public class KeyScanPage {
+    private final Map<String, String> entries;
+    private final String nextCursor;
+
+    public KeyScanPage(Map<String, String> entries, String nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+
+    public Map<String, String> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return курсор, который нужно передать за следующей страницей. {@link Optional#empty()} - если обход закончен
+     */
+    public Optional<String> getNextCursor() {
+        return Optional.ofNullable(nextCursor);
+    }
+}
@@ -10,9 +10,45 @@ public interface KvsClient {
 
     String createTable(String tableName) throws DatabaseExecutionException;
 
+    /**
+     * @param tableType тип таблицы, например "sstable" для таблицы с упорядоченными ключами
+     */
+    String createTable(String tableName, String tableType) throws DatabaseExecutionException;
+
     String get(String tableName, String key) throws DatabaseExecutionException;
 
     String set(String tableName, String key, String value) throws DatabaseExecutionException;
 
+    /**
+     * Записывает значение, которое истекает через заданное время
+     *
+     * @param ttlMillis срок жизни ключа в миллисекундах
+     */
+    String set(String tableName, String key, String value, long ttlMillis) throws DatabaseExecutionException;
+
+    /**
+     * Создает снимок базы данных на сервере
+     *
+     * @param snapshotName имя снимка. {@code null} - имя выберет сервер
+     * @return путь к директории снимка на сервере
+     */
+    String snapshot(String snapshotName) throws DatabaseExecutionException;
+
+    /**
+     * Меняет на ходу лимит общего кэша сервера
+     *
+     * @param cacheBytes новый лимит в байтах
+     */
+    String setCacheBytes(long cacheBytes) throws DatabaseExecutionException;
+
     String delete(String tableName, String key) throws DatabaseExecutionException;
+
+    /**
+     * Читает страницу ключей таблицы вместе со значениями
+     *
+     * @param prefix префикс ключей, пустая строка - все ключи
+     * @param cursor курсор из предыдущей страницы. {@code null} - первая страница
+     * @param limit  сколько пар вернуть не больше
+     */
+    KeyScanPage scan(String tableName, String prefix, String cursor, int limit) throws DatabaseExecutionException;
 }
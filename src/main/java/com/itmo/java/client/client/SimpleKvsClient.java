@@ -5,8 +5,12 @@ import com.itmo.java.client.command.*;
 import com.itmo.java.client.connection.KvsConnection;
 import com.itmo.java.client.exception.ConnectionException;
 import com.itmo.java.client.exception.DatabaseExecutionException;
+import com.itmo.java.protocol.model.RespArray;
 import com.itmo.java.protocol.model.RespObject;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
 public class SimpleKvsClient implements KvsClient {
@@ -41,7 +45,12 @@ public class SimpleKvsClient implements KvsClient {
 
     @Override
     public String createTable(String tableName) throws DatabaseExecutionException {
-        CreateTableKvsCommand createCommand = new CreateTableKvsCommand(databaseName, tableName);
+        return createTable(tableName, null);
+    }
+
+    @Override
+    public String createTable(String tableName, String tableType) throws DatabaseExecutionException {
+        CreateTableKvsCommand createCommand = new CreateTableKvsCommand(databaseName, tableName, tableType);
         try {
             RespObject response = connectionSupplier.get().send(createCommand.getCommandId(), createCommand.serialize());
             if (response.isError()) {
@@ -69,7 +78,15 @@ public class SimpleKvsClient implements KvsClient {
 
     @Override
     public String set(String tableName, String key, String value) throws DatabaseExecutionException {
-        SetKvsCommand createSetCommand = new SetKvsCommand(databaseName, tableName, key, value);
+        return sendSet(new SetKvsCommand(databaseName, tableName, key, value));
+    }
+
+    @Override
+    public String set(String tableName, String key, String value, long ttlMillis) throws DatabaseExecutionException {
+        return sendSet(new SetKvsCommand(databaseName, tableName, key, value, ttlMillis));
+    }
+
+    private String sendSet(SetKvsCommand createSetCommand) throws DatabaseExecutionException {
         try {
             RespObject response = connectionSupplier.get().send(createSetCommand.getCommandId(), createSetCommand.serialize());
             if (response.isError()) {
@@ -81,6 +98,34 @@ public class SimpleKvsClient implements KvsClient {
         }
     }
 
+    @Override
+    public String snapshot(String snapshotName) throws DatabaseExecutionException {
+        SnapshotKvsCommand createSnapshotCommand = new SnapshotKvsCommand(databaseName, snapshotName);
+        try {
+            RespObject response = connectionSupplier.get().send(createSnapshotCommand.getCommandId(), createSnapshotCommand.serialize());
+            if (response.isError()) {
+                throw new DatabaseExecutionException(response.asString());
+            }
+            return response.asString();
+        } catch (ConnectionException e) {
+            throw new DatabaseExecutionException("Error! There is a problem with connection");
+        }
+    }
+
+    @Override
+    public String setCacheBytes(long cacheBytes) throws DatabaseExecutionException {
+        SetCacheBytesKvsCommand createSetCacheBytesCommand = new SetCacheBytesKvsCommand(cacheBytes);
+        try {
+            RespObject response = connectionSupplier.get().send(createSetCacheBytesCommand.getCommandId(), createSetCacheBytesCommand.serialize());
+            if (response.isError()) {
+                throw new DatabaseExecutionException(response.asString());
+            }
+            return response.asString();
+        } catch (ConnectionException e) {
+            throw new DatabaseExecutionException("Error! There is a problem with connection");
+        }
+    }
+
     @Override
     public String delete(String tableName, String key) throws DatabaseExecutionException {
         DeleteKvsCommand createDeleteCommand = new DeleteKvsCommand(databaseName, tableName, key);
@@ -94,4 +139,33 @@ public class SimpleKvsClient implements KvsClient {
             throw new DatabaseExecutionException("Error! There is a problem with connection");
         }
     }
+
+    /**
+     * Ответ сервера - {@link RespArray} из курсора следующей страницы и массива с ключами и значениями вперемешку
+     */
+    @Override
+    public KeyScanPage scan(String tableName, String prefix, String cursor, int limit) throws DatabaseExecutionException {
+        ScanKvsCommand createScanCommand = new ScanKvsCommand(databaseName, tableName, prefix, cursor, limit);
+        RespObject response;
+        try {
+            response = connectionSupplier.get().send(createScanCommand.getCommandId(), createScanCommand.serialize());
+        } catch (ConnectionException e) {
+            throw new DatabaseExecutionException("Error! There is a problem with connection");
+        }
+        if (response.isError()) {
+            throw new DatabaseExecutionException(response.asString());
+        }
+        if (!(response instanceof RespArray) || ((RespArray) response).getObjects().size() != 2
+                || !(((RespArray) response).getObjects().get(1) instanceof RespArray)) {
+            throw new DatabaseExecutionException("Error! Unexpected response to scan: " + response.asString());
+        }
+
+        List<RespObject> page = ((RespArray) response).getObjects();
+        List<RespObject> pairs = ((RespArray) page.get(1)).getObjects();
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < pairs.size(); i += 2) {
+            entries.put(pairs.get(i).asString(), pairs.get(i + 1).asString());
+        }
+        return new KeyScanPage(entries, page.get(0).asString());
+    }
 }
@@ -11,16 +11,26 @@ public class CreateTableKvsCommand implements KvsCommand {
     private static final String COMMAND_NAME = "CREATE_TABLE";
     private final String databaseName;
     private final String tableName;
+    private final String tableType;
     private final int id;
 
     public CreateTableKvsCommand(String databaseName, String tableName) {
+        this(databaseName, tableName, null);
+    }
+
+    /**
+     * @param tableType тип таблицы (например, "hash" или "sstable"). {@code null} - тип по умолчанию
+     */
+    public CreateTableKvsCommand(String databaseName, String tableName, String tableType) {
         this.databaseName = databaseName;
         this.tableName = tableName;
+        this.tableType = tableType;
         this.id = idGen.incrementAndGet();
     }
 
     /**
-     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}
+     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}.
+     * Тип таблицы передается, только если он задан
      *
      * @return объект
      */
@@ -30,8 +40,10 @@ public class CreateTableKvsCommand implements KvsCommand {
         RespBulkString commandNameResp = new RespBulkString(COMMAND_NAME.getBytes());
         RespBulkString databaseNameResp = new RespBulkString(databaseName.getBytes());
         RespBulkString tableNameResp = new RespBulkString(tableName.getBytes());
-        RespArray dataResp = new RespArray(commandIdResp, commandNameResp, databaseNameResp, tableNameResp);
-        return dataResp;
+        if (tableType == null) {
+            return new RespArray(commandIdResp, commandNameResp, databaseNameResp, tableNameResp);
+        }
+        return new RespArray(commandIdResp, commandNameResp, databaseNameResp, tableNameResp, new RespBulkString(tableType.getBytes()));
     }
 
     @Override
@@ -0,0 +1,60 @@
+package com.itmo.java.client.command;
+
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Команда для постраничного обхода ключей таблицы
+ */
+public class ScanKvsCommand implements KvsCommand {
+    private static final String COMMAND_NAME = "SCAN_KEYS";
+    private final String databaseName;
+    private final String tableName;
+    private final String prefix;
+    private final String cursor;
+    private final int limit;
+    private final int id;
+
+    /**
+     * @param prefix префикс ключей, пустая строка - все ключи
+     * @param cursor курсор из предыдущей страницы. {@code null} - первая страница
+     * @param limit  сколько пар вернуть не больше
+     */
+    public ScanKvsCommand(String databaseName, String tableName, String prefix, String cursor, int limit) {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        this.prefix = prefix;
+        this.cursor = cursor;
+        this.limit = limit;
+        this.id = idGen.incrementAndGet();
+    }
+
+    /**
+     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}.
+     * Курсор передается, только если он задан
+     *
+     * @return объект
+     */
+    @Override
+    public RespArray serialize() {
+        RespCommandId commandIdResp = new RespCommandId(id);
+        RespBulkString commandNameResp = new RespBulkString(COMMAND_NAME.getBytes());
+        RespBulkString databaseNameResp = new RespBulkString(databaseName.getBytes());
+        RespBulkString tableNameResp = new RespBulkString(tableName.getBytes());
+        RespBulkString prefixResp = new RespBulkString(prefix.getBytes(StandardCharsets.UTF_8));
+        RespBulkString limitResp = new RespBulkString(String.valueOf(limit).getBytes());
+        if (cursor == null) {
+            return new RespArray(commandIdResp, commandNameResp, databaseNameResp, tableNameResp, prefixResp, limitResp);
+        }
+        return new RespArray(commandIdResp, commandNameResp, databaseNameResp, tableNameResp, prefixResp, limitResp,
+                new RespBulkString(cursor.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public int getCommandId() {
+        return id;
+    }
+}
@@ -0,0 +1,35 @@
+package com.itmo.java.client.command;
+
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+
+/**
+ * Команда для изменения лимита общего кэша сервера
+ */
+public class SetCacheBytesKvsCommand implements KvsCommand {
+    private static final String COMMAND_NAME = "SET_CACHE_BYTES";
+    private final long cacheBytes;
+    private final int id;
+
+    public SetCacheBytesKvsCommand(long cacheBytes) {
+        this.cacheBytes = cacheBytes;
+        this.id = idGen.incrementAndGet();
+    }
+
+    /**
+     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}
+     *
+     * @return объект
+     */
+    @Override
+    public RespArray serialize() {
+        return new RespArray(new RespCommandId(id), new RespBulkString(COMMAND_NAME.getBytes()),
+                new RespBulkString(Long.toString(cacheBytes).getBytes()));
+    }
+
+    @Override
+    public int getCommandId() {
+        return id;
+    }
+}
@@ -11,18 +11,28 @@ public class SetKvsCommand implements KvsCommand {
     private final String tableName;
     private final String key;
     private final String value;
+    private final Long ttlMillis;
     private final int id;
 
     public SetKvsCommand(String databaseName, String tableName, String key, String value) {
+        this(databaseName, tableName, key, value, null);
+    }
+
+    /**
+     * @param ttlMillis срок жизни ключа в миллисекундах. {@code null} - ключ не истекает
+     */
+    public SetKvsCommand(String databaseName, String tableName, String key, String value, Long ttlMillis) {
         this.databaseName = databaseName;
         this.tableName = tableName;
         this.key = key;
         this.value = value;
+        this.ttlMillis = ttlMillis;
         this.id = idGen.incrementAndGet();
     }
 
     /**
-     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}
+     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}.
+     * Срок жизни передается, только если он задан
      *
      * @return объект
      */
@@ -34,8 +44,11 @@ public class SetKvsCommand implements KvsCommand {
         RespBulkString tableNameResp = new RespBulkString(tableName.getBytes());
         RespBulkString keyResp = new RespBulkString(key.getBytes());
         RespBulkString valueResp = new RespBulkString(value.getBytes());
-        RespArray dataResp = new RespArray(commandIdResp, commandNameResp, databaseNameResp, tableNameResp, keyResp, valueResp);
-        return dataResp;
+        if (ttlMillis == null) {
+            return new RespArray(commandIdResp, commandNameResp, databaseNameResp, tableNameResp, keyResp, valueResp);
+        }
+        return new RespArray(commandIdResp, commandNameResp, databaseNameResp, tableNameResp, keyResp, valueResp,
+                new RespBulkString(String.valueOf(ttlMillis).getBytes()));
     }
 
     @Override
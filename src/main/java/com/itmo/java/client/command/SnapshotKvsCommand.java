@@ -0,0 +1,46 @@
+package com.itmo.java.client.command;
+
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+
+/**
+ * Команда для создания снимка базы данных
+ */
+public class SnapshotKvsCommand implements KvsCommand {
+    private static final String COMMAND_NAME = "SNAPSHOT";
+    private final String databaseName;
+    private final String snapshotName;
+    private final int id;
+
+    /**
+     * @param snapshotName имя снимка. {@code null} - имя выберет сервер
+     */
+    public SnapshotKvsCommand(String databaseName, String snapshotName) {
+        this.databaseName = databaseName;
+        this.snapshotName = snapshotName;
+        this.id = idGen.incrementAndGet();
+    }
+
+    /**
+     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}.
+     * Имя снимка передается, только если оно задано
+     *
+     * @return объект
+     */
+    @Override
+    public RespArray serialize() {
+        RespCommandId commandIdResp = new RespCommandId(id);
+        RespBulkString commandNameResp = new RespBulkString(COMMAND_NAME.getBytes());
+        RespBulkString databaseNameResp = new RespBulkString(databaseName.getBytes());
+        if (snapshotName == null) {
+            return new RespArray(commandIdResp, commandNameResp, databaseNameResp);
+        }
+        return new RespArray(commandIdResp, commandNameResp, databaseNameResp, new RespBulkString(snapshotName.getBytes()));
+    }
+
+    @Override
+    public int getCommandId() {
+        return id;
+    }
+}
@@ -4,8 +4,7 @@ import com.itmo.java.protocol.model.*;
 
 import java.io.*;
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 
 public class RespReader implements AutoCloseable {
     private final BufferedReader bufferedReader;
@@ -118,14 +117,14 @@ public class RespReader implements AutoCloseable {
     }
 
     private byte[] myRead() throws IOException {
-        List<Byte> messageBytes = new LinkedList<>();
+        ByteArrayOutputStream messageBytes = new ByteArrayOutputStream();
 
         byte readByte = (byte) bufferedReader.read();
         if (readByte == -1) {
             throw new EOFException("Stream is empty");
         }
 
-        messageBytes.add(readByte);
+        messageBytes.write(readByte);
         byte firstByte = 0;
         byte secondByte = 0;
 
@@ -135,13 +134,9 @@ public class RespReader implements AutoCloseable {
             if (secondByte == -1) {
                 throw  new IOException("Error while reading");
             }
-            messageBytes.add(secondByte);
+            messageBytes.write(secondByte);
         }
-        byte[] message = new byte[messageBytes.size() - 2];
-        for (int i = 0; i < messageBytes.size() - 2; i++) {
-            message[i] = messageBytes.get(i);
-        }
-
-        return message;
+        byte[] message = messageBytes.toByteArray();
+        return Arrays.copyOf(message, message.length - 2);
     }
 }
\ No newline at end of file
@@ -50,14 +50,25 @@ public class RespBulkString implements RespObject {
 
     @Override
     public void write(OutputStream os) throws IOException {
-        os.write(CODE);
         if (data == null) {
+            os.write(CODE);
             os.write(String.valueOf(NULL_STRING_SIZE).getBytes());
         } else {
-            os.write(String.valueOf(data.length).getBytes());
-            os.write(CRLF);
+            os.write(header(data.length));
             os.write(data);
         }
         os.write(CRLF);
     }
+
+    /**
+     * Заголовок строки заданной длины: код, длина и CRLF. Нужен, чтобы записать сами данные отдельно
+     *
+     * @param length длина строки в байтах
+     */
+    public static byte[] header(int length) {
+        byte[] size = String.valueOf(length).getBytes();
+        ByteBuffer header = ByteBuffer.allocate(1 + size.length + CRLF.length);
+        header.put(CODE).put(size).put(CRLF);
+        return header.array();
+    }
 }
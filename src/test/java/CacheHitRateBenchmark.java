@@ -0,0 +1,124 @@
+import com.itmo.java.basics.logic.DatabaseCache;
+import com.itmo.java.basics.logic.impl.StripedDatabaseCache;
+import com.itmo.java.basics.logic.impl.TinyLfuDatabaseCache;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Сравнение доли попаданий LRU ({@link StripedDatabaseCache}) и W-TinyLFU ({@link TinyLfuDatabaseCache})
+ * с одинаковым лимитом в байтах. Обращения идут так же, как в CachingTable: чтение, а при промахе - запись в кэш.
+ * <p>
+ * Нагрузки:
+ * - zipf: ключи по закону Ципфа;
+ * - zipf + scans: та же нагрузка, а между ее порциями - однократные проходы по холодным ключам (ночные выгрузки).
+ * Доля попаданий считается только по обращениям онлайн-нагрузки;
+ * - loop: циклический проход по ключам, которых больше, чем влезает в кэш.
+ * <p>
+ * Это не тест: surefire его не запускает (см pom.xml). Запуск: {@code mvn test-compile},
+ * затем {@code java -cp target/classes:target/test-classes CacheHitRateBenchmark}
+ */
+public class CacheHitRateBenchmark {
+    private static final int KEYS = 100_000;
+    private static final int CACHED_KEYS = 2_000;
+    private static final int VALUE_SIZE = 100;
+    private static final int REQUESTS = 2_000_000;
+    private static final int SCAN_KEYS = 5_000;
+    private static final int REQUESTS_BETWEEN_SCANS = 10_000;
+    private static final byte[] VALUE = new byte[VALUE_SIZE];
+
+    public static void main(String[] args) {
+        long cacheBytes = CACHED_KEYS * StripedDatabaseCache.weigh("key" + KEYS, VALUE);
+        System.out.printf("keys=%d, cache=%d bytes (~%d values)%n%n", KEYS, cacheBytes, CACHED_KEYS);
+        System.out.printf("%-22s %10s %10s%n", "workload", "lru", "tiny-lfu");
+        for (double skew : new double[]{0.8, 0.99}) {
+            report("zipf " + skew, cacheBytes, cache -> zipf(cache, skew));
+            report("zipf " + skew + " + scans", cacheBytes, cache -> zipfWithScans(cache, skew));
+        }
+        report("loop", cacheBytes, CacheHitRateBenchmark::loop);
+    }
+
+    private static void report(String workload, long cacheBytes, ToDoubleFunction<DatabaseCache> run) {
+        double lru = run(StripedDatabaseCache::new, cacheBytes, run);
+        double tinyLfu = run(TinyLfuDatabaseCache::new, cacheBytes, run);
+        System.out.printf("%-22s %9.1f%% %9.1f%%%n", workload, lru * 100, tinyLfu * 100);
+    }
+
+    /**
+     * @param cacheFactory создает кэш по лимиту в байтах
+     * @return доля попаданий нагрузки на новом кэше
+     */
+    private static double run(LongFunction<DatabaseCache> cacheFactory, long cacheBytes, ToDoubleFunction<DatabaseCache> run) {
+        return run.applyAsDouble(cacheFactory.apply(cacheBytes));
+    }
+
+    private static double zipf(DatabaseCache cache, double skew) {
+        Zipf zipf = new Zipf(KEYS, skew, new Random(42));
+        long hits = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            hits += access(cache, "key" + zipf.next());
+        }
+        return (double) hits / REQUESTS;
+    }
+
+    private static double zipfWithScans(DatabaseCache cache, double skew) {
+        Zipf zipf = new Zipf(KEYS, skew, new Random(42));
+        long hits = 0;
+        int scan = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            if (i % REQUESTS_BETWEEN_SCANS == 0) {
+                for (int key = 0; key < SCAN_KEYS; key++) {
+                    access(cache, "scan" + scan + "_" + key);
+                }
+                scan++;
+            }
+            hits += access(cache, "key" + zipf.next());
+        }
+        return (double) hits / REQUESTS;
+    }
+
+    private static double loop(DatabaseCache cache) {
+        int loopKeys = CACHED_KEYS * 3 / 2;
+        long hits = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            hits += access(cache, "key" + (i % loopKeys));
+        }
+        return (double) hits / REQUESTS;
+    }
+
+    private static int access(DatabaseCache cache, String key) {
+        if (cache.get(key) != null) {
+            return 1;
+        }
+        cache.set(key, VALUE);
+        return 0;
+    }
+
+    /**
+     * Номера ключей по закону Ципфа: ключ с номером i читается пропорционально 1 / (i + 1)^skew
+     */
+    private static final class Zipf {
+        private final double[] cumulative;
+        private final Random random;
+
+        private Zipf(int keys, double skew, Random random) {
+            this.cumulative = new double[keys];
+            this.random = random;
+            double sum = 0;
+            for (int i = 0; i < keys; i++) {
+                sum += 1 / Math.pow(i + 1, skew);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < keys; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        private int next() {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -58,9 +58,9 @@ public class Test3 {
                 null,
                 null
         );
-        Database database1 = DatabaseImpl.create("db1", dbRoot);
-        Database database2 = DatabaseImpl.create("db2", dbRoot);
-        Database database3 = DatabaseImpl.create("db3", dbRoot);
+        Database database1 = DatabaseImpl.create("db1", dbRoot, environment.getDatabaseConfig());
+        Database database2 = DatabaseImpl.create("db2", dbRoot, environment.getDatabaseConfig());
+        Database database3 = DatabaseImpl.create("db3", dbRoot, environment.getDatabaseConfig());
 
         database1.createTableIfNotExists("table1");
         database2.createTableIfNotExists("table2");
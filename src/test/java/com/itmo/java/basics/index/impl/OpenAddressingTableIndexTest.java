@@ -0,0 +1,193 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.logic.Segment;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class OpenAddressingTableIndexTest {
+    /**
+     * Столько слотов у нового индекса: пока ключей меньше 70% от этого числа, индекс не перестраивается
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Segment segment = mock(Segment.class);
+
+    @Test
+    public void onIndexedEntityRemoved_KeepsCollidingKeysFindable() {
+        checkCollidingKeys(false);
+    }
+
+    @Test
+    public void onIndexedEntityRemoved_KeepsCollidingKeysFindable_OffHeap() {
+        checkCollidingKeys(true);
+    }
+
+    @Test
+    public void onIndexedEntityRemoved_KeepsChainsWrappingAroundTheEnd() {
+        checkWrappingChain(false);
+    }
+
+    @Test
+    public void onIndexedEntityRemoved_KeepsChainsWrappingAroundTheEnd_OffHeap() {
+        checkWrappingChain(true);
+    }
+
+    @Test
+    public void randomOperations_MatchHashMap() {
+        checkRandomOperations(false);
+    }
+
+    @Test
+    public void randomOperations_MatchHashMap_OffHeap() {
+        checkRandomOperations(true);
+    }
+
+    /**
+     * Ключи из пар "Aa" и "BB" имеют одинаковый {@link String#hashCode()}, поэтому попадают в один слот
+     * и образуют одну цепочку пробирования. Удаление из середины цепочки не должно терять ключи после него
+     */
+    private void checkCollidingKeys(boolean offHeap) {
+        OpenAddressingTableIndex index = new OpenAddressingTableIndex(offHeap);
+        List<String> keys = collidingKeys(4);
+        Map<String, KeyDirEntry> expected = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            put(index, expected, keys.get(i), i);
+        }
+
+        for (int i = 0; i < keys.size(); i += 2) {
+            remove(index, expected, keys.get(i));
+            check(index, expected);
+        }
+        for (int i = 0; i < keys.size(); i += 2) {
+            put(index, expected, keys.get(i), 100 + i);
+        }
+        check(index, expected);
+        for (String key : keys) {
+            remove(index, expected, key);
+        }
+        check(index, expected);
+    }
+
+    /**
+     * Ключи, чей начальный слот - последние слоты массива: цепочка продолжается с начала массива,
+     * и при удалении сдвиг назад должен перейти через его конец
+     */
+    private void checkWrappingChain(boolean offHeap) {
+        OpenAddressingTableIndex index = new OpenAddressingTableIndex(offHeap);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < 6; i++) {
+            int home = homeSlot("key" + i);
+            if (home >= INITIAL_CAPACITY - 2) {
+                keys.add("key" + i);
+            }
+        }
+        for (int i = 0; keys.size() < 9; i++) {
+            if (homeSlot("first" + i) == 0) {
+                keys.add("first" + i);
+            }
+        }
+
+        Map<String, KeyDirEntry> expected = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            put(index, expected, keys.get(i), i);
+        }
+        check(index, expected);
+
+        for (String key : List.copyOf(keys)) {
+            remove(index, expected, key);
+            check(index, expected);
+        }
+    }
+
+    private void checkRandomOperations(boolean offHeap) {
+        OpenAddressingTableIndex index = new OpenAddressingTableIndex(offHeap);
+        Map<String, KeyDirEntry> expected = new HashMap<>();
+        List<String> keys = new ArrayList<>(collidingKeys(8));
+        for (int i = 0; i < 3000; i++) {
+            keys.add("key" + i);
+        }
+
+        Random random = new Random(42);
+        for (int operation = 0; operation < 50_000; operation++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                remove(index, expected, key);
+            } else {
+                put(index, expected, key, operation);
+            }
+            if (operation % 5_000 == 0) {
+                check(index, expected);
+            }
+        }
+        check(index, expected);
+    }
+
+    private void put(OpenAddressingTableIndex index, Map<String, KeyDirEntry> expected, String key, long offset) {
+        KeyDirEntry entry = new KeyDirEntry(segment, offset, (int) (offset % 1000) + 1, offset % 7 == 0);
+        index.onIndexedEntityUpdated(key, entry);
+        expected.put(key, entry);
+    }
+
+    private void remove(OpenAddressingTableIndex index, Map<String, KeyDirEntry> expected, String key) {
+        index.onIndexedEntityRemoved(key);
+        expected.remove(key);
+        assertFalse("Removed key is found: " + key, index.searchForKey(key).isPresent());
+    }
+
+    private static void check(OpenAddressingTableIndex index, Map<String, KeyDirEntry> expected) {
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<String, KeyDirEntry> entry : expected.entrySet()) {
+            Optional<KeyDirEntry> found = index.searchForKey(entry.getKey());
+            assertTrue("Key is lost: " + entry.getKey(), found.isPresent());
+            assertSame(entry.getValue().getSegment(), found.get().getSegment());
+            assertEquals(entry.getValue().getOffset(), found.get().getOffset());
+            assertEquals(entry.getValue().getRecordSize(), found.get().getRecordSize());
+            assertEquals(entry.getValue().isRemoved(), found.get().isRemoved());
+        }
+
+        Map<String, KeyDirEntry> visited = new HashMap<>();
+        index.forEach((key, entry) -> assertTrue("Key is visited twice: " + key, visited.put(key, entry) == null));
+        assertEquals(expected.keySet(), visited.keySet());
+    }
+
+    /**
+     * @return 2^pairs строк из "Aa" и "BB" с одинаковым {@link String#hashCode()}
+     */
+    private static List<String> collidingKeys(int pairs) {
+        List<String> keys = List.of("");
+        for (int i = 0; i < pairs; i++) {
+            List<String> longer = new ArrayList<>();
+            for (String key : keys) {
+                longer.add(key + "Aa");
+                longer.add(key + "BB");
+            }
+            keys = longer;
+        }
+        return keys;
+    }
+
+    /**
+     * Начальный слот ключа в новом индексе: повторяет перемешивание хэша в {@link OpenAddressingTableIndex}
+     */
+    private static int homeSlot(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash & (INITIAL_CAPACITY - 1);
+    }
+}
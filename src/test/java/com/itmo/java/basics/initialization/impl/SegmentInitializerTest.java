@@ -0,0 +1,125 @@
+package com.itmo.java.basics.initialization.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.console.ExecutionEnvironment;
+import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.SegmentIndex;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.impl.DatabaseImpl;
+import com.itmo.java.basics.logic.impl.SegmentHintFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentInitializerTest {
+    private static final String DB_NAME = "db";
+    private static final String TABLE_NAME = "table";
+    private static final int KEYS = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void perform_TruncatesCorruptedLastRecordOfLastSegment() throws Exception {
+        Path root = folder.getRoot().toPath();
+        DatabaseConfig config = DatabaseConfig.builder().workingPath(root.toString()).compactionEnabled(false).build();
+
+        Database database = DatabaseImpl.create(DB_NAME, root, config);
+        database.createTableIfNotExists(TABLE_NAME);
+        for (int i = 0; i < KEYS; i++) {
+            database.write(TABLE_NAME, "key" + i, value(i));
+        }
+        database.close();
+
+        Path segmentPath = lastSegment(root);
+        long sizeBeforeCorruption = Files.size(segmentPath);
+        flipLastByte(segmentPath);
+
+        Database reopened = reopen(config);
+        for (int i = 0; i < KEYS - 1; i++) {
+            Optional<byte[]> value = reopened.read(TABLE_NAME, "key" + i);
+            assertTrue("Record before the torn tail is lost: key" + i, value.isPresent());
+            assertArrayEquals(value(i), value.get());
+        }
+        assertFalse("Corrupted record is read", reopened.read(TABLE_NAME, "key" + (KEYS - 1)).isPresent());
+
+        reopened.write(TABLE_NAME, "key" + (KEYS - 1), value(KEYS - 1));
+        reopened.close();
+        assertEquals("Record is not written over the torn tail", sizeBeforeCorruption, Files.size(segmentPath));
+
+        Database reopenedAgain = reopen(config);
+        for (int i = 0; i < KEYS; i++) {
+            assertArrayEquals(value(i), reopenedAgain.read(TABLE_NAME, "key" + i).orElseThrow());
+        }
+        reopenedAgain.close();
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void load_FailsOnCorruptedRecordOfReadOnlySegment() throws Exception {
+        Path root = folder.getRoot().toPath();
+        DatabaseConfig config = DatabaseConfig.builder().workingPath(root.toString()).compactionEnabled(false).build();
+
+        Database database = DatabaseImpl.create(DB_NAME, root, config);
+        database.createTableIfNotExists(TABLE_NAME);
+        for (int i = 0; i < KEYS; i++) {
+            database.write(TABLE_NAME, "key" + i, value(i));
+        }
+        database.close();
+
+        Path segmentPath = lastSegment(root);
+        flipLastByte(segmentPath);
+        SegmentHintFile.delete(segmentPath);
+
+        new SegmentInitializer().load(new SegmentInitializationContextImpl(
+                segmentPath.getFileName().toString(), segmentPath, 0, new SegmentIndex()), false);
+    }
+
+    private static Database reopen(DatabaseConfig config) throws DatabaseException {
+        ExecutionEnvironment environment = new ExecutionEnvironmentImpl(config);
+        new DatabaseServerInitializer(new DatabaseInitializer(new TableInitializer(new SegmentInitializer())))
+                .perform(new InitializationContextImpl(environment, null, null, null));
+        return environment.getDatabase(DB_NAME).orElseThrow();
+    }
+
+    /**
+     * @return самый новый сегмент таблицы: у файлов сегментов нет расширения, а номера дополнены нулями
+     */
+    private static Path lastSegment(Path root) throws IOException {
+        Path tablePath = root.resolve(DB_NAME).resolve(TABLE_NAME);
+        try (Stream<Path> files = Files.list(tablePath)) {
+            List<Path> segments = files
+                    .filter(path -> !path.getFileName().toString().contains("."))
+                    .sorted()
+                    .collect(Collectors.toList());
+            return segments.get(segments.size() - 1);
+        }
+    }
+
+    private static void flipLastByte(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int lastByte = file.read();
+            file.seek(file.length() - 1);
+            file.write(lastByte ^ 0xFF);
+        }
+    }
+
+    private static byte[] value(int number) {
+        return ("value" + number).getBytes();
+    }
+}
@@ -0,0 +1,179 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.logic.Table;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CachingTableTest {
+    private static final String KEY = "key";
+    private static final byte[] OLD_VALUE = "old".getBytes();
+    private static final byte[] NEW_VALUE = "new".getBytes();
+
+    private final CountDownLatch readStarted = new CountDownLatch(1);
+    private final CountDownLatch writeDone = new CountDownLatch(1);
+
+    @Test
+    public void read_DoesNotCacheValueReadBeforeConcurrentWrite() throws Exception {
+        PausedTable table = new PausedTable("table");
+        table.values.put(KEY, OLD_VALUE);
+        CachingTable cachingTable = new CachingTable(table, new StripedDatabaseCache(1024 * 1024), false);
+
+        table.pauseReads = true;
+        assertArrayEquals(OLD_VALUE, readConcurrentlyWithWrite(cachingTable).orElseThrow());
+        table.pauseReads = false;
+        assertArrayEquals("Value read before the write is cached", NEW_VALUE, cachingTable.read(KEY).orElseThrow());
+    }
+
+    @Test
+    public void read_DoesNotCacheAbsenceReadBeforeConcurrentWrite() throws Exception {
+        PausedTable table = new PausedTable("table");
+        CachingTable cachingTable = new CachingTable(table, new StripedDatabaseCache(1024 * 1024), true);
+
+        table.pauseReads = true;
+        assertEquals(Optional.empty(), readConcurrentlyWithWrite(cachingTable));
+        table.pauseReads = false;
+        assertArrayEquals("Absence read before the write is cached", NEW_VALUE, cachingTable.read(KEY).orElseThrow());
+    }
+
+    @Test
+    public void read_DoesNotPromoteOffHeapValueReadBeforeConcurrentWrite() throws Exception {
+        PausedTable table = new PausedTable("table");
+        StripedDatabaseCache dbCache = new StripedDatabaseCache(1024 * 1024);
+        PausedOffHeapCache offHeapCache = new PausedOffHeapCache(16 * 1024 * 1024);
+        CachingTable cachingTable = new CachingTable(table, dbCache, offHeapCache, false);
+        cachingTable.write(KEY, OLD_VALUE);
+        dbCache.delete(KEY);
+
+        offHeapCache.pauseReads = true;
+        assertArrayEquals(OLD_VALUE, readConcurrentlyWithWrite(cachingTable).orElseThrow());
+        offHeapCache.pauseReads = false;
+        assertArrayEquals("Value read from the second level before the write is promoted",
+                NEW_VALUE, cachingTable.read(KEY).orElseThrow());
+    }
+
+    @Test
+    public void create_SharesOffHeapBudgetBetweenTables() throws Exception {
+        long offHeapBytes = 16 * 64 * 1024;
+        DatabaseConfig config = DatabaseConfig.builder().cacheBytes(0).offHeapCacheBytes(offHeapBytes).build();
+        CachingTable first = (CachingTable) CachingTable.create(new PausedTable("first"), Path.of("db", "first"), config, false);
+        CachingTable second = (CachingTable) CachingTable.create(new PausedTable("second"), Path.of("db", "second"), config, false);
+
+        // значения обеих таблиц вдвое больше лимита: slab-ы кэша сервера заняты целиком, но сверх лимита не выделяются
+        byte[] value = new byte[200];
+        for (int i = 0; i < 5000; i++) {
+            first.write(KEY + i, value);
+            second.write(KEY + i, value);
+        }
+        OffHeapDatabaseCache offHeapCache = OffHeapDatabaseCache.forConfig(config);
+        assertEquals("Tables do not share one budget", offHeapBytes, offHeapCache.getAllocatedBytes());
+
+        first.write(KEY, OLD_VALUE);
+        second.write(KEY, NEW_VALUE);
+        assertArrayEquals(OLD_VALUE, first.read(KEY).orElseThrow());
+        assertArrayEquals(NEW_VALUE, second.read(KEY).orElseThrow());
+        assertEquals(1, first.getStats().getOffHeapHits());
+        assertEquals(1, second.getStats().getOffHeapHits());
+
+        first.close();
+        assertArrayEquals("Closing a table drops entries of another one", NEW_VALUE, second.read(KEY).orElseThrow());
+        assertEquals(2, second.getStats().getOffHeapHits());
+    }
+
+    /**
+     * Читает ключ в другом потоке и, пока чтение приостановлено после получения значения, записывает новое значение
+     *
+     * @return результат чтения
+     */
+    private Optional<byte[]> readConcurrentlyWithWrite(CachingTable cachingTable) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<byte[]>> read = executor.submit(() -> cachingTable.read(KEY));
+            assertEquals(true, readStarted.await(10, TimeUnit.SECONDS));
+            cachingTable.write(KEY, NEW_VALUE);
+            writeDone.countDown();
+            return read.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void pause() {
+        readStarted.countDown();
+        try {
+            writeDone.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Таблица в памяти, чтение которой можно приостановить после того, как значение уже прочитано
+     */
+    private final class PausedTable implements Table {
+        private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+        private final String name;
+        private volatile boolean pauseReads = false;
+
+        private PausedTable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void write(String objectKey, byte[] objectValue) {
+            values.put(objectKey, objectValue);
+        }
+
+        @Override
+        public Optional<byte[]> read(String objectKey) {
+            Optional<byte[]> value = Optional.ofNullable(values.get(objectKey));
+            if (pauseReads) {
+                pause();
+            }
+            return value;
+        }
+
+        @Override
+        public void delete(String objectKey) {
+            values.remove(objectKey);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final class PausedOffHeapCache extends OffHeapDatabaseCache {
+        private volatile boolean pauseReads = false;
+
+        private PausedOffHeapCache(long maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        public byte[] get(String key) {
+            byte[] value = super.get(key);
+            if (pauseReads) {
+                pause();
+            }
+            return value;
+        }
+    }
+}
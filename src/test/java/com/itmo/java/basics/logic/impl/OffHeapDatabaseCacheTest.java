@@ -0,0 +1,154 @@
+package com.itmo.java.basics.logic.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class OffHeapDatabaseCacheTest {
+    private static final int STRIPES = 16;
+    /**
+     * Часть с таким лимитом держит один slab: все записи одного класса размера делят его куски
+     */
+    private static final int SMALL_STRIPE_BYTES = 4096;
+    /**
+     * Часть с таким лимитом держит два slab-а по мегабайту
+     */
+    private static final int LARGE_STRIPE_BYTES = 2 * 1024 * 1024;
+    /**
+     * Запись с таким значением и коротким ключом попадает в кусок наименьшего класса (64 байта)
+     */
+    private static final byte[] SMALL_VALUE = filled(40, (byte) 1);
+    /**
+     * Запись с таким значением попадает в кусок большего класса
+     */
+    private static final byte[] LARGE_VALUE = filled(200, (byte) 2);
+
+    @Test
+    public void set_EvictsLeastRecentlyReadEntryOfTheSameClass() {
+        OffHeapDatabaseCache cache = new OffHeapDatabaseCache((long) STRIPES * SMALL_STRIPE_BYTES);
+        List<String> keys = keysOfStripe(0, SMALL_STRIPE_BYTES / 64 + 1);
+        for (int i = 0; i < keys.size() - 1; i++) {
+            cache.set(keys.get(i), SMALL_VALUE);
+        }
+        assertArrayEquals(SMALL_VALUE, cache.get(keys.get(0)));
+
+        cache.set(keys.get(keys.size() - 1), SMALL_VALUE);
+        assertNull("Least recently read entry is not evicted", cache.get(keys.get(1)));
+        assertArrayEquals(SMALL_VALUE, cache.get(keys.get(0)));
+        assertArrayEquals(SMALL_VALUE, cache.get(keys.get(keys.size() - 1)));
+        for (int i = 2; i < keys.size() - 1; i++) {
+            assertArrayEquals(SMALL_VALUE, cache.get(keys.get(i)));
+        }
+        assertEquals(SMALL_STRIPE_BYTES, cache.getAllocatedBytes());
+    }
+
+    @Test
+    public void set_StealsSlabWhenChunkClassHasNone() {
+        OffHeapDatabaseCache cache = new OffHeapDatabaseCache((long) STRIPES * SMALL_STRIPE_BYTES);
+        List<String> keys = keysOfStripe(0, SMALL_STRIPE_BYTES / 64 + 2);
+        List<String> smallKeys = keys.subList(0, SMALL_STRIPE_BYTES / 64);
+        for (String key : smallKeys) {
+            cache.set(key, SMALL_VALUE);
+        }
+
+        String largeKey = keys.get(keys.size() - 2);
+        cache.set(largeKey, LARGE_VALUE);
+        assertArrayEquals("Value of a class without slabs is not cached", LARGE_VALUE, cache.get(largeKey));
+        for (String key : smallKeys) {
+            assertNull("Entry of the stolen slab is still readable: " + key, cache.get(key));
+        }
+        assertEquals(SMALL_STRIPE_BYTES, cache.getAllocatedBytes());
+
+        String otherLargeKey = keys.get(keys.size() - 1);
+        cache.set(otherLargeKey, LARGE_VALUE);
+        assertArrayEquals(LARGE_VALUE, cache.get(largeKey));
+        assertArrayEquals(LARGE_VALUE, cache.get(otherLargeKey));
+
+        cache.set(smallKeys.get(0), SMALL_VALUE);
+        assertArrayEquals(SMALL_VALUE, cache.get(smallKeys.get(0)));
+        assertNull(cache.get(largeKey));
+        assertNull(cache.get(otherLargeKey));
+    }
+
+    @Test
+    public void set_StealsSlabHoldingLeastRecentlyReadEntryOfTheDonor() {
+        OffHeapDatabaseCache cache = new OffHeapDatabaseCache((long) STRIPES * LARGE_STRIPE_BYTES);
+        int chunksPerSlab = LARGE_STRIPE_BYTES / 2 / 64;
+        List<String> keys = keysOfStripe(3, 2 * chunksPerSlab + 1);
+        List<String> firstSlabKeys = keys.subList(0, chunksPerSlab);
+        List<String> secondSlabKeys = keys.subList(chunksPerSlab, 2 * chunksPerSlab);
+        for (String key : keys.subList(0, 2 * chunksPerSlab)) {
+            cache.set(key, SMALL_VALUE);
+        }
+        assertEquals(LARGE_STRIPE_BYTES, cache.getAllocatedBytes());
+        for (String key : firstSlabKeys) {
+            assertArrayEquals(SMALL_VALUE, cache.get(key));
+        }
+
+        String largeKey = keys.get(keys.size() - 1);
+        cache.set(largeKey, LARGE_VALUE);
+        assertArrayEquals(LARGE_VALUE, cache.get(largeKey));
+        for (String key : firstSlabKeys) {
+            assertArrayEquals("Recently read entry is evicted: " + key, SMALL_VALUE, cache.get(key));
+        }
+        for (String key : secondSlabKeys) {
+            assertNull("Entry of the stolen slab is still readable: " + key, cache.get(key));
+        }
+        assertEquals(LARGE_STRIPE_BYTES, cache.getAllocatedBytes());
+    }
+
+    @Test
+    public void delete_FreesChunkForTheNextEntry() {
+        OffHeapDatabaseCache cache = new OffHeapDatabaseCache((long) STRIPES * SMALL_STRIPE_BYTES);
+        List<String> keys = keysOfStripe(5, SMALL_STRIPE_BYTES / 64 + 1);
+        for (int i = 0; i < keys.size() - 1; i++) {
+            cache.set(keys.get(i), SMALL_VALUE);
+        }
+
+        cache.delete(keys.get(10));
+        assertNull(cache.get(keys.get(10)));
+        cache.set(keys.get(keys.size() - 1), SMALL_VALUE);
+        for (int i = 0; i < keys.size(); i++) {
+            if (i != 10) {
+                assertArrayEquals("Entry is evicted while a chunk was free: " + keys.get(i), SMALL_VALUE, cache.get(keys.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void set_DropsPreviousValueThatDoesNotFit() {
+        OffHeapDatabaseCache cache = new OffHeapDatabaseCache((long) STRIPES * SMALL_STRIPE_BYTES);
+        String key = keysOfStripe(0, 1).get(0);
+        cache.set(key, SMALL_VALUE);
+
+        cache.set(key, new byte[SMALL_STRIPE_BYTES]);
+        assertNull("Stale value is read after a value bigger than a slab", cache.get(key));
+    }
+
+    /**
+     * @return ключи, которые кэш кладет в заданную часть: повторяет выбор части в {@link OffHeapDatabaseCache}
+     */
+    private static List<String> keysOfStripe(int stripe, int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; keys.size() < count; i++) {
+            String key = "key" + i;
+            int hash = key.hashCode();
+            if (((hash ^ (hash >>> 16)) & (STRIPES - 1)) == stripe) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
@@ -0,0 +1,120 @@
+package com.itmo.java.basics.logic.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentManifestTest {
+    private static final String TABLE_NAME = "table";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void open_TruncatesRecordTornInTheMiddle() throws IOException {
+        Path tablePath = folder.getRoot().toPath();
+        SegmentManifest manifest = SegmentManifest.create(tablePath, List.of());
+        List<String> names = addSegments(manifest, 2);
+        long sizeBeforeLastRecord = Files.size(SegmentManifest.manifestPath(tablePath));
+        addSegments(manifest, 1);
+        long sizeWithLastRecord = Files.size(SegmentManifest.manifestPath(tablePath));
+
+        // манифест не закрыт, как после падения процесса, и его последняя запись оборвана посередине
+        truncate(tablePath, (sizeBeforeLastRecord + sizeWithLastRecord) / 2);
+        SegmentManifest reopened = SegmentManifest.open(tablePath);
+        assertEquals(names, reopened.getSegmentNames());
+        assertFalse(reopened.wasClosedCleanly());
+        assertEquals("Torn record is not cut off", sizeBeforeLastRecord, Files.size(SegmentManifest.manifestPath(tablePath)));
+
+        names.addAll(addSegments(reopened, 1));
+        reopened.close();
+        SegmentManifest reopenedAgain = SegmentManifest.open(tablePath);
+        assertEquals(names, reopenedAgain.getSegmentNames());
+        assertTrue(reopenedAgain.wasClosedCleanly());
+        reopenedAgain.close();
+    }
+
+    @Test
+    public void open_DropsLastRecordWithWrongChecksum() throws IOException {
+        Path tablePath = folder.getRoot().toPath();
+        SegmentManifest manifest = SegmentManifest.create(tablePath, List.of());
+        List<String> names = addSegments(manifest, 3);
+        addSegments(manifest, 1);
+
+        try (RandomAccessFile file = new RandomAccessFile(SegmentManifest.manifestPath(tablePath).toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int lastByte = file.read();
+            file.seek(file.length() - 1);
+            file.write(lastByte ^ 0xFF);
+        }
+
+        SegmentManifest reopened = SegmentManifest.open(tablePath);
+        assertEquals(names, reopened.getSegmentNames());
+        assertFalse(reopened.wasClosedCleanly());
+        reopened.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void open_FailsOnTruncatedHeader() throws IOException {
+        Path tablePath = folder.getRoot().toPath();
+        SegmentManifest.create(tablePath, List.of());
+
+        truncate(tablePath, 10);
+        SegmentManifest.open(tablePath);
+    }
+
+    @Test
+    public void segmentsReplaced_RewritesLongJournal() throws IOException {
+        Path tablePath = folder.getRoot().toPath();
+        SegmentManifest manifest = SegmentManifest.create(tablePath, List.of());
+        List<String> names = addSegments(manifest, 4);
+
+        long maxSize = 0;
+        for (int i = 0; i < 2_000; i++) {
+            String added = manifest.nextSegmentName(TABLE_NAME);
+            manifest.segmentsReplaced(List.of(names.get(1)), List.of(added));
+            names.set(1, added);
+            maxSize = Math.max(maxSize, Files.size(SegmentManifest.manifestPath(tablePath)));
+        }
+        assertEquals(names, manifest.getSegmentNames());
+        assertTrue("Journal is not rewritten: " + maxSize + " bytes", maxSize < 64 * 1024);
+
+        String last = manifest.nextSegmentName(TABLE_NAME);
+        manifest.segmentAdded(last);
+        names.add(last);
+
+        SegmentManifest reopened = SegmentManifest.open(tablePath);
+        assertEquals(names, reopened.getSegmentNames());
+        assertTrue("Segment numbers are reused after rewrite", reopened.nextSegmentName(TABLE_NAME).compareTo(last) > 0);
+        reopened.close();
+    }
+
+    private static List<String> addSegments(SegmentManifest manifest, int count) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = manifest.nextSegmentName(TABLE_NAME);
+            manifest.segmentAdded(name);
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static void truncate(Path tablePath, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(SegmentManifest.manifestPath(tablePath), StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+}
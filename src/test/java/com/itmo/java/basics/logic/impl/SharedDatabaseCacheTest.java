@@ -0,0 +1,41 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.logic.DatabaseCache;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SharedDatabaseCacheTest {
+    private static final byte[] VALUE = new byte[100];
+
+    @Test
+    public void setMaxBytes_EvictsDownToNewLimit() {
+        SharedDatabaseCache cache = new SharedDatabaseCache(1024 * 1024);
+        DatabaseCache first = cache.forTable("db", "first");
+        DatabaseCache second = cache.forTable("db", "second");
+        for (int i = 0; i < 2000; i++) {
+            first.set("key" + i, VALUE);
+            second.set("key" + i, VALUE);
+        }
+        long cachedBefore = cache.getCachedBytes();
+
+        cache.setMaxBytes(64 * 1024);
+        assertEquals(64 * 1024, cache.getMaxBytes());
+        assertTrue("Cache is not shrunk: " + cache.getCachedBytes() + " of " + cachedBefore + " bytes",
+                cache.getCachedBytes() <= 64 * 1024);
+
+        cache.setMaxBytes(1024 * 1024);
+        for (int i = 0; i < 2000; i++) {
+            first.set("key" + i, VALUE);
+        }
+        assertEquals("Cache does not grow back", cachedBefore / 2, cache.getCachedBytes("db", "first"));
+        assertArrayEquals(VALUE, first.get("key0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setMaxBytes_FailsOnNegativeLimit() {
+        new SharedDatabaseCache(1024).setMaxBytes(-1);
+    }
+}